@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.http.SslCertificate;
+import android.security.KeyChain;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists the subject lines shown for each trusted CA certificate, so the trusted credentials
+ * list can be built without decoding every certificate. Entries are keyed by tab, profile and
+ * alias and are only used while the SHA-256 fingerprint of the certificate still matches.
+ */
+public class CaCertSummaryCache {
+
+    @VisibleForTesting
+    static final String PREF_FILE = "ca_cert_summaries";
+    private static final char SEPARATOR = '\n';
+
+    private final SharedPreferences mPrefs;
+
+    public CaCertSummaryCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE);
+    }
+
+    /** Subject lines of a certificate as shown in the list. */
+    public static class Summary {
+        public final String mPrimary;
+        public final String mSecondary;
+
+        public Summary(String primary, String secondary) {
+            mPrimary = primary;
+            mSecondary = secondary;
+        }
+    }
+
+    /** Returns the cached summary, or null if there is none for this exact certificate. */
+    @Nullable
+    public Summary get(String tab, int profileId, String alias, String fingerprint) {
+        final String value = mPrefs.getString(getKey(tab, profileId, alias), null);
+        if (value == null) {
+            return null;
+        }
+        final int first = value.indexOf(SEPARATOR);
+        final int second = value.indexOf(SEPARATOR, first + 1);
+        if (first < 0 || second < 0 || !fingerprint.equals(value.substring(0, first))) {
+            return null;
+        }
+        return new Summary(value.substring(first + 1, second), value.substring(second + 1));
+    }
+
+    /** Stores the summary of a certificate. */
+    public void put(String tab, int profileId, String alias, String fingerprint,
+            Summary summary) {
+        mPrefs.edit()
+                .putString(getKey(tab, profileId, alias),
+                        fingerprint + SEPARATOR + summary.mPrimary + SEPARATOR
+                                + summary.mSecondary)
+                .apply();
+    }
+
+    /**
+     * Removes the entries of {@code tab} that a full load didn't list. Entries of profiles that
+     * aren't in {@code aliasesByProfileId} are removed, and so are entries of listed profiles
+     * whose alias isn't in their list. Profiles mapped to null weren't loaded and keep theirs.
+     */
+    @WorkerThread
+    public void prune(String tab, SparseArray<List<String>> aliasesByProfileId) {
+        final String prefix = tab + ':';
+        final SparseArray<Set<String>> listed = new SparseArray<>(aliasesByProfileId.size());
+        for (int i = 0; i < aliasesByProfileId.size(); i++) {
+            final List<String> aliases = aliasesByProfileId.valueAt(i);
+            listed.put(aliasesByProfileId.keyAt(i),
+                    aliases == null ? null : new HashSet<>(aliases));
+        }
+        SharedPreferences.Editor editor = null;
+        for (String key : mPrefs.getAll().keySet()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            final int separator = key.indexOf(':', prefix.length());
+            final int profileId;
+            try {
+                profileId = Integer.parseInt(key.substring(prefix.length(), separator));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                continue;
+            }
+            final int index = listed.indexOfKey(profileId);
+            if (index >= 0 && (listed.valueAt(index) == null
+                    || listed.valueAt(index).contains(key.substring(separator + 1)))) {
+                continue;
+            }
+            if (editor == null) {
+                editor = mPrefs.edit();
+            }
+            editor.remove(key);
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    /** Returns the SHA-256 fingerprint of an encoded certificate, without decoding it. */
+    public static String getFingerprint(byte[] encodedCertificate) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(encodedCertificate));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Decodes a certificate and computes its summary. */
+    @WorkerThread
+    public static Summary decode(byte[] encodedCertificate) {
+        final X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
+        final SslCertificate.DName subject = new SslCertificate(cert).getIssuedTo();
+        final String cn = subject.getCName();
+        final String o = subject.getOName();
+        final String ou = subject.getUName();
+        // if we have a O, use O as primary subject, secondary prefer CN over OU
+        // if we don't have an O, use CN as primary, empty secondary
+        // if we don't have O or CN, use DName as primary, empty secondary
+        if (!o.isEmpty()) {
+            return new Summary(o, !cn.isEmpty() ? cn : ou);
+        } else if (!cn.isEmpty()) {
+            return new Summary(cn, "");
+        } else {
+            return new Summary(subject.getDName(), "");
+        }
+    }
+
+    private static String getKey(String tab, int profileId, String alias) {
+        return tab + ':' + profileId + ':' + alias;
+    }
+}
@@ -20,6 +20,7 @@ import android.app.Application;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.net.Uri;
+import android.os.Looper;
 import android.provider.Settings;
 import android.util.FeatureFlagUtils;
 
@@ -29,6 +30,7 @@ import com.android.settings.activityembedding.ActivityEmbeddingRulesController;
 import com.android.settings.activityembedding.ActivityEmbeddingUtils;
 import com.android.settings.core.instrumentation.ElapsedTimeUtils;
 import com.android.settings.homepage.SettingsHomepageActivity;
+import com.android.settings.homepage.StartupTimeline;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.overlay.FeatureFactoryImpl;
 import com.android.settings.spa.SettingsSpaEnvironment;
@@ -53,24 +55,31 @@ public class SettingsApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        final StartupTimeline timeline = new StartupTimeline("SettingsApplication");
 
         // Add null checking to avoid test case failed.
         if (getApplicationContext() != null) {
+            timeline.beginPhase("assignSuwFinishedTimeStamp");
             ElapsedTimeUtils.assignSuwFinishedTimeStamp(getApplicationContext());
         }
 
         // Set Spa environment.
+        timeline.beginPhase("setSpaEnvironment");
         setSpaEnvironment();
 
         if (ActivityEmbeddingUtils.isSettingsSplitEnabled(this)
                 && FeatureFlagUtils.isEnabled(this,
                         FeatureFlagUtils.SETTINGS_SUPPORT_LARGE_SCREEN)) {
+            // The rules must be in place before the first activity is launched, so they stay
+            // synchronous when setup is already complete.
+            timeline.beginPhase("initEmbeddingRules");
             if (WizardManagerHelper.isUserSetupComplete(this)) {
                 new ActivityEmbeddingRulesController(this).initRules();
             } else {
                 new DeviceProvisionedObserver().registerContentObserver();
             }
         }
+        timeline.finish();
     }
 
     @NonNull
@@ -115,7 +124,11 @@ public class SettingsApplication extends Application {
             }
 
             SettingsApplication.this.getContentResolver().unregisterContentObserver(this);
-            new ActivityEmbeddingRulesController(SettingsApplication.this).initRules();
+            // Nothing is waiting for these rules yet, so set them up once the main thread idles.
+            Looper.getMainLooper().getQueue().addIdleHandler(() -> {
+                new ActivityEmbeddingRulesController(SettingsApplication.this).initRules();
+                return false;
+            });
         }
 
         public void registerContentObserver() {
@@ -37,9 +37,18 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.applications.RunningState;
+import com.android.settings.applications.RunningStateRefreshTracker;
+import com.android.settings.core.PreferenceXmlCache;
+import com.android.settings.core.SettingsTaskScheduler;
+import com.android.settings.core.instrumentation.MetricsLogQueue;
+import com.android.settings.core.instrumentation.SettingsMetricsFeatureProvider;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
+import com.android.settings.homepage.StartupTimeline;
 import com.android.settings.network.MobileNetworkRepository;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -48,7 +57,11 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 public class SettingsDumpService extends Service {
 
@@ -68,6 +81,21 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_RUNNING_STATE = "running_state";
+    @VisibleForTesting
+    static final String KEY_STARTUP = "startup";
+    @VisibleForTesting
+    static final String KEY_TASK_SCHEDULER = "task_scheduler";
+    @VisibleForTesting
+    static final String KEY_METRICS_QUEUE = "metrics_queue";
+    @VisibleForTesting
+    static final String KEY_PREFERENCE_XML = "preference_xml";
+    /** Dump arg for the streaming dump. It can be followed by the keys of the sections wanted. */
+    @VisibleForTesting
+    static final String ARG_STREAM = "--stream";
+    private static final long SECTION_TIMEOUT_MS = 1000;
+    private static final long SLOW_SECTION_TIMEOUT_MS = 5000;
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -88,6 +116,10 @@ public class SettingsDumpService extends Service {
 
     @Override
     protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0 && ARG_STREAM.equals(args[0])) {
+            dumpStreaming(writer, Arrays.asList(args).subList(1, args.length));
+            return;
+        }
         IndentingPrintWriter pw = new IndentingPrintWriter(writer, "  ");
         if (!mShouldShowNetworkDump) {
             JSONObject dump = new JSONObject();
@@ -100,6 +132,11 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
                 dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+                dump.put(KEY_RUNNING_STATE, dumpRunningState());
+                dump.put(KEY_STARTUP, new JSONArray(StartupTimeline.getRecentTimelines()));
+                dump.put(KEY_TASK_SCHEDULER, dumpTaskScheduler());
+                dump.put(KEY_METRICS_QUEUE, dumpMetricsQueue());
+                dump.put(KEY_PREFERENCE_XML, dumpPreferenceXml());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
@@ -111,6 +148,34 @@ public class SettingsDumpService extends Service {
         }
     }
 
+    /**
+     * Same sections as the default dump, gathered concurrently and each written as soon as it
+     * is ready with its duration.
+     */
+    private void dumpStreaming(PrintWriter writer, List<String> sections) {
+        try {
+            new StreamingDumpWriter(threads -> SettingsTaskScheduler.getInstance()
+                    .newDedicatedExecutor(SettingsTaskScheduler.Lane.PREFETCH, TAG, threads))
+                    .add(KEY_SERVICE, SECTION_TIMEOUT_MS, () -> "Settings State")
+                    .add(KEY_STORAGE, SLOW_SECTION_TIMEOUT_MS, this::dumpStorage)
+                    .add(KEY_DATAUSAGE, SLOW_SECTION_TIMEOUT_MS, this::dumpDataUsage)
+                    .add(KEY_MEMORY, SLOW_SECTION_TIMEOUT_MS, this::dumpMemory)
+                    .add(KEY_DEFAULT_BROWSER_APP, SECTION_TIMEOUT_MS, this::dumpDefaultBrowser)
+                    .add(KEY_ANOMALY_DETECTION, SECTION_TIMEOUT_MS, this::dumpAnomalyDetection)
+                    .add(KEY_RUNNING_STATE, SECTION_TIMEOUT_MS, this::dumpRunningState)
+                    .add(KEY_STARTUP, SECTION_TIMEOUT_MS,
+                            () -> new JSONArray(StartupTimeline.getRecentTimelines()))
+                    .add(KEY_TASK_SCHEDULER, SECTION_TIMEOUT_MS, this::dumpTaskScheduler)
+                    .add(KEY_METRICS_QUEUE, SECTION_TIMEOUT_MS, this::dumpMetricsQueue)
+                    .add(KEY_PREFERENCE_XML, SECTION_TIMEOUT_MS, this::dumpPreferenceXml)
+                    .write(writer, sections);
+        } catch (IOException e) {
+            Log.w(TAG, "exception in dump: ", e);
+        }
+        writer.println();
+        writer.flush();
+    }
+
     private JSONObject dumpMemory() throws JSONException {
         JSONObject obj = new JSONObject();
         ProcStatsData statsManager = new ProcStatsData(this, false);
@@ -211,6 +276,77 @@ public class SettingsDumpService extends Service {
         return obj;
     }
 
+    @VisibleForTesting
+    JSONObject dumpRunningState() throws JSONException {
+        final RunningStateRefreshTracker tracker = RunningState.getRefreshTracker();
+        if (tracker == null) {
+            return null;
+        }
+        final JSONObject obj = new JSONObject();
+        obj.put("poll_delay_ms", tracker.getPollDelay());
+        obj.put("last_diff_size", tracker.getLastDiffSize());
+        obj.put("last_update_cost_ms", tracker.getLastUpdateCost());
+        obj.put("refreshes", tracker.getRefreshCount());
+        obj.put("unchanged_refreshes", tracker.getUnchangedRefreshCount());
+        return obj;
+    }
+
+    @VisibleForTesting
+    JSONObject dumpTaskScheduler() throws JSONException {
+        final SettingsTaskScheduler scheduler = SettingsTaskScheduler.getInstance();
+        final JSONObject obj = new JSONObject();
+        for (SettingsTaskScheduler.Lane lane : SettingsTaskScheduler.Lane.values()) {
+            final SettingsTaskScheduler.LaneStats stats = scheduler.getStats(lane);
+            final JSONObject laneObj = new JSONObject();
+            laneObj.put("queued", stats.getQueueDepth());
+            laneObj.put("active", stats.getActiveCount());
+            laneObj.put("completed", stats.getCompletedCount());
+            laneObj.put("avg_wait_ms", stats.getAverageWaitMillis());
+            laneObj.put("max_wait_ms", stats.getMaxWaitMillis());
+            obj.put(lane.name().toLowerCase(), laneObj);
+        }
+        return obj;
+    }
+
+    @VisibleForTesting
+    JSONObject dumpMetricsQueue() throws JSONException {
+        final MetricsFeatureProvider provider =
+                FeatureFactory.getFeatureFactory().getMetricsFeatureProvider();
+        if (!(provider instanceof SettingsMetricsFeatureProvider)) {
+            return null;
+        }
+        final MetricsLogQueue queue = ((SettingsMetricsFeatureProvider) provider).getLogQueue();
+        final JSONObject obj = new JSONObject();
+        obj.put("capacity", queue.getCapacity());
+        obj.put("queued", queue.getQueueDepth());
+        obj.put("written", queue.getWrittenCount());
+        obj.put("dropped", queue.getDroppedCount());
+        obj.put("coalesced", queue.getCoalescedCount());
+        return obj;
+    }
+
+    @VisibleForTesting
+    JSONObject dumpPreferenceXml() throws JSONException {
+        final PreferenceXmlCache cache = PreferenceXmlCache.getInstance();
+        final JSONObject obj = new JSONObject();
+        obj.put("cached", cache.size());
+        obj.put("hits", cache.getHitCount());
+        obj.put("misses", cache.getMissCount());
+        final JSONObject inflations = new JSONObject();
+        for (Map.Entry<String, PreferenceXmlCache.InflationStats> entry
+                : cache.getInflationStats().entrySet()) {
+            final PreferenceXmlCache.InflationStats stats = entry.getValue();
+            final JSONObject screen = new JSONObject();
+            screen.put("count", stats.getCount());
+            screen.put("last_ms", stats.getLastMillis());
+            screen.put("avg_ms", stats.getAverageMillis());
+            screen.put("max_ms", stats.getMaxMillis());
+            inflations.put(entry.getKey(), screen);
+        }
+        obj.put("inflation", inflations);
+        return obj;
+    }
+
     private void dumpMobileNetworkSettings(IndentingPrintWriter writer) {
         MobileNetworkRepository.getInstance(this).dump(writer);
     }
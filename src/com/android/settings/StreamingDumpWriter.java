@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import android.os.SystemClock;
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Writes dump sections as one JSON object. Sections are gathered concurrently and each one is
+ * written as soon as it is ready, so the report is never held in memory as a whole and a slow
+ * section only costs its own deadline. Each deadline starts when its section starts running, and
+ * every dump gets an executor with a thread per section, so sections never wait for each other
+ * and a section stuck in a binder call only holds a thread of its own dump.
+ *
+ * <p>Each section is written as {@code "key": {"duration_ms": ..., "value": ...}}, or with an
+ * {@code "error"} instead of the value if it failed or missed its deadline.
+ */
+final class StreamingDumpWriter {
+
+    /** Produces the value of a section: a JSON object or array, a string, a number or null. */
+    interface Section {
+        Object dump() throws Exception;
+    }
+
+    private final IntFunction<ExecutorService> mExecutorFactory;
+    private final Map<String, Section> mSections = new LinkedHashMap<>();
+    private final Map<String, Long> mTimeouts = new LinkedHashMap<>();
+
+    /**
+     * @param executorFactory creates the executor of one dump, given the number of sections to
+     *                        run. The executor is shut down when the dump is written.
+     */
+    StreamingDumpWriter(@NonNull IntFunction<ExecutorService> executorFactory) {
+        mExecutorFactory = executorFactory;
+    }
+
+    /** Adds a section that is given {@code timeoutMillis} from the time it starts running. */
+    StreamingDumpWriter add(@NonNull String key, long timeoutMillis, @NonNull Section section) {
+        mSections.put(key, section);
+        mTimeouts.put(key, timeoutMillis);
+        return this;
+    }
+
+    /**
+     * Writes the sections named in {@code keys}, or all of them if it is empty. Returns once
+     * every section was written or timed out.
+     */
+    void write(@NonNull Writer out, @NonNull Collection<String> keys) throws IOException {
+        final JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        final Map<String, Section> sections = new LinkedHashMap<>();
+        for (String key : keys.isEmpty() ? mSections.keySet() : keys) {
+            final Section section = mSections.get(key);
+            if (section == null) {
+                writeError(json, key, 0 /* durationMillis */, "unknown section");
+            } else {
+                sections.put(key, section);
+            }
+        }
+        if (!sections.isEmpty()) {
+            final ExecutorService executor = mExecutorFactory.apply(sections.size());
+            try {
+                writeSections(json, executor, sections);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    private void writeSections(JsonWriter json, ExecutorService executor,
+            Map<String, Section> sections) throws IOException {
+        final CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        final Map<String, Long> started = new ConcurrentHashMap<>();
+        final Map<String, Future<Result>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, Section> entry : sections.entrySet()) {
+            final String key = entry.getKey();
+            final Section section = entry.getValue();
+            pending.put(key, completion.submit(() -> {
+                started.put(key, SystemClock.elapsedRealtime());
+                return run(key, section);
+            }));
+        }
+        try {
+            while (!pending.isEmpty()) {
+                final long wait = getNextDeadline(pending.keySet(), started)
+                        - SystemClock.elapsedRealtime();
+                final Future<Result> done = completion.poll(Math.max(0, wait),
+                        TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    // Sections already written as timed out are skipped.
+                    final Result result = done.isCancelled() ? null : getResult(done);
+                    if (result != null && pending.remove(result.mKey) != null) {
+                        writeResult(json, result);
+                    }
+                    continue;
+                }
+                final long now = SystemClock.elapsedRealtime();
+                for (Iterator<Map.Entry<String, Future<Result>>> it =
+                        pending.entrySet().iterator(); it.hasNext(); ) {
+                    final Map.Entry<String, Future<Result>> entry = it.next();
+                    final Long start = started.get(entry.getKey());
+                    if (start != null && start + mTimeouts.get(entry.getKey()) <= now) {
+                        entry.getValue().cancel(true /* mayInterruptIfRunning */);
+                        it.remove();
+                        writeError(json, entry.getKey(), now - start, "timed out");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final long now = SystemClock.elapsedRealtime();
+            for (Map.Entry<String, Future<Result>> entry : pending.entrySet()) {
+                entry.getValue().cancel(true /* mayInterruptIfRunning */);
+                final Long start = started.get(entry.getKey());
+                writeError(json, entry.getKey(), start != null ? now - start : 0,
+                        "interrupted");
+            }
+        }
+    }
+
+    /**
+     * Returns the earliest deadline of the started sections. A section that hasn't started yet
+     * can't time out before its own timeout has passed from now, which bounds the wait until its
+     * start is noticed.
+     */
+    private long getNextDeadline(Collection<String> keys, Map<String, Long> started) {
+        final long now = SystemClock.elapsedRealtime();
+        long deadline = Long.MAX_VALUE;
+        for (String key : keys) {
+            final Long start = started.get(key);
+            deadline = Math.min(deadline, (start != null ? start : now) + mTimeouts.get(key));
+        }
+        return deadline;
+    }
+
+    private static Result run(String key, Section section) {
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            final Object value = section.dump();
+            return new Result(key, value, null, SystemClock.elapsedRealtime() - start);
+        } catch (Exception e) {
+            return new Result(key, null, e, SystemClock.elapsedRealtime() - start);
+        }
+    }
+
+    private static Result getResult(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // run() catches everything a section throws, so this is not expected.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void writeResult(JsonWriter json, Result result) throws IOException {
+        if (result.mError != null) {
+            writeError(json, result.mKey, result.mDurationMillis, result.mError.toString());
+            return;
+        }
+        json.name(result.mKey).beginObject();
+        json.name("duration_ms").value(result.mDurationMillis);
+        json.name("value");
+        writeValue(json, result.mValue);
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeError(JsonWriter json, String key, long durationMillis,
+            String error) throws IOException {
+        json.name(key).beginObject();
+        json.name("duration_ms").value(durationMillis);
+        json.name("error").value(error);
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeValue(JsonWriter json, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            json.nullValue();
+        } else if (value instanceof JSONObject) {
+            final JSONObject object = (JSONObject) value;
+            json.beginObject();
+            for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+                final String name = it.next();
+                json.name(name);
+                writeValue(json, object.opt(name));
+            }
+            json.endObject();
+        } else if (value instanceof JSONArray) {
+            final JSONArray array = (JSONArray) value;
+            json.beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(json, array.opt(i));
+            }
+            json.endArray();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object item : (List<?>) value) {
+                writeValue(json, item);
+            }
+            json.endArray();
+        } else if (value instanceof Boolean) {
+            json.value((Boolean) value);
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else {
+            json.value(value.toString());
+        }
+    }
+
+    private static final class Result {
+        final String mKey;
+        final Object mValue;
+        final Exception mError;
+        final long mDurationMillis;
+
+        Result(String key, Object value, Exception error, long durationMillis) {
+            mKey = key;
+            mValue = value;
+            mError = error;
+            mDurationMillis = durationMillis;
+        }
+    }
+}
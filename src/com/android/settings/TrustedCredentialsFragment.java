@@ -33,7 +33,6 @@ import android.content.pm.UserInfo;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
 import android.graphics.drawable.Drawable;
-import android.net.http.SslCertificate;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Parcelable;
@@ -67,14 +66,18 @@ import com.android.internal.annotations.GuardedBy;
 import com.android.internal.app.UnlaunchableAppActivity;
 import com.android.internal.widget.LockPatternUtils;
 import com.android.settings.TrustedCredentialsSettings.Tab;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settingslib.core.lifecycle.ObservableFragment;
 
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.IntConsumer;
 
 /**
@@ -107,6 +110,7 @@ public class TrustedCredentialsFragment extends ObservableFragment
     private final SparseArray<KeyChainConnection>
             mKeyChainConnectionByProfileId = new SparseArray<>();
     private ViewGroup mFragmentView;
+    private CaCertSummaryCache mSummaryCache;
 
     private final BroadcastReceiver mWorkProfileChangedReceiver = new BroadcastReceiver() {
         @Override
@@ -127,6 +131,7 @@ public class TrustedCredentialsFragment extends ObservableFragment
         mDevicePolicyManager = activity.getSystemService(DevicePolicyManager.class);
         mUserManager = activity.getSystemService(UserManager.class);
         mKeyguardManager = activity.getSystemService(KeyguardManager.class);
+        mSummaryCache = new CaCertSummaryCache(activity);
         mTrustAllCaUserId = activity.getIntent().getIntExtra(ARG_SHOW_NEW_FOR_USER,
                 UserHandle.USER_NULL);
         mConfirmedCredentialUsers = new ArraySet<>(2);
@@ -686,11 +691,16 @@ public class TrustedCredentialsFragment extends ObservableFragment
                         // correctly. Otherwise this could all be in a single loop.
                         SparseArray<List<String>> aliasesByProfileId =
                                 new SparseArray<>(profiles.size());
+                        // Profiles that still exist, for pruning the summary cache.
+                        final SparseArray<List<String>> listedAliases =
+                                new SparseArray<>(profiles.size());
                         int max = 0;
                         int progress = 0;
                         for (UserHandle profile : profiles) {
                             int profileId = profile.getIdentifier();
                             if (shouldSkipProfile(profile)) {
+                                // Not loaded, so its cached summaries are kept.
+                                listedAliases.put(profileId, null);
                                 continue;
                             }
                             KeyChainConnection keyChainConnection = KeyChain.bindAsUser(mContext,
@@ -704,6 +714,7 @@ public class TrustedCredentialsFragment extends ObservableFragment
                             }
                             max += aliases.size();
                             aliasesByProfileId.put(profileId, aliases);
+                            listedAliases.put(profileId, aliases);
                         }
                         for (UserHandle profile : profiles) {
                             int profileId = profile.getIdentifier();
@@ -720,18 +731,56 @@ public class TrustedCredentialsFragment extends ObservableFragment
                                 continue;
                             }
                             IKeyChainService service = keyChainConnection.getService();
+                            final int count = aliases.size();
+                            final byte[][] encodedCerts = new byte[count][];
+                            final CaCertSummaryCache.Summary[] summaries =
+                                    new CaCertSummaryCache.Summary[count];
+                            final List<Callable<Void>> misses = new ArrayList<>();
+                            for (int i = 0; i < count; i++) {
+                                final String alias = aliases.get(i);
+                                final byte[] encodedCertificate =
+                                        service.getEncodedCaCertificate(alias, true);
+                                if (encodedCertificate == null) {
+                                    Log.w(TAG, "CA certificate removed while loading: " + alias);
+                                    publishProgress(++progress, max);
+                                    continue;
+                                }
+                                final String fingerprint =
+                                        CaCertSummaryCache.getFingerprint(encodedCertificate);
+                                encodedCerts[i] = encodedCertificate;
+                                summaries[i] = mSummaryCache.get(mTab.name(), profileId, alias,
+                                        fingerprint);
+                                if (summaries[i] == null) {
+                                    final int index = i;
+                                    misses.add(() -> {
+                                        summaries[index] =
+                                                CaCertSummaryCache.decode(encodedCertificate);
+                                        mSummaryCache.put(mTab.name(), profileId, alias,
+                                                fingerprint, summaries[index]);
+                                        return null;
+                                    });
+                                }
+                                publishProgress(++progress, max);
+                            }
+                            decodeInParallel(misses);
                             List<CertHolder> certHolders = new ArrayList<>(max);
-                            for (String alias : aliases) {
-                                byte[] encodedCertificate = service.getEncodedCaCertificate(alias,
-                                        true);
-                                X509Certificate cert = KeyChain.toCertificate(encodedCertificate);
+                            for (int i = 0; i < count; i++) {
+                                if (encodedCerts[i] == null) {
+                                    continue;
+                                }
+                                if (summaries[i] == null) {
+                                    // Failed to decode, still list it so it can be managed.
+                                    summaries[i] =
+                                            new CaCertSummaryCache.Summary(aliases.get(i), "");
+                                }
                                 certHolders.add(new CertHolder(service, mAdapter,
-                                        mTab, alias, cert, profileId));
-                                publishProgress(++progress, max);
+                                        mTab, aliases.get(i), encodedCerts[i], summaries[i],
+                                        profileId));
                             }
                             Collections.sort(certHolders);
                             certHoldersByProfile.put(profileId, certHolders);
                         }
+                        mSummaryCache.prune(mTab.name(), listedAliases);
                         return certHoldersByProfile;
                     }
                 } catch (RemoteException e) {
@@ -743,6 +792,27 @@ public class TrustedCredentialsFragment extends ObservableFragment
                 }
             }
 
+            private void decodeInParallel(List<Callable<Void>> tasks)
+                    throws InterruptedException {
+                if (tasks.isEmpty()) {
+                    return;
+                }
+                final ExecutorService executor = SettingsTaskScheduler.getInstance()
+                        .newConcurrentExecutor(SettingsTaskScheduler.Lane.UI_CRITICAL, TAG);
+                try {
+                    for (Future<Void> future : executor.invokeAll(tasks)) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException e) {
+                            Log.w(TAG, "Failed to decode CA certificate, showing its alias",
+                                    e.getCause());
+                        }
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+
             @Override
             protected void onProgressUpdate(Integer... progressAndMax) {
                 int progress = progressAndMax[0];
@@ -814,9 +884,8 @@ public class TrustedCredentialsFragment extends ObservableFragment
         private final GroupAdapter mAdapter;
         private final Tab mTab;
         private final String mAlias;
-        private final X509Certificate mX509Cert;
+        private final byte[] mEncodedCert;
 
-        private final SslCertificate mSslCert;
         private final String mSubjectPrimary;
         private final String mSubjectSecondary;
         private boolean mDeleted;
@@ -825,40 +894,18 @@ public class TrustedCredentialsFragment extends ObservableFragment
                 GroupAdapter adapter,
                 Tab tab,
                 String alias,
-                X509Certificate x509Cert,
+                byte[] encodedCert,
+                CaCertSummaryCache.Summary summary,
                 int profileId) {
             mProfileId = profileId;
             mService = service;
             mAdapter = adapter;
             mTab = tab;
             mAlias = alias;
-            mX509Cert = x509Cert;
-
-            mSslCert = new SslCertificate(x509Cert);
-
-            String cn = mSslCert.getIssuedTo().getCName();
-            String o = mSslCert.getIssuedTo().getOName();
-            String ou = mSslCert.getIssuedTo().getUName();
-            // if we have a O, use O as primary subject, secondary prefer CN over OU
-            // if we don't have an O, use CN as primary, empty secondary
-            // if we don't have O or CN, use DName as primary, empty secondary
-            if (!o.isEmpty()) {
-                if (!cn.isEmpty()) {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = cn;
-                } else {
-                    mSubjectPrimary = o;
-                    mSubjectSecondary = ou;
-                }
-            } else {
-                if (!cn.isEmpty()) {
-                    mSubjectPrimary = cn;
-                    mSubjectSecondary = "";
-                } else {
-                    mSubjectPrimary = mSslCert.getIssuedTo().getDName();
-                    mSubjectSecondary = "";
-                }
-            }
+            // The certificate is only decoded when its details are shown.
+            mEncodedCert = encodedCert;
+            mSubjectPrimary = summary.mPrimary;
+            mSubjectSecondary = summary.mSecondary;
             try {
                 mDeleted = mTab.deleted(mService, mAlias);
             } catch (RemoteException e) {
@@ -991,15 +1038,13 @@ public class TrustedCredentialsFragment extends ObservableFragment
                             mCertHolder.mProfileId);
                     IKeyChainService service = keyChainConnection.getService();
                     if (mCertHolder.mDeleted) {
-                        byte[] bytes = mCertHolder.mX509Cert.getEncoded();
-                        service.installCaCertificate(bytes);
+                        service.installCaCertificate(mCertHolder.mEncodedCert);
                         return true;
                     } else {
                         return service.deleteCaCertificate(mCertHolder.mAlias);
                     }
                 }
-            } catch (CertificateEncodingException | SecurityException | IllegalStateException
-                    | RemoteException e) {
+            } catch (SecurityException | IllegalStateException | RemoteException e) {
                 Log.w(TAG, "Error while toggling alias " + mCertHolder.mAlias, e);
                 return false;
             }
@@ -33,7 +33,6 @@ import android.os.Bundle;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.Log;
-import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -181,18 +180,8 @@ public class AccessibilityDetailsSettingsFragment extends InstrumentedFragment {
             return null;
         }
 
-        final List<AccessibilityServiceInfo> serviceInfos = AccessibilityManager.getInstance(
-                getActivity()).getInstalledAccessibilityServiceList();
-        final int serviceInfoCount = serviceInfos.size();
-        for (int i = 0; i < serviceInfoCount; i++) {
-            AccessibilityServiceInfo serviceInfo = serviceInfos.get(i);
-            ResolveInfo resolveInfo = serviceInfo.getResolveInfo();
-            if (componentName.getPackageName().equals(resolveInfo.serviceInfo.packageName)
-                    && componentName.getClassName().equals(resolveInfo.serviceInfo.name)) {
-                return serviceInfo;
-            }
-        }
-        return null;
+        return AccessibilityServiceInfoRegistry.getInstance(getActivity())
+                .getService(componentName);
     }
 
     private Bundle buildArguments(AccessibilityServiceInfo info) {
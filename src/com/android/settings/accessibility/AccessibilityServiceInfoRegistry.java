@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ResolveInfo;
+import android.util.ArrayMap;
+import android.view.accessibility.AccessibilityManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.InstalledPackageSnapshot;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process-wide cache of the installed accessibility services and their labels, shared by the
+ * accessibility pages, their slices and search indexing. It is dropped whenever
+ * {@link InstalledPackageSnapshot} reports a package change, the accessibility services state
+ * changes or the locale changes.
+ */
+public final class AccessibilityServiceInfoRegistry {
+
+    private static AccessibilityServiceInfoRegistry sInstance;
+
+    private final Context mContext;
+    private final AccessibilityManager mAccessibilityManager;
+    private final InstalledPackageSnapshot mPackageSnapshot;
+    private final ArrayMap<ComponentName, CharSequence> mLabels = new ArrayMap<>();
+    private List<AccessibilityServiceInfo> mInstalledServices;
+    private ArrayMap<ComponentName, AccessibilityServiceInfo> mServicesByComponent;
+
+    private final BroadcastReceiver mLocaleReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    private final InstalledPackageSnapshot.PackageChangeListener mPackageListener =
+            (userId, pkg) -> invalidate();
+
+    private final AccessibilityManager.AccessibilityServicesStateChangeListener
+            mStateChangeListener = manager -> invalidate();
+
+    /** Returns the registry for the current process. */
+    public static synchronized AccessibilityServiceInfoRegistry getInstance(
+            @NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new AccessibilityServiceInfoRegistry(appContext,
+                    AccessibilityManager.getInstance(appContext),
+                    InstalledPackageSnapshot.getInstance(appContext));
+        }
+        return sInstance;
+    }
+
+    /** Releases the registry, so the next {@link #getInstance} creates a new one. */
+    @VisibleForTesting
+    public static synchronized void resetInstance() {
+        if (sInstance != null) {
+            sInstance.release();
+            sInstance = null;
+        }
+    }
+
+    private AccessibilityServiceInfoRegistry(Context context, AccessibilityManager manager,
+            InstalledPackageSnapshot packageSnapshot) {
+        mContext = context;
+        mAccessibilityManager = manager;
+        mPackageSnapshot = packageSnapshot;
+        mPackageSnapshot.addPackageChangeListener(mPackageListener);
+        // Labels are localized.
+        mContext.registerReceiver(mLocaleReceiver,
+                new IntentFilter(Intent.ACTION_LOCALE_CHANGED), Context.RECEIVER_EXPORTED);
+        mAccessibilityManager.addAccessibilityServicesStateChangeListener(
+                mContext.getMainExecutor(), mStateChangeListener);
+    }
+
+    /** Returns the installed accessibility services. The list must not be modified. */
+    @NonNull
+    public synchronized List<AccessibilityServiceInfo> getInstalledServices() {
+        if (mInstalledServices == null) {
+            mInstalledServices = Collections.unmodifiableList(
+                    mAccessibilityManager.getInstalledAccessibilityServiceList());
+        }
+        return mInstalledServices;
+    }
+
+    /** Returns the installed service with the given component name, if any. */
+    @Nullable
+    public synchronized AccessibilityServiceInfo getService(
+            @Nullable ComponentName componentName) {
+        if (componentName == null) {
+            return null;
+        }
+        if (mServicesByComponent == null) {
+            final List<AccessibilityServiceInfo> services = getInstalledServices();
+            mServicesByComponent = new ArrayMap<>(services.size());
+            for (AccessibilityServiceInfo info : services) {
+                mServicesByComponent.put(info.getComponentName(), info);
+            }
+        }
+        return mServicesByComponent.get(componentName);
+    }
+
+    /** Returns the label of an installed service, loading it only once. */
+    @NonNull
+    public CharSequence getLabel(@NonNull AccessibilityServiceInfo info) {
+        final ComponentName componentName = info.getComponentName();
+        synchronized (this) {
+            final CharSequence label = mLabels.get(componentName);
+            if (label != null) {
+                return label;
+            }
+        }
+        final ResolveInfo resolveInfo = info.getResolveInfo();
+        final CharSequence label = resolveInfo.loadLabel(mContext.getPackageManager());
+        synchronized (this) {
+            mLabels.put(componentName, label);
+        }
+        return label;
+    }
+
+    /** Drops the cached services and labels. */
+    public synchronized void invalidate() {
+        mInstalledServices = null;
+        mServicesByComponent = null;
+        mLabels.clear();
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        mContext.unregisterReceiver(mLocaleReceiver);
+        mPackageSnapshot.removePackageChangeListener(mPackageListener);
+        mAccessibilityManager.removeAccessibilityServicesStateChangeListener(
+                mStateChangeListener);
+        invalidate();
+    }
+}
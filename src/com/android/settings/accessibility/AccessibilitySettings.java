@@ -295,6 +295,8 @@ public class AccessibilitySettings extends DashboardFragment {
 
     @VisibleForTesting
     void onContentChanged() {
+        // Packages or the enabled services changed, so the shared service list may be stale.
+        AccessibilityServiceInfoRegistry.getInstance(getPrefContext()).invalidate();
         // If the fragment is visible then update preferences immediately, else set the flag then
         // wait for the fragment to show up to update preferences.
         if (mIsForeground) {
@@ -418,7 +420,7 @@ public class AccessibilitySettings extends DashboardFragment {
         // Remove duplicate item here, new a ArrayList to copy unmodifiable list result
         // (getInstalledAccessibilityServiceList).
         final List<AccessibilityServiceInfo> installedServiceList = new ArrayList<>(
-                a11yManager.getInstalledAccessibilityServiceList());
+                AccessibilityServiceInfoRegistry.getInstance(context).getInstalledServices());
         installedServiceList.removeIf(
                 target -> containsTargetNameInList(installedShortcutList, target));
 
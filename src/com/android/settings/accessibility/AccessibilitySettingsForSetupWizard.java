@@ -28,11 +28,9 @@ import android.content.pm.ServiceInfo;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
@@ -45,7 +43,6 @@ import com.android.settingslib.RestrictedPreference;
 import com.google.android.setupcompat.template.FooterBarMixin;
 import com.google.android.setupdesign.GlifPreferenceLayout;
 
-import java.util.List;
 
 /**
  * Activity with the accessibility settings specific to Setup Wizard.
@@ -169,19 +166,8 @@ public class AccessibilitySettingsForSetupWizard extends DashboardFragment
      * @return {@link AccessibilityServiceInfo} instance if available, null otherwise.
      */
     private AccessibilityServiceInfo findService(String packageName, String serviceName) {
-        final AccessibilityManager manager =
-                getActivity().getSystemService(AccessibilityManager.class);
-        final List<AccessibilityServiceInfo> accessibilityServices =
-                manager.getInstalledAccessibilityServiceList();
-        for (AccessibilityServiceInfo info : accessibilityServices) {
-            ServiceInfo serviceInfo = info.getResolveInfo().serviceInfo;
-            if (TextUtils.equals(packageName, serviceInfo.packageName)
-                    && TextUtils.equals(serviceName, serviceInfo.name)) {
-                return info;
-            }
-        }
-
-        return null;
+        return AccessibilityServiceInfoRegistry.getInstance(getActivity())
+                .getService(new ComponentName(packageName, serviceName));
     }
 
     private void updateAccessibilityServicePreference(RestrictedPreference preference,
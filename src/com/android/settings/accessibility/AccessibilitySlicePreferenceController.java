@@ -24,13 +24,11 @@ import android.content.ComponentName;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.provider.Settings;
-import android.view.accessibility.AccessibilityManager;
 
 import com.android.settings.R;
 import com.android.settings.core.TogglePreferenceController;
 import com.android.settingslib.accessibility.AccessibilityUtils;
 
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -105,17 +103,6 @@ public class AccessibilitySlicePreferenceController extends TogglePreferenceCont
     }
 
     private AccessibilityServiceInfo getAccessibilityServiceInfo() {
-        final AccessibilityManager accessibilityManager = mContext.getSystemService(
-                AccessibilityManager.class);
-        final List<AccessibilityServiceInfo> serviceList =
-                accessibilityManager.getInstalledAccessibilityServiceList();
-
-        for (AccessibilityServiceInfo serviceInfo : serviceList) {
-            if (mComponentName.equals(serviceInfo.getComponentName())) {
-                return serviceInfo;
-            }
-        }
-
-        return null;
+        return AccessibilityServiceInfoRegistry.getInstance(mContext).getService(mComponentName);
     }
 }
@@ -93,7 +93,8 @@ public class RestrictedPreferenceHelper {
                     resolveInfo.serviceInfo.name);
 
             final String key = componentName.flattenToString();
-            final CharSequence title = resolveInfo.loadLabel(mPm);
+            final CharSequence title =
+                    AccessibilityServiceInfoRegistry.getInstance(mContext).getLabel(info);
             final boolean serviceEnabled = enabledServices.contains(componentName);
             final CharSequence summary = AccessibilitySettings.getServiceSummary(
                     mContext, info, serviceEnabled);
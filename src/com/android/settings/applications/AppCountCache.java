@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.ApplicationInfoFlags;
+import android.util.ArrayMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Counts of installed apps kept per (user, counter) for {@link AppCounter}, so that showing a
+ * summary again doesn't list and filter every installed app.
+ *
+ * <p>The first count of a user loads all apps and remembers which packages were counted. After
+ * that only the packages reported by {@link InstalledPackageSnapshot} as changed are loaded and
+ * filtered again. A full recount happens when the flags of the query change or a user is
+ * removed. The last total of each counter is also persisted, so it can be shown before the first
+ * count of the process completes.
+ */
+final class AppCountCache implements InstalledPackageSnapshot.PackageChangeListener {
+
+    @VisibleForTesting
+    static final String PREFS_NAME = "app_counts";
+
+    private static AppCountCache sInstance;
+
+    private final Context mContext;
+    private final InstalledPackageSnapshot mPackageSnapshot;
+    // Keyed by user id and counter key.
+    private final ArrayMap<String, Counts> mCounts = new ArrayMap<>();
+
+    // Package changes are recorded under their own lock, so they never wait for a count.
+    private final Object mChangeLock = new Object();
+    private long mChangeSequence;
+    private long mClearSequence;
+    // Sequence number of the last change of each package.
+    private final ArrayMap<String, Long> mChangedPackages = new ArrayMap<>();
+
+    /** Returns the cache for the current process. */
+    static synchronized AppCountCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            final Context cacheContext = appContext != null ? appContext : context;
+            sInstance = new AppCountCache(cacheContext,
+                    InstalledPackageSnapshot.getInstance(cacheContext));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the process-wide cache, releasing the previous one. Passing null makes the next
+     * {@link #getInstance} create a new cache.
+     */
+    @VisibleForTesting
+    static synchronized void setInstance(@Nullable AppCountCache cache) {
+        if (sInstance != null && sInstance != cache) {
+            sInstance.release();
+        }
+        sInstance = cache;
+    }
+
+    @VisibleForTesting
+    AppCountCache(@NonNull Context context, @NonNull InstalledPackageSnapshot packageSnapshot) {
+        mContext = context;
+        mPackageSnapshot = packageSnapshot;
+        mPackageSnapshot.addPackageChangeListener(this);
+    }
+
+    /**
+     * Returns how many apps of {@code userId} listed by {@code pm} with {@code flags} are
+     * accepted by {@code filter}. Only the packages changed since the previous count under
+     * {@code key} are filtered again.
+     */
+    @WorkerThread
+    synchronized int getCount(@NonNull PackageManager pm, int userId, @NonNull String key,
+            @NonNull ApplicationInfoFlags flags, @NonNull Predicate<ApplicationInfo> filter) {
+        final String countsKey = userId + "|" + key;
+        final long sequence;
+        final long clearSequence;
+        synchronized (mChangeLock) {
+            sequence = mChangeSequence;
+            clearSequence = mClearSequence;
+        }
+        Counts counts = mCounts.get(countsKey);
+        if (counts == null || counts.mFlags != flags.getValue()
+                || counts.mSequence < clearSequence) {
+            counts = new Counts(flags.getValue());
+            for (ApplicationInfo info : pm.getInstalledApplicationsAsUser(flags, userId)) {
+                counts.mIncluded.put(info.packageName, filter.test(info));
+            }
+            mCounts.put(countsKey, counts);
+        } else {
+            for (String pkg : getChangedPackages(counts.mSequence)) {
+                try {
+                    counts.mIncluded.put(pkg,
+                            filter.test(pm.getApplicationInfoAsUser(pkg, flags, userId)));
+                } catch (PackageManager.NameNotFoundException e) {
+                    counts.mIncluded.remove(pkg);
+                }
+            }
+        }
+        counts.mSequence = sequence;
+        int count = 0;
+        for (int i = 0; i < counts.mIncluded.size(); i++) {
+            if (counts.mIncluded.valueAt(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the last total persisted for {@code key}, or null if there is none. */
+    @Nullable
+    Integer getLastCount(@NonNull String key) {
+        final SharedPreferences prefs = getPrefs();
+        return prefs.contains(key) ? prefs.getInt(key, 0) : null;
+    }
+
+    void setLastCount(@NonNull String key, int count) {
+        getPrefs().edit().putInt(key, count).apply();
+    }
+
+    /** Filters {@code pkg} again, for all users, on the next count. */
+    @Override
+    public void onPackageChanged(int userId, @NonNull String pkg) {
+        // Admin users also count the apps of other users, so the user doesn't matter.
+        synchronized (mChangeLock) {
+            mChangedPackages.put(pkg, ++mChangeSequence);
+        }
+    }
+
+    @Override
+    public void onUserRemoved(int userId) {
+        synchronized (mChangeLock) {
+            mClearSequence = ++mChangeSequence;
+            mChangedPackages.clear();
+        }
+    }
+
+    private List<String> getChangedPackages(long sinceSequence) {
+        final List<String> packages = new ArrayList<>();
+        synchronized (mChangeLock) {
+            for (int i = 0; i < mChangedPackages.size(); i++) {
+                if (mChangedPackages.valueAt(i) > sinceSequence) {
+                    packages.add(mChangedPackages.keyAt(i));
+                }
+            }
+        }
+        return packages;
+    }
+
+    private SharedPreferences getPrefs() {
+        return mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        mPackageSnapshot.removePackageChangeListener(this);
+        mCounts.clear();
+    }
+
+    private static final class Counts {
+        final long mFlags;
+        // Sequence number of the last package change this count includes.
+        long mSequence;
+        // Whether each listed package was counted, keyed by package name.
+        final ArrayMap<String, Boolean> mIncluded = new ArrayMap<>();
+
+        Counts(long flags) {
+            mFlags = flags;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import android.os.UserHandle;
 import android.os.UserManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import java.util.List;
@@ -35,6 +36,7 @@ public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
     protected final PackageManager mPm;
     protected final UserManager mUm;
     protected final FeatureFlags mFf;
+    private final Context mContext;
 
     @VisibleForTesting
     AppCounter(@NonNull Context context, @NonNull PackageManager packageManager,
@@ -42,14 +44,26 @@ public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
         mPm = packageManager;
         mUm = context.getSystemService(UserManager.class);
         mFf = featureFlags;
+        mContext = context;
     }
 
     public AppCounter(@NonNull Context context, @NonNull PackageManager packageManager) {
         this(context, packageManager, new FeatureFlagsImpl());
     }
 
+    @Override
+    protected void onPreExecute() {
+        // Show the last known count until the current one is known.
+        final String key = getCountCacheKey();
+        final Integer lastCount = key != null ? getCountCache().getLastCount(key) : null;
+        if (lastCount != null) {
+            onCountComplete(lastCount);
+        }
+    }
+
     @Override
     protected Integer doInBackground(Void... params) {
+        final String key = getCountCacheKey();
         int count = 0;
         for (UserInfo user : mUm.getProfiles(UserHandle.myUserId())) {
             long flags = PackageManager.GET_DISABLED_COMPONENTS
@@ -57,6 +71,11 @@ public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
                     | (mFf.archiving() ? PackageManager.MATCH_ARCHIVED_PACKAGES : 0)
                     | (user.isAdmin() ? PackageManager.MATCH_ANY_USER : 0);
             ApplicationInfoFlags infoFlags = ApplicationInfoFlags.of(flags);
+            if (key != null) {
+                count += getCountCache().getCount(mPm, user.id, key, infoFlags,
+                        this::includeInCount);
+                continue;
+            }
             final List<ApplicationInfo> list =
                     mPm.getInstalledApplicationsAsUser(infoFlags, user.id);
             for (ApplicationInfo info : list) {
@@ -65,6 +84,9 @@ public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
                 }
             }
         }
+        if (key != null) {
+            getCountCache().setLastCount(key, count);
+        }
         return count;
     }
 
@@ -77,7 +99,21 @@ public abstract class AppCounter extends AsyncTask<Void, Void, Integer> {
         onPostExecute(doInBackground());
     }
 
+    private AppCountCache getCountCache() {
+        return AppCountCache.getInstance(mContext);
+    }
+
     protected abstract void onCountComplete(int num);
 
     protected abstract boolean includeInCount(ApplicationInfo info);
+
+    /**
+     * Returns the key under which counts are kept and updated as packages change, or null to
+     * filter all apps on every count. Counters with the same key must count the same apps, and
+     * {@link #includeInCount} may only depend on state that changes with a package broadcast.
+     */
+    @Nullable
+    protected String getCountCacheKey() {
+        return null;
+    }
 }
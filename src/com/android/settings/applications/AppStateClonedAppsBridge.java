@@ -16,8 +16,6 @@
 
 package com.android.settings.applications;
 
-import static android.content.pm.PackageManager.GET_ACTIVITIES;
-
 import static com.android.settingslib.applications.ApplicationsState.AppEntry;
 import static com.android.settingslib.applications.ApplicationsState.AppFilter;
 
@@ -55,9 +53,8 @@ public class AppStateClonedAppsBridge extends AppStateBaseBridge{
     protected void loadAllExtraInfo() {
         mCloneUserId = Utils.getCloneUserId(mContext);
         if (mCloneUserId != -1) {
-            mCloneProfileApps = mContext.getPackageManager()
-                    .getInstalledPackagesAsUser(GET_ACTIVITIES,
-                            mCloneUserId).stream().map(x -> x.packageName).toList();
+            mCloneProfileApps = new ArrayList<>(InstalledPackageSnapshot.getInstance(mContext)
+                    .getInstalledPackageNames(mCloneUserId));
         } else if (!mCloneProfileApps.isEmpty()) {
             // In case we remove clone profile (mCloneUserId becomes -1), the bridge state should
             // reflect the same by setting cloneProfileApps as empty, without building the entire
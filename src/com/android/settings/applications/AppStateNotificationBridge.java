@@ -18,16 +18,19 @@ package com.android.settings.applications;
 import android.app.usage.IUsageStatsManager;
 import android.app.usage.UsageEvents;
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 import android.widget.CompoundButton;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.notification.ImportanceLockCache;
 import com.android.settings.notification.NotificationBackend;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
@@ -51,7 +54,9 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
-    private static final int DAYS_TO_CHECK = 7;
+    private final NotificationUsageRollups mRollups;
+    private final ImportanceLockCache mImportanceLocks;
+    private static final int DAYS_TO_CHECK = NotificationUsageRollups.DAYS_TO_KEEP;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
@@ -60,6 +65,8 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         mContext = context;
         mUsageStatsManager = usageStatsManager;
         mBackend = backend;
+        mRollups = NotificationUsageRollups.getInstance(context);
+        mImportanceLocks = ImportanceLockCache.getInstance(context);
         mUserIds = new ArrayList<>();
         mUserIds.add(mContext.getUserId());
         int workUserId = Utils.getManagedProfileId(userManager, mContext.getUserId());
@@ -79,24 +86,45 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
 
         final Map<String, NotificationsSentState> map = getAggregatedUsageEvents();
+        final SparseArray<Map<String, PackageInfo>> packages = getInstalledPackages();
         for (AppEntry entry : apps) {
-            NotificationsSentState stats =
-                    map.get(getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+            final int userId = UserHandle.getUserId(entry.info.uid);
+            NotificationsSentState stats = map.get(getKey(userId, entry.info.packageName));
             if (stats == null) {
                 stats = new NotificationsSentState();
             }
             calculateAvgSentCounts(stats);
-            addBlockStatus(entry, stats);
+            final Map<String, PackageInfo> userPackages = packages.get(userId);
+            addBlockStatus(entry, stats,
+                    userPackages != null ? userPackages.get(entry.info.packageName) : null);
             entry.extraInfo = stats;
         }
     }
 
+    /**
+     * Loads the package info needed by {@link NotificationBackend#enableSwitch(PackageInfo,
+     * ImportanceLockCache)} from the shared package snapshot, instead of querying each app.
+     */
+    private SparseArray<Map<String, PackageInfo>> getInstalledPackages() {
+        final SparseArray<Map<String, PackageInfo>> packages = new SparseArray<>();
+        final InstalledPackageSnapshot snapshot = InstalledPackageSnapshot.getInstance(mContext);
+        for (int userId : mUserIds) {
+            final Map<String, PackageInfo> userPackages = new ArrayMap<>();
+            for (PackageInfo info : snapshot.getInstalledPackages(userId,
+                    PackageManager.GET_PERMISSIONS)) {
+                userPackages.put(info.packageName, info);
+            }
+            packages.put(userId, userPackages);
+        }
+        return packages;
+    }
+
     @Override
     protected void updateExtraInfo(AppEntry entry, String pkg, int uid) {
         NotificationsSentState stats = getAggregatedUsageEvents(
                 UserHandle.getUserId(entry.info.uid), entry.info.packageName);
         calculateAvgSentCounts(stats);
-        addBlockStatus(entry, stats);
+        addBlockStatus(entry, stats, /* packageInfo */ null);
         entry.extraInfo = stats;
     }
 
@@ -120,10 +148,14 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
-    private void addBlockStatus(AppEntry entry, NotificationsSentState stats) {
+    private void addBlockStatus(AppEntry entry, NotificationsSentState stats,
+            PackageInfo packageInfo) {
         if (stats != null) {
             stats.blocked = mBackend.getNotificationsBanned(entry.info.packageName, entry.info.uid);
-            stats.blockable = mBackend.enableSwitch(mContext, entry.info);
+            // Apps installed since the packages were loaded are looked up on their own.
+            stats.blockable = packageInfo != null
+                    ? mBackend.enableSwitch(packageInfo, mImportanceLocks)
+                    : mBackend.enableSwitch(mContext, entry.info);
         }
     }
 
@@ -136,73 +168,60 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
+    /**
+     * Returns the notifications sent in the last {@link #DAYS_TO_CHECK} days, counted in whole
+     * days with the current one, keyed by {@link #getKey}. Only the events logged since the last
+     * call are read; older ones come from the persisted rollups.
+     */
     protected Map<String, NotificationsSentState> getAggregatedUsageEvents() {
-        ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
-
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
+        final long now = System.currentTimeMillis();
         for (int userId : mUserIds) {
-            UsageEvents events = null;
-            try {
-                events = mUsageStatsManager.queryEventsForUser(
-                        startTime, now, userId, mContext.getPackageName());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-            if (events != null) {
-                UsageEvents.Event event = new UsageEvents.Event();
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
-                    if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
-                    }
-
-                }
-            }
+            rollUpUsageEvents(userId, now);
         }
-        return aggregatedStats;
+        return mRollups.getSentStates(mUserIds, now);
     }
 
+    /**
+     * Same as {@link #getAggregatedUsageEvents()} for one app, or null if it sent none. The
+     * events of every app logged since the last call are rolled up too.
+     */
     protected NotificationsSentState getAggregatedUsageEvents(int userId, String pkg) {
-        NotificationsSentState stats = null;
+        final long now = System.currentTimeMillis();
+        rollUpUsageEvents(userId, now);
+        return mRollups.getSentState(userId, pkg, now);
+    }
 
-        long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
+    /** Adds the notifications of {@code userId} logged since its checkpoint to the rollups. */
+    private void rollUpUsageEvents(int userId, long now) {
+        long checkpoint = mRollups.getCheckpoint(userId);
+        if (checkpoint > now) {
+            // The clock went back, the rollups can't be trusted.
+            mRollups.clear(userId);
+            checkpoint = 0;
+        }
+        final long startTime = Math.max(mRollups.getWindowStart(now), checkpoint);
         UsageEvents events = null;
         try {
-            events = mUsageStatsManager.queryEventsForPackageForUser(
-                    startTime, now, userId, pkg, mContext.getPackageName());
+            events = mUsageStatsManager.queryEventsForUser(
+                    startTime, now, userId, mContext.getPackageName());
         } catch (RemoteException e) {
             e.printStackTrace();
         }
-        if (events != null) {
-            UsageEvents.Event event = new UsageEvents.Event();
-            while (events.hasNextEvent()) {
-                events.getNextEvent(event);
-
-                if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                    }
-                    if (event.getTimeStamp() > stats.lastSent) {
-                        stats.lastSent = event.getTimeStamp();
-                    }
-                    stats.sentCount++;
-                }
-
+        if (events == null) {
+            // Keep the checkpoint so these events are read next time.
+            return;
+        }
+        UsageEvents.Event event = new UsageEvents.Event();
+        while (events.hasNextEvent()) {
+            events.getNextEvent(event);
+            if (event.getEventType() != UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
+                continue;
             }
+            // Events are never older than the query, whatever their reported time.
+            mRollups.add(userId, event.getPackageName(),
+                    Math.max(event.getTimeStamp(), startTime), event.getTimeStamp());
         }
-        return stats;
+        mRollups.commit(userId, now);
     }
 
     private static NotificationsSentState getNotificationsSentState(AppEntry entry) {
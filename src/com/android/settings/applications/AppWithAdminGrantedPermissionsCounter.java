@@ -26,6 +26,8 @@ import android.os.UserHandle;
 /**
  * Counts installed apps across all users that have been granted one or more specific permissions by
  * the admin.
+ *
+ * <p>Counts aren't cached, since the admin granting a permission sends no broadcast.
  */
 public abstract class AppWithAdminGrantedPermissionsCounter extends AppCounter {
 
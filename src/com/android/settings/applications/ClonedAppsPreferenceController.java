@@ -37,6 +37,7 @@ import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A preference controller handling the logic for updating the summary of cloned apps.
@@ -84,9 +85,10 @@ public class ClonedAppsPreferenceController extends BasePreferenceController
                 List<String> cloneableApps = Arrays.asList(
                         mContext.getResources().getStringArray(
                                 com.android.internal.R.array.cloneable_apps));
-                List<String> primaryUserApps = mContext.getPackageManager()
-                        .getInstalledPackagesAsUser(/* flags*/ 0, UserHandle.myUserId()).stream()
-                        .map(x -> x.packageName).toList();
+                final InstalledPackageSnapshot packages =
+                        InstalledPackageSnapshot.getInstance(mContext);
+                Set<String> primaryUserApps =
+                        packages.getInstalledPackageNames(UserHandle.myUserId());
                 // Count number of installed apps in system user.
                 int availableAppsCount = (int) cloneableApps.stream()
                         .filter(x -> primaryUserApps.contains(x)).count();
@@ -96,9 +98,7 @@ public class ClonedAppsPreferenceController extends BasePreferenceController
                     return new Integer[]{0, availableAppsCount};
                 }
                 // Get all apps in clone profile if present.
-                List<String> cloneProfileApps = mContext.getPackageManager()
-                        .getInstalledPackagesAsUser(/* flags*/ 0, cloneUserId).stream()
-                        .map(x -> x.packageName).toList();
+                Set<String> cloneProfileApps = packages.getInstalledPackageNames(cloneUserId);
                 // Count number of allowlisted app present in clone profile.
                 int clonedAppsCount = (int) cloneableApps.stream()
                         .filter(x -> cloneProfileApps.contains(x)).count();
@@ -54,6 +54,11 @@ public abstract class InstalledAppCounter extends AppCounter {
         return includeInCount(mInstallReason, mPm, info);
     }
 
+    @Override
+    protected String getCountCacheKey() {
+        return "installed:" + mInstallReason;
+    }
+
     public static boolean includeInCount(int installReason, PackageManager pm,
             ApplicationInfo info) {
         final int userId = UserHandle.getUserId(info.uid);
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * Process-wide view of the installed packages of each user, shared by the pages that list or
+ * count apps instead of each pulling the whole package list from the package manager.
+ *
+ * <p>Each (user, flags) combination is loaded with one full query on first use. Afterwards only
+ * the packages named by package broadcasts are queried again, the next time that combination is
+ * read. Package manager calls are made without holding the snapshot lock, so invalidating from
+ * the main thread never waits for a load. Returned {@link ApplicationInfo} and
+ * {@link PackageInfo} objects are shared and must not be modified.
+ *
+ * <p>Only the most recently used combinations are kept, and {@link PackageInfo} lists, which
+ * can carry components, are dropped once the UI is hidden. Other caches derived from the
+ * installed packages can follow the same broadcasts through {@link PackageChangeListener}.
+ */
+public final class InstalledPackageSnapshot {
+    private static final String TAG = "InstalledPackageSnapshot";
+
+    private static final int MAX_APPLICATION_PROJECTIONS = 8;
+    private static final int MAX_PACKAGE_PROJECTIONS = 4;
+
+    private static InstalledPackageSnapshot sInstance;
+
+    /** Notified when the installed packages of a user change. */
+    public interface PackageChangeListener {
+        /** {@code pkg} was installed, changed or removed for {@code userId}. */
+        void onPackageChanged(int userId, @NonNull String pkg);
+
+        /** {@code userId} was removed. */
+        default void onUserRemoved(int userId) {
+        }
+    }
+
+    private final Context mContext;
+    private final PackageManager mPm;
+    private final Map<Long, Projection<ApplicationInfo>> mApplications =
+            new LruMap<>(MAX_APPLICATION_PROJECTIONS);
+    private final Map<Long, Projection<PackageInfo>> mPackages =
+            new LruMap<>(MAX_PACKAGE_PROJECTIONS);
+    private final List<PackageChangeListener> mListeners = new CopyOnWriteArrayList<>();
+    // Incremented by each invalidation, to tell whether a package changed during its query.
+    private long mSequence;
+
+    private final Query<ApplicationInfo> mApplicationQuery = new Query<ApplicationInfo>() {
+        @Override
+        public List<ApplicationInfo> queryAll(int userId, int flags) {
+            return mPm.getInstalledApplicationsAsUser(flags, userId);
+        }
+
+        @Override
+        public ApplicationInfo query(String pkg, int userId, int flags)
+                throws PackageManager.NameNotFoundException {
+            return mPm.getApplicationInfoAsUser(pkg, flags, userId);
+        }
+
+        @Override
+        public String getPackageName(ApplicationInfo item) {
+            return item.packageName;
+        }
+    };
+
+    private final Query<PackageInfo> mPackageQuery = new Query<PackageInfo>() {
+        @Override
+        public List<PackageInfo> queryAll(int userId, int flags) {
+            return mPm.getInstalledPackagesAsUser(flags, userId);
+        }
+
+        @Override
+        public PackageInfo query(String pkg, int userId, int flags)
+                throws PackageManager.NameNotFoundException {
+            return mPm.getPackageInfoAsUser(pkg, flags, userId);
+        }
+
+        @Override
+        public String getPackageName(PackageInfo item) {
+            return item.packageName;
+        }
+    };
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final String action = intent.getAction();
+            if (Intent.ACTION_USER_REMOVED.equals(action)) {
+                removeUser(intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL));
+                return;
+            }
+            final int userId = getSendingUserId();
+            final String[] packages = intent.getStringArrayExtra(
+                    Intent.EXTRA_CHANGED_PACKAGE_LIST);
+            if (packages != null) {
+                for (String pkg : packages) {
+                    invalidate(userId, pkg);
+                }
+            }
+            final Uri data = intent.getData();
+            if (data != null) {
+                invalidate(userId, data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_BACKGROUND) {
+                clear();
+            } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                synchronized (InstalledPackageSnapshot.this) {
+                    mPackages.clear();
+                }
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+    };
+
+    /** Returns the snapshot for the current process. */
+    public static synchronized InstalledPackageSnapshot getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new InstalledPackageSnapshot(appContext != null ? appContext : context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the process-wide snapshot, releasing the previous one. Passing null makes the next
+     * {@link #getInstance} create a new snapshot.
+     */
+    @VisibleForTesting
+    public static synchronized void setInstance(@Nullable InstalledPackageSnapshot snapshot) {
+        if (sInstance != null && sInstance != snapshot) {
+            sInstance.release();
+        }
+        sInstance = snapshot;
+    }
+
+    private InstalledPackageSnapshot(Context context) {
+        this(context, context.getPackageManager());
+    }
+
+    @VisibleForTesting
+    public InstalledPackageSnapshot(@NonNull Context context, @NonNull PackageManager pm) {
+        mContext = context;
+        mPm = pm;
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        final IntentFilter listFilter = new IntentFilter();
+        listFilter.addAction(Intent.ACTION_PACKAGES_SUSPENDED);
+        listFilter.addAction(Intent.ACTION_PACKAGES_UNSUSPENDED);
+        listFilter.addAction(Intent.ACTION_EXTERNAL_APPLICATIONS_AVAILABLE);
+        listFilter.addAction(Intent.ACTION_EXTERNAL_APPLICATIONS_UNAVAILABLE);
+        listFilter.addAction(Intent.ACTION_USER_REMOVED);
+        try {
+            mContext.registerReceiverAsUser(mReceiver, UserHandle.ALL, packageFilter,
+                    null /* broadcastPermission */, null /* scheduler */);
+            mContext.registerReceiverAsUser(mReceiver, UserHandle.ALL, listFilter,
+                    null /* broadcastPermission */, null /* scheduler */);
+        } catch (SecurityException e) {
+            // Without the receiver entries can still be invalidated explicitly.
+            Log.w(TAG, "Unable to listen for package changes", e);
+        }
+        mContext.registerComponentCallbacks(mMemoryCallbacks);
+    }
+
+    /**
+     * Same as {@link PackageManager#getInstalledApplicationsAsUser}. Only the first call for a
+     * combination of arguments queries every package.
+     */
+    @NonNull
+    public List<ApplicationInfo> getInstalledApplications(int userId, int flags) {
+        return new ArrayList<>(read(mApplications, mApplicationQuery, userId, flags).values());
+    }
+
+    /** Returns the installed applications of {@code userId} accepted by {@code filter}. */
+    @NonNull
+    public List<ApplicationInfo> getInstalledApplications(int userId, int flags,
+            @NonNull Predicate<ApplicationInfo> filter) {
+        final List<ApplicationInfo> applications = new ArrayList<>();
+        for (ApplicationInfo info : read(mApplications, mApplicationQuery, userId, flags)
+                .values()) {
+            if (filter.test(info)) {
+                applications.add(info);
+            }
+        }
+        return applications;
+    }
+
+    /**
+     * Same as {@link PackageManager#getInstalledPackagesAsUser}, e.g. with
+     * {@link PackageManager#GET_ACTIVITIES} for the pages that need component flags. Only the
+     * first call for a combination of arguments queries every package.
+     */
+    @NonNull
+    public List<PackageInfo> getInstalledPackages(int userId, int flags) {
+        return new ArrayList<>(read(mPackages, mPackageQuery, userId, flags).values());
+    }
+
+    /** Returns the names of the packages installed for {@code userId}. */
+    @NonNull
+    public Set<String> getInstalledPackageNames(int userId) {
+        return Collections.unmodifiableSet(new ArraySet<>(
+                read(mApplications, mApplicationQuery, userId, /* flags */ 0).keySet()));
+    }
+
+    /** Queries {@code pkg} of {@code userId} again on next use, and notifies the listeners. */
+    public void invalidate(int userId, @NonNull String pkg) {
+        synchronized (this) {
+            final long sequence = ++mSequence;
+            markStale(mApplications, userId, pkg, sequence);
+            markStale(mPackages, userId, pkg, sequence);
+        }
+        for (PackageChangeListener listener : mListeners) {
+            listener.onPackageChanged(userId, pkg);
+        }
+    }
+
+    /** Starts notifying {@code listener} of package changes seen by this snapshot. */
+    public void addPackageChangeListener(@NonNull PackageChangeListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removePackageChangeListener(@NonNull PackageChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void removeUser(int userId) {
+        synchronized (this) {
+            mApplications.keySet().removeIf(key -> getUserId(key) == userId);
+            mPackages.keySet().removeIf(key -> getUserId(key) == userId);
+        }
+        for (PackageChangeListener listener : mListeners) {
+            listener.onUserRemoved(userId);
+        }
+    }
+
+    private synchronized void clear() {
+        mApplications.clear();
+        mPackages.clear();
+    }
+
+    private static <T> void markStale(Map<Long, Projection<T>> projections, int userId,
+            String pkg, long sequence) {
+        for (Map.Entry<Long, Projection<T>> entry : projections.entrySet()) {
+            final int projectionUserId = getUserId(entry.getKey());
+            if (userId == UserHandle.USER_ALL || projectionUserId == userId
+                    || (getFlags(entry.getKey()) & PackageManager.MATCH_ANY_USER) != 0) {
+                entry.getValue().mStale.put(pkg, sequence);
+            }
+        }
+    }
+
+    private <T> Map<String, T> read(Map<Long, Projection<T>> projections, Query<T> query,
+            int userId, int flags) {
+        final long key = getKey(userId, flags);
+        final Projection<T> projection;
+        final boolean loaded;
+        synchronized (this) {
+            Projection<T> existing = projections.get(key);
+            if (existing == null) {
+                existing = new Projection<>();
+                projections.put(key, existing);
+            }
+            projection = existing;
+            loaded = projection.mLoaded;
+        }
+
+        if (!loaded) {
+            final List<T> items = query.queryAll(userId, flags);
+            synchronized (this) {
+                if (!projection.mLoaded) {
+                    for (T item : items) {
+                        projection.mItems.put(query.getPackageName(item), item);
+                    }
+                    projection.mLoaded = true;
+                }
+            }
+        }
+
+        final Map<String, Long> stale;
+        synchronized (this) {
+            if (projection.mStale.isEmpty()) {
+                return new LinkedHashMap<>(projection.mItems);
+            }
+            stale = new ArrayMap<>(projection.mStale);
+        }
+        final Map<String, T> updates = new ArrayMap<>(stale.size());
+        for (String pkg : stale.keySet()) {
+            try {
+                updates.put(pkg, query.query(pkg, userId, flags));
+            } catch (PackageManager.NameNotFoundException e) {
+                updates.put(pkg, null);
+            }
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : stale.entrySet()) {
+                final String pkg = entry.getKey();
+                if (!entry.getValue().equals(projection.mStale.get(pkg))) {
+                    // Changed again while it was queried, keep it stale for the next read.
+                    continue;
+                }
+                projection.mStale.remove(pkg);
+                final T item = updates.get(pkg);
+                if (item != null) {
+                    projection.mItems.put(pkg, item);
+                } else {
+                    projection.mItems.remove(pkg);
+                }
+            }
+            return new LinkedHashMap<>(projection.mItems);
+        }
+    }
+
+    private static long getKey(int userId, int flags) {
+        return ((long) userId << 32) | (flags & 0xffffffffL);
+    }
+
+    private static int getUserId(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int getFlags(long key) {
+        return (int) key;
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        try {
+            mContext.unregisterReceiver(mReceiver);
+        } catch (IllegalArgumentException e) {
+            // Not registered.
+        }
+        mContext.unregisterComponentCallbacks(mMemoryCallbacks);
+        mListeners.clear();
+        mApplications.clear();
+        mPackages.clear();
+    }
+
+    private interface Query<T> {
+        List<T> queryAll(int userId, int flags);
+
+        T query(String pkg, int userId, int flags) throws PackageManager.NameNotFoundException;
+
+        String getPackageName(T item);
+    }
+
+    private static final class Projection<T> {
+        // Keyed by package name, in the order the package manager listed them.
+        final Map<String, T> mItems = new LinkedHashMap<>();
+        // Packages to query again, with the sequence number of their last invalidation.
+        final Map<String, Long> mStale = new ArrayMap<>();
+        boolean mLoaded;
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int mMaxSize;
+
+        LruMap(int maxSize) {
+            super(maxSize, 0.75f, true /* accessOrder */);
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > mMaxSize;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Process-wide cache of whether a package has a launcher activity for a user. Entries of a
+ * package are dropped whenever {@link InstalledPackageSnapshot} reports it changed in any user,
+ * and an answer resolved before that is not stored.
+ */
+public final class LauncherVisibilityCache
+        implements InstalledPackageSnapshot.PackageChangeListener {
+
+    private static LauncherVisibilityCache sInstance;
+
+    private final PackageManager mPm;
+    private final InstalledPackageSnapshot mPackageSnapshot;
+    // Keyed by user id, then package name.
+    private final SparseArray<ArrayMap<String, Boolean>> mVisibility = new SparseArray<>();
+    // Bumped each time a package is invalidated, keyed by package name.
+    private final ArrayMap<String, Integer> mGenerations = new ArrayMap<>();
+    // Bumped each time a user is removed.
+    private final SparseIntArray mUserGenerations = new SparseIntArray();
+
+    /** Returns the cache for the current process. */
+    public static synchronized LauncherVisibilityCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            final Context cacheContext = appContext != null ? appContext : context;
+            sInstance = new LauncherVisibilityCache(cacheContext.getPackageManager(),
+                    InstalledPackageSnapshot.getInstance(cacheContext));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the process-wide cache, releasing the previous one. Passing null makes the next
+     * {@link #getInstance} create a new cache.
+     */
+    @VisibleForTesting
+    static synchronized void setInstance(@Nullable LauncherVisibilityCache cache) {
+        if (sInstance != null && sInstance != cache) {
+            sInstance.release();
+        }
+        sInstance = cache;
+    }
+
+    @VisibleForTesting
+    LauncherVisibilityCache(@NonNull PackageManager pm,
+            @NonNull InstalledPackageSnapshot packageSnapshot) {
+        mPm = pm;
+        mPackageSnapshot = packageSnapshot;
+        mPackageSnapshot.addPackageChangeListener(this);
+    }
+
+    /** Returns whether {@code pkg} has an activity in the launcher of {@code userId}. */
+    @WorkerThread
+    public boolean isVisibleOnLauncher(@NonNull String pkg, int userId) {
+        final int generation;
+        final int userGeneration;
+        synchronized (this) {
+            final ArrayMap<String, Boolean> userVisibility = mVisibility.get(userId);
+            final Boolean visible = userVisibility != null ? userVisibility.get(pkg) : null;
+            if (visible != null) {
+                return visible;
+            }
+            generation = getGeneration(pkg);
+            userGeneration = mUserGenerations.get(userId);
+        }
+        final Intent launchIntent = new Intent().addCategory(Intent.CATEGORY_LAUNCHER)
+                .setPackage(pkg);
+        final boolean visible = mPm.resolveActivityAsUser(launchIntent, 0, userId) != null;
+        synchronized (this) {
+            if (generation == getGeneration(pkg)
+                    && userGeneration == mUserGenerations.get(userId)) {
+                ArrayMap<String, Boolean> userVisibility = mVisibility.get(userId);
+                if (userVisibility == null) {
+                    userVisibility = new ArrayMap<>();
+                    mVisibility.put(userId, userVisibility);
+                }
+                userVisibility.put(pkg, visible);
+            }
+        }
+        return visible;
+    }
+
+    /** Drops the cached answers of {@code pkg} for every user. */
+    public synchronized void invalidate(@NonNull String pkg) {
+        for (int i = 0; i < mVisibility.size(); i++) {
+            mVisibility.valueAt(i).remove(pkg);
+        }
+        mGenerations.put(pkg, getGeneration(pkg) + 1);
+    }
+
+    @Override
+    public void onPackageChanged(int userId, @NonNull String pkg) {
+        invalidate(pkg);
+    }
+
+    @Override
+    public synchronized void onUserRemoved(int userId) {
+        mVisibility.remove(userId);
+        mUserGenerations.put(userId, mUserGenerations.get(userId) + 1);
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        mPackageSnapshot.removePackageChangeListener(this);
+        mVisibility.clear();
+        mGenerations.clear();
+    }
+
+    private int getGeneration(String pkg) {
+        final Integer generation = mGenerations.get(pkg);
+        return generation != null ? generation : 0;
+    }
+}
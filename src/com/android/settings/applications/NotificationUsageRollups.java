@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent daily rollups of the notifications sent by each app, so the notification app lists
+ * only need to read the usage events logged since they were last opened.
+ *
+ * <p>For each (user, package) the number of notifications sent on each day and the time of the
+ * last one are kept. For each user the time events have been rolled up to is kept as a
+ * checkpoint. The window is made of whole UTC days, the current one included, and days that fall
+ * out of it are dropped when a user is committed. The rollups of a removed user are dropped.
+ *
+ * <p>There is one instance per process, as every instance would read and write the same
+ * preferences.
+ */
+class NotificationUsageRollups implements InstalledPackageSnapshot.PackageChangeListener {
+    private static final String TAG = "NotificationUsageRollups";
+
+    /** Number of days in the window, the current one included. */
+    static final int DAYS_TO_KEEP = 7;
+
+    @VisibleForTesting
+    static final String PREFS_NAME = "notification_usage_rollups";
+    private static final String KEY_CHECKPOINT_PREFIX = "checkpoint|";
+
+    private static NotificationUsageRollups sInstance;
+
+    private final SharedPreferences mPrefs;
+    private final InstalledPackageSnapshot mPackageSnapshot;
+    private final int mDaysToKeep;
+    // Keyed by AppStateNotificationBridge#getKey(), loaded on first use.
+    private Map<String, Rollup> mRollups;
+
+    /** Returns the rollups of the current process. */
+    static synchronized NotificationUsageRollups getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            final Context rollupsContext = appContext != null ? appContext : context;
+            sInstance = new NotificationUsageRollups(rollupsContext,
+                    InstalledPackageSnapshot.getInstance(rollupsContext), DAYS_TO_KEEP);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the process-wide rollups, releasing the previous ones. Passing null makes the next
+     * {@link #getInstance} load them again.
+     */
+    @VisibleForTesting
+    static synchronized void setInstance(@Nullable NotificationUsageRollups rollups) {
+        if (sInstance != null && sInstance != rollups) {
+            sInstance.release();
+        }
+        sInstance = rollups;
+    }
+
+    @VisibleForTesting
+    NotificationUsageRollups(@NonNull Context context,
+            @NonNull InstalledPackageSnapshot packageSnapshot, int daysToKeep) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mPackageSnapshot = packageSnapshot;
+        mDaysToKeep = daysToKeep;
+        mPackageSnapshot.addPackageChangeListener(this);
+    }
+
+    /**
+     * Returns the start of the window ending at {@code now}, i.e. the start of the oldest day
+     * kept. Events before it are not counted.
+     */
+    long getWindowStart(long now) {
+        return getFirstDay(now) * DateUtils.DAY_IN_MILLIS;
+    }
+
+    /** Returns the time the events of {@code userId} have been rolled up to, or 0 if never. */
+    synchronized long getCheckpoint(int userId) {
+        return mPrefs.getLong(KEY_CHECKPOINT_PREFIX + userId, 0);
+    }
+
+    /** Drops the rollups and the checkpoint of {@code userId}, e.g. after the clock went back. */
+    synchronized void clear(int userId) {
+        final SharedPreferences.Editor editor = mPrefs.edit();
+        final Iterator<Map.Entry<String, Rollup>> it = getRollups().entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Rollup> entry = it.next();
+            if (entry.getValue().mUserId == userId) {
+                editor.remove(entry.getKey());
+                it.remove();
+            }
+        }
+        editor.remove(KEY_CHECKPOINT_PREFIX + userId).apply();
+    }
+
+    /**
+     * Counts a notification sent by {@code pkg} at {@code timestamp} on the day of
+     * {@code dayTimestamp}.
+     */
+    synchronized void add(int userId, String pkg, long dayTimestamp, long timestamp) {
+        final String key = AppStateNotificationBridge.getKey(userId, pkg);
+        Rollup rollup = getRollups().get(key);
+        if (rollup == null) {
+            rollup = new Rollup(userId);
+            getRollups().put(key, rollup);
+        }
+        final int day = getDay(dayTimestamp);
+        rollup.mDailyCounts.put(day, rollup.mDailyCounts.get(day) + 1);
+        rollup.mLastSent = Math.max(rollup.mLastSent, timestamp);
+        rollup.mDirty = true;
+    }
+
+    /**
+     * Drops the days of {@code userId} that are out of the window ending at {@code checkpoint},
+     * and persists its changed rollups together with the new checkpoint.
+     */
+    synchronized void commit(int userId, long checkpoint) {
+        final int firstDay = getFirstDay(checkpoint);
+        final SharedPreferences.Editor editor = mPrefs.edit();
+        final Iterator<Map.Entry<String, Rollup>> it = getRollups().entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Rollup> entry = it.next();
+            final Rollup rollup = entry.getValue();
+            if (rollup.mUserId != userId) {
+                continue;
+            }
+            rollup.prune(firstDay);
+            if (rollup.mDailyCounts.size() == 0) {
+                editor.remove(entry.getKey());
+                it.remove();
+            } else if (rollup.mDirty) {
+                editor.putString(entry.getKey(), rollup.encode());
+                rollup.mDirty = false;
+            }
+        }
+        editor.putLong(KEY_CHECKPOINT_PREFIX + userId, checkpoint).apply();
+    }
+
+    /**
+     * Returns the notifications sent by the apps of {@code userIds} in the window ending at
+     * {@code now}, keyed by {@link AppStateNotificationBridge#getKey}. Apps that sent none are
+     * left out.
+     */
+    synchronized Map<String, NotificationsSentState> getSentStates(List<Integer> userIds,
+            long now) {
+        final int firstDay = getFirstDay(now);
+        final Map<String, NotificationsSentState> states = new ArrayMap<>();
+        for (Map.Entry<String, Rollup> entry : getRollups().entrySet()) {
+            if (!userIds.contains(entry.getValue().mUserId)) {
+                continue;
+            }
+            final NotificationsSentState state = entry.getValue().getSentState(firstDay);
+            if (state != null) {
+                states.put(entry.getKey(), state);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Returns the notifications sent by {@code pkg} in the window ending at {@code now}, or null
+     * if it sent none.
+     */
+    @Nullable
+    synchronized NotificationsSentState getSentState(int userId, String pkg, long now) {
+        final Rollup rollup = getRollups().get(AppStateNotificationBridge.getKey(userId, pkg));
+        return rollup != null ? rollup.getSentState(getFirstDay(now)) : null;
+    }
+
+    @Override
+    public void onPackageChanged(int userId, @NonNull String pkg) {
+        // The rollups of an uninstalled app are never shown and age out of the window.
+    }
+
+    @Override
+    public void onUserRemoved(int userId) {
+        clear(userId);
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        mPackageSnapshot.removePackageChangeListener(this);
+        mRollups = null;
+    }
+
+    private Map<String, Rollup> getRollups() {
+        if (mRollups == null) {
+            mRollups = new ArrayMap<>();
+            for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+                if (entry.getKey().startsWith(KEY_CHECKPOINT_PREFIX)
+                        || !(entry.getValue() instanceof String)) {
+                    continue;
+                }
+                final Rollup rollup = Rollup.decode(entry.getKey(), (String) entry.getValue());
+                if (rollup != null) {
+                    mRollups.put(entry.getKey(), rollup);
+                }
+            }
+        }
+        return mRollups;
+    }
+
+    private int getFirstDay(long now) {
+        return getDay(now) - mDaysToKeep + 1;
+    }
+
+    private static int getDay(long timestamp) {
+        return (int) (timestamp / DateUtils.DAY_IN_MILLIS);
+    }
+
+    private static class Rollup {
+        final int mUserId;
+        final SparseIntArray mDailyCounts = new SparseIntArray();
+        long mLastSent;
+        boolean mDirty;
+
+        Rollup(int userId) {
+            mUserId = userId;
+        }
+
+        void prune(int firstDay) {
+            for (int i = mDailyCounts.size() - 1; i >= 0; i--) {
+                if (mDailyCounts.keyAt(i) < firstDay) {
+                    mDailyCounts.removeAt(i);
+                    mDirty = true;
+                }
+            }
+        }
+
+        NotificationsSentState getSentState(int firstDay) {
+            int sentCount = 0;
+            for (int i = 0; i < mDailyCounts.size(); i++) {
+                if (mDailyCounts.keyAt(i) >= firstDay) {
+                    sentCount += mDailyCounts.valueAt(i);
+                }
+            }
+            if (sentCount == 0) {
+                return null;
+            }
+            final NotificationsSentState state = new NotificationsSentState();
+            state.sentCount = sentCount;
+            state.lastSent = mLastSent;
+            return state;
+        }
+
+        // Encoded as "lastSent;day:count;day:count..."
+        String encode() {
+            final StringBuilder sb = new StringBuilder().append(mLastSent);
+            for (int i = 0; i < mDailyCounts.size(); i++) {
+                sb.append(';').append(mDailyCounts.keyAt(i))
+                        .append(':').append(mDailyCounts.valueAt(i));
+            }
+            return sb.toString();
+        }
+
+        static Rollup decode(String key, String value) {
+            try {
+                final int userId = Integer.parseInt(key.substring(0, key.indexOf('|')));
+                final String[] fields = TextUtils.split(value, ";");
+                final Rollup rollup = new Rollup(userId);
+                rollup.mLastSent = Long.parseLong(fields[0]);
+                for (int i = 1; i < fields.length; i++) {
+                    final int separator = fields[i].indexOf(':');
+                    rollup.mDailyCounts.put(Integer.parseInt(fields[i].substring(0, separator)),
+                            Integer.parseInt(fields[i].substring(separator + 1)));
+                }
+                return rollup;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Dropping malformed rollup " + key, e);
+                return null;
+            }
+        }
+    }
+}
@@ -29,6 +29,9 @@ import android.util.Log;
 import android.util.LongSparseArray;
 import android.util.SparseArray;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.internal.app.ProcessMap;
@@ -42,6 +45,7 @@ import com.android.internal.app.procstats.ServiceState;
 import com.android.internal.util.MemInfoReader;
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -55,7 +59,17 @@ public class ProcStatsData {
 
     private static final boolean DEBUG = ProcessStatsUi.DEBUG;
 
+    /**
+     * How long a loaded snapshot may be served again without a new binder transfer, e.g. when
+     * switching between the duration spinner entries.
+     */
+    private static final long SNAPSHOT_FRESHNESS_MS = 60 * 1000;
+
     private static ProcessStats sStatsXfer;
+    private static long sStatsXferDuration;
+
+    @VisibleForTesting
+    static final SnapshotCache sSnapshots = new SnapshotCache();
 
     private PackageManager mPm;
     private Context mContext;
@@ -63,6 +77,8 @@ public class ProcStatsData {
 
     private IProcessStats mProcessStats;
     private ProcessStats mStats;
+    private long mStatsDuration;
+    private long mStatsLoadTime;
 
     private boolean mUseUss;
     private long mDuration;
@@ -84,11 +100,52 @@ public class ProcStatsData {
         mStates = ProcessStats.BACKGROUND_PROC_STATES;
         if (useXfer) {
             mStats = sStatsXfer;
+            mStatsDuration = sStatsXferDuration;
         }
     }
 
     public void xferStats() {
         sStatsXfer = mStats;
+        sStatsXferDuration = mStatsDuration;
+    }
+
+    /**
+     * Called when a page showing the stats is created. Snapshots are only kept while such a page
+     * exists.
+     */
+    public static void onPageCreated() {
+        sSnapshots.onPageCreated();
+    }
+
+    /**
+     * Called when a page showing the stats is destroyed. The snapshots are dropped once the last
+     * page is gone, unless it is only being recreated for a configuration change.
+     */
+    public static void onPageDestroyed(boolean changingConfigurations) {
+        sSnapshots.onPageDestroyed(changingConfigurations);
+    }
+
+    /**
+     * Loads and parses the stats of every duration in {@code durations} on a background thread,
+     * so that a later {@link #refreshStats(boolean)} for any of them is served from the snapshot
+     * cache. Durations that have a fresh snapshot or are being loaded already are skipped.
+     */
+    public static void prefetch(Context context, long[] durations) {
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            for (long duration : durations) {
+                if (!sSnapshots.startLoading(duration)) {
+                    continue;
+                }
+                try {
+                    final ProcStatsData data = new ProcStatsData(appContext, false);
+                    data.setDuration(duration);
+                    data.refreshStats(true);
+                } finally {
+                    sSnapshots.finishLoading(duration);
+                }
+            }
+        });
     }
 
     public int getMemState() {
@@ -130,7 +187,30 @@ public class ProcStatsData {
      */
     @WorkerThread
     public void refreshStats(boolean forceLoad) {
-        if (mStats == null || forceLoad) {
+        if (forceLoad) {
+            computeStats(true);
+            return;
+        }
+        // A load of this duration by another thread is cheaper to wait for than to repeat.
+        while (true) {
+            sSnapshots.awaitLoading(mDuration);
+            if (restoreSnapshot()) {
+                return;
+            }
+            if (sSnapshots.startLoading(mDuration)) {
+                break;
+            }
+        }
+        final long duration = mDuration;
+        try {
+            computeStats(false);
+        } finally {
+            sSnapshots.finishLoading(duration);
+        }
+    }
+
+    private void computeStats(boolean forceLoad) {
+        if (mStats == null || forceLoad || mStatsDuration != mDuration) {
             load();
         }
 
@@ -160,6 +240,30 @@ public class ProcStatsData {
         ProcStatsPackageEntry osPkg = createOsEntry(bgTotals, runTotals, totalMem,
                 mMemInfo.baseCacheRam);
         pkgEntries.add(osPkg);
+
+        if (mStatsLoadTime > 0) {
+            sSnapshots.put(mStatsDuration, new Snapshot(mStats, mStatsLoadTime,
+                    memTotalTime, mMemInfo, pkgEntries));
+        }
+    }
+
+    /**
+     * Restores the stats, memory info and package entries of a fresh snapshot for the current
+     * duration. Returns false if there is none.
+     */
+    private boolean restoreSnapshot() {
+        final Snapshot snapshot = sSnapshots.getFresh(mDuration);
+        if (snapshot == null) {
+            return false;
+        }
+        if (DEBUG) Log.d(TAG, "Using cached snapshot for duration " + mDuration);
+        mStats = snapshot.mStats;
+        mStatsDuration = mDuration;
+        mStatsLoadTime = snapshot.mLoadTime;
+        memTotalTime = snapshot.mMemTotalTime;
+        mMemInfo = snapshot.mMemInfo;
+        pkgEntries = new ArrayList<>(snapshot.mEntries);
+        return true;
     }
 
     private void createPkgMap(ArrayList<ProcStatsEntry> procEntries, ProcessDataCollection bgTotals,
@@ -337,6 +441,8 @@ public class ProcStatsData {
         try {
             ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(mDuration);
             mStats = new ProcessStats(false);
+            mStatsDuration = mDuration;
+            mStatsLoadTime = SystemClock.elapsedRealtime();
             InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
             mStats.read(is);
             try {
@@ -351,6 +457,100 @@ public class ProcStatsData {
         }
     }
 
+    /**
+     * Snapshots of the parsed stats keyed by duration, together with the durations being loaded.
+     * Snapshots expire after {@link #SNAPSHOT_FRESHNESS_MS}, and are only kept while a page
+     * showing the stats is open.
+     */
+    @VisibleForTesting
+    static class SnapshotCache {
+        @GuardedBy("this")
+        private final LongSparseArray<Snapshot> mSnapshots = new LongSparseArray<>();
+        @GuardedBy("this")
+        private final LongSparseArray<Boolean> mLoading = new LongSparseArray<>();
+        @GuardedBy("this")
+        private int mOpenPages;
+
+        synchronized void onPageCreated() {
+            mOpenPages++;
+        }
+
+        synchronized void onPageDestroyed(boolean changingConfigurations) {
+            mOpenPages = Math.max(0, mOpenPages - 1);
+            if (mOpenPages == 0 && !changingConfigurations) {
+                mSnapshots.clear();
+            }
+        }
+
+        /** Returns the snapshot of {@code duration} if it is still fresh. */
+        @Nullable
+        synchronized Snapshot getFresh(long duration) {
+            final Snapshot snapshot = mSnapshots.get(duration);
+            if (snapshot == null) {
+                return null;
+            }
+            if (SystemClock.elapsedRealtime() - snapshot.mLoadTime > SNAPSHOT_FRESHNESS_MS) {
+                mSnapshots.remove(duration);
+                return null;
+            }
+            return snapshot;
+        }
+
+        /** Keeps {@code snapshot} for {@code duration}, if a page showing the stats is open. */
+        synchronized void put(long duration, Snapshot snapshot) {
+            if (mOpenPages > 0) {
+                mSnapshots.put(duration, snapshot);
+            }
+        }
+
+        /**
+         * Marks {@code duration} as being loaded. Returns false if it has a fresh snapshot or is
+         * being loaded already, in which case it must not be loaded again.
+         */
+        synchronized boolean startLoading(long duration) {
+            if (getFresh(duration) != null || mLoading.get(duration) != null) {
+                return false;
+            }
+            mLoading.put(duration, Boolean.TRUE);
+            return true;
+        }
+
+        synchronized void finishLoading(long duration) {
+            mLoading.remove(duration);
+            notifyAll();
+        }
+
+        /** Waits until {@code duration} is not being loaded anymore. */
+        synchronized void awaitLoading(long duration) {
+            try {
+                while (mLoading.get(duration) != null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Parsed stats of one duration together with the package entries derived from them. */
+    @VisibleForTesting
+    static class Snapshot {
+        final ProcessStats mStats;
+        final long mLoadTime;
+        final long mMemTotalTime;
+        final MemInfo mMemInfo;
+        final List<ProcStatsPackageEntry> mEntries;
+
+        Snapshot(ProcessStats stats, long loadTime, long memTotalTime, MemInfo memInfo,
+                List<ProcStatsPackageEntry> entries) {
+            mStats = stats;
+            mLoadTime = loadTime;
+            mMemTotalTime = memTotalTime;
+            mMemInfo = memInfo;
+            mEntries = new ArrayList<>(entries);
+        }
+    }
+
     public static class MemInfo {
         public double realUsedRam;
         public double realFreeRam;
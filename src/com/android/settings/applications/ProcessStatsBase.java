@@ -28,12 +28,15 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.applications.ProcStatsData.MemInfo;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settingslib.core.instrumentation.Instrumentable;
+import com.android.settingslib.utils.ThreadUtils;
 import com.android.settingslib.widget.SettingsSpinnerAdapter;
 
 public abstract class ProcessStatsBase extends SettingsPreferenceFragment
         implements OnItemSelectedListener {
+    private static final String TAG = "ProcessStatsBase";
     private static final String DURATION = "duration";
 
     protected static final String ARG_TRANSFER_STATS = "transfer_stats";
@@ -62,42 +65,53 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
 
     protected ProcStatsData mStatsManager;
     protected int mDurationIndex;
+    // Whether the first load may use the stats handed over by the previous page.
+    private boolean mUseXfer;
 
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        ProcStatsData.onPageCreated();
 
         Bundle args = getArguments();
-        mStatsManager = new ProcStatsData(getActivity(), icicle != null
-                || (args != null && args.getBoolean(ARG_TRANSFER_STATS, false)));
+        mUseXfer = icicle != null
+                || (args != null && args.getBoolean(ARG_TRANSFER_STATS, false));
+        mStatsManager = new ProcStatsData(getActivity(), false);
 
         mDurationIndex = icicle != null
                 ? icicle.getInt(ARG_DURATION_INDEX)
                 : args != null ? args.getInt(ARG_DURATION_INDEX) : 0;
         mStatsManager.setDuration(icicle != null
                 ? icicle.getLong(DURATION, sDurations[0]) : sDurations[0]);
+        // Parse every duration in the background so switching the spinner is instant.
+        ProcStatsData.prefetch(getActivity(), sDurations);
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putLong(DURATION, mStatsManager.getDuration());
+        // The stats of a newly selected duration may still be loading.
+        outState.putLong(DURATION, sDurations[mDurationIndex]);
         outState.putInt(ARG_DURATION_INDEX, mDurationIndex);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        mStatsManager.refreshStats(false);
-        refreshUi();
+        final ProcStatsData statsManager = new ProcStatsData(getActivity(), mUseXfer);
+        mUseXfer = false;
+        statsManager.setDuration(mStatsManager.getDuration());
+        loadDuration(mDurationIndex, statsManager);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (getActivity().isChangingConfigurations()) {
+        final boolean changingConfigurations = getActivity().isChangingConfigurations();
+        if (changingConfigurations) {
             mStatsManager.xferStats();
         }
+        ProcStatsData.onPageDestroyed(changingConfigurations);
     }
 
     @Override
@@ -118,10 +132,39 @@ public abstract class ProcessStatsBase extends SettingsPreferenceFragment
     @Override
     public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
         mDurationIndex = position;
-        mStatsManager.setDuration(sDurations[position]);
+        // Loading a duration that isn't prefetched yet takes a binder transfer and a parse, so
+        // the stats are loaded in the background and shown once ready.
+        final ProcStatsData statsManager = new ProcStatsData(getActivity(), false);
+        statsManager.setDuration(sDurations[position]);
+        loadDuration(position, statsManager);
+    }
+
+    /**
+     * Loads the stats of {@code statsManager} on a background lane, waiting there for a prefetch
+     * of the same duration, and shows them once loaded.
+     */
+    private void loadDuration(int position, ProcStatsData statsManager) {
+        SettingsTaskScheduler.getInstance().submit(this, SettingsTaskScheduler.Lane.UI_CRITICAL,
+                TAG + ".loadDuration", () -> {
+                    statsManager.refreshStats(false);
+                    ThreadUtils.postOnMainThread(() -> onDurationLoaded(position, statsManager));
+                });
+    }
+
+    private void onDurationLoaded(int position, ProcStatsData statsManager) {
+        // Skip stats that were overtaken by another selection or arrive after the page is gone.
+        if (position != mDurationIndex || !isAdded()) {
+            return;
+        }
+        mStatsManager = statsManager;
         refreshUi();
     }
 
+    /** Whether stats have been loaded, before which {@link #refreshUi()} has nothing to show. */
+    protected boolean isStatsLoaded() {
+        return mStatsManager.getEntries() != null;
+    }
+
     @Override
     public void onNothingSelected(AdapterView<?> parent) {
         // Select something.
@@ -23,8 +23,6 @@ import android.app.Application;
 import android.app.usage.UsageStats;
 import android.app.usage.UsageStatsManager;
 import android.content.Context;
-import android.content.Intent;
-import android.content.pm.PackageManager;
 import android.os.PowerManager;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -44,12 +42,13 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * A helper class that loads recent app data in the background and sends it in a callback to a
@@ -65,7 +64,6 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
 
     private final int mMaximumApps;
     private final Context mContext;
-    private final PackageManager mPm;
     private final UserManager mUserManager;
     private final PowerManager mPowerManager;
     private final ApplicationsState mApplicationsState;
@@ -86,7 +84,6 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
     public RecentAppStatsMixin(Context context, int maximumApps) {
         mContext = context;
         mMaximumApps = maximumApps;
-        mPm = mContext.getPackageManager();
         mPowerManager = mContext.getSystemService(PowerManager.class);
         mUserManager = mContext.getSystemService(UserManager.class);
         mApplicationsState = ApplicationsState.getInstance(
@@ -109,14 +106,18 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
         mAppStatsListeners.add(listener);
     }
 
+    /**
+     * Loads the {@code limit} most recently used apps of all profiles. Only the cheap checks run
+     * on every used package; candidates are then taken most recent first, and the launcher and
+     * app entry checks only run until {@code limit} of them are accepted.
+     */
     @VisibleForTesting
     void loadDisplayableRecentApps(int limit) {
         mRecentApps.clear();
         mCalendar = Calendar.getInstance();
         mCalendar.add(Calendar.DAY_OF_YEAR, -1);
 
-        List<UsageStatsWrapper> usageStatsAllUsers = new ArrayList<>();
-
+        final List<UsageStatsWrapper> candidates = new ArrayList<>();
         List<UserHandle> profiles = mUserManager.getUserProfiles();
         for (UserHandle userHandle : profiles) {
             int userId = userHandle.getIdentifier();
@@ -131,21 +132,34 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
                                 .getSystemService(UsageStatsManager.class));
             }
 
-            List<UsageStats> profileStats = usageStatsManager
-                    .map(statsManager -> getRecentAppsStats(statsManager, userId))
-                    .orElse(new ArrayList<>());
-            usageStatsAllUsers.addAll(profileStats.stream()
-                        .map(usageStats-> new UsageStatsWrapper(usageStats, userId))
-                        .collect(Collectors.toList()));
+            usageStatsManager.ifPresent(statsManager -> {
+                for (UsageStats usageStats : getRecentAppsStats(statsManager)) {
+                    candidates.add(new UsageStatsWrapper(usageStats, userId));
+                }
+            });
+        }
+        if (limit <= 0 || candidates.isEmpty()) {
+            return;
         }
 
-        // Sort apps by latest timestamp.
-        usageStatsAllUsers.sort(
-                Comparator.comparingLong(a -> -1 * a.mUsageStats.getLastTimeUsed()));
-        mRecentApps.addAll(usageStatsAllUsers.stream().limit(limit).collect(Collectors.toList()));
+        // Latest timestamp first; ties keep the profile and usage stats order.
+        final PriorityQueue<Integer> order = new PriorityQueue<>(candidates.size(),
+                Comparator.<Integer>comparingLong(
+                        i -> -candidates.get(i).mUsageStats.getLastTimeUsed())
+                        .thenComparingInt(i -> i));
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        while (mRecentApps.size() < limit && !order.isEmpty()) {
+            final UsageStatsWrapper candidate = candidates.get(order.poll());
+            if (isDisplayable(candidate.mUsageStats.getPackageName(), candidate.mUserId)) {
+                mRecentApps.add(candidate);
+            }
+        }
     }
 
-    private List<UsageStats> getRecentAppsStats(UsageStatsManager usageStatsManager, int userId) {
+    /** Returns the recent usage stats of a profile, merged by package. */
+    private Collection<UsageStats> getRecentAppsStats(UsageStatsManager usageStatsManager) {
         final List<UsageStats> recentAppStats = mPowerManager.isPowerSaveMode()
                 ? new ArrayList<>()
                 : usageStatsManager.queryUsageStats(
@@ -154,7 +168,7 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
 
         final Map<String, UsageStats> map = new ArrayMap<>();
         for (final UsageStats pkgStats : recentAppStats) {
-            if (!shouldIncludePkgInRecents(pkgStats, userId)) {
+            if (!shouldIncludePkgInRecents(pkgStats)) {
                 continue;
             }
             final String pkgName = pkgStats.getPackageName();
@@ -165,15 +179,14 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
                 existingStats.add(pkgStats);
             }
         }
-        final List<UsageStats> packageStats = new ArrayList<>(map.values());
-        packageStats.sort(Comparator.comparingLong(UsageStats::getLastTimeUsed).reversed());
-        return packageStats;
+        return map.values();
     }
 
     /**
-     * Whether or not the app should be included in recent list.
+     * Whether or not the usage stats should be included in recent list, checking only what
+     * needs no binder call.
      */
-    private boolean shouldIncludePkgInRecents(UsageStats stat, int userId) {
+    private boolean shouldIncludePkgInRecents(UsageStats stat) {
         final String pkgName = stat.getPackageName();
         if (stat.getLastTimeUsed() < mCalendar.getTimeInMillis()) {
             Log.d(TAG, "Invalid timestamp (usage time is more than 24 hours ago), skipping "
@@ -185,7 +198,13 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
             Log.d(TAG, "System package, skipping " + pkgName);
             return false;
         }
+        return true;
+    }
 
+    /**
+     * Whether or not the app is a user visible app of {@code userId}.
+     */
+    private boolean isDisplayable(String pkgName, int userId) {
         if (AppUtils.isHiddenSystemModule(mContext, pkgName)) {
             return false;
         }
@@ -195,9 +214,7 @@ public class RecentAppStatsMixin implements LifecycleObserver, OnStart {
             return false;
         }
 
-        final Intent launchIntent = new Intent().addCategory(Intent.CATEGORY_LAUNCHER)
-                .setPackage(pkgName);
-        if (mPm.resolveActivityAsUser(launchIntent, 0, userId) == null) {
+        if (!LauncherVisibilityCache.getInstance(mContext).isVisibleOnLauncher(pkgName, userId)) {
             // Not visible on launcher -> likely not a user visible app, skip if non-instant.
             if (appEntry.info == null || !AppUtils.isInstant(appEntry.info)) {
                 Log.d(TAG, "Not a user visible or instant app, skipping " + pkgName);
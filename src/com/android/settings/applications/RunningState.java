@@ -37,6 +37,7 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.Formatter;
@@ -53,6 +54,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -102,6 +104,9 @@ public class RunningState {
     final ServiceProcessComparator mServiceProcessComparator
             = new ServiceProcessComparator();
 
+    // Diffs consecutive snapshots and adapts the polling period.
+    final RunningStateRefreshTracker mRefreshTracker = new RunningStateRefreshTracker();
+
     // Additional interesting processes to be shown to the user, even if
     // there is no service running in them.
     final ArrayList<ProcessItem> mInterestingProcesses = new ArrayList<ProcessItem>();
@@ -237,6 +242,7 @@ public class RunningState {
             switch (msg.what) {
                 case MSG_RESET_CONTENTS:
                     reset();
+                    mRefreshTracker.reset();
                     break;
                 case MSG_UPDATE_CONTENTS:
                     synchronized (mLock) {
@@ -244,12 +250,18 @@ public class RunningState {
                             return;
                         }
                     }
-                    Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
-                    mHandler.sendMessage(cmd);
+                    final long start = SystemClock.uptimeMillis();
+                    final int refresh = update(mApplicationContext, mAm);
+                    if (refresh != OnRefreshUiListener.REFRESH_TIME) {
+                        Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
+                        cmd.arg1 = refresh;
+                        mHandler.sendMessage(cmd);
+                    }
+                    final long delay = mRefreshTracker.onRefreshFinished(
+                            SystemClock.uptimeMillis() - start);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
-                    sendMessageDelayed(msg, CONTENTS_UPDATE_DELAY);
+                    sendMessageDelayed(msg, delay);
                     break;
             }
         }
@@ -264,9 +276,8 @@ public class RunningState {
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_REFRESH_UI:
-                    mNextUpdate = msg.arg1 != 0
-                            ? OnRefreshUiListener.REFRESH_STRUCTURE
-                            : OnRefreshUiListener.REFRESH_DATA;
+                    // Don't let a data refresh hide a structure change not shown yet.
+                    mNextUpdate = Math.max(mNextUpdate, msg.arg1);
                     break;
                 case MSG_UPDATE_TIME:
                     synchronized (mLock) {
@@ -495,11 +506,18 @@ public class RunningState {
             }
         }
 
-        boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
+        boolean updateService(Context context, ActivityManager.RunningServiceInfo service,
+                boolean serviceChanged) {
             final PackageManager pm = context.getPackageManager();
 
             boolean changed = false;
             ServiceItem si = mServices.get(service.service);
+            if (si != null && !serviceChanged) {
+                // Same as in the last poll, so the labels and description are still current.
+                si.mCurSeq = mCurSeq;
+                si.mRunningService = service;
+                return false;
+            }
             if (si == null) {
                 changed = true;
                 si = new ServiceItem(mUserId);
@@ -771,6 +789,16 @@ public class RunningState {
         return label;
     }
 
+    /**
+     * Returns the refresh statistics of the running state monitor, or {@code null} if the
+     * running services screen has not been opened in this process.
+     */
+    public static RunningStateRefreshTracker getRefreshTracker() {
+        synchronized (sGlobalLock) {
+            return sInstance != null ? sInstance.mRefreshTracker : null;
+        }
+    }
+
     static RunningState getInstance(Context context) {
         synchronized (sGlobalLock) {
             if (sInstance == null) {
@@ -811,12 +839,14 @@ public class RunningState {
             if (!mBackgroundHandler.hasMessages(MSG_UPDATE_CONTENTS)) {
                 mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
             }
+            mRefreshTracker.resetBackoff();
             mHandler.sendEmptyMessage(MSG_UPDATE_TIME);
         }
     }
 
     void updateNow() {
         synchronized (mLock) {
+            mRefreshTracker.resetBackoff();
             mBackgroundHandler.removeMessages(MSG_UPDATE_CONTENTS);
             mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
         }
@@ -899,11 +929,14 @@ public class RunningState {
         userItem.mChildren.add(newItem);
     }
 
-    private boolean update(Context context, ActivityManager am) {
+    /**
+     * Polls the running services and processes and updates the items shown for them. Returns
+     * which {@link OnRefreshUiListener} refresh the change needs, {@link
+     * OnRefreshUiListener#REFRESH_TIME} meaning nothing shown changed.
+     */
+    private int update(Context context, ActivityManager am) {
         final PackageManager pm = context.getPackageManager();
 
-        mSequence++;
-
         boolean changed = false;
 
         // Retrieve list of services, filtering out anything that definitely
@@ -937,6 +970,19 @@ public class RunningState {
         // array for easy retrieval.
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
+        final boolean haveData;
+        synchronized (mLock) {
+            haveData = mHaveData;
+        }
+        if (mRefreshTracker.onSnapshot(services, processes) == 0 && haveData) {
+            // Nothing is different from the last poll, so the items built then still hold; only
+            // the memory use of their processes may have moved.
+            return updateSizes(context)
+                    ? OnRefreshUiListener.REFRESH_DATA : OnRefreshUiListener.REFRESH_TIME;
+        }
+
+        mSequence++;
+
         final int NP = processes != null ? processes.size() : 0;
         mTmpAppProcesses.clear();
         for (int i = 0; i < NP; i++) {
@@ -1025,7 +1071,7 @@ public class RunningState {
                 proc.mDependentProcesses.clear();
                 proc.mCurSeq = mSequence;
             }
-            changed |= proc.updateService(context, si);
+            changed |= proc.updateService(context, si, mRefreshTracker.isServiceChanged(si));
         }
 
         // Now update the map of other processes that are running (but
@@ -1438,6 +1484,70 @@ public class RunningState {
             }
         }
 
+        return changed ? OnRefreshUiListener.REFRESH_STRUCTURE : OnRefreshUiListener.REFRESH_DATA;
+    }
+
+    /**
+     * Refreshes the memory use of the processes found by the last full update, for a poll whose
+     * snapshot is identical to the previous one. Returns whether any size shown changed.
+     */
+    private boolean updateSizes(Context context) {
+        final int numProc = mAllProcessItems.size();
+        final int[] pids = new int[numProc];
+        for (int i = 0; i < numProc; i++) {
+            pids[i] = mAllProcessItems.get(i).mPid;
+        }
+        final long[] pss;
+        try {
+            pss = ActivityManager.getService().getProcessPss(pids);
+        } catch (RemoteException e) {
+            return false;
+        }
+
+        long backgroundProcessMemory = 0;
+        long foregroundProcessMemory = 0;
+        long serviceProcessMemory = 0;
+        for (int i = 0; i < numProc; i++) {
+            ProcessItem proc = mAllProcessItems.get(i);
+            proc.updateSize(context, pss[i], mSequence);
+            if (proc.mCurSeq == mSequence) {
+                serviceProcessMemory += proc.mSize;
+            } else if (proc.mRunningProcessInfo.importance >=
+                    ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND) {
+                backgroundProcessMemory += proc.mSize;
+            } else if (proc.mRunningProcessInfo.importance <=
+                    ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
+                foregroundProcessMemory += proc.mSize;
+            }
+        }
+
+        boolean changed = updateSizes(context, mUserBackgroundItems);
+        changed |= updateSizes(context, mMergedItems);
+
+        synchronized (mLock) {
+            changed |= !isSameShownSize(context, mBackgroundProcessMemory, backgroundProcessMemory)
+                    || !isSameShownSize(context, mForegroundProcessMemory, foregroundProcessMemory)
+                    || !isSameShownSize(context, mServiceProcessMemory, serviceProcessMemory);
+            mBackgroundProcessMemory = backgroundProcessMemory;
+            mForegroundProcessMemory = foregroundProcessMemory;
+            mServiceProcessMemory = serviceProcessMemory;
+        }
+        return changed;
+    }
+
+    private static boolean isSameShownSize(Context context, long oldSize, long newSize) {
+        return oldSize == newSize || Formatter.formatShortFileSize(context, oldSize).equals(
+                Formatter.formatShortFileSize(context, newSize));
+    }
+
+    private static boolean updateSizes(Context context, ArrayList<MergedItem> items) {
+        boolean changed = false;
+        for (int i = 0; i < items.size(); i++) {
+            final MergedItem item = items.get(i);
+            final String oldSize = item.mSizeStr;
+            item.updateSize(context);
+            changed |= !Objects.equals(oldSize, item.mSizeStr);
+        }
         return changed;
     }
 
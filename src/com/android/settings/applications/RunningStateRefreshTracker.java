@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.ActivityManager.RunningAppProcessInfo;
+import android.app.ActivityManager.RunningServiceInfo;
+import android.content.ComponentName;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Diffs consecutive running process and service snapshots taken by {@link RunningState} and
+ * decides how long to wait before the next poll. The poll period doubles, up to
+ * {@link #MAX_POLL_DELAY}, for every refresh whose snapshot is identical to the previous one, and
+ * drops back to {@link #MIN_POLL_DELAY} as soon as anything changes. It also remembers which
+ * services changed, so that {@link RunningState} only reloads those.
+ *
+ * <p>Only accessed from the {@link RunningState} background thread, except for the getters used
+ * by dump, which may observe slightly stale values.
+ */
+public final class RunningStateRefreshTracker {
+
+    @VisibleForTesting
+    static final long MIN_POLL_DELAY = RunningState.CONTENTS_UPDATE_DELAY;
+    @VisibleForTesting
+    static final long MAX_POLL_DELAY = 8 * RunningState.CONTENTS_UPDATE_DELAY;
+
+    private SparseArray<RunningAppProcessInfo> mProcesses = new SparseArray<>();
+    private ArrayMap<ServiceKey, RunningServiceInfo> mServices = new ArrayMap<>();
+    // Services added or changed by the last snapshot.
+    private final ArraySet<ServiceKey> mChangedServices = new ArraySet<>();
+
+    private volatile long mPollDelay = MIN_POLL_DELAY;
+    private volatile int mLastDiffSize;
+    private volatile long mLastUpdateCost;
+    private volatile long mRefreshCount;
+    private volatile long mUnchangedRefreshCount;
+
+    /**
+     * Records a new snapshot and returns how many processes (keyed by pid) and services (keyed by
+     * component, uid and pid) were added, removed or changed since the previous one. The same
+     * service running for several users, or in a new process, is counted separately.
+     */
+    int onSnapshot(List<RunningServiceInfo> services, List<RunningAppProcessInfo> processes) {
+        int diff = 0;
+
+        final int numProcesses = processes != null ? processes.size() : 0;
+        final SparseArray<RunningAppProcessInfo> newProcesses = new SparseArray<>(numProcesses);
+        for (int i = 0; i < numProcesses; i++) {
+            final RunningAppProcessInfo pi = processes.get(i);
+            newProcesses.put(pi.pid, pi);
+            final RunningAppProcessInfo old = mProcesses.get(pi.pid);
+            if (old == null || !isSameProcess(old, pi)) {
+                diff++;
+            }
+        }
+        for (int i = 0; i < mProcesses.size(); i++) {
+            if (newProcesses.get(mProcesses.keyAt(i)) == null) {
+                diff++;
+            }
+        }
+
+        final int numServices = services != null ? services.size() : 0;
+        final ArrayMap<ServiceKey, RunningServiceInfo> newServices = new ArrayMap<>(numServices);
+        mChangedServices.clear();
+        for (int i = 0; i < numServices; i++) {
+            final RunningServiceInfo si = services.get(i);
+            final ServiceKey key = new ServiceKey(si);
+            newServices.put(key, si);
+            final RunningServiceInfo old = mServices.get(key);
+            if (old == null || !isSameService(old, si)) {
+                mChangedServices.add(key);
+                diff++;
+            }
+        }
+        for (int i = 0; i < mServices.size(); i++) {
+            if (!newServices.containsKey(mServices.keyAt(i))) {
+                diff++;
+            }
+        }
+
+        mProcesses = newProcesses;
+        mServices = newServices;
+        mLastDiffSize = diff;
+        return diff;
+    }
+
+    /**
+     * Returns whether {@code service} was added or changed by the last snapshot, in which case
+     * its labels and description need to be loaded again.
+     */
+    boolean isServiceChanged(RunningServiceInfo service) {
+        return mChangedServices.contains(new ServiceKey(service));
+    }
+
+    /** Records the cost of a finished refresh and returns the delay until the next one. */
+    long onRefreshFinished(long updateCostMillis) {
+        mRefreshCount++;
+        mLastUpdateCost = updateCostMillis;
+        if (mLastDiffSize == 0) {
+            mUnchangedRefreshCount++;
+            mPollDelay = Math.min(mPollDelay * 2, MAX_POLL_DELAY);
+        } else {
+            mPollDelay = MIN_POLL_DELAY;
+        }
+        return mPollDelay;
+    }
+
+    /** Goes back to the fastest poll period, e.g. when the UI asks for an immediate update. */
+    void resetBackoff() {
+        mPollDelay = MIN_POLL_DELAY;
+    }
+
+    /** Forgets the previous snapshot so the next one is reported as fully changed. */
+    void reset() {
+        mProcesses = new SparseArray<>();
+        mServices = new ArrayMap<>();
+        mChangedServices.clear();
+        mPollDelay = MIN_POLL_DELAY;
+    }
+
+    public long getPollDelay() {
+        return mPollDelay;
+    }
+
+    public int getLastDiffSize() {
+        return mLastDiffSize;
+    }
+
+    public long getLastUpdateCost() {
+        return mLastUpdateCost;
+    }
+
+    public long getRefreshCount() {
+        return mRefreshCount;
+    }
+
+    public long getUnchangedRefreshCount() {
+        return mUnchangedRefreshCount;
+    }
+
+    private static boolean isSameProcess(RunningAppProcessInfo a, RunningAppProcessInfo b) {
+        return a.uid == b.uid
+                && a.importance == b.importance
+                && a.importanceReasonPid == b.importanceReasonPid
+                && a.importanceReasonCode == b.importanceReasonCode
+                && a.flags == b.flags
+                && Objects.equals(a.processName, b.processName);
+    }
+
+    private static boolean isSameService(RunningServiceInfo a, RunningServiceInfo b) {
+        return a.restarting == b.restarting
+                && a.started == b.started
+                && a.foreground == b.foreground
+                && a.clientCount == b.clientCount
+                && a.clientLabel == b.clientLabel
+                && Objects.equals(a.clientPackage, b.clientPackage)
+                && a.activeSince == b.activeSince
+                && a.flags == b.flags;
+    }
+
+    private static final class ServiceKey {
+        final ComponentName mService;
+        final int mUid;
+        final int mPid;
+
+        ServiceKey(RunningServiceInfo info) {
+            mService = info.service;
+            mUid = info.uid;
+            mPid = info.pid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ServiceKey)) {
+                return false;
+            }
+            final ServiceKey key = (ServiceKey) o;
+            return mUid == key.mUid && mPid == key.mPid
+                    && Objects.equals(mService, key.mService);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mService, mUid, mPid);
+        }
+    }
+}
@@ -18,7 +18,6 @@ package com.android.settings.applications.specialaccess.interactacrossprofiles;
 
 import android.content.Context;
 import android.content.pm.CrossProfileApps;
-import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -37,7 +36,6 @@ public class InteractAcrossProfilesController extends BasePreferenceController {
 
     private final Context mContext;
     private final UserManager mUserManager;
-    private final PackageManager mPackageManager;
     private final CrossProfileApps mCrossProfileApps;
 
     public InteractAcrossProfilesController(Context context, String preferenceKey) {
@@ -46,7 +44,6 @@ public class InteractAcrossProfilesController extends BasePreferenceController {
         mContext = context;
         mUserManager = mContext.getSystemService(UserManager.class);
         mCrossProfileApps = mContext.getSystemService(CrossProfileApps.class);
-        mPackageManager = mContext.getPackageManager();
     }
 
     @Override
@@ -63,7 +60,7 @@ public class InteractAcrossProfilesController extends BasePreferenceController {
     @Override
     public CharSequence getSummary() {
         final int connectedApps = InteractAcrossProfilesSettings.getNumberOfEnabledApps(
-                mContext, mPackageManager, mUserManager, mCrossProfileApps);
+                mContext, mUserManager, mCrossProfileApps);
         return connectedApps == 0
                 ? mContext.getResources().getString(
                         R.string.interact_across_profiles_number_of_connected_apps_none)
@@ -38,6 +38,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
 import com.android.settingslib.search.SearchIndexable;
@@ -76,7 +77,8 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
                 R.string.interact_across_profiles_title);
 
         final ArrayList<Pair<ApplicationInfo, UserHandle>> crossProfileApps =
-                collectConfigurableApps(mPackageManager, mUserManager, mCrossProfileApps);
+                collectConfigurableApps(InstalledPackageSnapshot.getInstance(mContext),
+                        mUserManager, mCrossProfileApps);
 
         final Context prefContext = getPrefContext();
         for (final Pair<ApplicationInfo, UserHandle> appData : crossProfileApps) {
@@ -130,7 +132,7 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
      * that can configure interact across profiles.
      */
     static ArrayList<Pair<ApplicationInfo, UserHandle>> collectConfigurableApps(
-            PackageManager packageManager, UserManager userManager,
+            InstalledPackageSnapshot packageSnapshot, UserManager userManager,
             CrossProfileApps crossProfileApps) {
         final UserHandle workProfile = getWorkProfile(userManager);
         if (workProfile == null) {
@@ -143,7 +145,7 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
 
         final ArrayList<Pair<ApplicationInfo, UserHandle>> apps = new ArrayList<>();
         for (PackageInfo packageInfo : getAllInstalledPackages(
-                packageManager, personalProfile, workProfile)) {
+                packageSnapshot, personalProfile, workProfile)) {
             if (crossProfileApps.canUserAttemptToConfigureInteractAcrossProfiles(
                     packageInfo.packageName)) {
                 apps.add(new Pair<>(packageInfo.applicationInfo, personalProfile));
@@ -153,11 +155,12 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
     }
 
     private static List<PackageInfo> getAllInstalledPackages(
-            PackageManager packageManager, UserHandle personalProfile, UserHandle workProfile) {
-        List<PackageInfo> personalPackages = packageManager.getInstalledPackagesAsUser(
-                /* flags= */ 0, personalProfile.getIdentifier());
-        List<PackageInfo> workPackages = packageManager.getInstalledPackagesAsUser(
-                /* flags= */ 0, workProfile.getIdentifier());
+            InstalledPackageSnapshot packageSnapshot, UserHandle personalProfile,
+            UserHandle workProfile) {
+        List<PackageInfo> personalPackages = packageSnapshot.getInstalledPackages(
+                personalProfile.getIdentifier(), /* flags= */ 0);
+        List<PackageInfo> workPackages = packageSnapshot.getInstalledPackages(
+                workProfile.getIdentifier(), /* flags= */ 0);
         List<PackageInfo> allPackages = new ArrayList<>(personalPackages);
         for (PackageInfo workPackage : workPackages) {
             if (allPackages.stream().noneMatch(
@@ -172,8 +175,7 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
      * @return the number of applications that can interact across profiles.
      */
     static int getNumberOfEnabledApps(
-            Context context, PackageManager packageManager, UserManager userManager,
-            CrossProfileApps crossProfileApps) {
+            Context context, UserManager userManager, CrossProfileApps crossProfileApps) {
         UserHandle workProfile = getWorkProfile(userManager);
         if (workProfile == null) {
             return 0;
@@ -183,7 +185,8 @@ public class InteractAcrossProfilesSettings extends EmptyTextSettings {
             return 0;
         }
         final ArrayList<Pair<ApplicationInfo, UserHandle>> apps =
-                collectConfigurableApps(packageManager, userManager, crossProfileApps);
+                collectConfigurableApps(InstalledPackageSnapshot.getInstance(context),
+                        userManager, crossProfileApps);
         apps.removeIf(
                 app -> !InteractAcrossProfilesDetails.isInteractAcrossProfilesEnabled(
                         context, app.first.packageName)
@@ -40,6 +40,7 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.widget.EmptyTextSettings;
 import com.android.settingslib.search.SearchIndexable;
@@ -92,6 +93,7 @@ public class PictureInPictureSettings extends EmptyTextSettings {
     private Context mContext;
     private PackageManager mPackageManager;
     private UserManager mUserManager;
+    private InstalledPackageSnapshot mPackageSnapshot;
     private IconDrawableFactory mIconDrawableFactory;
 
     /**
@@ -122,9 +124,12 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         // Do nothing
     }
 
-    public PictureInPictureSettings(PackageManager pm, UserManager um) {
+    @VisibleForTesting
+    PictureInPictureSettings(PackageManager pm, UserManager um,
+            InstalledPackageSnapshot packageSnapshot) {
         mPackageManager = pm;
         mUserManager = um;
+        mPackageSnapshot = packageSnapshot;
     }
 
     @Override
@@ -134,6 +139,7 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         mContext = getActivity();
         mPackageManager = mContext.getPackageManager();
         mUserManager = (UserManager) mContext.getSystemService(Context.USER_SERVICE);
+        mPackageSnapshot = InstalledPackageSnapshot.getInstance(mContext);
         mIconDrawableFactory = IconDrawableFactory.newInstance(mContext);
     }
 
@@ -207,8 +213,8 @@ public class PictureInPictureSettings extends EmptyTextSettings {
         }
 
         for (int id : userIds) {
-            final List<PackageInfo> installedPackages = mPackageManager.getInstalledPackagesAsUser(
-                    GET_ACTIVITIES, id);
+            final List<PackageInfo> installedPackages = mPackageSnapshot.getInstalledPackages(
+                    id, GET_ACTIVITIES);
             for (PackageInfo packageInfo : installedPackages) {
                 if (checkPackageHasPictureInPictureActivities(packageInfo.packageName,
                         packageInfo.activities)) {
@@ -31,6 +31,7 @@ import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceScreen;
 
 import com.android.net.module.util.CollectionUtils;
+import com.android.settings.accessibility.AccessibilityServiceInfoRegistry;
 import com.android.settings.accessibility.RestrictedPreferenceHelper;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.RestrictedPreference;
@@ -101,7 +102,8 @@ public class BluetoothDetailsRelatedToolsController extends BluetoothDetailsCont
                 mContext);
 
         final List<AccessibilityServiceInfo> a11yServiceInfoList =
-                a11yManager.getInstalledAccessibilityServiceList().stream()
+                AccessibilityServiceInfoRegistry.getInstance(mContext).getInstalledServices()
+                        .stream()
                         .filter(info -> componentNameList.contains(info.getComponentName()))
                         .collect(Collectors.toList());
         final List<AccessibilityShortcutInfo> a11yShortcutInfoList =
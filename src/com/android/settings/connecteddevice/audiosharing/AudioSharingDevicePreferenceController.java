@@ -39,6 +39,7 @@ import com.android.settings.bluetooth.BluetoothDeviceUpdater;
 import com.android.settings.bluetooth.Utils;
 import com.android.settings.connecteddevice.DevicePreferenceCallback;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settingslib.bluetooth.BluetoothCallback;
 import com.android.settingslib.bluetooth.BluetoothUtils;
@@ -56,7 +57,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public class AudioSharingDevicePreferenceController extends BasePreferenceController
         implements DefaultLifecycleObserver, DevicePreferenceCallback, BluetoothCallback {
@@ -245,7 +245,8 @@ public class AudioSharingDevicePreferenceController extends BasePreferenceContro
         mLocalBtManager = Utils.getLocalBtManager(mContext);
         mBroadcast = mLocalBtManager.getProfileManager().getLeAudioBroadcastProfile();
         mAssistant = mLocalBtManager.getProfileManager().getLeAudioBroadcastAssistantProfile();
-        mExecutor = Executors.newSingleThreadExecutor();
+        mExecutor = SettingsTaskScheduler.getInstance().newDedicatedExecutor(
+                SettingsTaskScheduler.Lane.UI_CRITICAL, TAG, 1 /* threads */);
     }
 
     @Override
@@ -36,6 +36,7 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.bluetooth.BluetoothDeviceUpdater;
 import com.android.settings.bluetooth.Utils;
 import com.android.settings.connecteddevice.DevicePreferenceCallback;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settingslib.bluetooth.BluetoothUtils;
 import com.android.settingslib.bluetooth.CachedBluetoothDevice;
@@ -47,7 +48,6 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public class AudioSharingDeviceVolumeGroupController extends AudioSharingBasePreferenceController
         implements DevicePreferenceCallback {
@@ -157,7 +157,8 @@ public class AudioSharingDeviceVolumeGroupController extends AudioSharingBasePre
         super(context, KEY);
         mLocalBtManager = Utils.getLocalBtManager(mContext);
         mAssistant = mLocalBtManager.getProfileManager().getLeAudioBroadcastAssistantProfile();
-        mExecutor = Executors.newSingleThreadExecutor();
+        mExecutor = SettingsTaskScheduler.getInstance().newDedicatedExecutor(
+                SettingsTaskScheduler.Lane.UI_CRITICAL, TAG, 1 /* threads */);
         if (mLocalBtManager != null) {
             mVolumeControl = mLocalBtManager.getProfileManager().getVolumeControlProfile();
         }
@@ -37,6 +37,7 @@ import androidx.lifecycle.LifecycleOwner;
 
 import com.android.settings.bluetooth.Utils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.widget.SettingsMainSwitchBar;
 import com.android.settingslib.bluetooth.CachedBluetoothDevice;
@@ -53,7 +54,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class AudioSharingSwitchBarController extends BasePreferenceController
@@ -260,7 +260,8 @@ public class AudioSharingSwitchBarController extends BasePreferenceController
         mBtManager = Utils.getLocalBtManager(context);
         mBroadcast = mBtManager.getProfileManager().getLeAudioBroadcastProfile();
         mAssistant = mBtManager.getProfileManager().getLeAudioBroadcastAssistantProfile();
-        mExecutor = Executors.newSingleThreadExecutor();
+        mExecutor = SettingsTaskScheduler.getInstance().newDedicatedExecutor(
+                SettingsTaskScheduler.Lane.UI_CRITICAL, TAG, 1 /* threads */);
     }
 
     @Override
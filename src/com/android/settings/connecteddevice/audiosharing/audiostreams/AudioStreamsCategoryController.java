@@ -27,6 +27,7 @@ import androidx.lifecycle.LifecycleOwner;
 import com.android.settings.bluetooth.Utils;
 import com.android.settings.connecteddevice.audiosharing.AudioSharingBasePreferenceController;
 import com.android.settings.connecteddevice.audiosharing.AudioSharingUtils;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.flags.Flags;
 import com.android.settingslib.bluetooth.BluetoothCallback;
 import com.android.settingslib.bluetooth.BluetoothUtils;
@@ -35,7 +36,6 @@ import com.android.settingslib.bluetooth.LocalBluetoothManager;
 import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public class AudioStreamsCategoryController extends AudioSharingBasePreferenceController {
     private static final String TAG = "AudioStreamsCategoryController";
@@ -56,7 +56,8 @@ public class AudioStreamsCategoryController extends AudioSharingBasePreferenceCo
     public AudioStreamsCategoryController(Context context, String key) {
         super(context, key);
         mLocalBtManager = Utils.getLocalBtManager(mContext);
-        mExecutor = Executors.newSingleThreadExecutor();
+        mExecutor = SettingsTaskScheduler.getInstance().newDedicatedExecutor(
+                SettingsTaskScheduler.Lane.UI_CRITICAL, TAG, 1 /* threads */);
     }
 
     @Override
@@ -41,6 +41,7 @@ import com.android.settings.R;
 import com.android.settings.bluetooth.Utils;
 import com.android.settings.connecteddevice.audiosharing.AudioSharingUtils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settingslib.bluetooth.BluetoothCallback;
 import com.android.settingslib.bluetooth.BluetoothUtils;
@@ -52,7 +53,6 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import javax.annotation.Nullable;
 
@@ -82,7 +82,8 @@ public class AudioStreamsProgressCategoryController extends BasePreferenceContro
 
     public AudioStreamsProgressCategoryController(Context context, String preferenceKey) {
         super(context, preferenceKey);
-        mExecutor = Executors.newSingleThreadExecutor();
+        mExecutor = SettingsTaskScheduler.getInstance().newDedicatedExecutor(
+                SettingsTaskScheduler.Lane.UI_CRITICAL, TAG, 1 /* threads */);
         mBluetoothManager = Utils.getLocalBtManager(mContext);
         mAudioStreamsHelper = new AudioStreamsHelper(mBluetoothManager);
         mLeBroadcastAssistant = mAudioStreamsHelper.getLeBroadcastAssistant();
@@ -21,6 +21,7 @@ import static com.android.internal.jank.InteractionJankMonitor.Configuration;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -111,7 +112,10 @@ public abstract class InstrumentedPreferenceFragment extends ObservablePreferenc
 
     @Override
     public void addPreferencesFromResource(@XmlRes int preferencesResId) {
+        final long start = SystemClock.elapsedRealtimeNanos();
         super.addPreferencesFromResource(preferencesResId);
+        PreferenceXmlCache.getInstance().recordInflation(getClass().getSimpleName(),
+                SystemClock.elapsedRealtimeNanos() - start);
         updateActivityTitleWithScreenTitle(getPreferenceScreen());
     }
 
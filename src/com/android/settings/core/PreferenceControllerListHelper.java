@@ -19,20 +19,28 @@ package com.android.settings.core;
 import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
 import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_FOR_WORK;
 import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_LAZY_CONTROLLER;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.annotation.XmlRes;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -44,6 +52,10 @@ import java.util.TreeSet;
 public class PreferenceControllerListHelper {
 
     private static final String TAG = "PrefCtrlListHelper";
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    // Resolved controller constructors by class name, so each class is only looked up once.
+    private static final ArrayMap<String, Constructors> sConstructors = new ArrayMap<>();
 
     /**
      * Instantiates a list of controller based on xml definition.
@@ -51,47 +63,142 @@ public class PreferenceControllerListHelper {
     @NonNull
     public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
             @XmlRes int xmlResId) {
+        return getPreferenceControllersFromXml(context, xmlResId, null /* filter */);
+    }
+
+    /**
+     * Instantiates the controllers declared in xml, skipping the ones whose preference key is
+     * already handled by a controller in {@code filter}. Controllers created with their xml key
+     * are skipped without being created.
+     */
+    @NonNull
+    public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
+            @XmlRes int xmlResId, List<AbstractPreferenceController> filter) {
+        return getPreferenceControllersFromXml(context, xmlResId, filter, null /* lazy */);
+    }
+
+    /**
+     * Same as {@link #getPreferenceControllersFromXml(Context, int, List)}, except that when
+     * {@code lazy} is not null, the controllers declared with {@code settings:lazyController} are
+     * not created but described in it, to be created with {@link ControllerDescriptor#create}
+     * when first needed.
+     */
+    @NonNull
+    public static List<BasePreferenceController> getPreferenceControllersFromXml(Context context,
+            @XmlRes int xmlResId, List<AbstractPreferenceController> filter,
+            List<ControllerDescriptor> lazy) {
         final List<BasePreferenceController> controllers = new ArrayList<>();
         List<Bundle> preferenceMetadata;
         try {
             preferenceMetadata = PreferenceXmlParserUtils.extractMetadata(context, xmlResId,
                     MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
-                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK);
+                            | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN  | MetadataFlag.FLAG_FOR_WORK
+                            | MetadataFlag.FLAG_NEED_LAZY_CONTROLLER);
         } catch (IOException | XmlPullParserException e) {
             Log.e(TAG, "Failed to parse preference xml for getting controllers", e);
             return controllers;
         }
 
+        final Set<String> filterKeys = getKeys(filter);
+        final long startTime = SystemClock.elapsedRealtime();
+        int skipped = 0;
         for (Bundle metadata : preferenceMetadata) {
             final String controllerName = metadata.getString(METADATA_CONTROLLER);
             if (TextUtils.isEmpty(controllerName)) {
                 continue;
             }
-            BasePreferenceController controller;
-            try {
-                controller = BasePreferenceController.createInstance(context, controllerName);
-            } catch (IllegalStateException e) {
-                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
+            final Constructors constructors = getConstructors(controllerName);
+            BasePreferenceController controller = null;
+            if (constructors.mContextOnly != null) {
+                // The controller picks its own key, so it can only be filtered once created.
+                controller = newInstance(constructors.mContextOnly, controllerName, context);
+                final String key = controller == null ? null : controller.getPreferenceKey();
+                if (key != null && filterKeys.contains(key)) {
+                    skipped++;
+                    continue;
+                }
+            }
+            if (controller == null) {
                 final String key = metadata.getString(METADATA_KEY);
-                final boolean isWorkProfile = metadata.getBoolean(METADATA_FOR_WORK, false);
                 if (TextUtils.isEmpty(key)) {
                     Log.w(TAG, "Controller requires key but it's not defined in xml: "
                             + controllerName);
                     continue;
                 }
-                try {
-                    controller = BasePreferenceController.createInstance(context, controllerName,
-                            key, isWorkProfile);
-                } catch (IllegalStateException e2) {
-                    Log.w(TAG, "Cannot instantiate controller from reflection: " + controllerName);
+                if (filterKeys.contains(key)) {
+                    skipped++;
                     continue;
                 }
+                final boolean forWork = metadata.getBoolean(METADATA_FOR_WORK, false);
+                if (lazy != null && constructors.mWithKey != null
+                        && metadata.getBoolean(METADATA_LAZY_CONTROLLER, false)) {
+                    lazy.add(new ControllerDescriptor(key, controllerName, forWork));
+                    continue;
+                }
+                controller = newInstance(constructors.mWithKey, controllerName, context, key);
+                if (controller == null) {
+                    Log.w(TAG, "Cannot instantiate controller from reflection: "
+                            + controllerName);
+                    continue;
+                }
+                controller.setForWork(forWork);
             }
             controllers.add(controller);
         }
+        if (DEBUG) {
+            Log.d(TAG, "Created " + controllers.size() + " xml controllers in "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms, skipped " + skipped
+                    + " already created from code, deferred " + (lazy != null ? lazy.size() : 0));
+        }
         return controllers;
     }
 
+    private static Constructors getConstructors(String controllerName) {
+        synchronized (sConstructors) {
+            final Constructors cached = sConstructors.get(controllerName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Constructor<?> contextOnly = null;
+        Constructor<?> withKey = null;
+        try {
+            final Class<?> clazz = Class.forName(controllerName);
+            try {
+                contextOnly = clazz.getConstructor(Context.class);
+            } catch (NoSuchMethodException e) {
+                Log.d(TAG, "Could not find Context-only controller for pref: " + controllerName);
+            }
+            try {
+                withKey = clazz.getConstructor(Context.class, String.class);
+            } catch (NoSuchMethodException e) {
+                // Only the Context-only constructor, if any, can be used.
+            }
+        } catch (ClassNotFoundException e) {
+            // Reported when the controller can't be instantiated.
+        }
+        final Constructors constructors = new Constructors(contextOnly, withKey);
+        synchronized (sConstructors) {
+            sConstructors.put(controllerName, constructors);
+        }
+        return constructors;
+    }
+
+    /** Returns a new controller, or null if the constructor is missing or failed. */
+    private static BasePreferenceController newInstance(Constructor<?> constructor,
+            String controllerName, Object... params) {
+        if (constructor == null) {
+            return null;
+        }
+        try {
+            return (BasePreferenceController) constructor.newInstance(params);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException
+                | IllegalArgumentException | ClassCastException e) {
+            Log.d(TAG, "Failed to instantiate controller: " + controllerName, e);
+            return null;
+        }
+    }
+
     /**
      * Return a sub list of {@link AbstractPreferenceController} to only contain controller that
      * doesn't exist in filter.
@@ -107,14 +214,8 @@ public class PreferenceControllerListHelper {
         if (input == null || filter == null) {
             return input;
         }
-        final Set<String> keys = new TreeSet<>();
+        final Set<String> keys = getKeys(filter);
         final List<BasePreferenceController> filteredList = new ArrayList<>();
-        for (AbstractPreferenceController controller : filter) {
-            final String key = controller.getPreferenceKey();
-            if (key != null) {
-                keys.add(key);
-            }
-        }
         for (BasePreferenceController controller : input) {
             if (keys.contains(controller.getPreferenceKey())) {
                 Log.w(TAG, controller.getPreferenceKey() + " already has a controller");
@@ -125,4 +226,68 @@ public class PreferenceControllerListHelper {
         return filteredList;
     }
 
+    private static Set<String> getKeys(List<AbstractPreferenceController> controllers) {
+        final Set<String> keys = new TreeSet<>();
+        if (controllers == null) {
+            return keys;
+        }
+        for (AbstractPreferenceController controller : controllers) {
+            final String key = controller.getPreferenceKey();
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Describes a controller declared in xml without creating it: its preference key, class and
+     * whether it is for work. The preference is assumed to be available until it is created.
+     */
+    public static final class ControllerDescriptor {
+        private final String mKey;
+        private final String mControllerName;
+        private final boolean mForWork;
+
+        @VisibleForTesting
+        ControllerDescriptor(String key, String controllerName, boolean forWork) {
+            mKey = key;
+            mControllerName = controllerName;
+            mForWork = forWork;
+        }
+
+        /** Returns the key of the preference the controller is declared on. */
+        public String getKey() {
+            return mKey;
+        }
+
+        /** Returns whether the controller is an instance of {@code clazz}. */
+        public boolean isOf(Class<?> clazz) {
+            return TextUtils.equals(clazz.getName(), mControllerName);
+        }
+
+        /** Creates the controller, or returns null if it can't be instantiated. */
+        @Nullable
+        public BasePreferenceController create(Context context) {
+            final BasePreferenceController controller = newInstance(
+                    getConstructors(mControllerName).mWithKey, mControllerName, context, mKey);
+            if (controller == null) {
+                Log.w(TAG, "Cannot instantiate controller from reflection: " + mControllerName);
+                return null;
+            }
+            controller.setForWork(mForWork);
+            return controller;
+        }
+    }
+
+    /** The constructors a controller class can be created with from xml. */
+    private static final class Constructors {
+        final Constructor<?> mContextOnly;
+        final Constructor<?> mWithKey;
+
+        Constructors(Constructor<?> contextOnly, Constructor<?> withKey) {
+            mContextOnly = contextOnly;
+            mWithKey = withKey;
+        }
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.res.AssetManager;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.util.ArrayMap;
+import android.util.LongSparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the preference xml metadata parsed by {@link PreferenceXmlParserUtils},
+ * and per screen timings of preference xml inflation.
+ *
+ * <p>Metadata is keyed by xml resource id and metadata flags, and is only reused for resources
+ * with the same configuration and the same {@link AssetManager}, which is replaced when overlays
+ * change. Opening a screen again, or indexing it for search after it was opened, then doesn't
+ * parse its xml again for controller discovery.
+ */
+public final class PreferenceXmlCache {
+
+    // Window bounds don't select resources, and differ between an activity and the application.
+    private static final int IGNORED_CONFIG_CHANGES = ActivityInfo.CONFIG_WINDOW_CONFIGURATION;
+
+    private static final PreferenceXmlCache sInstance = new PreferenceXmlCache();
+
+    private final LongSparseArray<Entry> mMetadata = new LongSparseArray<>();
+    private final Map<String, InflationStats> mInflations = new ArrayMap<>();
+    private long mHits;
+    private long mMisses;
+
+    /** Returns the process-wide cache. */
+    public static PreferenceXmlCache getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PreferenceXmlCache() {
+    }
+
+    /**
+     * Returns a copy of the metadata parsed from {@code xmlResId} with {@code flags} for the
+     * resources of {@code context}, or null if it needs to be parsed.
+     */
+    @Nullable
+    synchronized List<Bundle> getMetadata(Context context, int xmlResId, int flags) {
+        final Entry entry = mMetadata.get(getKey(xmlResId, flags));
+        if (entry == null || !entry.matches(context.getResources())) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return copy(entry.mMetadata);
+    }
+
+    /** Keeps a copy of the metadata parsed from {@code xmlResId} for the resources of context. */
+    synchronized void putMetadata(Context context, int xmlResId, int flags,
+            List<Bundle> metadata) {
+        final Resources res = context.getResources();
+        final Configuration config = res == null ? null : res.getConfiguration();
+        final AssetManager assets = res == null ? null : res.getAssets();
+        if (config == null || assets == null) {
+            // Mocked resources, nothing to key the entry on.
+            return;
+        }
+        mMetadata.put(getKey(xmlResId, flags),
+                new Entry(new Configuration(config), assets, copy(metadata)));
+    }
+
+    /** Records that inflating the xml of {@code screen} took {@code durationNanos}. */
+    public synchronized void recordInflation(@NonNull String screen, long durationNanos) {
+        InflationStats stats = mInflations.get(screen);
+        if (stats == null) {
+            stats = new InflationStats();
+            mInflations.put(screen, stats);
+        }
+        stats.mCount++;
+        stats.mTotalNanos += durationNanos;
+        stats.mLastNanos = durationNanos;
+        stats.mMaxNanos = Math.max(stats.mMaxNanos, durationNanos);
+    }
+
+    /** Returns a snapshot of the inflation timings, keyed by screen. */
+    @NonNull
+    public synchronized Map<String, InflationStats> getInflationStats() {
+        final Map<String, InflationStats> snapshot = new ArrayMap<>(mInflations.size());
+        for (Map.Entry<String, InflationStats> entry : mInflations.entrySet()) {
+            snapshot.put(entry.getKey(), new InflationStats(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /** Number of metadata lookups answered from the cache. */
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    /** Number of metadata lookups that had to parse the xml. */
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    /** Number of cached metadata entries. */
+    public synchronized int size() {
+        return mMetadata.size();
+    }
+
+    @VisibleForTesting
+    public synchronized void clear() {
+        mMetadata.clear();
+        mInflations.clear();
+        mHits = 0;
+        mMisses = 0;
+    }
+
+    private static long getKey(int xmlResId, int flags) {
+        return ((long) xmlResId << 32) | (flags & 0xffffffffL);
+    }
+
+    private static List<Bundle> copy(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            // Values are strings, ints and booleans, so a shallow copy can't be changed through.
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+
+    private static final class Entry {
+        final Configuration mConfig;
+        final WeakReference<AssetManager> mAssets;
+        final List<Bundle> mMetadata;
+
+        Entry(Configuration config, AssetManager assets, List<Bundle> metadata) {
+            mConfig = config;
+            mAssets = new WeakReference<>(assets);
+            mMetadata = metadata;
+        }
+
+        boolean matches(Resources res) {
+            if (res == null || res.getAssets() == null || res.getAssets() != mAssets.get()) {
+                return false;
+            }
+            final Configuration config = res.getConfiguration();
+            return config != null && (mConfig.diff(config) & ~IGNORED_CONFIG_CHANGES) == 0;
+        }
+    }
+
+    /** Timings of the preference xml inflation of one screen. */
+    public static final class InflationStats {
+        private int mCount;
+        private long mTotalNanos;
+        private long mLastNanos;
+        private long mMaxNanos;
+
+        InflationStats() {
+        }
+
+        InflationStats(InflationStats other) {
+            mCount = other.mCount;
+            mTotalNanos = other.mTotalNanos;
+            mLastNanos = other.mLastNanos;
+            mMaxNanos = other.mMaxNanos;
+        }
+
+        /** Number of times the screen was inflated. */
+        public int getCount() {
+            return mCount;
+        }
+
+        public long getLastMillis() {
+            return mLastNanos / 1_000_000;
+        }
+
+        public long getMaxMillis() {
+            return mMaxNanos / 1_000_000;
+        }
+
+        public long getAverageMillis() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount / 1_000_000;
+        }
+    }
+}
@@ -73,7 +73,8 @@ public class PreferenceXmlParserUtils {
             MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE,
             MetadataFlag.FLAG_FOR_WORK,
             MetadataFlag.FLAG_NEED_HIGHLIGHTABLE_MENU_KEY,
-            MetadataFlag.FLAG_NEED_USER_RESTRICTION})
+            MetadataFlag.FLAG_NEED_USER_RESTRICTION,
+            MetadataFlag.FLAG_NEED_LAZY_CONTROLLER})
     @Retention(RetentionPolicy.SOURCE)
     public @interface MetadataFlag {
 
@@ -91,6 +92,7 @@ public class PreferenceXmlParserUtils {
         int FLAG_FOR_WORK = 1 << 12;
         int FLAG_NEED_HIGHLIGHTABLE_MENU_KEY = 1 << 13;
         int FLAG_NEED_USER_RESTRICTION = 1 << 14;
+        int FLAG_NEED_LAZY_CONTROLLER = 1 << 15;
     }
 
     public static final String METADATA_PREF_TYPE = "type";
@@ -106,9 +108,11 @@ public class PreferenceXmlParserUtils {
     public static final String METADATA_FOR_WORK = "for_work";
     public static final String METADATA_HIGHLIGHTABLE_MENU_KEY = "highlightable_menu_key";
     public static final String METADATA_USER_RESTRICTION = "userRestriction";
+    public static final String METADATA_LAZY_CONTROLLER = "lazy_controller";
 
     /**
-     * Extracts metadata from preference xml and put them into a {@link Bundle}.
+     * Extracts metadata from preference xml and put them into a {@link Bundle}. Results are
+     * cached in {@link PreferenceXmlCache} for the current resources.
      *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
@@ -116,11 +120,22 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final PreferenceXmlCache cache = PreferenceXmlCache.getInstance();
+        List<Bundle> metadata = cache.getMetadata(context, xmlResId, flags);
+        if (metadata == null) {
+            metadata = parseMetadata(context, xmlResId, flags);
+            cache.putMetadata(context, xmlResId, flags, metadata);
         }
+        return metadata;
+    }
+
+    private static List<Bundle> parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -198,6 +213,10 @@ public class PreferenceXmlParserUtils {
                 preferenceMetadata.putString(METADATA_USER_RESTRICTION,
                         getUserRestriction(context, attrs));
             }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_LAZY_CONTROLLER)) {
+                preferenceMetadata.putBoolean(METADATA_LAZY_CONTROLLER,
+                        isLazyController(preferenceAttributes));
+            }
             metadata.add(preferenceMetadata);
 
             preferenceAttributes.recycle();
@@ -261,6 +280,11 @@ public class PreferenceXmlParserUtils {
                 R.styleable.Preference_forWork, false);
     }
 
+    private static boolean isLazyController(TypedArray styledAttributes) {
+        return styledAttributes.getBoolean(
+                R.styleable.Preference_lazyController, false);
+    }
+
     private static String getUserRestriction(Context context, AttributeSet attrs) {
         TypedArray preferenceAttributes = context.obtainStyledAttributes(attrs,
                 com.android.settingslib.R.styleable.RestrictedPreference);
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide scheduler for background work in Settings.
+ *
+ * <p>Work is submitted to one of a few {@link Lane}s, each backed by a small bounded thread pool
+ * running at the lane's thread priority, instead of every screen creating its own threads. Every
+ * task is wrapped in a {@link Trace} section and accounted for in per-lane queue depth and wait
+ * time statistics, which are exposed through {@code SettingsDumpService}.
+ */
+public final class SettingsTaskScheduler {
+
+    private static final String TAG = "SettingsTaskScheduler";
+    // Trace section names are limited to 127 characters.
+    private static final int MAX_TRACE_NAME_LENGTH = 127;
+
+    /** Priority lanes, in decreasing order of urgency. */
+    public enum Lane {
+        /** Work the visible UI is waiting for, e.g. loading the content of the current screen. */
+        UI_CRITICAL("ui", 4, Process.THREAD_PRIORITY_DEFAULT),
+        /** Work that prepares data which may be shown soon. */
+        PREFETCH("prefetch", 2, Process.THREAD_PRIORITY_BACKGROUND),
+        /** Bookkeeping that nobody is waiting for. */
+        MAINTENANCE("maintenance", 1, Process.THREAD_PRIORITY_LOWEST);
+
+        final String mName;
+        final int mMaxThreads;
+        final int mThreadPriority;
+
+        Lane(String name, int maxThreads, int threadPriority) {
+            mName = name;
+            mMaxThreads = maxThreads;
+            mThreadPriority = threadPriority;
+        }
+    }
+
+    private static volatile SettingsTaskScheduler sInstance;
+
+    private final ThreadPoolExecutor[] mPools = new ThreadPoolExecutor[Lane.values().length];
+    private final LaneStats[] mStats = new LaneStats[Lane.values().length];
+
+    /** Returns the shared scheduler. */
+    public static SettingsTaskScheduler getInstance() {
+        if (sInstance == null) {
+            synchronized (SettingsTaskScheduler.class) {
+                if (sInstance == null) {
+                    sInstance = new SettingsTaskScheduler();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SettingsTaskScheduler() {
+        for (Lane lane : Lane.values()) {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(lane.mMaxThreads,
+                    lane.mMaxThreads, 10 /* keepAliveTime */, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new LaneThreadFactory(lane));
+            pool.allowCoreThreadTimeOut(true);
+            mPools[lane.ordinal()] = pool;
+            mStats[lane.ordinal()] = new LaneStats();
+        }
+    }
+
+    /** Runs {@code task} on {@code lane}. */
+    public Future<?> submit(@NonNull Lane lane, @NonNull String name, @NonNull Runnable task) {
+        final FutureTask<Void> future = new FutureTask<>(task, null);
+        mPools[lane.ordinal()].execute(new TrackedTask(lane, name, future));
+        return future;
+    }
+
+    /** Runs {@code task} on {@code lane} and returns its result through the future. */
+    public <T> Future<T> submit(@NonNull Lane lane, @NonNull String name,
+            @NonNull Callable<T> task) {
+        final FutureTask<T> future = new FutureTask<>(task);
+        mPools[lane.ordinal()].execute(new TrackedTask(lane, name, future));
+        return future;
+    }
+
+    /**
+     * Runs {@code task} on {@code lane}, cancelling it when {@code owner} is destroyed. Must be
+     * called on the main thread.
+     */
+    public Future<?> submit(@NonNull LifecycleOwner owner, @NonNull Lane lane,
+            @NonNull String name, @NonNull Runnable task) {
+        final Future<?> future = submit(lane, name, task);
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner lifecycleOwner) {
+                lifecycleOwner.getLifecycle().removeObserver(this);
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns an {@link ExecutorService} that runs its tasks one at a time and in order on
+     * {@code lane}, as a drop-in replacement for {@code Executors.newSingleThreadExecutor()}.
+     * Shutting it down only affects the tasks submitted through it.
+     */
+    public LaneExecutor newSerialExecutor(@NonNull Lane lane, @NonNull String name) {
+        return new LaneExecutor(lane, name, true /* serial */);
+    }
+
+    /**
+     * Returns an {@link ExecutorService} that runs its tasks concurrently on {@code lane}, up to
+     * the lane's thread limit. Shutting it down only affects the tasks submitted through it.
+     */
+    public LaneExecutor newConcurrentExecutor(@NonNull Lane lane, @NonNull String name) {
+        return new LaneExecutor(lane, name, false /* serial */);
+    }
+
+    /**
+     * Returns an {@link ExecutorService} with {@code threads} threads of its own at the priority
+     * of {@code lane}, for a burst of tasks that must all start right away, e.g. because each of
+     * them is given a timeout that would otherwise run out while it waits for a lane thread, or
+     * for blocking binder and Bluetooth calls that would otherwise hold a shared lane thread for
+     * long. Its tasks are counted in the statistics of {@code lane}. Its threads stop once it is
+     * shut down or idle.
+     */
+    public ExecutorService newDedicatedExecutor(@NonNull Lane lane, @NonNull String name,
+            int threads) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                1 /* keepAliveTime */, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new LaneThreadFactory(lane, name)) {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                super.execute(new TrackedTask(lane, name, command));
+            }
+        };
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** Returns the statistics of {@code lane}. */
+    public LaneStats getStats(@NonNull Lane lane) {
+        return mStats[lane.ordinal()];
+    }
+
+    /** Per-lane statistics. Counters are updated without locking and may be slightly stale. */
+    public static final class LaneStats {
+        private final AtomicInteger mQueueDepth = new AtomicInteger();
+        private final AtomicInteger mActive = new AtomicInteger();
+        private final AtomicLong mCompleted = new AtomicLong();
+        private final AtomicLong mTotalWaitMillis = new AtomicLong();
+        private final AtomicLong mMaxWaitMillis = new AtomicLong();
+
+        /** Number of tasks waiting for a thread. */
+        public int getQueueDepth() {
+            return mQueueDepth.get();
+        }
+
+        /** Number of tasks currently running. */
+        public int getActiveCount() {
+            return mActive.get();
+        }
+
+        /** Number of tasks that finished running. */
+        public long getCompletedCount() {
+            return mCompleted.get();
+        }
+
+        /** Average time tasks waited for a thread, in milliseconds. */
+        public long getAverageWaitMillis() {
+            final long completed = mCompleted.get();
+            return completed == 0 ? 0 : mTotalWaitMillis.get() / completed;
+        }
+
+        /** Longest time a task waited for a thread, in milliseconds. */
+        public long getMaxWaitMillis() {
+            return mMaxWaitMillis.get();
+        }
+
+        void onQueued() {
+            mQueueDepth.incrementAndGet();
+        }
+
+        void onStarted(long waitMillis) {
+            mQueueDepth.decrementAndGet();
+            mActive.incrementAndGet();
+            mTotalWaitMillis.addAndGet(waitMillis);
+            mMaxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+
+        void onFinished() {
+            mActive.decrementAndGet();
+            mCompleted.incrementAndGet();
+        }
+    }
+
+    /** A view of a lane that can be shut down independently of the shared pool. */
+    public final class LaneExecutor extends AbstractExecutorService {
+        private final Lane mLane;
+        private final String mName;
+        private final boolean mSerial;
+        private final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+        private final List<TrackedTask> mSubmitted = new ArrayList<>();
+        private boolean mRunning;
+        private boolean mShutdown;
+        private int mInFlight;
+
+        LaneExecutor(Lane lane, String name, boolean serial) {
+            mLane = lane;
+            mName = name;
+            mSerial = serial;
+        }
+
+        /** Shuts this executor down, dropping pending tasks, when {@code owner} is destroyed. */
+        public LaneExecutor bindTo(@NonNull LifecycleOwner owner) {
+            owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+                @Override
+                public void onDestroy(@NonNull LifecycleOwner lifecycleOwner) {
+                    lifecycleOwner.getLifecycle().removeObserver(this);
+                    shutdownNow();
+                }
+            });
+            return this;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            synchronized (this) {
+                if (mShutdown) {
+                    throw new RejectedExecutionException(mName + " is shut down");
+                }
+                mInFlight++;
+                final TrackedTask task = new TrackedTask(mLane, mName, () -> {
+                    try {
+                        command.run();
+                    } finally {
+                        onTaskDone();
+                    }
+                });
+                if (!mSerial) {
+                    mPools[mLane.ordinal()].execute(task);
+                    return;
+                }
+                mPending.add(task);
+                if (!mRunning) {
+                    scheduleNextLocked();
+                }
+            }
+        }
+
+        private void onTaskDone() {
+            synchronized (this) {
+                mInFlight--;
+                if (mSerial) {
+                    mRunning = false;
+                    scheduleNextLocked();
+                }
+                if (mInFlight == 0) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private void scheduleNextLocked() {
+            final Runnable next = mPending.poll();
+            if (next != null) {
+                mRunning = true;
+                mPools[mLane.ordinal()].execute(next);
+            }
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            mShutdown = true;
+        }
+
+        @NonNull
+        @Override
+        public List<Runnable> shutdownNow() {
+            synchronized (this) {
+                mShutdown = true;
+                final List<Runnable> dropped = new ArrayList<>(mPending);
+                mInFlight -= mPending.size();
+                for (Runnable task : mPending) {
+                    ((TrackedTask) task).onDropped();
+                }
+                mPending.clear();
+                if (mInFlight == 0) {
+                    notifyAll();
+                }
+                return dropped;
+            }
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return mShutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return mShutdown && mInFlight == 0;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, @NonNull TimeUnit unit)
+                throws InterruptedException {
+            final long deadline = SystemClock.uptimeMillis() + unit.toMillis(timeout);
+            while (!isTerminated()) {
+                final long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private final class TrackedTask implements Runnable {
+        private final Lane mLane;
+        private final String mName;
+        private final Runnable mTask;
+        private final long mEnqueueTime;
+
+        TrackedTask(Lane lane, String name, Runnable task) {
+            mLane = lane;
+            mName = name;
+            mTask = task;
+            mEnqueueTime = SystemClock.uptimeMillis();
+            mStats[lane.ordinal()].onQueued();
+        }
+
+        @Override
+        public void run() {
+            final LaneStats stats = mStats[mLane.ordinal()];
+            stats.onStarted(SystemClock.uptimeMillis() - mEnqueueTime);
+            final String section = mLane.mName + ":" + mName;
+            Trace.beginSection(section.length() > MAX_TRACE_NAME_LENGTH
+                    ? section.substring(0, MAX_TRACE_NAME_LENGTH) : section);
+            try {
+                mTask.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task " + section + " failed", e);
+                throw e;
+            } finally {
+                Trace.endSection();
+                stats.onFinished();
+            }
+        }
+
+        void onDropped() {
+            mStats[mLane.ordinal()].mQueueDepth.decrementAndGet();
+        }
+    }
+
+    private static final class LaneThreadFactory implements ThreadFactory {
+        private final Lane mLane;
+        private final String mPrefix;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        LaneThreadFactory(Lane lane) {
+            this(lane, null /* name */);
+        }
+
+        LaneThreadFactory(Lane lane, String name) {
+            mLane = lane;
+            mPrefix = "Settings-" + mLane.mName + "-" + (name == null ? "" : name + "-");
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(mLane.mThreadPriority);
+                runnable.run();
+            }, mPrefix + mCount.incrementAndGet());
+        }
+    }
+}
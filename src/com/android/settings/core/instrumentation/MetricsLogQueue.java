@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.SettingsTaskScheduler;
+import com.android.settingslib.core.instrumentation.LogWriter;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link LogWriter} that queues events and writes them to other writers on a background lane, so
+ * that logging a click or a page transition doesn't write the atom on the calling thread.
+ *
+ * <p>Events are kept in a bounded lock-free ring and written in the order they were logged. When
+ * the ring is full new events are dropped and counted. A page visible or hidden event that
+ * exactly repeats the previous written event, value included, within
+ * {@link #COALESCE_WINDOW_MS} is skipped as a duplicate dispatch.
+ */
+public final class MetricsLogQueue implements LogWriter {
+    private static final String TAG = "MetricsLogQueue";
+    private static final int DEFAULT_CAPACITY = 256;
+    @VisibleForTesting
+    static final long COALESCE_WINDOW_MS = 100;
+
+    private final List<LogWriter> mWriters;
+    private final Ring mRing;
+    private final Executor mExecutor;
+    private final LongSupplier mClock;
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+    private final AtomicLong mWritten = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+    // Last visibility event written, only accessed by the drain. Its context isn't kept, so
+    // that a page isn't held by the queue.
+    private int mLastType = -1;
+    private int mLastAttribution;
+    private int mLastPageId;
+    private int mLastValue;
+    private long mLastTime;
+
+    MetricsLogQueue(@NonNull List<LogWriter> writers) {
+        this(writers, DEFAULT_CAPACITY, command -> SettingsTaskScheduler.getInstance().submit(
+                SettingsTaskScheduler.Lane.MAINTENANCE, TAG, command), SystemClock::uptimeMillis);
+    }
+
+    @VisibleForTesting
+    MetricsLogQueue(@NonNull List<LogWriter> writers, int capacity, @NonNull Executor executor,
+            @NonNull LongSupplier clock) {
+        mWriters = writers;
+        mRing = new Ring(capacity);
+        mExecutor = executor;
+        mClock = clock;
+    }
+
+    @Override
+    public void visible(Context context, int attribution, int pageId, int latency) {
+        enqueue(new Event(Event.VISIBLE, context, attribution, 0 /* action */, pageId,
+                null /* key */, latency, null /* taggedData */));
+    }
+
+    @Override
+    public void hidden(Context context, int pageId, int visibleTime) {
+        enqueue(new Event(Event.HIDDEN, context, 0 /* attribution */, 0 /* action */, pageId,
+                null /* key */, visibleTime, null /* taggedData */));
+    }
+
+    @Override
+    public void clicked(int attribution, String key) {
+        enqueue(new Event(Event.CLICKED, null /* context */, attribution, 0 /* action */,
+                0 /* pageId */, key, 0 /* value */, null /* taggedData */));
+    }
+
+    @Override
+    public void changed(int attribution, String key, int value) {
+        enqueue(new Event(Event.CHANGED, null /* context */, attribution, 0 /* action */,
+                0 /* pageId */, key, value, null /* taggedData */));
+    }
+
+    @Override
+    public void action(Context context, int action, Pair<Integer, Object>... taggedData) {
+        enqueue(new Event(Event.ACTION_TAGGED, context, 0 /* attribution */, action,
+                0 /* pageId */, null /* key */, 0 /* value */, taggedData));
+    }
+
+    @Override
+    public void action(Context context, int action, int value) {
+        enqueue(new Event(Event.ACTION_INT, context, 0 /* attribution */, action, 0 /* pageId */,
+                null /* key */, value, null /* taggedData */));
+    }
+
+    @Override
+    public void action(Context context, int action, boolean value) {
+        enqueue(new Event(Event.ACTION_BOOLEAN, context, 0 /* attribution */, action,
+                0 /* pageId */, null /* key */, value ? 1 : 0, null /* taggedData */));
+    }
+
+    @Override
+    public void action(Context context, int action, String pkg) {
+        enqueue(new Event(Event.ACTION_STRING, context, 0 /* attribution */, action,
+                0 /* pageId */, pkg, 0 /* value */, null /* taggedData */));
+    }
+
+    @Override
+    public void action(int attribution, int action, int pageId, String key, int value) {
+        enqueue(new Event(Event.ACTION, null /* context */, attribution, action, pageId, key,
+                value, null /* taggedData */));
+    }
+
+    /** Maximum number of events waiting to be written. */
+    public int getCapacity() {
+        return mRing.mCapacity;
+    }
+
+    /** Number of events waiting to be written. */
+    public int getQueueDepth() {
+        return mRing.size();
+    }
+
+    /** Number of events written. */
+    public long getWrittenCount() {
+        return mWritten.get();
+    }
+
+    /** Number of events dropped because the queue was full. */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /** Number of duplicate visibility events skipped. */
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    private void enqueue(Event event) {
+        event.mTime = mClock.getAsLong();
+        if (!mRing.offer(event)) {
+            mDropped.incrementAndGet();
+            return;
+        }
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            Event event;
+            while ((event = mRing.poll()) != null) {
+                write(event);
+            }
+            mDrainScheduled.set(false);
+            // Events offered after the last poll but before the flag was cleared are ours.
+        } while (mRing.size() > 0 && mDrainScheduled.compareAndSet(false, true));
+    }
+
+    private void write(Event event) {
+        if (event.mType == Event.VISIBLE || event.mType == Event.HIDDEN) {
+            if (event.mType == mLastType && event.mAttribution == mLastAttribution
+                    && event.mPageId == mLastPageId && event.mValue == mLastValue
+                    && event.mTime - mLastTime <= COALESCE_WINDOW_MS) {
+                mCoalesced.incrementAndGet();
+                return;
+            }
+            mLastType = event.mType;
+            mLastAttribution = event.mAttribution;
+            mLastPageId = event.mPageId;
+            mLastValue = event.mValue;
+            mLastTime = event.mTime;
+        } else {
+            // Only back to back repeats are duplicates.
+            mLastType = -1;
+        }
+        for (LogWriter writer : mWriters) {
+            try {
+                event.writeTo(writer);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to write event to " + writer.getClass().getSimpleName(), e);
+            }
+        }
+        mWritten.incrementAndGet();
+    }
+
+    private static final class Event {
+        static final int VISIBLE = 0;
+        static final int HIDDEN = 1;
+        static final int CLICKED = 2;
+        static final int CHANGED = 3;
+        static final int ACTION_TAGGED = 4;
+        static final int ACTION_INT = 5;
+        static final int ACTION_BOOLEAN = 6;
+        static final int ACTION_STRING = 7;
+        static final int ACTION = 8;
+
+        final int mType;
+        final Context mContext;
+        final int mAttribution;
+        final int mAction;
+        final int mPageId;
+        final String mKey;
+        final int mValue;
+        final Pair<Integer, Object>[] mTaggedData;
+        // Time the event was logged, set before it is offered to the ring.
+        long mTime;
+
+        Event(int type, Context context, int attribution, int action, int pageId, String key,
+                int value, Pair<Integer, Object>[] taggedData) {
+            mType = type;
+            mContext = context;
+            mAttribution = attribution;
+            mAction = action;
+            mPageId = pageId;
+            mKey = key;
+            mValue = value;
+            mTaggedData = taggedData;
+        }
+
+        void writeTo(LogWriter writer) {
+            switch (mType) {
+                case VISIBLE:
+                    writer.visible(mContext, mAttribution, mPageId, mValue);
+                    break;
+                case HIDDEN:
+                    writer.hidden(mContext, mPageId, mValue);
+                    break;
+                case CLICKED:
+                    writer.clicked(mAttribution, mKey);
+                    break;
+                case CHANGED:
+                    writer.changed(mAttribution, mKey, mValue);
+                    break;
+                case ACTION_TAGGED:
+                    writer.action(mContext, mAction, mTaggedData);
+                    break;
+                case ACTION_INT:
+                    writer.action(mContext, mAction, mValue);
+                    break;
+                case ACTION_BOOLEAN:
+                    writer.action(mContext, mAction, mValue != 0);
+                    break;
+                case ACTION_STRING:
+                    writer.action(mContext, mAction, mKey);
+                    break;
+                default:
+                    writer.action(mAttribution, mAction, mPageId, mKey, mValue);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Bounded ring for any number of producers and a single consumer. Each slot has a sequence
+     * number telling whether it is free for the producer of a position or filled for the consumer,
+     * so neither side takes a lock.
+     */
+    private static final class Ring {
+        final int mCapacity;
+        private final int mMask;
+        private final AtomicReferenceArray<Event> mSlots;
+        private final AtomicLongArray mSequences;
+        private final AtomicLong mTail = new AtomicLong();
+        private final AtomicLong mHead = new AtomicLong();
+
+        Ring(int capacity) {
+            // Round up to a power of two so positions map to slots with a mask.
+            mCapacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+            mMask = mCapacity - 1;
+            mSlots = new AtomicReferenceArray<>(mCapacity);
+            mSequences = new AtomicLongArray(mCapacity);
+            for (int i = 0; i < mCapacity; i++) {
+                mSequences.set(i, i);
+            }
+        }
+
+        boolean offer(Event event) {
+            long position = mTail.get();
+            while (true) {
+                final int index = (int) (position & mMask);
+                final long available = mSequences.get(index) - position;
+                if (available == 0) {
+                    if (mTail.compareAndSet(position, position + 1)) {
+                        mSlots.set(index, event);
+                        mSequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = mTail.get();
+                } else if (available < 0) {
+                    // The consumer hasn't freed this slot yet.
+                    return false;
+                } else {
+                    position = mTail.get();
+                }
+            }
+        }
+
+        /** Must only be called by one thread at a time. */
+        Event poll() {
+            final long position = mHead.get();
+            final int index = (int) (position & mMask);
+            if (mSequences.get(index) != position + 1) {
+                return null;
+            }
+            final Event event = mSlots.get(index);
+            mSlots.set(index, null);
+            mSequences.set(index, position + mCapacity);
+            mHead.set(position + 1);
+            return event;
+        }
+
+        int size() {
+            return (int) Math.max(0, mTail.get() - mHead.get());
+        }
+    }
+}
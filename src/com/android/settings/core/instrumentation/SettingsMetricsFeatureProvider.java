@@ -22,13 +22,25 @@ import android.util.Pair;
 
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 
+import java.util.Arrays;
+
 public class SettingsMetricsFeatureProvider extends MetricsFeatureProvider {
     private static final String TAG = "SettingsMetricsFeature";
 
+    // Set by installLogWriters(), which runs in the super constructor.
+    private MetricsLogQueue mLogQueue;
+
     @Override
     protected void installLogWriters() {
-        mLoggerWriters.add(new StatsLogWriter());
-        mLoggerWriters.add(new SettingsEventLogWriter());
+        // Events are written in the background instead of on the (often main) calling thread.
+        mLogQueue = new MetricsLogQueue(
+                Arrays.asList(new StatsLogWriter(), new SettingsEventLogWriter()));
+        mLoggerWriters.add(mLogQueue);
+    }
+
+    /** Returns the queue in front of the log writers. */
+    public MetricsLogQueue getLogQueue() {
+        return mLogQueue;
     }
 
     /**
@@ -21,6 +21,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager.OnActivityResultListener;
 import android.text.TextUtils;
 import android.util.ArrayMap;
@@ -36,9 +37,11 @@ import androidx.lifecycle.LifecycleOwner;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceGroup;
+import androidx.preference.PreferenceGroupAdapter;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreferenceCompat;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
@@ -46,10 +49,13 @@ import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
 import com.android.settings.core.PreferenceControllerListHelper;
+import com.android.settings.core.PreferenceControllerListHelper.ControllerDescriptor;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.PrimarySwitchPreference;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
+import com.android.settingslib.core.lifecycle.events.OnResume;
+import com.android.settingslib.core.lifecycle.events.OnStart;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
@@ -63,8 +69,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -74,7 +78,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         BasePreferenceController.UiBlockListener {
     public static final String CATEGORY = "category";
     private static final String TAG = "DashboardFragment";
-    private static final long TIMEOUT_MILLIS = 50L;
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
     @VisibleForTesting
     final ArrayMap<String, List<DynamicDataObserver>> mDashboardTilePrefKeys = new ArrayMap<>();
@@ -82,6 +86,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             new ArrayMap<>();
     private final List<DynamicDataObserver> mRegisteredObservers = new ArrayList<>();
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
+    // Controllers declared with settings:lazyController, by preference key, until created.
+    private final ArrayMap<String, ControllerDescriptor> mLazyControllers = new ArrayMap<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
@@ -96,12 +102,19 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 R.array.config_suppress_injected_tile_keys));
         mDashboardFeatureProvider =
                 FeatureFactory.getFeatureFactory().getDashboardFeatureProvider();
+        final long startTime = SystemClock.elapsedRealtime();
         // Load preference controllers from code
         final List<AbstractPreferenceController> controllersFromCode =
                 createPreferenceControllers(context);
-        // Load preference controllers from xml definition
+        // Load preference controllers from xml definition, skipping the ones created from code
+        // and deferring the lazy ones until their preference is shown.
+        final List<ControllerDescriptor> lazyControllers = new ArrayList<>();
         final List<BasePreferenceController> controllersFromXml = PreferenceControllerListHelper
-                .getPreferenceControllersFromXml(context, getPreferenceScreenResId());
+                .getPreferenceControllersFromXml(context, getPreferenceScreenResId(),
+                        controllersFromCode, lazyControllers);
+        for (ControllerDescriptor descriptor : lazyControllers) {
+            mLazyControllers.put(descriptor.getKey(), descriptor);
+        }
         // Filter xml-based controllers in case a similar controller is created from code already.
         final List<BasePreferenceController> uniqueControllerFromXml =
                 PreferenceControllerListHelper.filterControllers(
@@ -135,6 +148,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (AbstractPreferenceController controller : mControllers) {
             addPreferenceController(controller);
         }
+        if (DEBUG) {
+            Log.d(getLogTag(), "Attached " + mControllers.size() + " controllers in "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms, deferred "
+                    + mLazyControllers.size());
+        }
     }
 
     @VisibleForTesting
@@ -179,6 +197,94 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         for (AbstractPreferenceController controller : mControllers) {
             controller.onViewCreated(viewLifecycleOwner);
         }
+        final RecyclerView listView = getListView();
+        if (!mLazyControllers.isEmpty() && listView != null) {
+            listView.addOnChildAttachStateChangeListener(
+                    new RecyclerView.OnChildAttachStateChangeListener() {
+                        @Override
+                        public void onChildViewAttachedToWindow(@NonNull View child) {
+                            onPreferenceViewShown(listView, child);
+                        }
+
+                        @Override
+                        public void onChildViewDetachedFromWindow(@NonNull View child) {
+                        }
+                    });
+        }
+    }
+
+    private void onPreferenceViewShown(RecyclerView listView, View child) {
+        if (mLazyControllers.isEmpty()
+                || !(listView.getAdapter() instanceof PreferenceGroupAdapter)) {
+            return;
+        }
+        final int position = listView.getChildAdapterPosition(child);
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        final String key =
+                ((PreferenceGroupAdapter) listView.getAdapter()).getItem(position).getKey();
+        if (key != null && mLazyControllers.containsKey(key)) {
+            // The preference may change while the list is laid out, so create it right after.
+            listView.post(() -> createLazyController(key));
+        }
+    }
+
+    /**
+     * Creates the controller deferred for {@code key}, if any, and brings it to the state of the
+     * other controllers: lifecycle, displayed preference and visibility.
+     */
+    private void createLazyController(String key) {
+        final ControllerDescriptor descriptor = mLazyControllers.remove(key);
+        final Context context = getContext();
+        if (descriptor == null || context == null) {
+            return;
+        }
+        final BasePreferenceController controller = descriptor.create(context);
+        if (controller == null) {
+            return;
+        }
+        controller.setMetricsCategory(getMetricsCategory());
+        mControllers.add(controller);
+        addPreferenceController(controller);
+        if (controller instanceof LifecycleObserver) {
+            getSettingsLifecycle().addObserver((LifecycleObserver) controller);
+            final Lifecycle.State state = getSettingsLifecycle().getCurrentState();
+            if (controller instanceof OnStart && state.isAtLeast(Lifecycle.State.STARTED)) {
+                ((OnStart) controller).onStart();
+            }
+            if (controller instanceof OnResume && state.isAtLeast(Lifecycle.State.RESUMED)) {
+                ((OnResume) controller).onResume();
+            }
+        }
+        if (getView() != null) {
+            controller.onViewCreated(getViewLifecycleOwner());
+        }
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null) {
+            // Displayed with the other controllers once the screen is created.
+            return;
+        }
+        controller.displayPreference(screen);
+        final Preference preference = screen.findPreference(key);
+        if (preference == null) {
+            return;
+        }
+        preference.getExtras().putInt(CATEGORY, getMetricsCategory());
+        final boolean available = controller.isAvailable();
+        preference.setVisible(available);
+        if (available && getSettingsLifecycle().getCurrentState().isAtLeast(
+                Lifecycle.State.RESUMED)) {
+            controller.updateState(preference);
+        }
+    }
+
+    private void createLazyControllers(Class<?> clazz) {
+        for (int i = mLazyControllers.size() - 1; i >= 0; i--) {
+            if (mLazyControllers.valueAt(i).isOf(clazz)) {
+                createLazyController(mLazyControllers.keyAt(i));
+            }
+        }
     }
 
     @Override
@@ -244,6 +350,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     @Override
     public boolean onPreferenceTreeClick(Preference preference) {
+        createLazyController(preference.getKey());
         final Collection<List<AbstractPreferenceController>> controllers =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllers) {
@@ -299,6 +406,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     }
 
     protected <T extends AbstractPreferenceController> T use(Class<T> clazz) {
+        createLazyControllers(clazz);
         List<AbstractPreferenceController> controllerList = mPreferenceControllers.get(clazz);
         if (controllerList != null) {
             if (controllerList.size() > 1) {
@@ -313,6 +421,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /** Returns all controllers of type T. */
     protected <T extends AbstractPreferenceController> List<T> useAll(Class<T> clazz) {
+        createLazyControllers(clazz);
         return (List<T>) mPreferenceControllers.getOrDefault(clazz, Collections.emptyList());
     }
 
@@ -358,7 +467,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     /**
      * Displays resource based tiles.
      */
-    private void displayResourceTiles() {
+    @VisibleForTesting
+    void displayResourceTiles() {
         final int resId = getPreferenceScreenResId();
         if (resId <= 0) {
             return;
@@ -411,11 +521,20 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                updatePreferenceState(controller, preference);
             }
         }
     }
 
+    /**
+     * Updates {@code preference} with {@code controller} during {@link #updatePreferenceStates},
+     * which subclasses can defer.
+     */
+    protected void updatePreferenceState(AbstractPreferenceController controller,
+            Preference preference) {
+        controller.updateState(preference);
+    }
+
     /**
      * Refresh all preference items, including both static prefs from xml, and dynamic items from
      * DashboardCategory.
@@ -571,19 +690,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
-        if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
-            pendingObservers.forEach(DynamicDataObserver::updateUi);
-        }
+        // Show the values loaded so far; the rest are applied as they arrive.
+        pendingObservers.forEach(DynamicDataObserver::updateUi);
     }
 
     @Override
@@ -646,12 +754,4 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             resolver.unregisterContentObserver(observer);
         });
     }
-
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
-        }
-    }
 }
@@ -19,23 +19,35 @@ import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 
 import com.android.settingslib.utils.ThreadUtils;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Observer for updating injected dynamic data.
  */
 public abstract class DynamicDataObserver extends ContentObserver {
 
+    private static final String TAG = "DynamicDataObserver";
+    // Injected values slower than this are logged as warnings.
+    private static final long SLOW_VALUE_THRESHOLD_MS = 50L;
+
+    // UI updates posted by all observers, applied together by the next main thread flush.
+    private static final List<Runnable> sPendingUpdates = new ArrayList<>();
+    private static boolean sFlushScheduled;
+
+    private final long mCreatedTime;
     private Runnable mUpdateRunnable;
-    private CountDownLatch mCountDownLatch;
     private boolean mUpdateDelegated;
+    private long mTimeToValue = -1;
 
     protected DynamicDataObserver() {
         super(new Handler(Looper.getMainLooper()));
-        mCountDownLatch = new CountDownLatch(1);
+        mCreatedTime = SystemClock.elapsedRealtime();
         // Load data for the first time
         onDataChanged();
     }
@@ -46,17 +58,24 @@ public abstract class DynamicDataObserver extends ContentObserver {
     /** Called when data changes. */
     public abstract void onDataChanged();
 
-    /** Calls the runnable to update UI */
+    /**
+     * Applies the loaded value if there is one, and lets every later value be applied as soon as
+     * it arrives.
+     */
     public synchronized void updateUi() {
         mUpdateDelegated = true;
         if (mUpdateRunnable != null) {
             mUpdateRunnable.run();
+            mUpdateRunnable = null;
         }
     }
 
-    /** Returns the count-down latch */
-    public CountDownLatch getCountDownLatch() {
-        return mCountDownLatch;
+    /**
+     * Returns the time between creating this observer and its first value, in milliseconds, or -1
+     * if no value has been loaded yet.
+     */
+    public synchronized long getTimeToValue() {
+        return mTimeToValue;
     }
 
     @Override
@@ -65,11 +84,41 @@ public abstract class DynamicDataObserver extends ContentObserver {
     }
 
     protected synchronized void post(Runnable runnable) {
+        if (mTimeToValue < 0) {
+            mTimeToValue = SystemClock.elapsedRealtime() - mCreatedTime;
+            if (mTimeToValue > SLOW_VALUE_THRESHOLD_MS) {
+                Log.w(TAG, "Slow injected value from " + getUri() + ": " + mTimeToValue + "ms");
+            } else {
+                Log.d(TAG, "Injected value from " + getUri() + ": " + mTimeToValue + "ms");
+            }
+        }
         if (mUpdateDelegated) {
-            ThreadUtils.postOnMainThread(runnable);
+            enqueueUpdate(runnable);
         } else {
             mUpdateRunnable = runnable;
-            mCountDownLatch.countDown();
         }
     }
+
+    private static void enqueueUpdate(Runnable runnable) {
+        synchronized (sPendingUpdates) {
+            sPendingUpdates.add(runnable);
+            if (sFlushScheduled) {
+                return;
+            }
+            sFlushScheduled = true;
+        }
+        ThreadUtils.postOnMainThread(DynamicDataObserver::flushUpdates);
+    }
+
+    private static void flushUpdates() {
+        final List<Runnable> updates;
+        synchronized (sPendingUpdates) {
+            updates = new ArrayList<>(sPendingUpdates);
+            sPendingUpdates.clear();
+            sFlushScheduled = false;
+        }
+        // Values that arrived while the main thread was busy are applied in one pass, so they
+        // land in the same frame.
+        updates.forEach(Runnable::run);
+    }
 }
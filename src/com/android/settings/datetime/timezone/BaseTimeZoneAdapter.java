@@ -16,8 +16,8 @@
 
 package com.android.settings.datetime.timezone;
 
-import android.icu.text.BreakIterator;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -31,11 +31,15 @@ import androidx.annotation.WorkerThread;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.datetime.timezone.BaseTimeZonePicker.OnListItemClickListener;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Used with {@class BaseTimeZonePicker}. It renders text in each item into list view. A list of
@@ -43,6 +47,8 @@ import java.util.Locale;
  */
 public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
         extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    private static final String TAG = "BaseTimeZoneAdapter";
+
     @VisibleForTesting
     static final int TYPE_HEADER = 0;
     @VisibleForTesting
@@ -55,6 +61,8 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
     private final boolean mShowHeader;
     private final CharSequence mHeaderText;
 
+    private final Future<TimeZoneSearchIndex> mSearchIndex;
+
     private List<T> mItems;
     private ArrayFilter mFilter;
 
@@ -71,6 +79,10 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
         mShowHeader = headerText != null;
         mHeaderText = headerText;
         setHasStableIds(true);
+        // Adapters are created when TimeZoneDataLoader finishes, index the items right away.
+        mSearchIndex = SettingsTaskScheduler.getInstance().submit(
+                SettingsTaskScheduler.Lane.PREFETCH, TAG,
+                () -> new TimeZoneSearchIndex(items, locale));
     }
 
     @NonNull
@@ -145,6 +157,19 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
         return mFilter;
     }
 
+    @WorkerThread
+    private TimeZoneSearchIndex getSearchIndex() {
+        try {
+            return mSearchIndex.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.w(TAG, "Failed to build the search index, building it again", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return new TimeZoneSearchIndex(mOriginalItems, mLocale);
+        }
+    }
+
     /**
      * @throws IndexOutOfBoundsException if the view type at the position is a header
      */
@@ -225,15 +250,12 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
      * a prefix. Each item that does not start with the supplied prefix
      * is removed from the list.</p>
      *
-     * The filtering operation is not optimized, due to small data size (~260 regions),
-     * require additional pre-processing. Potentially, a trie structure can be used to match
-     * prefixes of the search keys.
+     * Matches are looked up in a {@link TimeZoneSearchIndex} built in the background when the
+     * adapter is created.
      */
     @VisibleForTesting
     public class ArrayFilter extends Filter {
 
-        private BreakIterator mBreakIterator = BreakIterator.getWordInstance(mLocale);
-
         @WorkerThread
         @Override
         protected FilterResults performFiltering(CharSequence prefix) {
@@ -241,31 +263,10 @@ public class BaseTimeZoneAdapter<T extends BaseTimeZoneAdapter.AdapterItem>
             if (TextUtils.isEmpty(prefix)) {
                 newItems = mOriginalItems;
             } else {
-                final String prefixString = prefix.toString().toLowerCase(mLocale);
-                newItems = new ArrayList<>();
-
-                for (T item : mOriginalItems) {
-                    outer:
-                    for (String searchKey : item.getSearchKeys()) {
-                        searchKey = searchKey.toLowerCase(mLocale);
-                        // First match against the whole, non-splitted value
-                        if (searchKey.startsWith(prefixString)) {
-                            newItems.add(item);
-                            break outer;
-                        } else {
-                            mBreakIterator.setText(searchKey);
-                            for (int wordStart = 0, wordLimit = mBreakIterator.next();
-                                    wordLimit != BreakIterator.DONE;
-                                    wordStart = wordLimit,
-                                            wordLimit = mBreakIterator.next()) {
-                                if (mBreakIterator.getRuleStatus() != BreakIterator.WORD_NONE
-                                        && searchKey.startsWith(prefixString, wordStart)) {
-                                    newItems.add(item);
-                                    break outer;
-                                }
-                            }
-                        }
-                    }
+                final BitSet positions = getSearchIndex().findItems(prefix.toString());
+                newItems = new ArrayList<>(positions.cardinality());
+                for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                    newItems.add(mOriginalItems.get(i));
                 }
             }
 
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import android.icu.text.BreakIterator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Word-prefix index of the search keys of {@link BaseTimeZoneAdapter.AdapterItem}s.
+ *
+ * <p>Each search key is lower-cased once and split into words. The remainder of the key from the
+ * start of each word is kept in a sorted array, so the items matching a query are a range of that
+ * array. When the query extends the previous one, e.g. while the user types, only the previous
+ * range is searched.
+ */
+public final class TimeZoneSearchIndex {
+
+    private final Locale mLocale;
+    // Remainders of the search keys starting at each word start, sorted.
+    private final String[] mWords;
+    // Position of the item each word belongs to.
+    private final int[] mItemPositions;
+    private final int mItemCount;
+
+    private String mLastPrefix;
+    private int mLastStart;
+    private int mLastEnd;
+
+    @WorkerThread
+    public TimeZoneSearchIndex(@NonNull List<? extends BaseTimeZoneAdapter.AdapterItem> items,
+            @NonNull Locale locale) {
+        mLocale = locale;
+        mItemCount = items.size();
+        final BreakIterator breakIterator = BreakIterator.getWordInstance(locale);
+        final List<Entry> entries = new ArrayList<>();
+        for (int position = 0; position < mItemCount; position++) {
+            for (String searchKey : items.get(position).getSearchKeys()) {
+                searchKey = searchKey.toLowerCase(locale);
+                // The whole key matches even if it doesn't start with a word.
+                entries.add(new Entry(searchKey, position));
+                breakIterator.setText(searchKey);
+                for (int wordStart = 0, wordLimit = breakIterator.next();
+                        wordLimit != BreakIterator.DONE;
+                        wordStart = wordLimit, wordLimit = breakIterator.next()) {
+                    if (wordStart > 0 && breakIterator.getRuleStatus() != BreakIterator.WORD_NONE) {
+                        entries.add(new Entry(searchKey.substring(wordStart), position));
+                    }
+                }
+            }
+        }
+        entries.sort((a, b) -> a.mWord.compareTo(b.mWord));
+
+        mWords = new String[entries.size()];
+        mItemPositions = new int[entries.size()];
+        for (int i = 0; i < mWords.length; i++) {
+            mWords[i] = entries.get(i).mWord;
+            mItemPositions[i] = entries.get(i).mItemPosition;
+        }
+        mLastStart = 0;
+        mLastEnd = mWords.length;
+    }
+
+    /**
+     * Returns the positions of the items with a search key, or a word of a search key, starting
+     * with {@code prefix}. The match ignores case.
+     */
+    @NonNull
+    public synchronized BitSet findItems(@NonNull String prefix) {
+        final String normalized = prefix.toLowerCase(mLocale);
+        int start = 0;
+        int end = mWords.length;
+        if (mLastPrefix != null && normalized.startsWith(mLastPrefix)) {
+            start = mLastStart;
+            end = mLastEnd;
+        }
+        start = lowerBound(normalized, start, end);
+        int matchEnd = start;
+        while (matchEnd < end && mWords[matchEnd].startsWith(normalized)) {
+            matchEnd++;
+        }
+        mLastPrefix = normalized;
+        mLastStart = start;
+        mLastEnd = matchEnd;
+
+        final BitSet positions = new BitSet(mItemCount);
+        for (int i = start; i < matchEnd; i++) {
+            positions.set(mItemPositions[i]);
+        }
+        return positions;
+    }
+
+    private int lowerBound(String prefix, int start, int end) {
+        while (start < end) {
+            final int mid = (start + end) >>> 1;
+            if (mWords[mid].compareTo(prefix) < 0) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    private static class Entry {
+        final String mWord;
+        final int mItemPosition;
+
+        Entry(String word, int itemPosition) {
+            mWord = word;
+            mItemPosition = itemPosition;
+        }
+    }
+}
@@ -32,6 +32,8 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
+import com.android.settings.applications.InstalledPackageSnapshot;
+
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -112,7 +114,8 @@ public class AppPicker extends ListActivity {
         public AppListAdapter(Context context) {
             super(context, 0);
             mInflater = (LayoutInflater)context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            List<ApplicationInfo> pkgs = context.getPackageManager().getInstalledApplications(0);
+            List<ApplicationInfo> pkgs = InstalledPackageSnapshot.getInstance(context)
+                    .getInstalledApplications(context.getUserId(), /* flags */ 0);
             for (int i=0; i<pkgs.size(); i++) {
                 ApplicationInfo ai = pkgs.get(i);
                 if (ai.uid == Process.SYSTEM_UID) {
@@ -30,6 +30,7 @@ import android.os.Process;
 import android.os.UserHandle;
 
 import com.android.settings.R;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.applications.defaultapps.DefaultAppPickerFragment;
 import com.android.settingslib.applications.DefaultAppInfo;
 
@@ -79,7 +80,8 @@ public class DevelopmentAppPicker extends DefaultAppPickerFragment {
     protected List<DefaultAppInfo> getCandidates() {
         List<DefaultAppInfo> packageInfoList = new ArrayList<DefaultAppInfo>();
         Context context = getContext();
-        List<ApplicationInfo> installedApps = mPm.getInstalledApplications(0);
+        List<ApplicationInfo> installedApps = InstalledPackageSnapshot.getInstance(context)
+                .getInstalledApplications(context.getUserId(), /* flags */ 0);
         for (ApplicationInfo ai : installedApps) {
             if (ai.uid == Process.SYSTEM_UID) {
                 continue;
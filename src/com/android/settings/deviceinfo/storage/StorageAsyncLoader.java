@@ -24,7 +24,6 @@ import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
 import android.database.Cursor;
@@ -39,6 +38,7 @@ import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
@@ -57,16 +57,16 @@ public class StorageAsyncLoader
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
-    private PackageManager mPackageManager;
+    private InstalledPackageSnapshot mPackageSnapshot;
     private ArraySet<String> mSeenPackages;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
-            String uuid, StorageStatsSource source, PackageManager pm) {
+            String uuid, StorageStatsSource source, InstalledPackageSnapshot packageSnapshot) {
         super(context);
         mUserManager = userManager;
         mUuid = uuid;
         mStatsManager = source;
-        mPackageManager = pm;
+        mPackageSnapshot = packageSnapshot;
     }
 
     @Override
@@ -143,7 +143,7 @@ public class StorageAsyncLoader
     private StorageResult getAppsAndGamesSize(int userId) {
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
-                mPackageManager.getInstalledApplicationsAsUser(0, userId);
+                mPackageSnapshot.getInstalledApplications(userId, /* flags */ 0);
         final StorageResult result = new StorageResult();
         final UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
@@ -41,6 +41,7 @@ import com.android.settings.Utils;
 import com.android.settings.applications.appinfo.AppButtonsPreferenceController;
 import com.android.settings.applications.appinfo.ButtonActionDialogFragment;
 import com.android.settings.core.InstrumentedPreferenceFragment;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.fuelgauge.BatteryOptimizeHistoricalLogEntry.Action;
@@ -58,7 +59,6 @@ import com.android.settingslib.widget.LayoutPreference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Power usage detail fragment for each app, this fragment contains <br>
@@ -91,7 +91,8 @@ public class AdvancedPowerUsageDetail extends DashboardFragment
     private static final int REQUEST_UNINSTALL = 0;
     private static final int REQUEST_REMOVE_DEVICE_ADMIN = 1;
 
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mExecutor = SettingsTaskScheduler.getInstance()
+            .newSerialExecutor(SettingsTaskScheduler.Lane.MAINTENANCE, "AdvancedPowerUsageDetail");
 
     private AppButtonsPreferenceController mAppButtonsPreferenceController;
     private PowerUsageTimeController mPowerUsageTimeController;
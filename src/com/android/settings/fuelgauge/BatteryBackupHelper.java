@@ -16,7 +16,6 @@
 
 package com.android.settings.fuelgauge;
 
-import android.app.AppGlobals;
 import android.app.AppOpsManager;
 import android.app.backup.BackupDataInputStream;
 import android.app.backup.BackupDataOutput;
@@ -24,7 +23,6 @@ import android.app.backup.BackupHelper;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
-import android.content.pm.IPackageManager;
 import android.os.Build;
 import android.os.IDeviceIdleController;
 import android.os.ParcelFileDescriptor;
@@ -37,6 +35,7 @@ import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.fuelgauge.BatteryOptimizeHistoricalLogEntry.Action;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
@@ -75,7 +74,7 @@ public final class BatteryBackupHelper implements BackupHelper {
 
     @VisibleForTesting PowerAllowlistBackend mPowerAllowlistBackend;
     @VisibleForTesting IDeviceIdleController mIDeviceIdleController;
-    @VisibleForTesting IPackageManager mIPackageManager;
+    @VisibleForTesting InstalledPackageSnapshot mPackageSnapshot;
     @VisibleForTesting BatteryOptimizeUtils mBatteryOptimizeUtils;
 
     private byte[] mOptimizationModeBytes;
@@ -332,12 +331,12 @@ public final class BatteryBackupHelper implements BackupHelper {
         return mIDeviceIdleController;
     }
 
-    private IPackageManager getIPackageManager() {
-        if (mIPackageManager != null) {
-            return mIPackageManager;
+    private InstalledPackageSnapshot getPackageSnapshot() {
+        if (mPackageSnapshot != null) {
+            return mPackageSnapshot;
         }
-        mIPackageManager = AppGlobals.getPackageManager();
-        return mIPackageManager;
+        mPackageSnapshot = InstalledPackageSnapshot.getInstance(mContext);
+        return mPackageSnapshot;
     }
 
     private PowerAllowlistBackend getPowerAllowlistBackend() {
@@ -357,7 +356,7 @@ public final class BatteryBackupHelper implements BackupHelper {
         if (mTestApplicationInfoList != null) {
             return mTestApplicationInfoList;
         }
-        return BatteryOptimizeUtils.getInstalledApplications(mContext, getIPackageManager());
+        return BatteryOptimizeUtils.getInstalledApplications(mContext, getPackageSnapshot());
     }
 
     private void restoreBackupData(String dataKey, BackupDataInputStream data) {
@@ -24,6 +24,7 @@ import android.content.pm.IPackageManager;
 import android.content.pm.PackageManager;
 import android.content.pm.ParceledListSlice;
 import android.content.pm.UserInfo;
+import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArraySet;
@@ -32,6 +33,7 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.fuelgauge.BatteryOptimizeHistoricalLogEntry.Action;
 import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
 
@@ -167,17 +169,34 @@ public class BatteryOptimizeUtils {
     /** Gets the list of installed applications. */
     public static ArraySet<ApplicationInfo> getInstalledApplications(
             Context context, IPackageManager ipm) {
+        return getInstalledApplications(context, (flags, userId) -> {
+            @SuppressWarnings("unchecked")
+            final ParceledListSlice<ApplicationInfo> infoList =
+                    ipm.getInstalledApplications(flags, userId);
+            return infoList != null ? infoList.getList() : null;
+        });
+    }
+
+    /**
+     * Gets the list of installed applications from the shared {@link InstalledPackageSnapshot},
+     * for callers that don't need to see changes the snapshot wasn't notified of yet.
+     */
+    public static ArraySet<ApplicationInfo> getInstalledApplications(
+            Context context, InstalledPackageSnapshot snapshot) {
+        return getInstalledApplications(context,
+                (flags, userId) -> snapshot.getInstalledApplications(userId, flags));
+    }
+
+    private static ArraySet<ApplicationInfo> getInstalledApplications(
+            Context context, ApplicationLister lister) {
         final ArraySet<ApplicationInfo> applications = new ArraySet<>();
         final UserManager um = context.getSystemService(UserManager.class);
         for (UserInfo userInfo : um.getProfiles(UserHandle.myUserId())) {
             try {
-                @SuppressWarnings("unchecked")
-                final ParceledListSlice<ApplicationInfo> infoList =
-                        ipm.getInstalledApplications(
-                                userInfo.isAdmin() ? RETRIEVE_FLAG_ADMIN : RETRIEVE_FLAG,
-                                userInfo.id);
+                final List<ApplicationInfo> infoList = lister.list(
+                        userInfo.isAdmin() ? RETRIEVE_FLAG_ADMIN : RETRIEVE_FLAG, userInfo.id);
                 if (infoList != null) {
-                    applications.addAll(infoList.getList());
+                    applications.addAll(infoList);
                 }
             } catch (Exception e) {
                 Log.e(TAG, "getInstalledApplications() is failed", e);
@@ -358,4 +377,8 @@ public class BatteryOptimizeUtils {
                         allowListed,
                         getAppOptimizationMode(appStandbyMode, allowListed));
     }
+
+    private interface ApplicationLister {
+        List<ApplicationInfo> list(int flags, int userId) throws RemoteException;
+    }
 }
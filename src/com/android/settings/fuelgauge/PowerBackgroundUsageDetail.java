@@ -34,6 +34,7 @@ import android.widget.CompoundButton.OnCheckedChangeListener;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
@@ -50,7 +51,6 @@ import com.android.settingslib.widget.SelectorWithWidgetPreference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /** Allow background usage fragment for each app */
 public class PowerBackgroundUsageDetail extends DashboardFragment
@@ -68,7 +68,9 @@ public class PowerBackgroundUsageDetail extends DashboardFragment
     private static final String KEY_ALLOW_BACKGROUND_USAGE = "allow_background_usage";
     private static final String KEY_FOOTER_PREFERENCE = "app_usage_footer_preference";
 
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mExecutor =
+            SettingsTaskScheduler.getInstance().newSerialExecutor(
+                    SettingsTaskScheduler.Lane.MAINTENANCE, "PowerBackgroundUsageDetail");
 
     @VisibleForTesting LayoutPreference mHeaderPreference;
     @VisibleForTesting ApplicationsState mState;
@@ -35,6 +35,7 @@ import androidx.loader.content.Loader;
 
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.fuelgauge.BatteryBroadcastReceiver;
 import com.android.settings.fuelgauge.PowerUsageFeatureProvider;
 import com.android.settings.overlay.FeatureFactory;
@@ -51,7 +52,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Predicate;
 
 /** Advanced power usage. */
@@ -71,7 +71,8 @@ public class PowerUsageAdvanced extends PowerUsageBase {
     private long mResumeTimestamp;
     private Map<Integer, Map<Integer, BatteryDiffData>> mBatteryUsageMap;
 
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mExecutor = SettingsTaskScheduler.getInstance()
+            .newSerialExecutor(SettingsTaskScheduler.Lane.PREFETCH, "PowerUsageAdvanced");
     private final Handler mHandler = new Handler(Looper.getMainLooper());
     private final ContentObserver mBatteryObserver =
             new ContentObserver(mHandler) {
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds main thread work that is not needed for the first frame and runs it when the main
+ * looper goes idle after that frame has been drawn. If no frame is observed within
+ * {@link #FIRST_FRAME_TIMEOUT_MS} the work is released anyway. First frame listeners only run
+ * once a frame is really drawn, so the timeout is never reported as a first frame.
+ */
+public class DeferredInitScheduler {
+
+    @VisibleForTesting
+    static final long FIRST_FRAME_TIMEOUT_MS = 1000;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<MessageQueue.IdleHandler> mPending = new ArrayList<>();
+    private final List<Runnable> mFirstFrameListeners = new ArrayList<>();
+    private boolean mReleased;
+    private boolean mFirstFrameDrawn;
+    private boolean mCancelled;
+
+    private final Runnable mReleaseRunnable = this::release;
+
+    /**
+     * Starts watching {@code view} for its first draw. Deferred work is released once it happens.
+     */
+    public void watchFirstFrame(@NonNull View view) {
+        final ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                // Listeners can't be removed while dispatching.
+                mHandler.postAtFrontOfQueue(() -> {
+                    if (view.getViewTreeObserver().isAlive()) {
+                        view.getViewTreeObserver().removeOnDrawListener(this);
+                    }
+                    onFirstFrameDrawn();
+                });
+            }
+        };
+        view.getViewTreeObserver().addOnDrawListener(listener);
+        mHandler.postDelayed(mReleaseRunnable, FIRST_FRAME_TIMEOUT_MS);
+    }
+
+    /**
+     * Runs {@code listener} right after the first frame has been drawn. It doesn't run when the
+     * deferred work is only released by the timeout.
+     */
+    public void addFirstFrameListener(@NonNull Runnable listener) {
+        if (mFirstFrameDrawn) {
+            listener.run();
+        } else {
+            mFirstFrameListeners.add(listener);
+        }
+    }
+
+    /** Runs {@code task} on the main thread once idle after the first frame. */
+    public void runWhenIdle(@NonNull String name, @NonNull Runnable task) {
+        final MessageQueue.IdleHandler idleHandler = () -> {
+            if (!mCancelled) {
+                Trace.beginSection("Settings:deferred#" + name);
+                try {
+                    task.run();
+                } finally {
+                    Trace.endSection();
+                }
+            }
+            return false;
+        };
+        if (mReleased) {
+            Looper.myQueue().addIdleHandler(idleHandler);
+        } else {
+            mPending.add(idleHandler);
+        }
+    }
+
+    /** Drops all the work that has not run yet. */
+    public void cancel() {
+        mCancelled = true;
+        mHandler.removeCallbacks(mReleaseRunnable);
+        mPending.clear();
+        mFirstFrameListeners.clear();
+    }
+
+    @VisibleForTesting
+    void onFirstFrameDrawn() {
+        if (mFirstFrameDrawn || mCancelled) {
+            return;
+        }
+        mFirstFrameDrawn = true;
+        for (Runnable listener : mFirstFrameListeners) {
+            listener.run();
+        }
+        mFirstFrameListeners.clear();
+        release();
+    }
+
+    private void release() {
+        if (mReleased || mCancelled) {
+            return;
+        }
+        mReleased = true;
+        mHandler.removeCallbacks(mReleaseRunnable);
+        final MessageQueue queue = Looper.myQueue();
+        for (MessageQueue.IdleHandler idleHandler : mPending) {
+            queue.addIdleHandler(idleHandler);
+        }
+        mPending.clear();
+    }
+}
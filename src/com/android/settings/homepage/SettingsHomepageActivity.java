@@ -120,6 +120,11 @@ public class SettingsHomepageActivity extends FragmentActivity implements
     private SplitControllerCallbackAdapter mSplitControllerAdapter;
     private SplitInfoCallback mCallback;
 
+    private StartupTimeline mStartupTimeline;
+    private final DeferredInitScheduler mDeferredInit = new DeferredInitScheduler();
+    // Whether the contextual cards couldn't be shown because the state was already saved.
+    private boolean mContextualCardsDeferred;
+
     /** A listener receiving homepage loaded events. */
     public interface HomepageLoadedListener {
         /** Called when the homepage is loaded. */
@@ -181,7 +186,10 @@ public class SettingsHomepageActivity extends FragmentActivity implements
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mStartupTimeline = new StartupTimeline(TAG);
+        mStartupTimeline.beginPhase("superOnCreate");
         super.onCreate(savedInstanceState);
+        mStartupTimeline.endPhase();
 
         mIsEmbeddingActivityEnabled = ActivityEmbeddingUtils.isEmbeddingActivityEnabled(this);
         if (mIsEmbeddingActivityEnabled) {
@@ -199,21 +207,30 @@ public class SettingsHomepageActivity extends FragmentActivity implements
                 intent.removeFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 startActivityAsUser(intent, um.getProfileParent(userInfo.id).getUserHandle());
                 finish();
+                mStartupTimeline = null;
                 return;
             }
         }
 
+        // Read the cached summaries while the layout inflates, before TopLevelSettings needs them.
+        TopLevelSummaryStore.preload(this);
+
+        mStartupTimeline.beginPhase("setContentView");
         setupEdgeToEdge();
         setContentView(R.layout.settings_homepage_container);
+        mDeferredInit.addFirstFrameListener(mStartupTimeline::markFirstFrame);
+        mDeferredInit.watchFirstFrame(getWindow().getDecorView());
 
         mIsTwoPane = ActivityEmbeddingUtils.isAlreadyEmbedded(this);
 
+        mStartupTimeline.beginPhase("initContainer");
         updateAppBarMinHeight();
         initHomepageContainer();
         updateHomepageAppBar();
         updateHomepageBackground();
         mLoadedListeners = new ArraySet<>();
 
+        mStartupTimeline.beginPhase("initSearchBar");
         initSearchBarView();
 
         getLifecycle().addObserver(new HideNonSystemOverlayMixin(this));
@@ -223,16 +240,19 @@ public class SettingsHomepageActivity extends FragmentActivity implements
         final String highlightMenuKey = getHighlightMenuKey();
         // Only allow features on high ram devices.
         if (!getSystemService(ActivityManager.class).isLowRamDevice()) {
+            mStartupTimeline.beginPhase("initAvatarAndSuggestions");
             initAvatarView();
             final boolean scrollNeeded = mIsEmbeddingActivityEnabled
                     && !TextUtils.equals(getString(DEFAULT_HIGHLIGHT_MENU_KEY), highlightMenuKey);
             showSuggestionFragment(scrollNeeded);
             if (FeatureFlagUtils.isEnabled(this, FeatureFlags.CONTEXTUAL_HOME)) {
-                showFragment(() -> new ContextualCardsFragment(), R.id.contextual_cards_content);
+                // Contextual cards are loaded below the fold, so they don't block the first frame.
+                scheduleContextualCards();
                 ((FrameLayout) findViewById(R.id.main_content))
                         .getLayoutTransition().enableTransitionType(LayoutTransition.CHANGING);
             }
         }
+        mStartupTimeline.beginPhase("showMainFragment");
         mMainFragment = showFragment(() -> {
             final TopLevelSettings fragment = new TopLevelSettings();
             fragment.getArguments().putString(SettingsActivity.EXTRA_FRAGMENT_ARG_KEY,
@@ -252,10 +272,29 @@ public class SettingsHomepageActivity extends FragmentActivity implements
             initSplitPairRules();
         }
 
+        mStartupTimeline.beginPhase("updateLayout");
         updateHomepagePaddings();
         updateSplitLayout();
 
         enableTaskLocaleOverride();
+        mStartupTimeline.endPhase();
+    }
+
+    @Override
+    public void reportFullyDrawn() {
+        if (mStartupTimeline != null) {
+            mStartupTimeline.markFullyDrawn();
+        }
+        super.reportFullyDrawn();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mDeferredInit.cancel();
+        if (mStartupTimeline != null) {
+            mStartupTimeline.finish();
+        }
+        super.onDestroy();
     }
 
     @VisibleForTesting
@@ -267,6 +306,10 @@ public class SettingsHomepageActivity extends FragmentActivity implements
     protected void onStart() {
         ((SettingsApplication) getApplication()).setHomeActivity(this);
         super.onStart();
+        if (mContextualCardsDeferred) {
+            mContextualCardsDeferred = false;
+            scheduleContextualCards();
+        }
         if (mIsEmbeddingActivityEnabled) {
             final SplitController splitController = SplitController.getInstance(this);
             mSplitControllerAdapter = new SplitControllerCallbackAdapter(splitController);
@@ -367,17 +410,39 @@ public class SettingsHomepageActivity extends FragmentActivity implements
         }
     }
 
+    private void scheduleContextualCards() {
+        mDeferredInit.runWhenIdle("contextualCards", () -> {
+            if (isFinishing()) {
+                return;
+            }
+            if (getSupportFragmentManager().isStateSaved()) {
+                // Fragments can't be added until the activity is started again.
+                mContextualCardsDeferred = true;
+                return;
+            }
+            showFragment(() -> new ContextualCardsFragment(), R.id.contextual_cards_content);
+        });
+    }
+
     private void initAvatarView() {
         final ImageView avatarView = findViewById(R.id.account_avatar);
         final ImageView avatarTwoPaneView = findViewById(R.id.account_avatar_two_pane_version);
         if (AvatarViewMixin.isAvatarSupported(this)) {
             avatarView.setVisibility(View.VISIBLE);
-            getLifecycle().addObserver(new AvatarViewMixin(this, avatarView));
-
             if (mIsEmbeddingActivityEnabled) {
                 avatarTwoPaneView.setVisibility(View.VISIBLE);
-                getLifecycle().addObserver(new AvatarViewMixin(this, avatarTwoPaneView));
             }
+            // Reserve the space now but load the avatar after the first frame. The mixins catch
+            // up with the current lifecycle state when they are added.
+            mDeferredInit.runWhenIdle("avatar", () -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                getLifecycle().addObserver(new AvatarViewMixin(this, avatarView));
+                if (mIsEmbeddingActivityEnabled) {
+                    getLifecycle().addObserver(new AvatarViewMixin(this, avatarTwoPaneView));
+                }
+            });
         }
     }
 
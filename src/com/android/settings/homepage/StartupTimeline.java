@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the startup phases of one launch as {@link Trace} sections and as a timeline that can
+ * be dumped afterwards. A launch is finished once both the first frame and
+ * {@code reportFullyDrawn} have been recorded; the last {@link #MAX_TIMELINES} finished launches
+ * are kept for {@link #getRecentTimelines()}.
+ */
+public class StartupTimeline {
+
+    private static final String TAG = "StartupTimeline";
+    private static final String TRACE_PREFIX = "Settings:";
+
+    @VisibleForTesting
+    static final int MAX_TIMELINES = 5;
+
+    private static final ArrayDeque<String> sRecentTimelines = new ArrayDeque<>();
+
+    private final String mName;
+    private final long mStartTime;
+    private final StringBuilder mPhases = new StringBuilder();
+    private String mCurrentPhase;
+    private long mCurrentPhaseStart;
+    private long mFirstFrameLatency = -1;
+    private long mFullyDrawnLatency = -1;
+    private boolean mRecorded;
+
+    public StartupTimeline(@NonNull String name) {
+        mName = name;
+        mStartTime = SystemClock.elapsedRealtime();
+    }
+
+    /** Starts a phase, ending the current one if any. */
+    public void beginPhase(@NonNull String phase) {
+        endPhase();
+        Trace.beginSection(TRACE_PREFIX + mName + "#" + phase);
+        mCurrentPhase = phase;
+        mCurrentPhaseStart = SystemClock.elapsedRealtime();
+    }
+
+    /** Ends the current phase. Does nothing if no phase is running. */
+    public void endPhase() {
+        if (mCurrentPhase == null) {
+            return;
+        }
+        Trace.endSection();
+        mPhases.append(' ').append(mCurrentPhase).append('=')
+                .append(SystemClock.elapsedRealtime() - mCurrentPhaseStart).append("ms");
+        mCurrentPhase = null;
+    }
+
+    /** Records the time to the first drawn frame of this launch. */
+    public void markFirstFrame() {
+        if (mFirstFrameLatency < 0) {
+            mFirstFrameLatency = SystemClock.elapsedRealtime() - mStartTime;
+            maybeRecord();
+        }
+    }
+
+    /** Records the time to {@code reportFullyDrawn} of this launch. */
+    public void markFullyDrawn() {
+        if (mFullyDrawnLatency < 0) {
+            mFullyDrawnLatency = SystemClock.elapsedRealtime() - mStartTime;
+            maybeRecord();
+        }
+    }
+
+    public long getFirstFrameLatency() {
+        return mFirstFrameLatency;
+    }
+
+    public long getFullyDrawnLatency() {
+        return mFullyDrawnLatency;
+    }
+
+    /** Records the timeline even if the launch did not reach both milestones. */
+    public void finish() {
+        endPhase();
+        if (!mRecorded) {
+            record();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mName + ": firstFrame=" + mFirstFrameLatency + "ms fullyDrawn="
+                + mFullyDrawnLatency + "ms" + mPhases;
+    }
+
+    /** Returns the recently finished timelines, oldest first. */
+    public static List<String> getRecentTimelines() {
+        synchronized (sRecentTimelines) {
+            return new ArrayList<>(sRecentTimelines);
+        }
+    }
+
+    private void maybeRecord() {
+        if (!mRecorded && mFirstFrameLatency >= 0 && mFullyDrawnLatency >= 0) {
+            record();
+        }
+    }
+
+    private void record() {
+        mRecorded = true;
+        final String timeline = toString();
+        Log.i(TAG, timeline);
+        synchronized (sRecentTimelines) {
+            if (sRecentTimelines.size() >= MAX_TIMELINES) {
+                sRecentTimelines.removeFirst();
+            }
+            sRecentTimelines.addLast(timeline);
+        }
+    }
+}
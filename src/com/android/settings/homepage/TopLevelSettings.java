@@ -25,7 +25,10 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
@@ -42,6 +45,7 @@ import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.activityembedding.ActivityEmbeddingRulesController;
 import com.android.settings.activityembedding.ActivityEmbeddingUtils;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
@@ -49,15 +53,23 @@ import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.support.SupportPreferenceController;
 import com.android.settings.widget.HomepagePreference;
 import com.android.settings.widget.HomepagePreferenceLayoutHelper.HomepagePreferenceLayout;
+import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.Instrumentable;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @SearchIndexable(forTarget = MOBILE)
 public class TopLevelSettings extends DashboardFragment implements SplitLayoutListener,
         PreferenceFragmentCompat.OnPreferenceStartFragmentCallback {
 
     private static final String TAG = "TopLevelSettings";
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
     private static final String SAVED_HIGHLIGHT_MIXIN = "highlight_mixin";
     private static final String PREF_KEY_SUPPORT = "top_level_support";
 
@@ -67,6 +79,11 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
     private boolean mScrollNeeded = true;
     private boolean mFirstStarted = true;
     private ActivityEmbeddingController mActivityEmbeddingController;
+    private TopLevelSummaryStore mSummaryStore;
+    private boolean mFreshRenderLogged;
+    // Keys of the summaries restored from the snapshot, until the controllers first update them.
+    private final Set<String> mRefreshPendingKeys = new ArraySet<>();
+    private final List<AbstractPreferenceController> mRefreshControllers = new ArrayList<>();
 
     public TopLevelSettings() {
         final Bundle args = new Bundle();
@@ -100,6 +117,7 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
+        mSummaryStore = new TopLevelSummaryStore(context);
         HighlightableMenu.fromXml(context, getPreferenceScreenResId());
         use(SupportPreferenceController.class).setActivity(getActivity());
     }
@@ -208,6 +226,16 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         super.onCreatePreferences(savedInstanceState, rootKey);
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (mSummaryStore != null && screen != null) {
+            final long start = SystemClock.elapsedRealtime();
+            final int restored = mSummaryStore.applyTo(screen);
+            mRefreshPendingKeys.addAll(mSummaryStore.getRestoredKeys());
+            if (DEBUG) {
+                Log.d(TAG, "Cached render: " + restored + " summaries in "
+                        + (SystemClock.elapsedRealtime() - start) + "ms");
+            }
+        }
         int tintColor = Utils.getHomepageIconColor(getContext());
         iteratePreferences(preference -> {
             Drawable icon = preference.getIcon();
@@ -217,6 +245,81 @@ public class TopLevelSettings extends DashboardFragment implements SplitLayoutLi
         });
     }
 
+    @Override
+    protected void updatePreferenceStates() {
+        final long start = SystemClock.elapsedRealtime();
+        super.updatePreferenceStates();
+        mRefreshPendingKeys.clear();
+        if (DEBUG && !mFreshRenderLogged) {
+            mFreshRenderLogged = true;
+            Log.d(TAG, "Fresh render: " + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+        refreshRestoredSummaries();
+    }
+
+    @Override
+    protected void updatePreferenceState(AbstractPreferenceController controller,
+            Preference preference) {
+        if (mRefreshPendingKeys.remove(controller.getPreferenceKey())) {
+            // Keeps showing the restored summary until the live one is computed.
+            mRefreshControllers.add(controller);
+            return;
+        }
+        super.updatePreferenceState(controller, preference);
+    }
+
+    /**
+     * Computes the live summaries of the entries restored from the snapshot in the background,
+     * then updates the entries whose summary changed.
+     */
+    private void refreshRestoredSummaries() {
+        if (mRefreshControllers.isEmpty()) {
+            return;
+        }
+        final List<AbstractPreferenceController> controllers =
+                new ArrayList<>(mRefreshControllers);
+        mRefreshControllers.clear();
+        SettingsTaskScheduler.getInstance().submit(this, SettingsTaskScheduler.Lane.PREFETCH,
+                TAG + ".refreshSummaries", () -> {
+                    final Map<AbstractPreferenceController, CharSequence> summaries =
+                            new ArrayMap<>(controllers.size());
+                    for (AbstractPreferenceController controller : controllers) {
+                        summaries.put(controller, controller.getSummary());
+                    }
+                    ThreadUtils.postOnMainThread(() -> onRestoredSummariesRefreshed(summaries));
+                });
+    }
+
+    private void onRestoredSummariesRefreshed(
+            Map<AbstractPreferenceController, CharSequence> summaries) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (!isAdded() || screen == null) {
+            return;
+        }
+        for (Map.Entry<AbstractPreferenceController, CharSequence> entry : summaries.entrySet()) {
+            final Preference preference = screen.findPreference(entry.getKey().getPreferenceKey());
+            if (preference == null) {
+                continue;
+            }
+            if (entry.getValue() != null) {
+                // Only rebinds if the text changed, and confirms the restored summary otherwise.
+                preference.setSummary(entry.getValue());
+            } else {
+                // No summary yet, or one the controller loads its own way.
+                entry.getKey().updateState(preference);
+            }
+        }
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen != null && mSummaryStore != null) {
+            mSummaryStore.save(screen);
+        }
+    }
+
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
+
+import com.android.settings.R;
+import com.android.settings.core.SettingsTaskScheduler;
+import com.android.settings.widget.HomepagePreferenceLayoutHelper.HomepagePreferenceLayout;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the last rendered summary of each top level entry, so that a cold started homepage
+ * can show them before the controllers have computed the live values. Snapshots taken in another
+ * locale are ignored.
+ *
+ * <p>The snapshot is read on a background thread, started by {@link #preload} as early as
+ * possible. The main thread never waits for it: if it isn't read yet when the homepage is first
+ * rendered, nothing is restored.
+ *
+ * <p>A restored summary is only saved again once it is confirmed, i.e. its entry got a summary
+ * set after it was restored, so that an entry whose controller no longer provides one doesn't
+ * keep its old summary forever.
+ */
+public class TopLevelSummaryStore {
+
+    private static final String TAG = "TopLevelSummaryStore";
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    @VisibleForTesting
+    static final String PREF_FILE = "top_level_summaries";
+    private static final String KEY_LOCALE = "_locale";
+    private static final String KEY_PREFIX = "summary_";
+
+    private static final Object sLock = new Object();
+    // The stored preferences, or null until they are read.
+    @GuardedBy("sLock")
+    private static Map<String, String> sSnapshot;
+    @GuardedBy("sLock")
+    private static Future<?> sPreload;
+
+    private final SharedPreferences mPrefs;
+    private final String mLocaleTag;
+    private final CharSequence mPlaceholder;
+    // The summaries restored by applyTo(), keyed by preference key.
+    private final Map<String, String> mRestored = new ArrayMap<>();
+    // How many times each restored preference had its summary set when it was restored.
+    private final Map<String, Integer> mRestoredSetCounts = new ArrayMap<>();
+
+    public TopLevelSummaryStore(Context context) {
+        preload(context);
+        mPrefs = getPrefs(context);
+        mPlaceholder = context.getText(R.string.summary_placeholder);
+        final Locale locale = context.getResources().getConfiguration().getLocales().get(0);
+        mLocaleTag = locale != null ? locale.toLanguageTag() : "";
+    }
+
+    /** Starts reading the stored summaries in the background, unless they are read already. */
+    public static void preload(Context context) {
+        synchronized (sLock) {
+            if (sSnapshot != null || sPreload != null) {
+                return;
+            }
+            final SharedPreferences prefs = getPrefs(context);
+            sPreload = SettingsTaskScheduler.getInstance().submit(
+                    SettingsTaskScheduler.Lane.UI_CRITICAL, TAG + ".preload", () -> {
+                        final Map<String, String> snapshot = read(prefs);
+                        synchronized (sLock) {
+                            // A save while reading already knows the newer summaries.
+                            if (sSnapshot == null) {
+                                sSnapshot = snapshot;
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Shows the stored summary on every direct child of {@code group} that has no summary yet, or
+     * only the placeholder.
+     *
+     * @return the number of summaries restored from the snapshot
+     */
+    public int applyTo(PreferenceGroup group) {
+        final Map<String, String> snapshot;
+        synchronized (sLock) {
+            snapshot = sSnapshot;
+        }
+        if (snapshot == null) {
+            if (DEBUG) {
+                Log.d(TAG, "Snapshot not read yet");
+            }
+            return 0;
+        }
+        if (!TextUtils.equals(snapshot.get(KEY_LOCALE), mLocaleTag)) {
+            return 0;
+        }
+        int restored = 0;
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            final Preference preference = group.getPreference(i);
+            if (TextUtils.isEmpty(preference.getKey()) || hasSummary(preference)) {
+                continue;
+            }
+            final String summary = snapshot.get(KEY_PREFIX + preference.getKey());
+            if (summary != null) {
+                preference.setSummary(summary);
+                mRestored.put(preference.getKey(), summary);
+                mRestoredSetCounts.put(preference.getKey(), getSummarySetCount(preference));
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /** Returns the keys of the preferences {@link #applyTo} restored a summary to. */
+    public Set<String> getRestoredKeys() {
+        return Collections.unmodifiableSet(mRestored.keySet());
+    }
+
+    /**
+     * Replaces the stored snapshot with the current summaries of the direct children of
+     * {@code group}. Entries without a summary, and restored summaries that were not confirmed,
+     * are dropped from it. Only the entries that changed are written.
+     */
+    public void save(PreferenceGroup group) {
+        final Map<String, String> snapshot = new ArrayMap<>();
+        snapshot.put(KEY_LOCALE, mLocaleTag);
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            final Preference preference = group.getPreference(i);
+            if (TextUtils.isEmpty(preference.getKey()) || !hasSummary(preference)
+                    || !isConfirmed(preference)) {
+                continue;
+            }
+            snapshot.put(KEY_PREFIX + preference.getKey(), preference.getSummary().toString());
+        }
+        final Map<String, String> previous;
+        synchronized (sLock) {
+            if (snapshot.equals(sSnapshot)) {
+                return;
+            }
+            previous = sSnapshot;
+            sSnapshot = snapshot;
+        }
+        final SharedPreferences.Editor editor = mPrefs.edit();
+        if (previous == null) {
+            // What is stored is unknown, replace all of it.
+            editor.clear();
+        } else {
+            for (String key : previous.keySet()) {
+                if (!snapshot.containsKey(key)) {
+                    editor.remove(key);
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+            if (previous == null
+                    || !TextUtils.equals(previous.get(entry.getKey()), entry.getValue())) {
+                editor.putString(entry.getKey(), entry.getValue());
+            }
+        }
+        editor.apply();
+    }
+
+    @VisibleForTesting
+    static void awaitPreload() throws Exception {
+        final Future<?> preload;
+        synchronized (sLock) {
+            preload = sPreload;
+        }
+        if (preload != null) {
+            preload.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    static void resetSnapshot() {
+        synchronized (sLock) {
+            if (sPreload != null) {
+                sPreload.cancel(false /* mayInterruptIfRunning */);
+            }
+            sPreload = null;
+            sSnapshot = null;
+        }
+    }
+
+    private boolean hasSummary(Preference preference) {
+        final CharSequence summary = preference.getSummary();
+        return !TextUtils.isEmpty(summary) && !TextUtils.equals(summary, mPlaceholder);
+    }
+
+    private boolean isConfirmed(Preference preference) {
+        final String restored = mRestored.get(preference.getKey());
+        if (restored == null || !TextUtils.equals(preference.getSummary(), restored)) {
+            return true;
+        }
+        // Setting the same summary again doesn't change it, but still confirms it.
+        final int setCount = getSummarySetCount(preference);
+        return setCount >= 0 && setCount > mRestoredSetCounts.get(preference.getKey());
+    }
+
+    private static int getSummarySetCount(Preference preference) {
+        return preference instanceof HomepagePreferenceLayout
+                ? ((HomepagePreferenceLayout) preference).getHelper().getSummarySetCount()
+                : -1;
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        final Context appContext = context.getApplicationContext();
+        return (appContext != null ? appContext : context)
+                .getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE);
+    }
+
+    private static Map<String, String> read(SharedPreferences prefs) {
+        final Map<String, ?> stored = prefs.getAll();
+        final Map<String, String> snapshot = new ArrayMap<>(stored.size());
+        for (Map.Entry<String, ?> entry : stored.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                snapshot.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return snapshot;
+    }
+}
@@ -33,6 +33,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
@@ -40,8 +41,8 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -187,12 +188,16 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
+        // One thread per candidate: the timeout starts when a checker is queued, so checkers
+        // must not wait for threads of the shared lane.
+        final ExecutorService executor = SettingsTaskScheduler.getInstance()
+                .newDedicatedExecutor(SettingsTaskScheduler.Lane.UI_CRITICAL, TAG,
+                        candidates.size());
         final List<ContextualCard> cards = new ArrayList<>();
         List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
 
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
+        final List<Callable<ContextualCard>> checkers = candidates.stream()
+                .map(this::createEligibleCardChecker)
                 .collect(Collectors.toList());
         try {
             eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
@@ -223,6 +228,11 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         return cards;
     }
 
+    @VisibleForTesting
+    Callable<ContextualCard> createEligibleCardChecker(ContextualCard card) {
+        return new EligibleCardChecker(mContext, card);
+    }
+
     private boolean isLargeCard(ContextualCard card) {
         return card.getSliceUri().equals(BLUETOOTH_DEVICES_SLICE_URI);
     }
@@ -18,16 +18,16 @@ package com.android.settings.inputmethod;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.database.MatrixCursor;
 import android.provider.UserDictionary;
-import android.util.ArraySet;
+import android.text.TextUtils;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.loader.content.CursorLoader;
 
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.Set;
 
 public class UserDictionaryCursorLoader extends CursorLoader {
 
@@ -38,9 +38,17 @@ public class UserDictionaryCursorLoader extends CursorLoader {
             UserDictionary.Words.SHORTCUT
     };
 
-    // The index of the shortcut in the above array.
+    // The index of the word and the shortcut in the above array.
+    static final int INDEX_WORD = 1;
     static final int INDEX_SHORTCUT = 2;
 
+    // Case-insensitive sort that keeps exact duplicates next to each other.
+    private static final String QUERY_SORT_ORDER = "UPPER(" + UserDictionary.Words.WORD + "), "
+            + UserDictionary.Words.WORD + ", " + UserDictionary.Words.SHORTCUT;
+
+    // Minimum time between two reloads triggered by dictionary changes.
+    private static final long UPDATE_THROTTLE_MS = 500;
+
     // Either the locale is empty (means the word is applicable to all locales)
     // or the word equals our current locale
     private static final String QUERY_SELECTION =
@@ -60,42 +68,137 @@ public class UserDictionaryCursorLoader extends CursorLoader {
     // human-readable, like "all_locales" and "current_locales" strings, provided they
     // can be guaranteed not to match locales that may exist.
     private final String mLocale;
+    // Created here because its handler needs the looper of the thread creating the loader.
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
 
     public UserDictionaryCursorLoader(Context context, String locale) {
         super(context);
         mLocale = locale;
+        setUpdateThrottle(UPDATE_THROTTLE_MS);
     }
 
     @Override
     public Cursor loadInBackground() {
-        final MatrixCursor result = new MatrixCursor(QUERY_PROJECTION);
         final Cursor candidate;
         if ("".equals(mLocale)) {
             // Case-insensitive sort
             candidate = getContext().getContentResolver().query(
                     UserDictionary.Words.CONTENT_URI, QUERY_PROJECTION,
-                    QUERY_SELECTION_ALL_LOCALES, null,
-                    "UPPER(" + UserDictionary.Words.WORD + ")");
+                    QUERY_SELECTION_ALL_LOCALES, null, QUERY_SORT_ORDER);
         } else {
             final String queryLocale = null != mLocale ? mLocale : Locale.getDefault().toString();
             candidate = getContext().getContentResolver().query(UserDictionary.Words.CONTENT_URI,
                     QUERY_PROJECTION, QUERY_SELECTION,
-                    new String[]{queryLocale}, "UPPER(" + UserDictionary.Words.WORD + ")");
+                    new String[]{queryLocale}, QUERY_SORT_ORDER);
         }
-        final Set<Integer> hashSet = new ArraySet<>();
-        for (candidate.moveToFirst(); !candidate.isAfterLast(); candidate.moveToNext()) {
-            final int id = candidate.getInt(0);
-            final String word = candidate.getString(1);
-            final String shortcut = candidate.getString(2);
-            final int hash = Objects.hash(word, shortcut);
-            if (hashSet.contains(hash)) {
-                continue;
-            }
-            hashSet.add(hash);
-            result.addRow(new Object[]{id, word, shortcut});
+        if (candidate == null) {
+            return new MatrixCursor(QUERY_PROJECTION);
         }
-        // The cursor needs to be closed after use, otherwise it will cause resource leakage
-        candidate.close();
+        final Cursor result = new DistinctWordCursor(candidate);
+        // Reload when the dictionary changes, the update throttle coalesces bursts of edits.
+        result.registerContentObserver(mObserver);
         return result;
     }
+
+    /**
+     * Hides rows that repeat the word and shortcut of the previous row. The rows are sorted so
+     * that exact duplicates are adjacent, so only the positions of the kept rows are stored. All
+     * the rows are still read once when the cursor is created, to find the duplicates.
+     */
+    @VisibleForTesting
+    static class DistinctWordCursor extends CursorWrapper {
+        private int[] mPositions;
+        private int mCount;
+        private int mPosition = -1;
+
+        DistinctWordCursor(Cursor cursor) {
+            super(cursor);
+            mPositions = new int[Math.max(cursor.getCount(), 0)];
+            String lastWord = null;
+            String lastShortcut = null;
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                final String word = cursor.getString(INDEX_WORD);
+                final String shortcut = cursor.getString(INDEX_SHORTCUT);
+                if (mCount > 0 && TextUtils.equals(word, lastWord)
+                        && TextUtils.equals(shortcut, lastShortcut)) {
+                    continue;
+                }
+                if (mCount == mPositions.length) {
+                    mPositions = Arrays.copyOf(mPositions, Math.max(mCount * 2, 16));
+                }
+                mPositions[mCount++] = cursor.getPosition();
+                lastWord = word;
+                lastShortcut = shortcut;
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (position >= mCount) {
+                mPosition = mCount;
+                return false;
+            }
+            if (position < 0) {
+                mPosition = -1;
+                return false;
+            }
+            mPosition = position;
+            return super.moveToPosition(mPositions[position]);
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moveToPosition(mPosition + offset);
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moveToPosition(0);
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moveToPosition(mCount - 1);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moveToPosition(mPosition + 1);
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return moveToPosition(mPosition - 1);
+        }
+
+        @Override
+        public boolean isFirst() {
+            return mCount != 0 && mPosition == 0;
+        }
+
+        @Override
+        public boolean isLast() {
+            return mCount != 0 && mPosition == mCount - 1;
+        }
+
+        @Override
+        public boolean isBeforeFirst() {
+            return mCount == 0 || mPosition == -1;
+        }
+
+        @Override
+        public boolean isAfterLast() {
+            return mCount == 0 || mPosition == mCount;
+        }
+    }
 }
@@ -132,7 +132,6 @@ public class UserDictionarySettings extends ListFragment implements Instrumentab
     public void onResume() {
         super.onResume();
         mVisibilityLoggerMixin.onResume();
-        getLoaderManager().restartLoader(LOADER_ID, null, this /* callback */);
     }
 
     private ListAdapter createAdapter() {
@@ -240,7 +239,13 @@ public class UserDictionarySettings extends ListFragment implements Instrumentab
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         mCursor = data;
-        getListView().setAdapter(createAdapter());
+        final ListAdapter adapter = getListView().getAdapter();
+        if (adapter instanceof MyAdapter) {
+            // Keep the scroll position when the dictionary changes.
+            ((MyAdapter) adapter).swapCursor(data);
+        } else {
+            getListView().setAdapter(createAdapter());
+        }
     }
 
     @Override
@@ -250,6 +255,7 @@ public class UserDictionarySettings extends ListFragment implements Instrumentab
 
     private static class MyAdapter extends SimpleCursorAdapter implements SectionIndexer {
 
+        private final String mAlphabet;
         private AlphabetIndexer mIndexer;
 
         private final ViewBinder mViewBinder = new ViewBinder() {
@@ -275,13 +281,27 @@ public class UserDictionarySettings extends ListFragment implements Instrumentab
         public MyAdapter(Context context, int layout, Cursor c, String[] from, int[] to) {
             super(context, layout, c, from, to);
 
-            if (null != c) {
-                final String alphabet = context.getString(
-                        com.android.internal.R.string.fast_scroll_alphabet);
+            mAlphabet = context.getString(com.android.internal.R.string.fast_scroll_alphabet);
+            updateIndexer(c);
+            setViewBinder(mViewBinder);
+        }
+
+        @Override
+        public Cursor swapCursor(Cursor c) {
+            final Cursor oldCursor = super.swapCursor(c);
+            updateIndexer(c);
+            return oldCursor;
+        }
+
+        private void updateIndexer(Cursor c) {
+            if (null == c) {
+                mIndexer = null;
+            } else if (null == mIndexer) {
                 final int wordColIndex = c.getColumnIndexOrThrow(UserDictionary.Words.WORD);
-                mIndexer = new AlphabetIndexer(c, wordColIndex, alphabet);
+                mIndexer = new AlphabetIndexer(c, wordColIndex, mAlphabet);
+            } else {
+                mIndexer.setCursor(c);
             }
-            setViewBinder(mViewBinder);
         }
 
         @Override
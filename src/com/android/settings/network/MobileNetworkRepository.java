@@ -41,6 +41,7 @@ import androidx.annotation.GuardedBy;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.android.internal.telephony.flags.Flags;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.network.telephony.MobileNetworkUtils;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
@@ -59,7 +60,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptionsChangedListener {
@@ -67,7 +67,8 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
     private static final String TAG = "MobileNetworkRepository";
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
-    private static ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static ExecutorService sExecutor = SettingsTaskScheduler.getInstance()
+            .newSerialExecutor(SettingsTaskScheduler.Lane.PREFETCH, "MobileNetworkRepository");
     private static Map<Integer, SubscriptionInfoEntity> sCacheSubscriptionInfoEntityMap =
             new ArrayMap<>();
     private static Map<Integer, MobileNetworkInfoEntity> sCacheMobileNetworkInfoEntityMap =
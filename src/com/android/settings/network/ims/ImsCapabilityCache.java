@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.ims;
+
+import android.telephony.SubscriptionManager;
+import android.telephony.ims.ImsException;
+import android.telephony.ims.ImsMmTelManager;
+import android.telephony.ims.ImsStateCallback;
+import android.telephony.ims.feature.ImsFeature;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.SettingsTaskScheduler;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Process-wide cache of the IMS MMTEL values {@link ImsQueryController} polls: whether a
+ * capability is supported on a transport and the state of the MMTEL feature.
+ *
+ * <p>The VoLTE and video calling preferences read them with {@link #getSupportedOrNull} and
+ * {@link #getFeatureStateOrNull}, which never block: they return the last known value while a
+ * query runs in the background, and listeners are told once the answer is cached.
+ *
+ * <p>An {@link ImsStateCallback} is registered for each subscription that has been queried. The
+ * values of a subscription become stale whenever its IMS service becomes available or
+ * unavailable, which includes the service restart after a carrier config change. Each of these
+ * transitions starts a new generation of the subscription, and answers to queries sent in an
+ * older generation are not cached. All IMS callbacks run on a thread of the cache's own, so that
+ * other work can't hold up answers that a blocking query is waiting for.
+ */
+public final class ImsCapabilityCache {
+    private static final String TAG = "ImsCapabilityCache";
+
+    private static ImsCapabilityCache sInstance;
+
+    /** Listener notified on the main thread when the values of a subscription change. */
+    public interface OnImsCapabilityChangedListener {
+        /** Called when the IMS capabilities or feature state of {@code subId} changed. */
+        void onImsCapabilityChanged(int subId);
+    }
+
+    private final Executor mExecutor;
+    private final IntFunction<ImsMmTelManager> mMmTelManagerFactory;
+    // Answers of the current generation.
+    private final Map<Key, Boolean> mSupported = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> mFeatureStates = new ConcurrentHashMap<>();
+    // Last answers of any generation, shown until the current generation answers.
+    private final Map<Key, Boolean> mLastSupported = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> mLastFeatureStates = new ConcurrentHashMap<>();
+    // Non-blocking queries sent and not answered yet.
+    private final Set<Key> mPendingSupported = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> mPendingFeatureStates = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, ImsStateCallback> mStateCallbacks = new ArrayMap<>();
+    private final Set<OnImsCapabilityChangedListener> mListeners = new CopyOnWriteArraySet<>();
+    // Guards the cached values too, so that an answer is only stored in its own generation.
+    private final SparseIntArray mGenerations = new SparseIntArray();
+
+    /** Returns the cache shared by the whole process. */
+    @NonNull
+    public static synchronized ImsCapabilityCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ImsCapabilityCache(SettingsTaskScheduler.getInstance()
+                    .newDedicatedExecutor(SettingsTaskScheduler.Lane.UI_CRITICAL, TAG,
+                            1 /* threads */),
+                    ImsMmTelManager::createForSubscriptionId);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ImsCapabilityCache(Executor executor, IntFunction<ImsMmTelManager> mmTelManagerFactory) {
+        mExecutor = executor;
+        mMmTelManagerFactory = mmTelManagerFactory;
+    }
+
+    /** Adds a listener for changes of the cached values. */
+    public void addListener(@NonNull OnImsCapabilityChangedListener listener) {
+        mListeners.add(listener);
+    }
+
+    /** Removes a listener added by {@link #addListener}. */
+    public void removeListener(@NonNull OnImsCapabilityChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns whether a capability is supported, waiting up to {@code timeoutMillis} for the
+     * answer when it is not cached yet. False is returned when the answer does not arrive in
+     * time.
+     */
+    boolean isSupported(int subId, int capability, int transportType, long timeoutMillis)
+            throws InterruptedException, ImsException, IllegalArgumentException {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return false;
+        }
+        final Key key = new Key(subId, capability, transportType);
+        final Boolean supported = mSupported.get(key);
+        if (supported != null) {
+            return supported;
+        }
+        final BooleanConsumer booleanResult = new BooleanConsumer();
+        querySupported(key, booleanResult);
+        // get() will be blocked until the answer arrives or timeout after timeoutMillis
+        return booleanResult.get(timeoutMillis);
+    }
+
+    /**
+     * Returns the MMTEL feature state, waiting up to {@code timeoutMillis} for the answer when it
+     * is not cached yet. {@link ImsFeature#STATE_UNAVAILABLE} is returned when the answer does
+     * not arrive in time.
+     */
+    int getFeatureState(int subId, long timeoutMillis)
+            throws InterruptedException, ImsException, IllegalArgumentException {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return ImsFeature.STATE_UNAVAILABLE;
+        }
+        final Integer state = mFeatureStates.get(subId);
+        if (state != null) {
+            return state;
+        }
+        final IntegerConsumer intResult = new IntegerConsumer();
+        queryFeatureState(subId, intResult);
+        return intResult.get(timeoutMillis);
+    }
+
+    /**
+     * Returns whether a capability is supported without blocking: the answer of the current
+     * generation, else the last known answer, else null. When there is no current answer it is
+     * queried in the background, and listeners are notified once it arrives.
+     */
+    @Nullable
+    Boolean getSupportedOrNull(int subId, int capability, int transportType) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return false;
+        }
+        final Key key = new Key(subId, capability, transportType);
+        final Boolean supported = mSupported.get(key);
+        if (supported != null) {
+            return supported;
+        }
+        if (mPendingSupported.add(key)) {
+            try {
+                querySupported(key, value -> mPendingSupported.remove(key));
+            } catch (ImsException | IllegalArgumentException e) {
+                Log.w(TAG, "fail to query IMS capability. subId=" + subId, e);
+                mPendingSupported.remove(key);
+            }
+        }
+        return mLastSupported.get(key);
+    }
+
+    /**
+     * Returns the MMTEL feature state without blocking, the same way as
+     * {@link #getSupportedOrNull}.
+     */
+    @Nullable
+    Integer getFeatureStateOrNull(int subId) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return ImsFeature.STATE_UNAVAILABLE;
+        }
+        final Integer state = mFeatureStates.get(subId);
+        if (state != null) {
+            return state;
+        }
+        if (mPendingFeatureStates.add(subId)) {
+            try {
+                queryFeatureState(subId, value -> mPendingFeatureStates.remove(subId));
+            } catch (ImsException | IllegalArgumentException e) {
+                Log.w(TAG, "fail to query IMS feature state. subId=" + subId, e);
+                mPendingFeatureStates.remove(subId);
+            }
+        }
+        return mLastFeatureStates.get(subId);
+    }
+
+    private void querySupported(Key key, Consumer<Boolean> result) throws ImsException {
+        registerStateCallback(key.mSubId);
+        final int generation = getGeneration(key.mSubId);
+        mMmTelManagerFactory.apply(key.mSubId).isSupported(key.mCapability, key.mTransportType,
+                mExecutor, value -> {
+                    if (cache(key.mSubId, generation, mSupported, mLastSupported, key, value)) {
+                        notifyChanged(key.mSubId);
+                    }
+                    result.accept(value);
+                });
+    }
+
+    private void queryFeatureState(int subId, Consumer<Integer> result) throws ImsException {
+        registerStateCallback(subId);
+        final int generation = getGeneration(subId);
+        mMmTelManagerFactory.apply(subId).getFeatureState(mExecutor, value -> {
+            if (cache(subId, generation, mFeatureStates, mLastFeatureStates, subId, value)) {
+                notifyChanged(subId);
+            }
+            result.accept(value);
+        });
+    }
+
+    private int getGeneration(int subId) {
+        synchronized (mGenerations) {
+            return mGenerations.get(subId);
+        }
+    }
+
+    /**
+     * Stores the answer to a query sent in {@code generation} of {@code subId}, unless the
+     * subscription has moved to another generation or isn't tracked anymore. Returns whether
+     * the cached value changed.
+     */
+    private <K, V> boolean cache(int subId, int generation, Map<K, V> values,
+            Map<K, V> lastValues, K key, @Nullable V value) {
+        if (value == null || !isTracked(subId)) {
+            return false;
+        }
+        synchronized (mGenerations) {
+            if (mGenerations.get(subId) != generation) {
+                return false;
+            }
+            lastValues.put(key, value);
+            return !Objects.equals(values.put(key, value), value);
+        }
+    }
+
+    private void registerStateCallback(int subId) {
+        final ImsStateCallback callback;
+        synchronized (mStateCallbacks) {
+            if (mStateCallbacks.containsKey(subId)) {
+                return;
+            }
+            callback = new StateCallback(subId);
+            mStateCallbacks.put(subId, callback);
+        }
+        try {
+            mMmTelManagerFactory.apply(subId).registerImsStateCallback(mExecutor, callback);
+        } catch (ImsException | IllegalArgumentException e) {
+            // Nothing would drop the values of this subscription, so they are not cached.
+            Log.w(TAG, "fail to register IMS state callback. subId=" + subId, e);
+            synchronized (mStateCallbacks) {
+                mStateCallbacks.remove(subId);
+            }
+        }
+    }
+
+    private boolean isTracked(int subId) {
+        synchronized (mStateCallbacks) {
+            return mStateCallbacks.containsKey(subId);
+        }
+    }
+
+    private void unregisterStateCallback(int subId) {
+        final ImsStateCallback callback;
+        synchronized (mStateCallbacks) {
+            callback = mStateCallbacks.remove(subId);
+        }
+        if (callback != null) {
+            mMmTelManagerFactory.apply(subId).unregisterImsStateCallback(callback);
+        }
+    }
+
+    @VisibleForTesting
+    void invalidate(int subId, @Nullable Integer featureState) {
+        synchronized (mGenerations) {
+            mGenerations.put(subId, mGenerations.get(subId) + 1);
+            // Answers of the old generation are dropped, so the values can be queried again.
+            mPendingSupported.removeIf(key -> key.mSubId == subId);
+            mPendingFeatureStates.remove(subId);
+            mSupported.keySet().removeIf(key -> key.mSubId == subId);
+            if (featureState != null) {
+                mFeatureStates.put(subId, featureState);
+                mLastFeatureStates.put(subId, featureState);
+            } else {
+                // The subscription is gone, nothing is known about it anymore.
+                mFeatureStates.remove(subId);
+                mLastFeatureStates.remove(subId);
+                mLastSupported.keySet().removeIf(key -> key.mSubId == subId);
+            }
+        }
+        notifyChanged(subId);
+    }
+
+    private void notifyChanged(int subId) {
+        if (mListeners.isEmpty()) {
+            return;
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            for (OnImsCapabilityChangedListener listener : mListeners) {
+                listener.onImsCapabilityChanged(subId);
+            }
+        });
+    }
+
+    private class StateCallback extends ImsStateCallback {
+        private final int mSubId;
+
+        StateCallback(int subId) {
+            mSubId = subId;
+        }
+
+        @Override
+        public void onAvailable() {
+            // Listeners read the capabilities again, which queries them in the background.
+            invalidate(mSubId, ImsFeature.STATE_READY);
+        }
+
+        @Override
+        public void onUnavailable(int reason) {
+            if (reason == ImsStateCallback.REASON_SUBSCRIPTION_INACTIVE) {
+                unregisterStateCallback(mSubId);
+                invalidate(mSubId, /* featureState */ null);
+                return;
+            }
+            invalidate(mSubId, ImsFeature.STATE_UNAVAILABLE);
+        }
+
+        @Override
+        public void onError() {
+            unregisterStateCallback(mSubId);
+            invalidate(mSubId, /* featureState */ null);
+        }
+    }
+
+    private static final class Key {
+        final int mSubId;
+        final int mCapability;
+        final int mTransportType;
+
+        Key(int subId, int capability, int transportType) {
+            mSubId = subId;
+            mCapability = capability;
+            mTransportType = transportType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return mSubId == key.mSubId && mCapability == key.mCapability
+                    && mTransportType == key.mTransportType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mSubId, mCapability, mTransportType);
+        }
+    }
+}
@@ -19,16 +19,13 @@ package com.android.settings.network.ims;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.SubscriptionManager;
 import android.telephony.ims.ImsException;
-import android.telephony.ims.ImsMmTelManager;
 import android.telephony.ims.feature.ImsFeature;
 import android.telephony.ims.feature.MmTelFeature;
 import android.telephony.ims.stub.ImsRegistrationImplBase;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Controller class for querying IMS status
  */
@@ -70,15 +67,23 @@ abstract class ImsQueryController {
             return false;
         }
 
-        final ImsMmTelManager imsMmTelManager = ImsMmTelManager.createForSubscriptionId(subId);
-        // TODO: have a shared thread pool instead of create ExecutorService
-        //       everytime to improve performance.
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-        final BooleanConsumer booleanResult = new BooleanConsumer();
-        imsMmTelManager.isSupported(mCapability, mTransportType, executor, booleanResult);
-        // get() will be blocked until end of execution(isSupported()) within thread(executor)
-        // or timeout after TIMEOUT_MILLIS milliseconds
-        return booleanResult.get(TIMEOUT_MILLIS);
+        // Blocks up to TIMEOUT_MILLIS only until the first answer of this subscription is cached
+        return ImsCapabilityCache.getInstance().isSupported(subId, mCapability, mTransportType,
+                TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Non-blocking {@link #isEnabledByPlatform}: the cached or last known answer, or null if the
+     * IMS service hasn't answered yet.
+     */
+    @VisibleForTesting
+    @Nullable
+    Boolean isEnabledByPlatformOrNull(int subId) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return false;
+        }
+        return ImsCapabilityCache.getInstance().getSupportedOrNull(subId, mCapability,
+                mTransportType);
     }
 
     @VisibleForTesting
@@ -96,12 +101,21 @@ abstract class ImsQueryController {
             return false;
         }
 
-        final ImsMmTelManager imsMmTelManager = ImsMmTelManager.createForSubscriptionId(subId);
-        // TODO: have a shared thread pool instead of create ExecutorService
-        //       everytime to improve performance.
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-        final IntegerConsumer intResult = new IntegerConsumer();
-        imsMmTelManager.getFeatureState(executor, intResult);
-        return (intResult.get(TIMEOUT_MILLIS) == ImsFeature.STATE_READY);
+        return (ImsCapabilityCache.getInstance().getFeatureState(subId, TIMEOUT_MILLIS)
+                == ImsFeature.STATE_READY);
+    }
+
+    /**
+     * Non-blocking {@link #isServiceStateReady}: the cached or last known answer, or null if the
+     * IMS service hasn't answered yet.
+     */
+    @VisibleForTesting
+    @Nullable
+    Boolean isServiceStateReadyOrNull(int subId) {
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            return false;
+        }
+        final Integer state = ImsCapabilityCache.getInstance().getFeatureStateOrNull(subId);
+        return state == null ? null : state == ImsFeature.STATE_READY;
     }
 }
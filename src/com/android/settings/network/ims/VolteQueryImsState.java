@@ -28,6 +28,7 @@ import android.telephony.ims.feature.MmTelFeature;
 import android.telephony.ims.stub.ImsRegistrationImplBase;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 /**
@@ -105,6 +106,26 @@ public class VolteQueryImsState extends ImsQueryController {
         return false;
     }
 
+    /**
+     * Non-blocking {@link #isReadyToVoLte()}, for the main thread
+     *
+     * @return the cached or last known answer, or null when the IMS service hasn't answered yet
+     */
+    @Nullable
+    public Boolean isReadyToVoLteOrNull() {
+        if (!SubscriptionManager.isValidSubscriptionId(mSubId)) {
+            return false;
+        }
+        if (!isProvisionedOnDevice(mSubId)) {
+            return false;
+        }
+        final Boolean supported = isEnabledByPlatformOrNull(mSubId);
+        if (supported == null || !supported) {
+            return supported;
+        }
+        return isServiceStateReadyOrNull(mSubId);
+    }
+
     /**
      * Get allowance status for user to alter configuration
      *
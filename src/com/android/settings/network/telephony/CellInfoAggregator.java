@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.telephony;
+
+import android.telephony.CellIdentity;
+import android.telephony.CellInfo;
+import android.util.ArraySet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the batches of results of a manual network scan into one cell per network title and
+ * radio access technology, in the order the networks were first found.
+ *
+ * <p>Within a batch the first cell of a network is kept, unless a later one is the registered
+ * cell. A later batch replaces the cell of a network with its fresher one, but never replaces the
+ * registered cell with an unregistered one.
+ */
+class CellInfoAggregator {
+
+    private final Map<String, CellInfo> mCells = new LinkedHashMap<>();
+
+    /** Merges a batch of scan results. Returns true if the aggregated cells changed. */
+    boolean addBatch(List<CellInfo> cellInfos) {
+        final Set<String> keysInBatch = new ArraySet<>();
+        boolean changed = false;
+        for (CellInfo cellInfo : cellInfos) {
+            final String key = getKey(cellInfo);
+            final CellInfo existing = mCells.get(key);
+            final boolean replace;
+            if (existing == null) {
+                replace = true;
+            } else if (keysInBatch.contains(key)) {
+                // If there are two registered cells, then select the first one from the batch.
+                replace = cellInfo.isRegistered() && !existing.isRegistered();
+            } else {
+                replace = cellInfo.isRegistered() || !existing.isRegistered();
+            }
+            keysInBatch.add(key);
+            if (replace && !cellInfo.equals(existing)) {
+                // Replacing the value of a key keeps its position.
+                mCells.put(key, cellInfo);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Returns the aggregated cells. */
+    List<CellInfo> getCellInfoList() {
+        return new ArrayList<>(mCells.values());
+    }
+
+    /** Drops all cells, e.g. before a new scan. */
+    void clear() {
+        mCells.clear();
+    }
+
+    /** Returns the key a cell is aggregated by: its network title and its technology. */
+    static String getKey(CellInfo cellInfo) {
+        final CellIdentity cellIdentity = cellInfo.getCellIdentity();
+        return cellInfo.getClass().getName() + "/" + CellInfoUtil.getNetworkTitle(cellIdentity,
+                CellInfoUtil.getCellIdentityMccMnc(cellIdentity));
+    }
+}
@@ -35,6 +35,7 @@ import androidx.preference.TwoStatePreference;
 
 import com.android.internal.telephony.util.ArrayUtils;
 import com.android.settings.R;
+import com.android.settings.network.ims.ImsCapabilityCache;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
@@ -47,7 +48,8 @@ import java.util.List;
  * Preference controller for "Enhanced 4G LTE"
  */
 public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenceController
-        implements LifecycleObserver, OnStart, OnStop {
+        implements LifecycleObserver, OnStart, OnStop,
+        ImsCapabilityCache.OnImsCapabilityChangedListener {
 
     private static final String TAG = "Enhanced4g";
 
@@ -101,6 +103,14 @@ public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenc
 
     @Override
     public int getAvailabilityStatus(int subId) {
+        return getAvailabilityStatus(subId, true /* waitForIms */);
+    }
+
+    /**
+     * Returns the availability of the preference. Unless {@code waitForIms}, IMS values are read
+     * from the cache without blocking and null is returned while they aren't known yet.
+     */
+    private Integer getAvailabilityStatus(int subId, boolean waitForIms) {
         init(subId);
         if (!isModeMatched()) {
             return CONDITIONALLY_UNAVAILABLE;
@@ -117,7 +127,12 @@ public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenc
             return CONDITIONALLY_UNAVAILABLE;
         }
 
-        if (!queryState.isReadyToVoLte()) {
+        final Boolean readyToVoLte = waitForIms
+                ? queryState.isReadyToVoLte() : queryState.isReadyToVoLteOrNull();
+        if (readyToVoLte == null) {
+            return null;
+        }
+        if (!readyToVoLte) {
             return CONDITIONALLY_UNAVAILABLE;
         }
         return (isUserControlAllowed(carrierConfig) && queryState.isAllowUserControl())
@@ -136,6 +151,7 @@ public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenc
             return;
         }
         mTelephonyCallback.register(mContext, mSubId);
+        ImsCapabilityCache.getInstance().addListener(this);
     }
 
     @Override
@@ -144,6 +160,24 @@ public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenc
             return;
         }
         mTelephonyCallback.unregister();
+        ImsCapabilityCache.getInstance().removeListener(this);
+    }
+
+    /**
+     * Implementation of ImsCapabilityCache.OnImsCapabilityChangedListener
+     */
+    @Override
+    public void onImsCapabilityChanged(int subId) {
+        if ((subId != mSubId) || (mPreference == null)) {
+            return;
+        }
+        // Runs on the main thread, so it shows the cached IMS values and keeps the visibility
+        // until they are known. Reading them queries them, and their answer calls back here.
+        final Integer status = getAvailabilityStatus(subId, false /* waitForIms */);
+        if (status != null) {
+            mPreference.setVisible(status == AVAILABLE || status == AVAILABLE_UNSEARCHABLE);
+        }
+        updateState(mPreference);
     }
 
     @Override
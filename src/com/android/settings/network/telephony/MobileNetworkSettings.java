@@ -43,6 +43,7 @@ import androidx.preference.Preference;
 import com.android.settings.R;
 import com.android.settings.Settings.MobileNetworkActivity;
 import com.android.settings.SettingsActivity;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.datausage.BillingCyclePreferenceController;
 import com.android.settings.datausage.DataUsageSummaryPreferenceController;
 import com.android.settings.network.CarrierWifiTogglePreferenceController;
@@ -67,7 +68,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 @SearchIndexable(forTarget = SearchIndexable.ALL & ~SearchIndexable.ARC)
@@ -90,7 +90,9 @@ public class MobileNetworkSettings extends AbstractMobileNetworkSettings impleme
     private static final String BUTTON_CDMA_SYSTEM_SELECT_KEY = "cdma_system_select_key";
     private static final String BUTTON_CDMA_SUBSCRIPTION_KEY = "cdma_subscription_key";
 
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mExecutor = SettingsTaskScheduler.getInstance()
+            .newSerialExecutor(SettingsTaskScheduler.Lane.PREFETCH, "MobileNetworkSettings")
+            .bindTo(this);
 
     private TelephonyManager mTelephonyManager;
     private int mSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
@@ -107,6 +107,13 @@ public class NetworkOperatorPreference extends Preference {
         return mCellId.equals(CellInfoUtil.getCellIdentity(cellinfo));
     }
 
+    /**
+     * Return true when the preference already shows exactly this cell information
+     */
+    public boolean isSameCellInfo(CellInfo cellinfo) {
+        return Objects.equals(mCellInfo, cellinfo);
+    }
+
     /**
      * Return true when this preference is for forbidden network
      */
@@ -34,6 +34,7 @@ import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.view.View;
 
@@ -52,7 +53,7 @@ import com.android.settingslib.utils.ThreadUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -79,6 +80,9 @@ public class NetworkSelectSettings extends DashboardFragment {
     private Preference mStatusMessagePreference;
     @VisibleForTesting
     List<CellInfo> mCellInfoList;
+    private final CellInfoAggregator mCellInfoAggregator = new CellInfoAggregator();
+    // Operator preferences by CellInfoAggregator key, so operators keep their rows during a scan.
+    private final Map<String, NetworkOperatorPreference> mOperatorPreferences = new ArrayMap<>();
     private int mSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
     private TelephonyManager mTelephonyManager;
     private List<String> mForbiddenPlmns;
@@ -363,30 +367,22 @@ public class NetworkSelectSettings extends DashboardFragment {
             Log.d(TAG, "no aggregation");
             return new ArrayList<>(cellInfoListInput);
         }
-        ArrayList<CellInfo> aggregatedList = new ArrayList<>();
-        for (CellInfo cellInfo : cellInfoListInput) {
-            String plmn = CellInfoUtil.getNetworkTitle(cellInfo.getCellIdentity(),
-                    CellInfoUtil.getCellIdentityMccMnc(cellInfo.getCellIdentity()));
-            Class className = cellInfo.getClass();
-
-            Optional<CellInfo> itemInTheList = aggregatedList.stream().filter(
-                    item -> {
-                        String itemPlmn = CellInfoUtil.getNetworkTitle(item.getCellIdentity(),
-                                CellInfoUtil.getCellIdentityMccMnc(item.getCellIdentity()));
-                        return itemPlmn.equals(plmn) && item.getClass().equals(className);
-                    })
-                    .findFirst();
-            if (itemInTheList.isPresent()) {
-                if (cellInfo.isRegistered() && !itemInTheList.get().isRegistered()) {
-                    // Adding the registered cellinfo item into list. If there are two registered
-                    // cellinfo items, then select first one from source list.
-                    aggregatedList.set(aggregatedList.indexOf(itemInTheList.get()), cellInfo);
-                }
-                continue;
-            }
-            aggregatedList.add(cellInfo);
+        final CellInfoAggregator aggregator = new CellInfoAggregator();
+        aggregator.addBatch(cellInfoListInput);
+        return aggregator.getCellInfoList();
+    }
+
+    /**
+     * Merges a batch of scan results into the networks found so far by the current scan.
+     *
+     * @return the networks to show
+     */
+    private List<CellInfo> aggregateScanResults(List<CellInfo> results) {
+        if (!mIsAggregationEnabled) {
+            return doAggregation(results);
         }
-        return aggregatedList;
+        mCellInfoAggregator.addBatch(results);
+        return mCellInfoAggregator.getCellInfoList();
     }
 
     private final NetworkScanHelper.NetworkScanCallback mCallback =
@@ -421,7 +417,7 @@ public class NetworkSelectSettings extends DashboardFragment {
             stopNetworkQuery();
         }
 
-        mCellInfoList = doAggregation(results);
+        mCellInfoList = aggregateScanResults(results);
         Log.d(TAG, "CellInfoList: " + CellInfoUtil.cellInfoListToString(mCellInfoList));
         if (mCellInfoList != null && mCellInfoList.size() != 0) {
             final NetworkOperatorPreference connectedPref =
@@ -457,60 +453,69 @@ public class NetworkSelectSettings extends DashboardFragment {
      * @return preference which shows connected
      */
     private NetworkOperatorPreference updateAllPreferenceCategory() {
-        int numberOfPreferences = mPreferenceCategory.getPreferenceCount();
-
-        // remove unused preferences
-        while (numberOfPreferences > mCellInfoList.size()) {
-            numberOfPreferences--;
-            mPreferenceCategory.removePreference(
-                    mPreferenceCategory.getPreference(numberOfPreferences));
-        }
-
-        // update the content of preference
+        final Map<String, NetworkOperatorPreference> operatorPreferences =
+                new ArrayMap<>(mCellInfoList.size());
         NetworkOperatorPreference connectedPref = null;
         for (int index = 0; index < mCellInfoList.size(); index++) {
             final CellInfo cellInfo = mCellInfoList.get(index);
+            final String key = getOperatorPreferenceKey(cellInfo, operatorPreferences);
 
-            NetworkOperatorPreference pref = null;
-            if (index < numberOfPreferences) {
-                final Preference rawPref = mPreferenceCategory.getPreference(index);
-                if (rawPref instanceof NetworkOperatorPreference) {
-                    // replace existing preference
-                    pref = (NetworkOperatorPreference) rawPref;
+            NetworkOperatorPreference pref = mOperatorPreferences.get(key);
+            if ((pref != null) && (pref.getParent() == mPreferenceCategory)) {
+                // keep the row of this operator, only refresh it when its cell changed
+                if (!pref.isSameCellInfo(cellInfo)) {
                     pref.updateCell(cellInfo);
-                } else {
-                    mPreferenceCategory.removePreference(rawPref);
                 }
-            }
-            if (pref == null) {
+                pref.setOrder(index);
+            } else {
                 // add new preference
                 pref = createNetworkOperatorPreference(cellInfo);
                 pref.setOrder(index);
                 mPreferenceCategory.addPreference(pref);
             }
             pref.setKey(pref.getOperatorName());
+            operatorPreferences.put(key, pref);
 
-            if (mCellInfoList.get(index).isRegistered()) {
+            if (cellInfo.isRegistered()) {
                 pref.setSummary(R.string.network_connected);
                 connectedPref = pref;
             } else {
                 pref.setSummary(null);
             }
-        }
-
-        // update selected preference instance by index
-        for (int index = 0; index < mCellInfoList.size(); index++) {
-            final CellInfo cellInfo = mCellInfoList.get(index);
 
+            // update selected preference instance
             if ((mSelectedPreference != null) && mSelectedPreference.isSameCell(cellInfo)) {
-                mSelectedPreference = (NetworkOperatorPreference)
-                        (mPreferenceCategory.getPreference(index));
+                mSelectedPreference = pref;
+            }
+        }
+
+        // remove operators which are no longer found and any other preference
+        for (int index = mPreferenceCategory.getPreferenceCount() - 1; index >= 0; index--) {
+            final Preference rawPref = mPreferenceCategory.getPreference(index);
+            if (!operatorPreferences.containsValue(rawPref)) {
+                mPreferenceCategory.removePreference(rawPref);
             }
         }
+        mOperatorPreferences.clear();
+        mOperatorPreferences.putAll(operatorPreferences);
 
         return connectedPref;
     }
 
+    private static String getOperatorPreferenceKey(CellInfo cellInfo,
+            Map<String, NetworkOperatorPreference> usedKeys) {
+        final String key = CellInfoAggregator.getKey(cellInfo);
+        if (!usedKeys.containsKey(key)) {
+            return key;
+        }
+        // Without aggregation, several cells of the same operator and technology are shown.
+        int occurrence = 1;
+        while (usedKeys.containsKey(key + "#" + occurrence)) {
+            occurrence++;
+        }
+        return key + "#" + occurrence;
+    }
+
     /**
      * Config the network operator list when the page was created. When user get
      * into this page, the device might or might not have data connection.
@@ -604,6 +609,7 @@ public class NetworkSelectSettings extends DashboardFragment {
     private void startNetworkQuery() {
         setProgressBarVisible(true);
         if (mNetworkScanHelper != null) {
+            mCellInfoAggregator.clear();
             mRequestIdManualNetworkScan = getNewRequestId();
             mWaitingForNumberOfScanResults = MIN_NUMBER_OF_SCAN_REQUIRED;
             mNetworkScanHelper.startNetworkScan(
@@ -33,6 +33,7 @@ import androidx.preference.TwoStatePreference;
 
 import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.MobileDataEnabledListener;
+import com.android.settings.network.ims.ImsCapabilityCache;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settings.network.ims.VtQueryImsState;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
@@ -45,7 +46,8 @@ import com.android.settingslib.core.lifecycle.events.OnStop;
 public class VideoCallingPreferenceController extends TelephonyTogglePreferenceController implements
         LifecycleObserver, OnStart, OnStop,
         MobileDataEnabledListener.Client,
-        Enhanced4gBasePreferenceController.On4gLteUpdateListener {
+        Enhanced4gBasePreferenceController.On4gLteUpdateListener,
+        ImsCapabilityCache.OnImsCapabilityChangedListener {
 
     private static final String TAG = "VideoCallingPreference";
 
@@ -79,12 +81,14 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
     public void onStart() {
         mTelephonyCallback.register(mContext, mSubId);
         mDataContentObserver.start(mSubId);
+        ImsCapabilityCache.getInstance().addListener(this);
     }
 
     @Override
     public void onStop() {
         mTelephonyCallback.unregister();
         mDataContentObserver.stop();
+        ImsCapabilityCache.getInstance().removeListener(this);
     }
 
     @Override
@@ -95,7 +99,10 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
             return;
         }
         final TwoStatePreference switchPreference = (TwoStatePreference) preference;
-        final boolean videoCallEnabled = isVideoCallEnabled(mSubId);
+        // Keeps the visibility until the IMS service answers, its answer updates the state again.
+        final Boolean videoCallEnabledOrNull = isVideoCallEnabled(mSubId, false /* waitForIms */);
+        final boolean videoCallEnabled = videoCallEnabledOrNull != null
+                ? videoCallEnabledOrNull : switchPreference.isVisible();
         switchPreference.setVisible(videoCallEnabled);
         if (videoCallEnabled) {
             final boolean videoCallEditable = queryVoLteState(mSubId).isEnabledByUser()
@@ -144,6 +151,14 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
 
     @VisibleForTesting
     boolean isVideoCallEnabled(int subId) {
+        return isVideoCallEnabled(subId, true /* waitForIms */);
+    }
+
+    /**
+     * Unless {@code waitForIms}, IMS values are read from the cache without blocking and null is
+     * returned while they aren't known yet.
+     */
+    private Boolean isVideoCallEnabled(int subId, boolean waitForIms) {
         if (!SubscriptionManager.isValidSubscriptionId(subId)) {
             return false;
         }
@@ -161,7 +176,11 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
             return false;
         }
 
-        return isImsSupported() && queryImsState(subId).isReadyToVideoCall();
+        if (!isImsSupported()) {
+            return false;
+        }
+        final VtQueryImsState queryState = queryImsState(subId);
+        return waitForIms ? queryState.isReadyToVideoCall() : queryState.isReadyToVideoCallOrNull();
     }
 
     @Override
@@ -204,6 +223,16 @@ public class VideoCallingPreferenceController extends TelephonyTogglePreferenceC
         updateState(mPreference);
     }
 
+    /**
+     * Implementation of ImsCapabilityCache.OnImsCapabilityChangedListener
+     */
+    @Override
+    public void onImsCapabilityChanged(int subId) {
+        if (subId == mSubId) {
+            updateState(mPreference);
+        }
+    }
+
     @VisibleForTesting
     VtQueryImsState queryImsState(int subId) {
         return new VtQueryImsState(mContext, subId);
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import android.content.Context;
+import android.os.RemoteException;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.applications.InstalledPackageSnapshot;
+
+/**
+ * Process-wide cache of whether the notification importance of a package is locked, i.e.
+ * {@code INotificationManager#isImportanceLocked}, so the notification app lists don't ask for
+ * every app each time they load. Entries of a package are dropped whenever
+ * {@link InstalledPackageSnapshot} reports it changed, and an answer queried before that is not
+ * stored.
+ *
+ * <p>Whether notifications are enabled is not cached: it is a runtime permission, which changes
+ * without any package broadcast.
+ */
+public final class ImportanceLockCache implements InstalledPackageSnapshot.PackageChangeListener {
+    private static final String TAG = "ImportanceLockCache";
+
+    private static ImportanceLockCache sInstance;
+
+    private final InstalledPackageSnapshot mPackageSnapshot;
+    // Keyed by user id, then package name.
+    private final SparseArray<ArrayMap<String, Boolean>> mLocked = new SparseArray<>();
+    // Bumped each time a package changes, keyed by user id, then package name.
+    private final SparseArray<ArrayMap<String, Integer>> mGenerations = new SparseArray<>();
+    // Bumped each time a user is removed.
+    private final SparseIntArray mUserGenerations = new SparseIntArray();
+
+    /** Returns the cache for the current process. */
+    public static synchronized ImportanceLockCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            final Context cacheContext = appContext != null ? appContext : context;
+            sInstance = new ImportanceLockCache(InstalledPackageSnapshot.getInstance(cacheContext));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the process-wide cache, releasing the previous one. Passing null makes the next
+     * {@link #getInstance} create a new cache.
+     */
+    @VisibleForTesting
+    public static synchronized void setInstance(@Nullable ImportanceLockCache cache) {
+        if (sInstance != null && sInstance != cache) {
+            sInstance.release();
+        }
+        sInstance = cache;
+    }
+
+    @VisibleForTesting
+    ImportanceLockCache(@NonNull InstalledPackageSnapshot packageSnapshot) {
+        mPackageSnapshot = packageSnapshot;
+        mPackageSnapshot.addPackageChangeListener(this);
+    }
+
+    /**
+     * Returns whether the notification importance of {@code pkg} is locked. Returns false without
+     * caching it when the notification manager can't be reached.
+     */
+    @WorkerThread
+    public boolean isImportanceLocked(@NonNull String pkg, int uid) {
+        final int userId = UserHandle.getUserId(uid);
+        final int generation;
+        final int userGeneration;
+        synchronized (this) {
+            final ArrayMap<String, Boolean> userLocked = mLocked.get(userId);
+            final Boolean locked = userLocked != null ? userLocked.get(pkg) : null;
+            if (locked != null) {
+                return locked;
+            }
+            generation = getGeneration(userId, pkg);
+            userGeneration = mUserGenerations.get(userId);
+        }
+        final boolean locked;
+        try {
+            locked = NotificationBackend.sINM.isImportanceLocked(pkg, uid);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Error calling NMS", e);
+            return false;
+        }
+        synchronized (this) {
+            if (generation == getGeneration(userId, pkg)
+                    && userGeneration == mUserGenerations.get(userId)) {
+                ArrayMap<String, Boolean> userLocked = mLocked.get(userId);
+                if (userLocked == null) {
+                    userLocked = new ArrayMap<>();
+                    mLocked.put(userId, userLocked);
+                }
+                userLocked.put(pkg, locked);
+            }
+        }
+        return locked;
+    }
+
+    @Override
+    public synchronized void onPackageChanged(int userId, @NonNull String pkg) {
+        final ArrayMap<String, Boolean> userLocked = mLocked.get(userId);
+        if (userLocked != null) {
+            userLocked.remove(pkg);
+        }
+        ArrayMap<String, Integer> userGenerations = mGenerations.get(userId);
+        if (userGenerations == null) {
+            userGenerations = new ArrayMap<>();
+            mGenerations.put(userId, userGenerations);
+        }
+        userGenerations.put(pkg, getGeneration(userId, pkg) + 1);
+    }
+
+    @Override
+    public synchronized void onUserRemoved(int userId) {
+        mLocked.remove(userId);
+        mGenerations.remove(userId);
+        mUserGenerations.put(userId, mUserGenerations.get(userId) + 1);
+    }
+
+    @VisibleForTesting
+    synchronized void release() {
+        mPackageSnapshot.removePackageChangeListener(this);
+        mLocked.clear();
+        mGenerations.clear();
+    }
+
+    private int getGeneration(int userId, String pkg) {
+        final ArrayMap<String, Integer> userGenerations = mGenerations.get(userId);
+        final Integer generation = userGenerations != null ? userGenerations.get(pkg) : null;
+        return generation != null ? generation : 0;
+    }
+}
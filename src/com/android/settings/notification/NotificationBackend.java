@@ -76,6 +76,29 @@ public class NotificationBackend {
     static INotificationManager sINM = INotificationManager.Stub.asInterface(
             ServiceManager.getService(Context.NOTIFICATION_SERVICE));
 
+    private volatile NotificationChannelSnapshot mChannelSnapshot;
+
+    /**
+     * Loads all channel groups and channels of a package with one call, for the screens of that
+     * package. Until the next call the channel, group and channel count queries of the package
+     * are answered from it, so every controller sharing this backend reuses it. Channels and
+     * groups saved with {@link #updateChannel} and {@link #updateChannelGroup} are applied to it.
+     */
+    public void loadChannelSnapshot(String pkg, int uid) {
+        mChannelSnapshot = null;
+        try {
+            mChannelSnapshot = new NotificationChannelSnapshot(pkg, uid,
+                    sINM.getNotificationChannelGroupsForPackage(pkg, uid, true).getList());
+        } catch (Exception e) {
+            Log.w(TAG, "Error calling NoMan", e);
+        }
+    }
+
+    private NotificationChannelSnapshot getChannelSnapshot(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = mChannelSnapshot;
+        return snapshot != null && snapshot.isFor(pkg, uid) ? snapshot : null;
+    }
+
     public AppRow loadAppRow(Context context, PackageManager pm, ApplicationInfo app) {
         final AppRow row = new AppRow();
         row.pkg = app.packageName;
@@ -111,7 +134,10 @@ public class NotificationBackend {
         } catch (RemoteException e) {
             Log.w(TAG, "Error calling NMS", e);
         }
+        recordPermissionStateLocked(app, row);
+    }
 
+    private void recordPermissionStateLocked(PackageInfo app, AppRow row) {
         // if the app targets T but has not requested the permission, we cannot change the
         // permission state
         if (app.applicationInfo.targetSdkVersion > Build.VERSION_CODES.S_V2) {
@@ -161,16 +187,40 @@ public class NotificationBackend {
         try {
             PackageInfo info = context.getPackageManager().getPackageInfo(
                     app.packageName, PackageManager.GET_PERMISSIONS);
-            final AppRow row = new AppRow();
-            recordCanBeBlocked(info, row);
-            boolean systemBlockable = !row.systemApp || (row.systemApp && row.banned);
-            return systemBlockable && !row.lockedImportance;
+            return enableSwitch(info);
         } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Same as {@link #enableSwitch(Context, ApplicationInfo)} for a package already loaded with
+     * {@link PackageManager#GET_PERMISSIONS}.
+     */
+    public boolean enableSwitch(PackageInfo info) {
+        final AppRow row = new AppRow();
+        recordCanBeBlocked(info, row);
+        return canBlock(row);
+    }
+
+    /**
+     * Same as {@link #enableSwitch(PackageInfo)}, reading whether the importance is locked from
+     * {@code importanceLocks} instead of asking the notification manager each time.
+     */
+    public boolean enableSwitch(PackageInfo info, ImportanceLockCache importanceLocks) {
+        final AppRow row = new AppRow();
+        row.systemApp = row.lockedImportance = importanceLocks.isImportanceLocked(
+                info.packageName, info.applicationInfo.uid);
+        recordPermissionStateLocked(info, row);
+        return canBlock(row);
+    }
+
+    private static boolean canBlock(AppRow row) {
+        boolean systemBlockable = !row.systemApp || (row.systemApp && row.banned);
+        return systemBlockable && !row.lockedImportance;
+    }
+
     public boolean getNotificationsBanned(String pkg, int uid) {
         try {
             final boolean enabled = sINM.areNotificationsEnabledForPackage(pkg, uid);
@@ -244,6 +294,13 @@ public class NotificationBackend {
         if (channelId == null) {
             return null;
         }
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null && conversationId == null) {
+            final NotificationChannel channel = snapshot.getChannel(channelId);
+            if (channel != null) {
+                return channel;
+            }
+        }
         try {
             return sINM.getNotificationChannelForPackage(pkg, uid, channelId, conversationId, true);
         } catch (Exception e) {
@@ -256,6 +313,13 @@ public class NotificationBackend {
         if (groupId == null) {
             return null;
         }
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            final NotificationChannelGroup group = snapshot.getGroup(groupId);
+            if (group != null) {
+                return group;
+            }
+        }
         try {
             return sINM.getNotificationChannelGroupForPackage(groupId, pkg, uid);
         } catch (Exception e) {
@@ -265,6 +329,10 @@ public class NotificationBackend {
     }
 
     public ParceledListSlice<NotificationChannelGroup> getGroups(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            return new ParceledListSlice<>(snapshot.getGroups());
+        }
         try {
             return sINM.getNotificationChannelGroupsForPackage(pkg, uid, false);
         } catch (Exception e) {
@@ -351,6 +419,10 @@ public class NotificationBackend {
     public void updateChannel(String pkg, int uid, NotificationChannel channel) {
         try {
             sINM.updateNotificationChannelForPackage(pkg, uid, channel);
+            final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+            if (snapshot != null) {
+                snapshot.updateChannel(channel);
+            }
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
         }
@@ -359,12 +431,20 @@ public class NotificationBackend {
     public void updateChannelGroup(String pkg, int uid, NotificationChannelGroup group) {
         try {
             sINM.updateNotificationChannelGroupForPackage(pkg, uid, group);
+            final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+            if (snapshot != null) {
+                snapshot.updateGroup(group);
+            }
         } catch (Exception e) {
             Log.w(TAG, "Error calling NoMan", e);
         }
     }
 
     public int getDeletedChannelCount(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            return snapshot.getDeletedChannelCount();
+        }
         try {
             return sINM.getDeletedChannelCount(pkg, uid);
         } catch (Exception e) {
@@ -374,6 +454,10 @@ public class NotificationBackend {
     }
 
     public int getBlockedChannelCount(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            return snapshot.getBlockedChannelCount();
+        }
         try {
             return sINM.getBlockedChannelCount(pkg, uid);
         } catch (Exception e) {
@@ -383,6 +467,10 @@ public class NotificationBackend {
     }
 
     public boolean onlyHasDefaultChannel(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            return snapshot.onlyHasDefaultChannel();
+        }
         try {
             return sINM.onlyHasDefaultChannel(pkg, uid);
         } catch (Exception e) {
@@ -392,6 +480,10 @@ public class NotificationBackend {
     }
 
     public int getChannelCount(String pkg, int uid) {
+        final NotificationChannelSnapshot snapshot = getChannelSnapshot(pkg, uid);
+        if (snapshot != null) {
+            return snapshot.getChannelCount();
+        }
         try {
             return sINM.getNumNotificationChannelsForPackage(pkg, uid, false);
         } catch (Exception e) {
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static android.app.NotificationManager.IMPORTANCE_NONE;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * All notification channel groups and channels of one package, including the deleted channels,
+ * loaded with a single call. The counts the app notification screens show are derived from it.
+ *
+ * <p>Callers get copies, so a channel changed on screen only reaches the snapshot once it is
+ * saved with {@link #updateChannel}.
+ */
+final class NotificationChannelSnapshot {
+
+    final String mPkg;
+    final int mUid;
+    // Group metadata in the order NoMan returned it. Non-grouped channels are in the null group.
+    private final Map<String, NotificationChannelGroup> mGroups = new LinkedHashMap<>();
+    private final Map<String, NotificationChannel> mChannels = new LinkedHashMap<>();
+
+    NotificationChannelSnapshot(String pkg, int uid, List<NotificationChannelGroup> groups) {
+        mPkg = pkg;
+        mUid = uid;
+        for (NotificationChannelGroup group : groups) {
+            for (NotificationChannel channel : group.getChannels()) {
+                mChannels.put(channel.getId(), channel);
+            }
+            mGroups.put(group.getId(), withChannels(group, new ArrayList<>()));
+        }
+    }
+
+    boolean isFor(String pkg, int uid) {
+        return mUid == uid && Objects.equals(mPkg, pkg);
+    }
+
+    /** Same as NoMan's groups without deleted channels: groups left empty are skipped. */
+    synchronized List<NotificationChannelGroup> getGroups() {
+        final List<NotificationChannelGroup> groups = new ArrayList<>(mGroups.size());
+        for (NotificationChannelGroup group : mGroups.values()) {
+            final List<NotificationChannel> channels = getChannels(group.getId());
+            if (!channels.isEmpty()) {
+                groups.add(withChannels(group, channels));
+            }
+        }
+        return groups;
+    }
+
+    /** Returns the group with its channels that aren't deleted, or null if it isn't known. */
+    synchronized NotificationChannelGroup getGroup(String groupId) {
+        final NotificationChannelGroup group = mGroups.get(groupId);
+        return group != null ? withChannels(group, getChannels(groupId)) : null;
+    }
+
+    /** Returns the channel, even if deleted, or null if it isn't known. */
+    synchronized NotificationChannel getChannel(String channelId) {
+        final NotificationChannel channel = mChannels.get(channelId);
+        return channel != null ? channel.copy() : null;
+    }
+
+    synchronized int getChannelCount() {
+        int count = 0;
+        for (NotificationChannel channel : mChannels.values()) {
+            if (!channel.isDeleted()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized int getDeletedChannelCount() {
+        int count = 0;
+        for (NotificationChannel channel : mChannels.values()) {
+            if (channel.isDeleted()
+                    && !NotificationChannel.DEFAULT_CHANNEL_ID.equals(channel.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized int getBlockedChannelCount() {
+        int count = 0;
+        for (NotificationChannel channel : mChannels.values()) {
+            if (!channel.isDeleted() && channel.getImportance() == IMPORTANCE_NONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized boolean onlyHasDefaultChannel() {
+        return mChannels.size() == 1
+                && mChannels.containsKey(NotificationChannel.DEFAULT_CHANNEL_ID);
+    }
+
+    /** Applies a channel saved to NoMan. */
+    synchronized void updateChannel(NotificationChannel channel) {
+        mChannels.put(channel.getId(), channel.copy());
+    }
+
+    /** Applies a group saved to NoMan. */
+    synchronized void updateGroup(NotificationChannelGroup group) {
+        if (mGroups.containsKey(group.getId())) {
+            mGroups.put(group.getId(), withChannels(group, new ArrayList<>()));
+        }
+    }
+
+    private List<NotificationChannel> getChannels(String groupId) {
+        final List<NotificationChannel> channels = new ArrayList<>();
+        for (NotificationChannel channel : mChannels.values()) {
+            if (!channel.isDeleted() && Objects.equals(groupId, channel.getGroup())) {
+                channels.add(channel.copy());
+            }
+        }
+        return channels;
+    }
+
+    private static NotificationChannelGroup withChannels(NotificationChannelGroup group,
+            List<NotificationChannel> channels) {
+        final NotificationChannelGroup copy = group.clone();
+        copy.setChannels(channels);
+        return copy;
+    }
+}
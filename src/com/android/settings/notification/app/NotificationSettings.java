@@ -136,6 +136,8 @@ abstract public class NotificationSettings extends DashboardFragment {
             mSuspendedAppsAdmin = RestrictedLockUtilsInternal.checkIfApplicationIsSuspended(
                     mContext, mPkg, mUserId);
 
+            // Shared by the controllers through mBackend.
+            mBackend.loadChannelSnapshot(mPkg, mUid);
             loadChannel();
             loadAppRow();
             loadChannelGroup();
@@ -193,6 +195,7 @@ abstract public class NotificationSettings extends DashboardFragment {
         // Reload app, channel, etc onResume in case they've changed. A little wasteful if we've
         // just done onAttach but better than making every preference controller reload all
         // the data
+        mBackend.loadChannelSnapshot(mPkg, mUid);
         loadAppRow();
         if (mAppRow == null) {
             Log.w(TAG, "Can't load package");
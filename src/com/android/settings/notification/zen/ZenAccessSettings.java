@@ -34,6 +34,7 @@ import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppInfoBase;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessController;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessDetails;
 import com.android.settings.applications.specialaccess.zenaccess.ZenAccessSettingObserverMixin;
@@ -106,7 +107,8 @@ public class ZenAccessSettings extends EmptyTextSettings implements
         final Set<String> requesting =
                 ZenAccessController.getPackagesRequestingNotificationPolicyAccess();
         if (!requesting.isEmpty()) {
-            final List<ApplicationInfo> installed = mPkgMan.getInstalledApplications(0);
+            final List<ApplicationInfo> installed = InstalledPackageSnapshot.getInstance(mContext)
+                    .getInstalledApplications(mContext.getUserId(), /* flags */ 0);
             if (installed != null) {
                 for (ApplicationInfo app : installed) {
                     if (requesting.contains(app.packageName)) {
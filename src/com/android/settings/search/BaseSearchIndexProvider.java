@@ -146,7 +146,8 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         List<BasePreferenceController> controllersFromXml = new ArrayList<>();
         for (SearchIndexableResource sir : res) {
             controllersFromXml.addAll(PreferenceControllerListHelper
-                    .getPreferenceControllersFromXml(context, sir.xmlResId));
+                    .getPreferenceControllersFromXml(context, sir.xmlResId,
+                            controllersFromCode));
         }
         controllersFromXml = PreferenceControllerListHelper.filterControllers(controllersFromXml,
                 controllersFromCode);
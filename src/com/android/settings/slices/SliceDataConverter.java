@@ -31,7 +31,6 @@ import android.app.settings.SettingsEnums;
 import android.content.ComponentName;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
 import android.content.res.Resources;
@@ -41,12 +40,12 @@ import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
 import android.util.Log;
-import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
+import com.android.settings.accessibility.AccessibilityServiceInfoRegistry;
 import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.accessibility.AccessibilitySlicePreferenceController;
 import com.android.settings.core.BasePreferenceController;
@@ -267,7 +266,6 @@ class SliceDataConverter {
         Collections.addAll(a11yServiceNames, mContext.getResources()
                 .getStringArray(R.array.config_settings_slices_accessibility_components));
         final List<AccessibilityServiceInfo> installedServices = getAccessibilityServiceInfoList();
-        final PackageManager packageManager = mContext.getPackageManager();
 
         for (AccessibilityServiceInfo a11yServiceInfo : installedServices) {
             final ResolveInfo resolveInfo = a11yServiceInfo.getResolveInfo();
@@ -280,7 +278,8 @@ class SliceDataConverter {
                 continue;
             }
 
-            final String title = resolveInfo.loadLabel(packageManager).toString();
+            final String title = AccessibilityServiceInfoRegistry.getInstance(mContext)
+                    .getLabel(a11yServiceInfo).toString();
             int iconResource = resolveInfo.getIconResource();
             if (iconResource == 0) {
                 iconResource = R.drawable.ic_accessibility_generic;
@@ -308,8 +307,6 @@ class SliceDataConverter {
 
     @VisibleForTesting
     List<AccessibilityServiceInfo> getAccessibilityServiceInfoList() {
-        final AccessibilityManager accessibilityManager = AccessibilityManager.getInstance(
-                mContext);
-        return accessibilityManager.getInstalledAccessibilityServiceList();
+        return AccessibilityServiceInfoRegistry.getInstance(mContext).getInstalledServices();
     }
 }
\ No newline at end of file
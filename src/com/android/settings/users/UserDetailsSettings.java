@@ -37,6 +37,7 @@ import androidx.preference.TwoStatePreference;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settingslib.RestrictedLockUtils;
 import com.android.settingslib.RestrictedLockUtilsInternal;
@@ -44,7 +45,6 @@ import com.android.settingslib.RestrictedPreference;
 import com.android.settingslib.utils.CustomDialogHelper;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -85,7 +85,9 @@ public class UserDetailsSettings extends SettingsPreferenceFragment
     private UserCapabilities mUserCaps;
     private boolean mGuestUserAutoCreated;
     private final AtomicBoolean mGuestCreationScheduled = new AtomicBoolean();
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mExecutor = SettingsTaskScheduler.getInstance()
+            .newSerialExecutor(SettingsTaskScheduler.Lane.PREFETCH, "UserDetailsSettings")
+            .bindTo(this);
 
     @VisibleForTesting
     RestrictedPreference mSwitchUserPref;
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.R;
+import com.android.settingslib.drawable.CircleFramedDrawable;
+
+/**
+ * Process-wide cache of user avatars that are already circle-cropped at the size used by the
+ * user list. Entries are keyed by user id and icon version; the version of a user is bumped
+ * whenever {@link Intent#ACTION_USER_INFO_CHANGED} is received for it, so stale avatars are
+ * never served after a user picks a new photo. Avatars decoded in the background are stored
+ * with the version read before decoding, and dropped if the user changed in between.
+ */
+public class UserIconCache {
+
+    private static final String TAG = "UserIconCache";
+
+    /** Upper bound of memory, in bytes, held by encircled avatars. */
+    @VisibleForTesting
+    static final int MAX_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static UserIconCache sInstance;
+
+    private final int mIconSize;
+    private final SparseIntArray mIconVersions = new SparseIntArray();
+    private final LruCache<Long, Bitmap> mIcons =
+            new LruCache<Long, Bitmap>(MAX_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Long key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+
+    private final BroadcastReceiver mUserInfoReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+            if (userId != UserHandle.USER_NULL) {
+                invalidate(userId);
+            }
+        }
+    };
+
+    /** Returns the shared instance, creating it on first use. */
+    public static synchronized UserIconCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new UserIconCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    UserIconCache(Context context) {
+        mIconSize = context.getResources().getDimensionPixelSize(
+                R.dimen.multiple_users_user_icon_size);
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_USER_INFO_CHANGED);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        try {
+            context.registerReceiverAsUser(mUserInfoReceiver, UserHandle.ALL, filter,
+                    null /* broadcastPermission */, null /* scheduler */);
+        } catch (SecurityException e) {
+            // Without the receiver entries can still be invalidated explicitly.
+            Log.w(TAG, "Unable to listen for user info changes", e);
+        }
+    }
+
+    /**
+     * Returns the encircled avatar of {@code userId} for its current icon version, or
+     * {@code null} if it has not been loaded yet.
+     */
+    @Nullable
+    public Bitmap get(int userId) {
+        return mIcons.get(getKey(userId, getVersion(userId)));
+    }
+
+    /**
+     * Returns the icon version of {@code userId}, to be read before decoding its avatar and
+     * passed to {@link #put}.
+     */
+    public int getVersion(int userId) {
+        synchronized (mIconVersions) {
+            return mIconVersions.get(userId);
+        }
+    }
+
+    /**
+     * Circle-crops {@code icon} to the user list size, stores it for {@code userId} and returns
+     * the stored bitmap. Returns {@code null} without storing it if {@code version}, read before
+     * {@code icon} was decoded, is no longer the current version of the user.
+     */
+    @Nullable
+    public Bitmap put(int userId, int version, @NonNull Bitmap icon) {
+        final Bitmap encircled = encircle(icon);
+        synchronized (mIconVersions) {
+            if (mIconVersions.get(userId) != version) {
+                return null;
+            }
+            mIcons.put(getKey(userId, version), encircled);
+        }
+        return encircled;
+    }
+
+    /** Drops the avatar of {@code userId} and moves the user to a new icon version. */
+    public void invalidate(int userId) {
+        synchronized (mIconVersions) {
+            mIcons.remove(getKey(userId, mIconVersions.get(userId)));
+            mIconVersions.put(userId, mIconVersions.get(userId) + 1);
+        }
+    }
+
+    /** Drops every cached avatar. */
+    public void clear() {
+        mIcons.evictAll();
+    }
+
+    private static long getKey(int userId, int version) {
+        return ((long) userId << 32) | (version & 0xffffffffL);
+    }
+
+    private Bitmap encircle(Bitmap icon) {
+        final CircleFramedDrawable drawable = new CircleFramedDrawable(icon, mIconSize);
+        final Bitmap bitmap = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, mIconSize, mIconSize);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
@@ -33,6 +33,7 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.BlendMode;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.net.Uri;
@@ -71,6 +72,7 @@ import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
+import com.android.settings.core.SettingsTaskScheduler;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.password.ChooseLockGeneric;
 import com.android.settings.search.BaseSearchIndexProvider;
@@ -97,7 +99,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -201,8 +202,10 @@ public class UserSettings extends SettingsPreferenceFragment
     RestrictedPreference mAddUser;
     @VisibleForTesting
     RestrictedPreference mAddSupervisedUser;
+    /** Encircled avatars, backed by the process-wide {@link UserIconCache}. */
     @VisibleForTesting
     SparseArray<Bitmap> mUserIcons = new SparseArray<>();
+    private UserIconCache mUserIconCache;
     private int mRemovingUserId = -1;
     private boolean mAddingUser;
     private boolean mGuestUserAutoCreated;
@@ -229,7 +232,11 @@ public class UserSettings extends SettingsPreferenceFragment
     private TimeoutToDockUserPreferenceController mTimeoutToDockUserPreferenceController;
     private UserCreatingDialog mUserCreatingDialog;
     private final AtomicBoolean mGuestCreationScheduled = new AtomicBoolean();
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // Guest creation takes seconds and must finish even if the screen is closed, so it gets a
+    // thread of its own rather than one of the shared lane or a lifecycle bound executor.
+    private final ExecutorService mExecutor = SettingsTaskScheduler.getInstance()
+            .newDedicatedExecutor(SettingsTaskScheduler.Lane.UI_CRITICAL, "UserSettings",
+                    1 /* threads */);
 
     private CharSequence mPendingUserName;
     private Drawable mPendingUserIcon;
@@ -266,6 +273,7 @@ public class UserSettings extends SettingsPreferenceFragment
                 int userHandle = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, -1);
                 if (userHandle != -1) {
                     mUserIcons.remove(userHandle);
+                    getUserIconCache().invalidate(userHandle);
                 }
             }
             mHandler.sendEmptyMessage(MESSAGE_UPDATE_LIST);
@@ -541,9 +549,16 @@ public class UserSettings extends SettingsPreferenceFragment
         }
         mMePreference.setTitle(getString(R.string.user_you, profileName));
         int myUserId = UserHandle.myUserId();
-        Bitmap b = mUserManager.getUserIcon(myUserId);
+        Bitmap b = getUserIconCache().get(myUserId);
+        if (b == null) {
+            final int version = getUserIconCache().getVersion(myUserId);
+            b = mUserManager.getUserIcon(myUserId);
+            if (b != null) {
+                b = getUserIconCache().put(myUserId, version, b);
+            }
+        }
         if (b != null) {
-            mMePreference.setIcon(encircleUserIcon(b));
+            mMePreference.setIcon(new BitmapDrawable(getResources(), b));
             mUserIcons.put(myUserId, b);
         }
     }
@@ -1250,6 +1265,12 @@ public class UserSettings extends SettingsPreferenceFragment
                 pref.setSummary(R.string.user_summary_restricted_profile);
             }
             if (user.iconPath != null) {
+                if (mUserIcons.get(user.id) == null) {
+                    final Bitmap cachedIcon = getUserIconCache().get(user.id);
+                    if (cachedIcon != null) {
+                        mUserIcons.put(user.id, cachedIcon);
+                    }
+                }
                 if (mUserIcons.get(user.id) == null) {
                     // Icon not loaded yet, print a placeholder
                     missingIcons.add(user.id);
@@ -1545,11 +1566,16 @@ public class UserSettings extends SettingsPreferenceFragment
             @Override
             protected Void doInBackground(List<Integer>... values) {
                 for (int userId : values[0]) {
+                    final int version = getUserIconCache().getVersion(userId);
                     Bitmap bitmap = mUserManager.getUserIcon(userId);
                     if (bitmap == null) {
                         bitmap = getDefaultUserIconAsBitmap(getContext().getResources(), userId);
                     }
-                    mUserIcons.append(userId, bitmap);
+                    final Bitmap encircled = getUserIconCache().put(userId, version, bitmap);
+                    // A stale icon is left out, the list update loads the new one.
+                    if (encircled != null) {
+                        mUserIcons.append(userId, encircled);
+                    }
                 }
                 return null;
             }
@@ -1567,8 +1593,16 @@ public class UserSettings extends SettingsPreferenceFragment
     private void setPhotoId(Preference pref, UserInfo user) {
         Bitmap bitmap = mUserIcons.get(user.id);
         if (bitmap != null) {
-            pref.setIcon(encircleUserIcon(bitmap));
+            // Icons in mUserIcons are already encircled by the shared cache.
+            pref.setIcon(new BitmapDrawable(getContext().getResources(), bitmap));
+        }
+    }
+
+    private UserIconCache getUserIconCache() {
+        if (mUserIconCache == null) {
+            mUserIconCache = UserIconCache.getInstance(getContext());
         }
+        return mUserIconCache;
     }
 
     @Override
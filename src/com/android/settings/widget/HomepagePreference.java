@@ -55,6 +55,15 @@ public class HomepagePreference extends Preference implements
         mHelper.onBindViewHolder(holder);
     }
 
+    @Override
+    public void setSummary(CharSequence summary) {
+        super.setSummary(summary);
+        // Null while the superclass is constructed.
+        if (mHelper != null) {
+            mHelper.onSummarySet();
+        }
+    }
+
     @Override
     public HomepagePreferenceLayoutHelper getHelper() {
         return mHelper;
@@ -31,6 +31,7 @@ public class HomepagePreferenceLayoutHelper {
     private boolean mIconVisible = true;
     private int mIconPaddingStart = -1;
     private int mTextPaddingStart = -1;
+    private int mSummarySetCount;
 
     /** The interface for managing preference layouts on homepage */
     public interface HomepagePreferenceLayout {
@@ -68,6 +69,18 @@ public class HomepagePreferenceLayoutHelper {
         }
     }
 
+    /**
+     * Returns how many times the summary of the preference was set, even to the same text, e.g.
+     * to tell whether a controller confirmed a summary restored from a snapshot.
+     */
+    public int getSummarySetCount() {
+        return mSummarySetCount;
+    }
+
+    void onSummarySet() {
+        mSummarySetCount++;
+    }
+
     void onBindViewHolder(PreferenceViewHolder holder) {
         mIcon = holder.findViewById(R.id.icon_frame);
         mText = holder.findViewById(R.id.text_frame);
@@ -56,6 +56,15 @@ public class RestrictedHomepagePreference extends RestrictedTopLevelPreference i
         mHelper.onBindViewHolder(holder);
     }
 
+    @Override
+    public void setSummary(CharSequence summary) {
+        super.setSummary(summary);
+        // Null while the superclass is constructed.
+        if (mHelper != null) {
+            mHelper.onSummarySet();
+        }
+    }
+
     @Override
     public HomepagePreferenceLayoutHelper getHelper() {
         return mHelper;
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.dpp;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.android.settings.core.SettingsTaskScheduler;
+import com.android.settingslib.qrcode.QrCodeGenerator;
+import com.android.settingslib.utils.ThreadUtils;
+
+import com.google.zxing.WriterException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the most recently rendered QR code bitmaps, so showing the same code again after a
+ * configuration change, a resize or coming back from the share sheet does not render it again.
+ *
+ * <p>Entries are keyed by the SHA-256 of the payload and the size in pixels. A bitmap encodes
+ * the network password just as the payload does, so the cache must be {@link #clear() cleared}
+ * once the sharing screen is gone. Bitmaps are moved to graphics memory when the device supports
+ * hardware bitmaps.
+ */
+public final class QrCodeBitmapCache {
+    private static final String TAG = "QrCodeBitmapCache";
+
+    // A few full-size codes, e.g. the same network in portrait, landscape and split screen.
+    @VisibleForTesting
+    static final int MAX_SIZE_BYTES = 8 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sBitmaps =
+            new LruCache<String, Bitmap>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap bitmap) {
+                    return bitmap.getAllocationByteCount();
+                }
+            };
+
+    // Bumped by clear(), so codes rendered before it aren't cached after it.
+    private static int sGeneration;
+
+    private QrCodeBitmapCache() {
+    }
+
+    /** Returns the rendered bitmap of {@code payload}, or null if it is not cached. */
+    @Nullable
+    public static Bitmap get(@NonNull String payload, int size) {
+        return sBitmaps.get(getKey(payload, size));
+    }
+
+    /** Returns the rendered bitmap of {@code payload}, rendering and caching it if needed. */
+    @WorkerThread
+    @NonNull
+    public static Bitmap getOrEncode(@NonNull String payload, int size) throws WriterException {
+        final String key = getKey(payload, size);
+        final Bitmap cached = sBitmaps.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final int generation = getGeneration();
+        final Bitmap bitmap = toHardwareBitmap(QrCodeGenerator.encodeQrCode(payload, size));
+        synchronized (QrCodeBitmapCache.class) {
+            if (generation == sGeneration) {
+                sBitmaps.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Delivers the bitmap of {@code payload} to {@code callback} on the main thread. A cached
+     * bitmap is delivered right away, otherwise it is rendered in the background. Nothing is
+     * delivered once {@code owner} is destroyed.
+     */
+    public static void load(@NonNull LifecycleOwner owner, @NonNull String payload, int size,
+            @NonNull Consumer<Bitmap> callback) {
+        final Bitmap cached = get(payload, size);
+        if (cached != null) {
+            callback.accept(cached);
+            return;
+        }
+        SettingsTaskScheduler.getInstance().submit(owner, SettingsTaskScheduler.Lane.UI_CRITICAL,
+                TAG, () -> {
+                    final Bitmap bitmap = encodeOrNull(payload, size);
+                    if (bitmap == null) {
+                        return;
+                    }
+                    ThreadUtils.postOnMainThread(() -> {
+                        if (owner.getLifecycle().getCurrentState()
+                                .isAtLeast(Lifecycle.State.INITIALIZED)) {
+                            callback.accept(bitmap);
+                        }
+                    });
+                });
+    }
+
+    /** Renders the bitmap of {@code payload} in the background if it is not cached yet. */
+    public static void prefetch(@NonNull String payload, int size) {
+        if (get(payload, size) != null) {
+            return;
+        }
+        SettingsTaskScheduler.getInstance().submit(SettingsTaskScheduler.Lane.PREFETCH, TAG,
+                () -> encodeOrNull(payload, size));
+    }
+
+    /**
+     * Drops every cached bitmap, including the ones still being rendered. Called when the
+     * sharing screen is destroyed for good.
+     */
+    public static synchronized void clear() {
+        sGeneration++;
+        sBitmaps.evictAll();
+    }
+
+    private static synchronized int getGeneration() {
+        return sGeneration;
+    }
+
+    @Nullable
+    private static Bitmap encodeOrNull(String payload, int size) {
+        try {
+            return getOrEncode(payload, size);
+        } catch (WriterException e) {
+            Log.e(TAG, "Error generating QR code bitmap " + e);
+            return null;
+        }
+    }
+
+    private static Bitmap toHardwareBitmap(Bitmap bitmap) {
+        final Bitmap hardwareBitmap = bitmap.copy(Bitmap.Config.HARDWARE, /* isMutable */ false);
+        if (hardwareBitmap == null) {
+            return bitmap;
+        }
+        bitmap.recycle();
+        return hardwareBitmap;
+    }
+
+    private static String getKey(String payload, int size) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(payload.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + ":" + size;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
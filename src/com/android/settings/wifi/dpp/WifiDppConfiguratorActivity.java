@@ -117,6 +117,15 @@ public class WifiDppConfiguratorActivity extends WifiDppBaseActivity implements
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        if (!isChangingConfigurations()) {
+            // The rendered codes hold the network password, don't keep them past this screen.
+            QrCodeBitmapCache.clear();
+        }
+        super.onDestroy();
+    }
+
     @Override
     protected void handleIntent(Intent intent) {
         if (isGuestUser(getApplicationContext())) {
@@ -227,6 +236,11 @@ public class WifiDppConfiguratorActivity extends WifiDppBaseActivity implements
 
         if (fragment == null) {
             fragment = new WifiDppQrCodeGeneratorFragment();
+            // Render the code while the fragment transaction runs.
+            if (mWifiNetworkConfig != null) {
+                QrCodeBitmapCache.prefetch(mWifiNetworkConfig.getQrCode(),
+                        getResources().getDimensionPixelSize(R.dimen.qrcode_size));
+            }
         } else {
             if (fragment.isVisible()) {
                 return;
@@ -327,7 +341,7 @@ public class WifiDppConfiguratorActivity extends WifiDppBaseActivity implements
             return false;
         }
 
-        mWifiDppQrCode = new WifiQrCode(wifiQrCode.getQrCode());
+        mWifiDppQrCode = wifiQrCode;
         return true;
     }
 
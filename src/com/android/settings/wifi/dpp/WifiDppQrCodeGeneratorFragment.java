@@ -23,7 +23,6 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.provider.Settings;
@@ -44,9 +43,6 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.app.chooser.DisplayResolveInfo;
 import com.android.internal.app.chooser.TargetInfo;
 import com.android.settings.R;
-import com.android.settingslib.qrcode.QrCodeGenerator;
-
-import com.google.zxing.WriterException;
 
 /**
  * After sharing a saved Wi-Fi network, {@code WifiDppConfiguratorActivity} start with this fragment
@@ -261,14 +257,10 @@ public class WifiDppQrCodeGeneratorFragment extends WifiDppQrCodeBaseFragment {
     }
 
     private void setQrCode() {
-        try {
-            final int qrcodeSize = getContext().getResources().getDimensionPixelSize(
-                    R.dimen.qrcode_size);
-            final Bitmap bmp = QrCodeGenerator.encodeQrCode(mQrCode, qrcodeSize);
-            mQrCodeView.setImageBitmap(bmp);
-        } catch (WriterException e) {
-            Log.e(TAG, "Error generating QR code bitmap " + e);
-        }
+        final int qrcodeSize = getContext().getResources().getDimensionPixelSize(
+                R.dimen.qrcode_size);
+        QrCodeBitmapCache.load(getViewLifecycleOwner(), mQrCode, qrcodeSize,
+                mQrCodeView::setImageBitmap);
     }
 
     private WifiNetworkConfig getWifiNetworkConfigFromHostActivity() {
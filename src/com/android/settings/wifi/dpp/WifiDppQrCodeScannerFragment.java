@@ -560,14 +560,15 @@ public class WifiDppQrCodeScannerFragment extends WifiDppQrCodeBaseFragment impl
 
     private void handleWifiDpp() {
         Message message = mHandler.obtainMessage(MESSAGE_SCAN_WIFI_DPP_SUCCESS);
-        message.obj = new WifiQrCode(mWifiQrCode.getQrCode());
+        // WifiQrCode is immutable, reuse the instance parsed by isValid()
+        message.obj = mWifiQrCode;
 
         mHandler.sendMessageDelayed(message, SHOW_SUCCESS_SQUARE_INTERVAL);
     }
 
     private void handleZxingWifiFormat() {
         Message message = mHandler.obtainMessage(MESSAGE_SCAN_ZXING_WIFI_FORMAT_SUCCESS);
-        message.obj = new WifiQrCode(mWifiQrCode.getQrCode()).getWifiNetworkConfig();
+        message.obj = mWifiQrCode.getWifiNetworkConfig();
 
         mHandler.sendMessageDelayed(message, SHOW_SUCCESS_SQUARE_INTERVAL);
     }
@@ -21,10 +21,6 @@ import android.text.TextUtils;
 
 import androidx.annotation.VisibleForTesting;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Pattern;
-
 /**
  * Supports to parse 2 types of QR code
  *
@@ -62,6 +58,18 @@ public class WifiQrCode {
     static final String PREFIX_ZXING_HIDDEN_SSID = "H:";
 
     static final String DELIMITER_QR_CODE = ";";
+    private static final char DELIMITER = ';';
+    private static final char KEY_VALUE_SEPARATOR = ':';
+
+    // Keys looked up by parseValues(), in the order of the returned values.
+    private static final char[] DPP_KEYS = {'K', 'I'};
+    private static final int INDEX_DPP_PUBLIC_KEY = 0;
+    private static final int INDEX_DPP_INFORMATION = 1;
+    private static final char[] ZXING_KEYS = {'T', 'S', 'P', 'H'};
+    private static final int INDEX_ZXING_SECURITY = 0;
+    private static final int INDEX_ZXING_SSID = 1;
+    private static final int INDEX_ZXING_PASSWORD = 2;
+    private static final int INDEX_ZXING_HIDDEN_SSID = 3;
 
     // Ignores password if security is SECURITY_NO_PASSWORD or absent
     static final String SECURITY_NO_PASSWORD = "nopass"; //open network or OWE
@@ -104,36 +112,29 @@ public class WifiQrCode {
 
     /** Parses Wi-Fi DPP QR code string */
     private void parseWifiDppQrCode(String qrCode) throws IllegalArgumentException {
-        List<String> keyValueList = getKeyValueList(qrCode, PREFIX_DPP, DELIMITER_QR_CODE);
+        final String[] values = parseValues(qrCode, PREFIX_DPP.length(), DPP_KEYS,
+                /* unescape */ false);
 
-        String publicKey = getValueOrNull(keyValueList, PREFIX_DPP_PUBLIC_KEY);
+        String publicKey = values[INDEX_DPP_PUBLIC_KEY];
         if (TextUtils.isEmpty(publicKey)) {
             throw new IllegalArgumentException("Invalid format");
         }
         mPublicKey = publicKey;
 
-        mInformation = getValueOrNull(keyValueList, PREFIX_DPP_INFORMATION);
+        mInformation = values[INDEX_DPP_INFORMATION];
     }
 
     /** Parses ZXing reader library's Wi-Fi Network config format */
     private void parseZxingWifiQrCode(String qrCode) throws IllegalArgumentException {
-        List<String> keyValueList = getKeyValueList(qrCode, PREFIX_ZXING_WIFI_NETWORK_CONFIG,
-                DELIMITER_QR_CODE);
-
-        String security = getValueOrNull(keyValueList, PREFIX_ZXING_SECURITY);
-        String ssid = getValueOrNull(keyValueList, PREFIX_ZXING_SSID);
-        String password = getValueOrNull(keyValueList, PREFIX_ZXING_PASSWORD);
-        String hiddenSsidString = getValueOrNull(keyValueList, PREFIX_ZXING_HIDDEN_SSID);
-
-        boolean hiddenSsid = "true".equalsIgnoreCase(hiddenSsidString);
+        //"\", ";", "," and ":" are escaped with a backslash "\", they are unescaped while parsing
+        final String[] values = parseValues(qrCode, PREFIX_ZXING_WIFI_NETWORK_CONFIG.length(),
+                ZXING_KEYS, /* unescape */ true);
 
-        //"\", ";", "," and ":" are escaped with a backslash "\", should remove at first
-        security = removeBackSlash(security);
-        ssid = removeBackSlash(ssid);
-        password = removeBackSlash(password);
+        boolean hiddenSsid = "true".equalsIgnoreCase(values[INDEX_ZXING_HIDDEN_SSID]);
 
-        mWifiNetworkConfig = WifiNetworkConfig.getValidConfigOrNull(security, ssid, password,
-                hiddenSsid, WifiConfiguration.INVALID_NETWORK_ID, /* isHotspot */ false);
+        mWifiNetworkConfig = WifiNetworkConfig.getValidConfigOrNull(values[INDEX_ZXING_SECURITY],
+                values[INDEX_ZXING_SSID], values[INDEX_ZXING_PASSWORD], hiddenSsid,
+                WifiConfiguration.INVALID_NETWORK_ID, /* isHotspot */ false);
 
         if (mWifiNetworkConfig == null) {
             throw new IllegalArgumentException("Invalid format");
@@ -141,32 +142,67 @@ public class WifiQrCode {
     }
 
     /**
-     * Splits key/value pairs from qrCode
+     * Reads the key/value pairs of a QR code in a single pass, without regular expressions.
+     *
+     * <p>Pairs are separated by {@link #DELIMITER_QR_CODE} and may start with white spaces. A
+     * backslash escapes the next character, so an escaped delimiter does not end a value. Only
+     * the first pair of each key is used.
      *
      * @param qrCode the QR code raw string
-     * @param prefixQrCode the string before all key/value pairs in qrCode
-     * @param delimiter the string to split key/value pairs, can't contain a backslash
-     * @return a list contains string of key/value (e.g. K:key1)
+     * @param start the index of the first key/value pair in qrCode
+     * @param keys the single character keys to look for, each followed by a ':' in qrCode
+     * @param unescape whether to remove the escaping backslashes from the values
+     * @return the value of each key in {@code keys}, or null for missing keys
      */
-    private List<String> getKeyValueList(String qrCode, String prefixQrCode,
-                String delimiter) {
-        String keyValueString = qrCode.substring(prefixQrCode.length());
-
-        // Should not treat \delimiter as a delimiter
-        String regex = "(?<!\\\\)" + Pattern.quote(delimiter);
-
-        return Arrays.asList(keyValueString.split(regex));
+    @VisibleForTesting
+    static String[] parseValues(String qrCode, int start, char[] keys, boolean unescape) {
+        final String[] values = new String[keys.length];
+        final int length = qrCode.length();
+        int i = start;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(qrCode.charAt(i))) {
+                i++;
+            }
+            int keyIndex = -1;
+            if (i + 1 < length && qrCode.charAt(i + 1) == KEY_VALUE_SEPARATOR) {
+                keyIndex = indexOf(keys, qrCode.charAt(i));
+                if (keyIndex >= 0 && values[keyIndex] != null) {
+                    keyIndex = -1;
+                }
+            }
+            final int valueStart = keyIndex >= 0 ? i + 2 : i;
+            int valueEnd = valueStart;
+            boolean escaped = false;
+            boolean hasEscape = false;
+            while (valueEnd < length) {
+                final char ch = qrCode.charAt(valueEnd);
+                if (escaped) {
+                    escaped = false;
+                } else if (ch == '\\') {
+                    escaped = true;
+                    hasEscape = true;
+                } else if (ch == DELIMITER) {
+                    break;
+                }
+                valueEnd++;
+            }
+            if (keyIndex >= 0) {
+                values[keyIndex] = unescape && hasEscape
+                        ? removeBackSlash(qrCode, valueStart, valueEnd)
+                        : qrCode.substring(valueStart, valueEnd);
+            }
+            i = valueEnd + 1;
+        }
+        return values;
     }
 
-    private String getValueOrNull(List<String> keyValueList, String prefix) {
-        for (String keyValue : keyValueList) {
-            String strippedKeyValue = keyValue.stripLeading();
-            if (strippedKeyValue.startsWith(prefix)) {
-                return strippedKeyValue.substring(prefix.length());
+    private static int indexOf(char[] keys, char key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
             }
         }
-
-        return null;
+        return -1;
     }
 
     @VisibleForTesting
@@ -174,10 +210,14 @@ public class WifiQrCode {
         if (input == null) {
             return null;
         }
+        return removeBackSlash(input, 0, input.length());
+    }
 
-        StringBuilder sb = new StringBuilder();
+    private static String removeBackSlash(String input, int start, int end) {
+        final StringBuilder sb = new StringBuilder(end - start);
         boolean backSlash = false;
-        for (char ch : input.toCharArray()) {
+        for (int i = start; i < end; i++) {
+            final char ch = input.charAt(i);
             if (ch != '\\') {
                 sb.append(ch);
                 backSlash = false;
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import android.icu.text.LocaleDisplayNames;
+import android.icu.util.TimeZone;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.datetime.timezone.BaseTimeZoneAdapter;
+import com.android.settings.datetime.timezone.TimeZoneSearchIndex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures building the time zone picker search index and typing queries into it, with the
+ * region names and time zone ids of a few locales with large or non-Latin name sets.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimeZoneSearchPerfTest {
+    private static final String TAG = "SettingsPerfTests";
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("ru", "RU"),
+            new Locale("hi", "IN"), new Locale("ar", "EG")};
+    private static final int TEST_TIME = 20;
+
+    @Test
+    public void buildAndType() {
+        final Bundle result = new Bundle();
+        for (Locale locale : LOCALES) {
+            final List<SearchItem> items = createItems(locale);
+            long totalBuild = 0;
+            long totalTyping = 0;
+            for (int i = 0; i < TEST_TIME; i++) {
+                final long start = SystemClock.elapsedRealtimeNanos();
+                final TimeZoneSearchIndex index = new TimeZoneSearchIndex(items, locale);
+                final long built = SystemClock.elapsedRealtimeNanos();
+                // Type the name of an item one character at a time, as the search view does.
+                final String query = items.get(i % items.size()).getSearchKeys()[1];
+                for (int length = 1; length <= query.length(); length++) {
+                    index.findItems(query.substring(0, length));
+                }
+                totalTyping += SystemClock.elapsedRealtimeNanos() - built;
+                totalBuild += built - start;
+            }
+            result.putLong("time_zone_index_build_us_" + locale, totalBuild / TEST_TIME / 1000);
+            result.putLong("time_zone_index_typing_us_" + locale, totalTyping / TEST_TIME / 1000);
+        }
+        Log.i(TAG, "Time zone search: " + result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, result);
+    }
+
+    private static List<SearchItem> createItems(Locale locale) {
+        final LocaleDisplayNames displayNames = LocaleDisplayNames.getInstance(locale);
+        final List<SearchItem> items = new ArrayList<>();
+        for (String regionId : Locale.getISOCountries()) {
+            items.add(new SearchItem(items.size(), regionId,
+                    displayNames.regionDisplayName(regionId)));
+        }
+        for (String timeZoneId : TimeZone.getAvailableIDs(TimeZone.SystemTimeZoneType.CANONICAL,
+                /* region */ null, /* rawOffset */ null)) {
+            final String name = TimeZone.getTimeZone(timeZoneId)
+                    .getDisplayName(/* daylight */ false, TimeZone.LONG_GENERIC, locale);
+            items.add(new SearchItem(items.size(), timeZoneId, name));
+        }
+        return items;
+    }
+
+    private static class SearchItem implements BaseTimeZoneAdapter.AdapterItem {
+        private final long mId;
+        private final String[] mSearchKeys;
+
+        SearchItem(long id, String key, String name) {
+            mId = id;
+            mSearchKeys = new String[] {key, name};
+        }
+
+        @Override
+        public CharSequence getTitle() {
+            return mSearchKeys[1];
+        }
+
+        @Override
+        public CharSequence getSummary() {
+            return null;
+        }
+
+        @Override
+        public String getIconText() {
+            return null;
+        }
+
+        @Override
+        public String getCurrentTime() {
+            return null;
+        }
+
+        @Override
+        public long getItemId() {
+            return mId;
+        }
+
+        @Override
+        public String[] getSearchKeys() {
+            return mSearchKeys;
+        }
+    }
+}
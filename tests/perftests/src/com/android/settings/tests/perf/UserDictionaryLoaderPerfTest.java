@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static junit.framework.TestCase.assertEquals;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.UserDictionary;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.inputmethod.UserDictionaryCursorLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures loading a 100k word user dictionary. The words are added under a locale that is not
+ * used by any real keyboard and removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserDictionaryLoaderPerfTest {
+    private static final String TAG = "SettingsPerfTests";
+    private static final String TEST_LOCALE = "zz_ZZ";
+    private static final int WORD_COUNT = 100_000;
+    // Every tenth word is inserted twice and must be dropped by the loader.
+    private static final int DUPLICATE_EVERY = 10;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int TEST_TIME = 5;
+
+    private Context mContext;
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mResolver = mContext.getContentResolver();
+        deleteTestWords();
+        final ContentValues[] batch = new ContentValues[BATCH_SIZE];
+        int filled = 0;
+        for (int i = 0; i < WORD_COUNT; i++) {
+            final int copies = i % DUPLICATE_EVERY == 0 ? 2 : 1;
+            for (int copy = 0; copy < copies; copy++) {
+                final ContentValues values = new ContentValues();
+                values.put(UserDictionary.Words.WORD, "word" + i);
+                values.put(UserDictionary.Words.SHORTCUT, "w" + i);
+                values.put(UserDictionary.Words.FREQUENCY, 250);
+                values.put(UserDictionary.Words.LOCALE, TEST_LOCALE);
+                batch[filled++] = values;
+                if (filled == BATCH_SIZE) {
+                    mResolver.bulkInsert(UserDictionary.Words.CONTENT_URI, batch);
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            final ContentValues[] rest = new ContentValues[filled];
+            System.arraycopy(batch, 0, rest, 0, filled);
+            mResolver.bulkInsert(UserDictionary.Words.CONTENT_URI, rest);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        deleteTestWords();
+    }
+
+    @Test
+    public void loadInBackground_100kWords() {
+        // CursorLoader observes its cursor through a handler, so it's created on a looper thread.
+        final UserDictionaryCursorLoader[] loaderHolder = new UserDictionaryCursorLoader[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                loaderHolder[0] = new UserDictionaryCursorLoader(mContext, TEST_LOCALE));
+        final UserDictionaryCursorLoader loader = loaderHolder[0];
+        long totalLoad = 0;
+        long totalScroll = 0;
+        for (int i = 0; i < TEST_TIME; i++) {
+            final long start = SystemClock.elapsedRealtime();
+            final Cursor cursor = loader.loadInBackground();
+            final long loaded = SystemClock.elapsedRealtime();
+            assertEquals(WORD_COUNT, cursor.getCount());
+            // Walk the list the way a full fling through the list view would.
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                cursor.getString(UserDictionaryCursorLoader.INDEX_SHORTCUT);
+            }
+            totalScroll += SystemClock.elapsedRealtime() - loaded;
+            totalLoad += loaded - start;
+            cursor.close();
+        }
+
+        final Bundle result = new Bundle();
+        result.putLong("user_dictionary_load_ms", totalLoad / TEST_TIME);
+        result.putLong("user_dictionary_scroll_ms", totalScroll / TEST_TIME);
+        Log.i(TAG, "User dictionary of " + WORD_COUNT + " words: " + result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, result);
+    }
+
+    private void deleteTestWords() {
+        mResolver.delete(UserDictionary.Words.CONTENT_URI,
+                UserDictionary.Words.LOCALE + "=?", new String[]{TEST_LOCALE});
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static junit.framework.TestCase.assertEquals;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.settings.wifi.dpp.WifiQrCode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures parsing of Wi-Fi QR codes, which the scanner does for every decoded camera frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WifiQrCodePerfTest {
+    private static final String TAG = "SettingsPerfTests";
+    private static final int ITERATIONS = 100_000;
+    private static final int TEST_TIME = 5;
+
+    private static final String ZXING_QR_CODE =
+            "WIFI:S:Guest\\;Network\\:5G;T:WPA;P:pass\\,word\\\\with\\;escapes;H:false;;";
+    private static final String DPP_QR_CODE = "DPP:I:SN=4774LH2b4044;M:010203040506;K:MDkwEwYH"
+            + "KoZIzj0CAQYIKoZIzj0DAQcDIgADURzxmttZoIRIPWGoQMV00XHWCAQIhXruVWOz0NjlkIA=;;";
+
+    @Test
+    public void parse_zxingWifiQrCode() {
+        reportParseTime("wifi_qr_code_zxing_parse_ns", ZXING_QR_CODE, "WIFI");
+    }
+
+    @Test
+    public void parse_dppQrCode() {
+        reportParseTime("wifi_qr_code_dpp_parse_ns", DPP_QR_CODE, "DPP");
+    }
+
+    private void reportParseTime(String key, String qrCode, String scheme) {
+        long total = 0;
+        for (int i = 0; i < TEST_TIME; i++) {
+            final long start = SystemClock.elapsedRealtimeNanos();
+            for (int j = 0; j < ITERATIONS; j++) {
+                assertEquals(scheme, new WifiQrCode(qrCode).getScheme());
+            }
+            total += SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        final Bundle result = new Bundle();
+        result.putLong(key, total / TEST_TIME / ITERATIONS);
+        Log.i(TAG, "Wi-Fi QR code parsing: " + result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, result);
+    }
+}
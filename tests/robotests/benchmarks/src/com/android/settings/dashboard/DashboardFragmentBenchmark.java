@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.core.PreferenceXmlParserUtils;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settings.search.SearchFeatureProviderImpl;
+import com.android.settings.testutils.FakeFeatureFactory;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.androidx.fragment.FragmentController;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cost of opening each {@link DashboardFragment} found through the search indexable
+ * resources, on the host.
+ *
+ * <p>For each screen four phases are timed, each with warmup runs that aren't recorded:
+ * <ul>
+ *     <li>{@code extractMetadata}: parsing the screen xml as the controller helper does.</li>
+ *     <li>{@code onAttach}: creating the preference controllers of a new fragment.</li>
+ *     <li>{@code displayResourceTiles}: inflating the xml and displaying every controller.</li>
+ *     <li>{@code updatePreferenceStates}: updating every available preference.</li>
+ * </ul>
+ *
+ * <p>Feature providers are faked, so injected tiles aren't part of the results. The results of
+ * each screen are written to {@code <ClassName>.json} in the directory named by the
+ * {@code settings.benchmark.output} system property. Screens that fail to load are written with
+ * the error instead of timings.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DashboardFragmentBenchmark {
+    private static final String TAG = "DashboardFragmentBenchmark";
+
+    private static final int WARMUP = Integer.getInteger("settings.benchmark.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("settings.benchmark.iterations", 10);
+    // Only screens whose class name contains this are measured.
+    private static final String FILTER = System.getProperty("settings.benchmark.filter", "");
+    // Same as PreferenceControllerListHelper#getPreferenceControllersFromXml.
+    private static final int METADATA_FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER | MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_FOR_WORK;
+
+    private Context mContext;
+    private File mOutputDir;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        FakeFeatureFactory.setupForTest();
+        mOutputDir = new File(System.getProperty("settings.benchmark.output",
+                new File(System.getProperty("java.io.tmpdir"), "settings-benchmarks").getPath()));
+        mOutputDir.mkdirs();
+    }
+
+    @Test
+    public void benchmarkDashboardFragments() throws Exception {
+        int measured = 0;
+        for (Class<?> clazz : getScreens()) {
+            final JSONObject result = new JSONObject()
+                    .put("screen", clazz.getName())
+                    .put("warmup", WARMUP)
+                    .put("iterations", ITERATIONS);
+            try {
+                measure(clazz, result);
+                measured++;
+            } catch (Throwable e) {
+                // Screens that need real services can't be loaded here; keep going with the rest.
+                Log.w(TAG, "Unable to measure " + clazz.getName(), e);
+                result.put("error", e.toString());
+            }
+            write(clazz, result);
+        }
+        Log.i(TAG, "Measured " + measured + " screens, results in " + mOutputDir);
+        assertThat(measured).isGreaterThan(0);
+    }
+
+    private List<Class<?>> getScreens() {
+        final List<Class<?>> screens = new ArrayList<>();
+        for (SearchIndexableData data : new SearchFeatureProviderImpl()
+                .getSearchIndexableResources().getProviderValues()) {
+            final Class<?> clazz = data.getTargetClass();
+            if (clazz != null && DashboardFragment.class.isAssignableFrom(clazz)
+                    && clazz.getName().contains(FILTER)) {
+                screens.add(clazz);
+            }
+        }
+        return screens;
+    }
+
+    private void measure(Class<?> clazz, JSONObject result) throws Exception {
+        final int resId = newFragment(clazz).getPreferenceScreenResId();
+
+        result.put("extractMetadata", time(() ->
+                PreferenceXmlParserUtils.extractMetadata(mContext, resId, METADATA_FLAGS)));
+
+        result.put("onAttach", time(() -> newFragment(clazz).onAttach(mContext)));
+
+        // Attaching and creating the fragment displays its resource tiles once already.
+        final DashboardFragment fragment = newFragment(clazz);
+        FragmentController.of(fragment, FragmentActivity.class).create();
+        result.put("controllers", fragment.getPreferenceControllers().stream()
+                .mapToInt(List::size).sum());
+        result.put("displayResourceTiles", time(() -> {
+            final PreferenceScreen screen = fragment.getPreferenceScreen();
+            if (screen != null) {
+                screen.removeAll();
+            }
+            fragment.displayResourceTiles();
+        }));
+        result.put("updatePreferenceStates", time(fragment::updatePreferenceStates));
+    }
+
+    private DashboardFragment newFragment(Class<?> clazz) {
+        return (DashboardFragment) Fragment.instantiate(mContext, clazz.getName());
+    }
+
+    /** Runs {@code phase} {@link #WARMUP} times, then returns the stats of {@link #ITERATIONS}. */
+    private static JSONObject time(Phase phase) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            phase.run();
+        }
+        final long[] durations = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            phase.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+        long total = 0;
+        for (long duration : durations) {
+            total += duration;
+        }
+        return new JSONObject()
+                .put("min_ns", durations[0])
+                .put("median_ns", durations[durations.length / 2])
+                .put("mean_ns", total / durations.length)
+                .put("max_ns", durations[durations.length - 1]);
+    }
+
+    private void write(Class<?> clazz, JSONObject result) throws IOException, JSONException {
+        try (Writer writer = new FileWriter(new File(mOutputDir, clazz.getName() + ".json"))) {
+            writer.write(result.toString(2));
+        }
+    }
+
+    private interface Phase {
+        void run() throws Exception;
+    }
+}
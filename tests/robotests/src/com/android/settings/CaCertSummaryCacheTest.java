@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class CaCertSummaryCacheTest {
+
+    private static final String TAB = "SYSTEM";
+    private static final String ALIAS = "system:1234abcd.0";
+    private static final String OTHER_ALIAS = "system:5678ef01.0";
+
+    private Context mContext;
+    private CaCertSummaryCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mContext.getSharedPreferences(CaCertSummaryCache.PREF_FILE, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+        mCache = new CaCertSummaryCache(mContext);
+    }
+
+    @Test
+    public void get_afterPut_returnsSummary() {
+        final String fingerprint = CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3});
+        mCache.put(TAB, 0, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", "Name"));
+
+        final CaCertSummaryCache.Summary summary =
+                new CaCertSummaryCache(mContext).get(TAB, 0, ALIAS, fingerprint);
+
+        assertThat(summary.mPrimary).isEqualTo("Org");
+        assertThat(summary.mSecondary).isEqualTo("Name");
+    }
+
+    @Test
+    public void get_fingerprintChanged_returnsNull() {
+        mCache.put(TAB, 0, ALIAS, CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3}),
+                new CaCertSummaryCache.Summary("Org", ""));
+
+        assertThat(mCache.get(TAB, 0, ALIAS, CaCertSummaryCache.getFingerprint(new byte[]{4})))
+                .isNull();
+    }
+
+    @Test
+    public void get_otherProfile_returnsNull() {
+        final String fingerprint = CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3});
+        mCache.put(TAB, 0, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+
+        assertThat(mCache.get(TAB, 10, ALIAS, fingerprint)).isNull();
+    }
+
+    @Test
+    public void get_otherTab_returnsNull() {
+        final String fingerprint = CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3});
+        mCache.put(TAB, 0, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+
+        assertThat(mCache.get("USER", 0, ALIAS, fingerprint)).isNull();
+    }
+
+    @Test
+    public void prune_removesAliasesAndProfilesNotListed() {
+        final String fingerprint = CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3});
+        mCache.put(TAB, 0, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+        mCache.put(TAB, 0, OTHER_ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+        mCache.put(TAB, 10, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+        final SparseArray<List<String>> aliasesByProfileId = new SparseArray<>();
+        aliasesByProfileId.put(0, Arrays.asList(ALIAS));
+
+        mCache.prune(TAB, aliasesByProfileId);
+
+        assertThat(mCache.get(TAB, 0, ALIAS, fingerprint)).isNotNull();
+        assertThat(mCache.get(TAB, 0, OTHER_ALIAS, fingerprint)).isNull();
+        assertThat(mCache.get(TAB, 10, ALIAS, fingerprint)).isNull();
+    }
+
+    @Test
+    public void prune_keepsProfilesNotLoadedAndOtherTabs() {
+        final String fingerprint = CaCertSummaryCache.getFingerprint(new byte[]{1, 2, 3});
+        mCache.put(TAB, 10, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+        mCache.put("USER", 0, ALIAS, fingerprint, new CaCertSummaryCache.Summary("Org", ""));
+        final SparseArray<List<String>> aliasesByProfileId = new SparseArray<>();
+        aliasesByProfileId.put(0, Arrays.asList(OTHER_ALIAS));
+        aliasesByProfileId.put(10, null);
+
+        mCache.prune(TAB, aliasesByProfileId);
+
+        assertThat(mCache.get(TAB, 10, ALIAS, fingerprint)).isNotNull();
+        assertThat(mCache.get("USER", 0, ALIAS, fingerprint)).isNotNull();
+    }
+}
@@ -112,6 +112,24 @@ public class SettingsDumpServiceTest {
                 .contains("{\"" + SettingsDumpService.KEY_SERVICE + "\":");
     }
 
+    @Test
+    public void testDump_stream_printsSelectedSectionsWithDuration() throws JSONException {
+        mResolveInfo.activityInfo = new ActivityInfo();
+        mResolveInfo.activityInfo.packageName = PACKAGE_BROWSER;
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(stringWriter);
+
+        mTestService.dump(null, printWriter, new String[] {SettingsDumpService.ARG_STREAM,
+                SettingsDumpService.KEY_SERVICE, SettingsDumpService.KEY_DEFAULT_BROWSER_APP});
+
+        final JSONObject dump = new JSONObject(stringWriter.toString());
+        assertThat(dump.length()).isEqualTo(2);
+        assertThat(dump.getJSONObject(SettingsDumpService.KEY_DEFAULT_BROWSER_APP)
+                .getString("value")).isEqualTo(PACKAGE_BROWSER);
+        assertThat(dump.getJSONObject(SettingsDumpService.KEY_SERVICE).has("duration_ms"))
+                .isTrue();
+    }
+
     /**
      * Test service used to pass in the mock {@link PackageManager}
      */
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class StreamingDumpWriterTest {
+
+    private ExecutorService mExecutor;
+    private CountDownLatch mNeverReleased;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newCachedThreadPool();
+        mNeverReleased = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void write_allSections_writesValueAndDuration() throws Exception {
+        final JSONObject dump = write(new StreamingDumpWriter(threads -> mExecutor)
+                .add("service", 1000, () -> "Settings State")
+                .add("object", 1000, () -> new JSONObject().put("count", 3)));
+
+        final JSONObject service = dump.getJSONObject("service");
+        assertThat(service.getString("value")).isEqualTo("Settings State");
+        assertThat(service.has("duration_ms")).isTrue();
+        assertThat(dump.getJSONObject("object").getJSONObject("value").getInt("count"))
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void write_slowSection_timesOutWithoutHoldingOthers() throws Exception {
+        final JSONObject dump = write(new StreamingDumpWriter(threads -> mExecutor)
+                .add("fast", 1000, () -> 1)
+                .add("slow", 50, () -> {
+                    mNeverReleased.await();
+                    return 2;
+                }));
+
+        assertThat(dump.getJSONObject("fast").getInt("value")).isEqualTo(1);
+        assertThat(dump.getJSONObject("slow").getString("error")).isEqualTo("timed out");
+        assertThat(dump.getJSONObject("slow").has("value")).isFalse();
+    }
+
+    @Test
+    public void write_throwingSection_writesError() throws Exception {
+        final JSONObject dump = write(new StreamingDumpWriter(threads -> mExecutor)
+                .add("broken", 1000, () -> {
+                    throw new IllegalStateException("no service");
+                }));
+
+        assertThat(dump.getJSONObject("broken").getString("error")).contains("no service");
+    }
+
+    @Test
+    public void write_selectedKeys_onlyWritesThose() throws Exception {
+        final StringWriter out = new StringWriter();
+        new StreamingDumpWriter(threads -> mExecutor)
+                .add("service", 1000, () -> "Settings State")
+                .add("memory", 1000, () -> 1)
+                .write(out, Arrays.asList("memory", "unknown"));
+        final JSONObject dump = new JSONObject(out.toString());
+
+        assertThat(dump.has("service")).isFalse();
+        assertThat(dump.getJSONObject("memory").getInt("value")).isEqualTo(1);
+        assertThat(dump.getJSONObject("unknown").getString("error"))
+                .isEqualTo("unknown section");
+    }
+
+    @Test
+    public void write_createsExecutorWithThreadPerSection() throws Exception {
+        final AtomicInteger threads = new AtomicInteger();
+        write(new StreamingDumpWriter(count -> {
+            threads.set(count);
+            return mExecutor;
+        })
+                .add("service", 1000, () -> "Settings State")
+                .add("memory", 1000, () -> 1));
+
+        assertThat(threads.get()).isEqualTo(2);
+        assertThat(mExecutor.isShutdown()).isTrue();
+    }
+
+    @Test
+    public void write_sectionWaitingForThread_deadlineStartsWhenItRuns() throws Exception {
+        final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        final JSONObject dump = write(new StreamingDumpWriter(threads -> singleThread)
+                .add("first", 1000, () -> {
+                    Thread.sleep(200);
+                    return 1;
+                })
+                .add("second", 100, () -> 2));
+
+        assertThat(dump.getJSONObject("first").getInt("value")).isEqualTo(1);
+        assertThat(dump.getJSONObject("second").getInt("value")).isEqualTo(2);
+    }
+
+    private static JSONObject write(StreamingDumpWriter writer) throws Exception {
+        final StringWriter out = new StringWriter();
+        writer.write(out, Collections.emptyList());
+        return new JSONObject(out.toString());
+    }
+}
@@ -70,6 +70,7 @@ public class AccessibilityDetailsSettingsFragmentTest {
 
     @Before
     public void setUp() {
+        AccessibilityServiceInfoRegistry.resetInstance();
         mContext = ApplicationProvider.getApplicationContext();
         ShadowAccessibilityManager shadowAccessibilityManager = Shadow.extract(
                 AccessibilityManager.getInstance(mContext));
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.accessibility;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.view.accessibility.AccessibilityManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.settings.applications.InstalledPackageSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+import org.robolectric.shadows.ShadowLooper;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AccessibilityServiceInfoRegistryTest {
+
+    private static final String PACKAGE_NAME = "com.android.test";
+    private static final ComponentName COMPONENT_NAME =
+            new ComponentName(PACKAGE_NAME, PACKAGE_NAME + ".FakeService");
+
+    private Context mContext;
+    private ShadowAccessibilityManager mShadowAccessibilityManager;
+    private AccessibilityServiceInfoRegistry mRegistry;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mShadowAccessibilityManager = Shadow.extract(AccessibilityManager.getInstance(mContext));
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(List.of());
+        AccessibilityServiceInfoRegistry.resetInstance();
+        InstalledPackageSnapshot.setInstance(null);
+        mRegistry = AccessibilityServiceInfoRegistry.getInstance(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        AccessibilityServiceInfoRegistry.resetInstance();
+    }
+
+    @Test
+    public void getInstalledServices_isCachedUntilInvalidated() throws Exception {
+        assertThat(mRegistry.getInstalledServices()).isEmpty();
+
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(
+                List.of(createServiceInfo()));
+
+        assertThat(mRegistry.getInstalledServices()).isEmpty();
+
+        mRegistry.invalidate();
+
+        assertThat(mRegistry.getInstalledServices()).hasSize(1);
+        assertThat(mRegistry.getService(COMPONENT_NAME)).isNotNull();
+    }
+
+    @Test
+    public void packageAdded_invalidatesServices() throws Exception {
+        assertThat(mRegistry.getService(COMPONENT_NAME)).isNull();
+        mShadowAccessibilityManager.setInstalledAccessibilityServiceList(
+                List.of(createServiceInfo()));
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", PACKAGE_NAME, null)));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRegistry.getService(COMPONENT_NAME)).isNotNull();
+    }
+
+    @Test
+    public void getInstance_afterReset_returnsNewRegistry() {
+        AccessibilityServiceInfoRegistry.resetInstance();
+
+        assertThat(AccessibilityServiceInfoRegistry.getInstance(mContext))
+                .isNotSameInstanceAs(mRegistry);
+    }
+
+    private AccessibilityServiceInfo createServiceInfo()
+            throws XmlPullParserException, IOException {
+        final ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.packageName = COMPONENT_NAME.getPackageName();
+        serviceInfo.name = COMPONENT_NAME.getClassName();
+        final ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.serviceInfo = serviceInfo;
+        final AccessibilityServiceInfo info = new AccessibilityServiceInfo(resolveInfo, mContext);
+        info.setComponentName(COMPONENT_NAME);
+        return info;
+    }
+}
@@ -92,6 +92,7 @@ public class AccessibilitySettingsForSetupWizardTest {
 
     @Before
     public void setUp() {
+        AccessibilityServiceInfoRegistry.resetInstance();
         mFragment = spy(new TestAccessibilitySettingsForSetupWizard(mContext));
         doReturn(mAccessibilityManager).when(mActivity).getSystemService(
                 AccessibilityManager.class);
@@ -115,6 +115,7 @@ public class AccessibilitySettingsTest {
 
     @Before
     public void setup() {
+        AccessibilityServiceInfoRegistry.resetInstance();
         mShadowAccessibilityManager = Shadow.extract(AccessibilityManager.getInstance(mContext));
         mShadowAccessibilityManager.setInstalledAccessibilityServiceList(new ArrayList<>());
         mContext.setTheme(androidx.appcompat.R.style.Theme_AppCompat);
@@ -58,6 +58,7 @@ public class AccessibilitySlicePreferenceControllerTest {
 
     @Before
     public void setUp() {
+        AccessibilityServiceInfoRegistry.resetInstance();
         mContext = RuntimeEnvironment.application;
 
         final ContentResolver contentResolver = mContext.getContentResolver();
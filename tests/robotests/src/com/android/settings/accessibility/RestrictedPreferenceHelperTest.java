@@ -36,6 +36,7 @@ import androidx.test.core.app.ApplicationProvider;
 
 import com.android.settingslib.RestrictedPreference;
 
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -72,6 +73,11 @@ public class RestrictedPreferenceHelperTest {
     private AccessibilityShortcutInfo mShortcutInfo;
     private final RestrictedPreferenceHelper mHelper = new RestrictedPreferenceHelper(mContext);
 
+    @Before
+    public void setUp() {
+        AccessibilityServiceInfoRegistry.resetInstance();
+    }
+
     @Test
     public void createAccessibilityServicePreferenceList_hasOneInfo_containsSameKey() {
         final String key = COMPONENT_NAME.flattenToString();
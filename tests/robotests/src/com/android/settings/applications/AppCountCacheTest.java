@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.ApplicationInfoFlags;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppCountCacheTest {
+
+    private static final int USER_ID = 0;
+    private static final String KEY = "key";
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final ApplicationInfoFlags FLAGS = ApplicationInfoFlags.of(0);
+    // Counts the apps that aren't system apps.
+    private static final Predicate<ApplicationInfo> FILTER =
+            info -> (info.flags & ApplicationInfo.FLAG_SYSTEM) == 0;
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private InstalledPackageSnapshot mSnapshot;
+    private AppCountCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        when(mPackageManager.getInstalledApplicationsAsUser(any(ApplicationInfoFlags.class),
+                anyInt())).thenReturn(Arrays.asList(buildInfo("a", 0), buildInfo("b", 0),
+                        buildInfo("c", ApplicationInfo.FLAG_SYSTEM)));
+        mSnapshot = new InstalledPackageSnapshot(mContext, mPackageManager);
+        mCache = new AppCountCache(mContext, mSnapshot);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.release();
+        mSnapshot.release();
+    }
+
+    @Test
+    public void getCount_listsAppsOncePerUserAndKey() {
+        assertThat(mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER)).isEqualTo(2);
+        assertThat(mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER)).isEqualTo(2);
+
+        verify(mPackageManager).getInstalledApplicationsAsUser(any(ApplicationInfoFlags.class),
+                anyInt());
+    }
+
+    @Test
+    public void getCount_otherFlags_countsAgain() {
+        mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER);
+        mCache.getCount(mPackageManager, USER_ID, KEY,
+                ApplicationInfoFlags.of(PackageManager.MATCH_ANY_USER), FILTER);
+
+        verify(mPackageManager, times(2)).getInstalledApplicationsAsUser(
+                any(ApplicationInfoFlags.class), anyInt());
+    }
+
+    @Test
+    public void packageBroadcasts_onlyFilterChangedPackages() throws Exception {
+        mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER);
+        when(mPackageManager.getApplicationInfoAsUser("a", FLAGS, USER_ID))
+                .thenReturn(buildInfo("a", ApplicationInfo.FLAG_SYSTEM));
+        when(mPackageManager.getApplicationInfoAsUser("b", FLAGS, USER_ID))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        when(mPackageManager.getApplicationInfoAsUser("d", FLAGS, USER_ID))
+                .thenReturn(buildInfo("d", 0));
+
+        sendPackageBroadcast(Intent.ACTION_PACKAGE_CHANGED, "a");
+        sendPackageBroadcast(Intent.ACTION_PACKAGE_REMOVED, "b");
+        sendPackageBroadcast(Intent.ACTION_PACKAGE_ADDED, "d");
+
+        assertThat(mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER)).isEqualTo(1);
+        verify(mPackageManager).getInstalledApplicationsAsUser(any(ApplicationInfoFlags.class),
+                anyInt());
+        verify(mPackageManager, never()).getApplicationInfoAsUser("c", FLAGS, USER_ID);
+    }
+
+    @Test
+    public void userRemoved_countsAgain() {
+        mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_USER_REMOVED)
+                .putExtra(Intent.EXTRA_USER_HANDLE, 10));
+        ShadowLooper.idleMainLooper();
+        mCache.getCount(mPackageManager, USER_ID, KEY, FLAGS, FILTER);
+
+        verify(mPackageManager, times(2)).getInstalledApplicationsAsUser(
+                any(ApplicationInfoFlags.class), anyInt());
+        verify(mPackageManager, never()).getApplicationInfoAsUser(anyString(),
+                any(ApplicationInfoFlags.class), anyInt());
+    }
+
+    @Test
+    public void packageChanged_whileCounting_doesNotWaitForCount() throws Exception {
+        final CountDownLatch countStarted = new CountDownLatch(1);
+        final CountDownLatch finishCount = new CountDownLatch(1);
+        final Thread counter = new Thread(() -> mCache.getCount(mPackageManager, USER_ID, KEY,
+                FLAGS, info -> {
+                    countStarted.countDown();
+                    try {
+                        finishCount.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                }));
+        counter.start();
+        assertThat(countStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+        final Thread notifier = new Thread(() -> mSnapshot.invalidate(USER_ID, "a"));
+        notifier.start();
+        notifier.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        final boolean notifierDone = !notifier.isAlive();
+        finishCount.countDown();
+        counter.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertThat(notifierDone).isTrue();
+    }
+
+    @Test
+    public void getLastCount_returnsPersistedCount() {
+        assertThat(mCache.getLastCount(KEY)).isNull();
+
+        mCache.setLastCount(KEY, 3);
+
+        assertThat(mCache.getLastCount(KEY)).isEqualTo(3);
+        assertThat(mContext.getSharedPreferences(AppCountCache.PREFS_NAME, Context.MODE_PRIVATE)
+                .getInt(KEY, 0)).isEqualTo(3);
+    }
+
+    private void sendPackageBroadcast(String action, String pkg) {
+        mContext.sendBroadcast(new Intent(action, Uri.fromParts("package", pkg,
+                /* fragment */ null)));
+        ShadowLooper.idleMainLooper();
+    }
+
+    private static ApplicationInfo buildInfo(String packageName, int flags) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.flags = flags;
+        return info;
+    }
+}
@@ -34,6 +34,8 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +44,7 @@ import android.app.usage.UsageEvents;
 import android.app.usage.UsageEvents.Event;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.UserInfo;
 import android.os.Looper;
 import android.os.Parcel;
@@ -53,13 +56,16 @@ import android.widget.Switch;
 
 import com.android.settings.R;
 import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+import com.android.settings.notification.ImportanceLockCache;
 import com.android.settings.notification.NotificationBackend;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
@@ -95,15 +101,29 @@ public class AppStateNotificationBridgeTest {
         when(mState.newSession(any())).thenReturn(mSession);
         when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
         when(mBackend.getNotificationsBanned(anyString(), anyInt())).thenReturn(true);
-        when(mBackend.enableSwitch(any(), any())).thenReturn(true);
+        when(mBackend.enableSwitch(any(Context.class), any(ApplicationInfo.class)))
+                .thenReturn(true);
+        when(mBackend.enableSwitch(any(PackageInfo.class), any(ImportanceLockCache.class)))
+                .thenReturn(true);
         // most tests assume no work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
+        // Lists the packages of this test's package manager.
+        InstalledPackageSnapshot.setInstance(null);
+        // Reads the rollups saved by this test only.
+        NotificationUsageRollups.setInstance(null);
+        ImportanceLockCache.setInstance(null);
 
         mBridge = new AppStateNotificationBridge(mContext, mState,
                 mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
     }
 
+    @After
+    public void tearDown() {
+        NotificationUsageRollups.setInstance(null);
+        ImportanceLockCache.setInstance(null);
+    }
+
     private AppEntry getMockAppEntry(String pkg) {
         AppEntry entry = mock(AppEntry.class);
         entry.info = mock(ApplicationInfo.class);
@@ -199,6 +219,36 @@ public class AppStateNotificationBridgeTest {
         assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG2)).lastSent).isEqualTo(1);
     }
 
+    @Test
+    public void testGetAggregatedUsageEvents_readsOnlyEventsSinceCheckpoint() throws Exception {
+        final long now = System.currentTimeMillis();
+        List<Event> events = new ArrayList<>();
+        Event good = new Event();
+        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
+        good.mPackage = PKG1;
+        good.mTimeStamp = now - 1000;
+        events.add(good);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(events));
+        mBridge.getAggregatedUsageEvents();
+
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        final AppStateNotificationBridge reopened = new AppStateNotificationBridge(mContext,
+                mState, mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager,
+                mBackend);
+        Map<String, NotificationsSentState> map = reopened.getAggregatedUsageEvents();
+
+        final ArgumentCaptor<Long> startTime = ArgumentCaptor.forClass(Long.class);
+        verify(mUsageStats, times(2)).queryEventsForUser(
+                startTime.capture(), anyLong(), eq(0), anyString());
+        assertThat(startTime.getAllValues().get(0)).isLessThan(now - 6 * DAY_IN_MILLIS);
+        assertThat(startTime.getAllValues().get(1)).isAtLeast(now);
+        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
+        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).lastSent)
+                .isEqualTo(now - 1000);
+    }
+
     @Test
     public void testLoadAllExtraInfo_noEvents() throws RemoteException {
         when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
@@ -340,8 +390,7 @@ public class AppStateNotificationBridgeTest {
 
     @Test
     public void testUpdateExtraInfo_noEvents() throws RemoteException {
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString()))
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
                 .thenReturn(mock(UsageEvents.class));
         AppEntry entry = getMockAppEntry(PKG1);
 
@@ -361,8 +410,8 @@ public class AppStateNotificationBridgeTest {
         }
 
         UsageEvents usageEvents = getUsageEvents(events);
-        when(mUsageStats.queryEventsForPackageForUser(
-                anyLong(), anyLong(), anyInt(), anyString(), anyString())).thenReturn(usageEvents);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(usageEvents);
 
         AppEntry entry = getMockAppEntry(PKG1);
         mBridge.updateExtraInfo(entry, "", 0);
@@ -375,6 +424,34 @@ public class AppStateNotificationBridgeTest {
         assertThat(((NotificationsSentState) entry.extraInfo).blockable).isTrue();
     }
 
+    @Test
+    public void testUpdateExtraInfo_readsRollups() throws RemoteException {
+        final long now = System.currentTimeMillis();
+        List<Event> events = new ArrayList<>();
+        Event good = new Event();
+        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
+        good.mPackage = PKG1;
+        good.mTimeStamp = now - 1000;
+        events.add(good);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(events));
+        mBridge.getAggregatedUsageEvents();
+
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        AppEntry entry = getMockAppEntry(PKG1);
+        mBridge.updateExtraInfo(entry, "", 0);
+
+        final ArgumentCaptor<Long> startTime = ArgumentCaptor.forClass(Long.class);
+        verify(mUsageStats, times(2)).queryEventsForUser(
+                startTime.capture(), anyLong(), eq(0), anyString());
+        assertThat(startTime.getAllValues().get(1)).isAtLeast(now);
+        verify(mUsageStats, never()).queryEventsForPackageForUser(
+                anyLong(), anyLong(), anyInt(), anyString(), anyString());
+        assertThat(((NotificationsSentState) entry.extraInfo).sentCount).isEqualTo(1);
+        assertThat(((NotificationsSentState) entry.extraInfo).lastSent).isEqualTo(now - 1000);
+    }
+
     @Test
     public void testSummary_recency() {
         NotificationsSentState neverSent = new NotificationsSentState();
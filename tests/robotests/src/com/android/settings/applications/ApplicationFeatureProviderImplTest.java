@@ -42,6 +42,7 @@ import com.android.settings.testutils.ApplicationTestUtils;
 import com.android.settingslib.testutils.shadow.ShadowDefaultDialerManager;
 import com.android.settingslib.testutils.shadow.ShadowSmsApplication;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -104,11 +105,18 @@ public final class ApplicationFeatureProviderImplTest {
         when(mContext.getApplicationContext()).thenReturn(mContext);
         when(mContext.getSystemService(Context.USER_SERVICE)).thenReturn(mUserManager);
         when(mContext.getSystemService(Context.LOCATION_SERVICE)).thenReturn(mLocationManager);
+        AppCountCache.setInstance(new AppCountCache(RuntimeEnvironment.application,
+                new InstalledPackageSnapshot(RuntimeEnvironment.application, mPackageManager)));
 
         mProvider = new ApplicationFeatureProviderImpl(mContext, mPackageManager,
                 mPackageManagerService, mDevicePolicyManager);
     }
 
+    @After
+    public void tearDown() {
+        AppCountCache.setInstance(null);
+    }
+
     private void verifyCalculateNumberOfPolicyInstalledApps(boolean async) {
         setUpUsersAndInstalledApps();
 
@@ -53,6 +53,8 @@ public class ClonedAppsPreferenceControllerTest {
     @Before
     public void setUp() {
         mContext = spy(ApplicationProvider.getApplicationContext());
+        // Lists the packages of this test's package manager.
+        InstalledPackageSnapshot.setInstance(null);
 
         mResources = spy(mContext.getResources());
         when(mContext.getResources()).thenReturn(mResources);
@@ -42,6 +42,7 @@ import android.content.pm.UserInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -49,6 +50,7 @@ import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowApplication;
 
@@ -99,6 +101,9 @@ public final class InstalledAppCounterTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         when(mContext.getSystemService(UserManager.class)).thenReturn(mUserManager);
+        // Counts are kept by a process-wide cache, start each test with an empty one.
+        AppCountCache.setInstance(new AppCountCache(RuntimeEnvironment.application,
+                new InstalledPackageSnapshot(RuntimeEnvironment.application, mPackageManager)));
         mFakeFeatureFlags = new FakeFeatureFlagsImpl();
         mFakeFeatureFlags.setFlag(Flags.FLAG_ARCHIVING, true);
 
@@ -119,6 +124,11 @@ public final class InstalledAppCounterTest {
         mApp7.isArchived = true;
     }
 
+    @After
+    public void tearDown() {
+        AppCountCache.setInstance(null);
+    }
+
     private void expectQueryIntentActivities(int userId, String packageName, boolean launchable) {
         when(mPackageManager.queryIntentActivitiesAsUser(
                 argThat(isLaunchIntentFor(packageName)),
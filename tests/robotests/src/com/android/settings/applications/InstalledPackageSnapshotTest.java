@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.UserHandle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class InstalledPackageSnapshotTest {
+
+    private static final int USER_ID = 0;
+    private static final int PROFILE_ID = 10;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private InstalledPackageSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        when(mContext.getApplicationContext()).thenReturn(mContext);
+        doReturn(mPackageManager).when(mContext).getPackageManager();
+        when(mPackageManager.getInstalledApplicationsAsUser(0, USER_ID))
+                .thenReturn(applications("a", "b"));
+        when(mPackageManager.getInstalledApplicationsAsUser(0, PROFILE_ID))
+                .thenReturn(applications("c"));
+        mSnapshot = InstalledPackageSnapshot.getInstance(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        InstalledPackageSnapshot.setInstance(null);
+    }
+
+    @Test
+    public void getInstalledApplications_queriesOncePerUserAndFlags() {
+        assertThat(packageNames(mSnapshot.getInstalledApplications(USER_ID, 0)))
+                .containsExactly("a", "b").inOrder();
+        assertThat(packageNames(mSnapshot.getInstalledApplications(USER_ID, 0)))
+                .containsExactly("a", "b").inOrder();
+        assertThat(mSnapshot.getInstalledPackageNames(PROFILE_ID)).containsExactly("c");
+
+        verify(mPackageManager).getInstalledApplicationsAsUser(0, USER_ID);
+        verify(mPackageManager).getInstalledApplicationsAsUser(0, PROFILE_ID);
+    }
+
+    @Test
+    public void getInstalledApplications_withFilter_returnsMatchingOnly() {
+        assertThat(packageNames(mSnapshot.getInstalledApplications(USER_ID, 0,
+                info -> info.packageName.equals("b")))).containsExactly("b");
+    }
+
+    @Test
+    public void invalidate_updatedPackage_queriesOnlyThatPackage() throws Exception {
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+        final ApplicationInfo updated = application("a");
+        updated.enabled = false;
+        when(mPackageManager.getApplicationInfoAsUser("a", 0, USER_ID)).thenReturn(updated);
+
+        mSnapshot.invalidate(USER_ID, "a");
+        final List<ApplicationInfo> apps = mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        assertThat(apps.get(0)).isSameInstanceAs(updated);
+        assertThat(apps).hasSize(2);
+        verify(mPackageManager).getInstalledApplicationsAsUser(0, USER_ID);
+        verify(mPackageManager, never()).getApplicationInfoAsUser(eq("a"), anyInt(),
+                eq(PROFILE_ID));
+    }
+
+    @Test
+    public void invalidate_addedAndRemovedPackages_updatesList() throws Exception {
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+        when(mPackageManager.getApplicationInfoAsUser("b", 0, USER_ID))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        when(mPackageManager.getApplicationInfoAsUser("d", 0, USER_ID))
+                .thenReturn(application("d"));
+
+        mSnapshot.invalidate(USER_ID, "b");
+        mSnapshot.invalidate(USER_ID, "d");
+
+        assertThat(packageNames(mSnapshot.getInstalledApplications(USER_ID, 0)))
+                .containsExactly("a", "d").inOrder();
+    }
+
+    @Test
+    public void invalidate_otherUser_doesNotQuery() throws Exception {
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        mSnapshot.invalidate(PROFILE_ID, "a");
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        verify(mPackageManager, never()).getApplicationInfoAsUser(anyString(), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void getInstalledPackages_invalidate_queriesPackageInfo() throws Exception {
+        final List<PackageInfo> packages = new ArrayList<>();
+        packages.add(packageInfo("a"));
+        when(mPackageManager.getInstalledPackagesAsUser(PackageManager.GET_ACTIVITIES, USER_ID))
+                .thenReturn(packages);
+        final PackageInfo updated = packageInfo("a");
+        when(mPackageManager.getPackageInfoAsUser("a", PackageManager.GET_ACTIVITIES, USER_ID))
+                .thenReturn(updated);
+        mSnapshot.getInstalledPackages(USER_ID, PackageManager.GET_ACTIVITIES);
+
+        mSnapshot.invalidate(UserHandle.USER_ALL, "a");
+
+        assertThat(mSnapshot.getInstalledPackages(USER_ID, PackageManager.GET_ACTIVITIES))
+                .containsExactly(updated);
+    }
+
+    @Test
+    public void getInstance_returnsSameSnapshot() {
+        assertThat(InstalledPackageSnapshot.getInstance(mContext)).isSameInstanceAs(mSnapshot);
+    }
+
+    @Test
+    public void invalidate_whileLoading_doesNotWaitForQuery() throws Exception {
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        final CountDownLatch finishQuery = new CountDownLatch(1);
+        when(mPackageManager.getInstalledApplicationsAsUser(0, USER_ID)).thenAnswer(
+                invocation -> {
+                    queryStarted.countDown();
+                    finishQuery.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    return applications("a", "b");
+                });
+        when(mPackageManager.getApplicationInfoAsUser("a", 0, USER_ID))
+                .thenReturn(application("a"));
+        final Thread loader = new Thread(() -> mSnapshot.getInstalledApplications(USER_ID, 0));
+        loader.start();
+        assertThat(queryStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+        final Thread invalidator = new Thread(() -> mSnapshot.invalidate(USER_ID, "a"));
+        invalidator.start();
+        invalidator.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        final boolean invalidatorDone = !invalidator.isAlive();
+        finishQuery.countDown();
+        loader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertThat(invalidatorDone).isTrue();
+        // The package changed during the full query, so it's queried again.
+        verify(mPackageManager).getApplicationInfoAsUser("a", 0, USER_ID);
+    }
+
+    @Test
+    public void invalidate_notifiesListeners() {
+        final List<String> changed = new ArrayList<>();
+        mSnapshot.addPackageChangeListener((userId, pkg) -> changed.add(userId + ":" + pkg));
+
+        mSnapshot.invalidate(PROFILE_ID, "c");
+
+        assertThat(changed).containsExactly(PROFILE_ID + ":c");
+    }
+
+    @Test
+    public void onTrimMemory_uiHidden_dropsPackageInfoOnly() {
+        when(mPackageManager.getInstalledPackagesAsUser(PackageManager.GET_ACTIVITIES, USER_ID))
+                .thenReturn(new ArrayList<>());
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+        mSnapshot.getInstalledPackages(USER_ID, PackageManager.GET_ACTIVITIES);
+
+        mContext.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+        mSnapshot.getInstalledPackages(USER_ID, PackageManager.GET_ACTIVITIES);
+
+        verify(mPackageManager).getInstalledApplicationsAsUser(0, USER_ID);
+        verify(mPackageManager, times(2))
+                .getInstalledPackagesAsUser(PackageManager.GET_ACTIVITIES, USER_ID);
+    }
+
+    @Test
+    public void onLowMemory_dropsEverything() {
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        mContext.onLowMemory();
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        verify(mPackageManager, times(2)).getInstalledApplicationsAsUser(0, USER_ID);
+    }
+
+    @Test
+    public void getInstalledApplications_manyFlags_keepsRecentProjectionsOnly() {
+        for (int flags = 0; flags <= 8; flags++) {
+            mSnapshot.getInstalledApplications(USER_ID, flags);
+        }
+
+        mSnapshot.getInstalledApplications(USER_ID, 0);
+
+        verify(mPackageManager, times(2)).getInstalledApplicationsAsUser(0, USER_ID);
+    }
+
+    private static List<ApplicationInfo> applications(String... packageNames) {
+        final List<ApplicationInfo> applications = new ArrayList<>();
+        for (String packageName : packageNames) {
+            applications.add(application(packageName));
+        }
+        return applications;
+    }
+
+    private static ApplicationInfo application(String packageName) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        return info;
+    }
+
+    private static PackageInfo packageInfo(String packageName) {
+        final PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        return info;
+    }
+
+    private static List<String> packageNames(List<ApplicationInfo> applications) {
+        final List<String> names = new ArrayList<>();
+        for (ApplicationInfo info : applications) {
+            names.add(info.packageName);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+public class LauncherVisibilityCacheTest {
+
+    private static final String PKG = "com.example.app";
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private Context mContext;
+    private InstalledPackageSnapshot mSnapshot;
+    private LauncherVisibilityCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mSnapshot = new InstalledPackageSnapshot(mContext, mPackageManager);
+        mCache = new LauncherVisibilityCache(mPackageManager, mSnapshot);
+        LauncherVisibilityCache.setInstance(mCache);
+    }
+
+    @After
+    public void tearDown() {
+        LauncherVisibilityCache.setInstance(null);
+        mSnapshot.release();
+    }
+
+    @Test
+    public void isVisibleOnLauncher_resolvesOncePerUser() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), eq(0)))
+                .thenReturn(new ResolveInfo());
+
+        assertThat(mCache.isVisibleOnLauncher(PKG, 0)).isTrue();
+        assertThat(mCache.isVisibleOnLauncher(PKG, 0)).isTrue();
+        assertThat(mCache.isVisibleOnLauncher(PKG, 10)).isFalse();
+        assertThat(mCache.isVisibleOnLauncher(PKG, 10)).isFalse();
+
+        verify(mPackageManager).resolveActivityAsUser(any(Intent.class), anyInt(), eq(0));
+        verify(mPackageManager).resolveActivityAsUser(any(Intent.class), anyInt(), eq(10));
+    }
+
+    @Test
+    public void packageChanged_resolvesAgain() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(null);
+        assertThat(mCache.isVisibleOnLauncher(PKG, 0)).isFalse();
+
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(new ResolveInfo());
+        mContext.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_CHANGED,
+                Uri.fromParts("package", PKG, /* fragment */ null)));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mCache.isVisibleOnLauncher(PKG, 0)).isTrue();
+        verify(mPackageManager, times(2)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void packageChangedDuringResolve_answerNotCached() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    mCache.invalidate(PKG);
+                    return new ResolveInfo();
+                });
+
+        assertThat(mCache.isVisibleOnLauncher(PKG, 0)).isTrue();
+        mCache.isVisibleOnLauncher(PKG, 0);
+
+        verify(mPackageManager, times(2)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void userRemovedDuringResolve_answerNotCached() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), eq(10)))
+                .thenAnswer(invocation -> {
+                    mCache.onUserRemoved(10);
+                    return new ResolveInfo();
+                });
+
+        mCache.isVisibleOnLauncher(PKG, 10);
+        mCache.isVisibleOnLauncher(PKG, 10);
+
+        verify(mPackageManager, times(2)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                eq(10));
+    }
+
+    @Test
+    public void invalidate_onlyDropsThatPackage() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(new ResolveInfo());
+        mCache.isVisibleOnLauncher(PKG, 0);
+        mCache.isVisibleOnLauncher("other", 0);
+
+        mCache.invalidate(PKG);
+        mCache.isVisibleOnLauncher(PKG, 0);
+        mCache.isVisibleOnLauncher("other", 0);
+
+        verify(mPackageManager, times(3)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void userRemoved_dropsThatUserOnly() {
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(new ResolveInfo());
+        mCache.isVisibleOnLauncher(PKG, 0);
+        mCache.isVisibleOnLauncher(PKG, 10);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_USER_REMOVED)
+                .putExtra(Intent.EXTRA_USER_HANDLE, 10));
+        ShadowLooper.idleMainLooper();
+        mCache.isVisibleOnLauncher(PKG, 0);
+        mCache.isVisibleOnLauncher(PKG, 10);
+
+        verify(mPackageManager).resolveActivityAsUser(any(Intent.class), anyInt(), eq(0));
+        verify(mPackageManager, times(2)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                eq(10));
+    }
+
+    @Test
+    public void getInstance_returnsInstalledCache() {
+        assertThat(LauncherVisibilityCache.getInstance(mContext)).isSameInstanceAs(mCache);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationUsageRollupsTest {
+
+    private static final String PKG1 = "pkg1";
+    private static final String PKG2 = "pkg2";
+    private static final int DAYS = 7;
+    private static final long NOW = 100 * DAY_IN_MILLIS + 1000;
+    private static final List<Integer> USERS = Arrays.asList(0, 10);
+
+    private Context mContext;
+    private InstalledPackageSnapshot mPackageSnapshot;
+    private NotificationUsageRollups mRollups;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mPackageSnapshot = new InstalledPackageSnapshot(mContext, mContext.getPackageManager());
+        mRollups = createRollups();
+    }
+
+    @After
+    public void tearDown() {
+        mPackageSnapshot.release();
+    }
+
+    @Test
+    public void getSentStates_sumsDaysAndKeepsLastSent() {
+        mRollups.add(0, PKG1, NOW - 2 * DAY_IN_MILLIS, NOW - 2 * DAY_IN_MILLIS);
+        mRollups.add(0, PKG1, NOW - 10, NOW - 10);
+        mRollups.add(0, PKG1, NOW - 20, NOW - 20);
+
+        final NotificationsSentState state = mRollups.getSentStates(USERS, NOW)
+                .get(AppStateNotificationBridge.getKey(0, PKG1));
+
+        assertThat(state.sentCount).isEqualTo(3);
+        assertThat(state.lastSent).isEqualTo(NOW - 10);
+    }
+
+    @Test
+    public void getSentStates_separatesUsers() {
+        mRollups.add(0, PKG1, NOW, NOW);
+        mRollups.add(10, PKG1, NOW, NOW);
+        mRollups.add(10, PKG1, NOW, NOW);
+        mRollups.add(11, PKG1, NOW, NOW);
+
+        final Map<String, NotificationsSentState> states = mRollups.getSentStates(USERS, NOW);
+
+        assertThat(states).hasSize(2);
+        assertThat(states.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
+        assertThat(states.get(AppStateNotificationBridge.getKey(10, PKG1)).sentCount).isEqualTo(2);
+    }
+
+    @Test
+    public void commit_persistsRollupsAndCheckpoint() {
+        mRollups.add(0, PKG1, NOW - DAY_IN_MILLIS, NOW - DAY_IN_MILLIS);
+        mRollups.add(0, PKG2, NOW, NOW);
+        mRollups.commit(0, NOW);
+
+        final NotificationUsageRollups reloaded = createRollups();
+        final Map<String, NotificationsSentState> states = reloaded.getSentStates(USERS, NOW);
+
+        assertThat(reloaded.getCheckpoint(0)).isEqualTo(NOW);
+        assertThat(reloaded.getCheckpoint(10)).isEqualTo(0);
+        assertThat(states.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
+        assertThat(states.get(AppStateNotificationBridge.getKey(0, PKG1)).lastSent)
+                .isEqualTo(NOW - DAY_IN_MILLIS);
+        assertThat(states.get(AppStateNotificationBridge.getKey(0, PKG2)).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void commit_dropsDaysOutOfWindow() {
+        mRollups.add(0, PKG1, NOW - (DAYS + 2) * DAY_IN_MILLIS, NOW - (DAYS + 2) * DAY_IN_MILLIS);
+        mRollups.add(0, PKG2, NOW - (DAYS + 2) * DAY_IN_MILLIS, NOW - (DAYS + 2) * DAY_IN_MILLIS);
+        mRollups.add(0, PKG2, NOW, NOW);
+        mRollups.commit(0, NOW);
+
+        final Map<String, NotificationsSentState> states =
+                createRollups().getSentStates(USERS, NOW);
+
+        assertThat(states).doesNotContainKey(AppStateNotificationBridge.getKey(0, PKG1));
+        assertThat(states.get(AppStateNotificationBridge.getKey(0, PKG2)).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getSentStates_leavesOutDaysOutOfWindowBeforeCommit() {
+        mRollups.add(0, PKG1, NOW, NOW);
+        mRollups.commit(0, NOW);
+
+        assertThat(mRollups.getSentStates(USERS, NOW + (DAYS + 1) * DAY_IN_MILLIS)).isEmpty();
+    }
+
+    @Test
+    public void clear_dropsOnlyThatUser() {
+        mRollups.add(0, PKG1, NOW, NOW);
+        mRollups.add(10, PKG1, NOW, NOW);
+        mRollups.commit(0, NOW);
+        mRollups.commit(10, NOW);
+
+        mRollups.clear(0);
+
+        final NotificationUsageRollups reloaded = createRollups();
+        assertThat(reloaded.getCheckpoint(0)).isEqualTo(0);
+        assertThat(reloaded.getCheckpoint(10)).isEqualTo(NOW);
+        assertThat(reloaded.getSentStates(USERS, NOW).keySet())
+                .containsExactly(AppStateNotificationBridge.getKey(10, PKG1));
+    }
+
+    @Test
+    public void malformedRollup_isDropped() {
+        mContext.getSharedPreferences(NotificationUsageRollups.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(AppStateNotificationBridge.getKey(0, PKG1), "garbage")
+                .commit();
+
+        assertThat(createRollups().getSentStates(USERS, NOW))
+                .isEmpty();
+    }
+
+    @Test
+    public void getSentStates_countsWholeDaysIncludingToday() {
+        final long firstDayStart = mRollups.getWindowStart(NOW);
+        mRollups.add(0, PKG1, firstDayStart - 1, firstDayStart - 1);
+        mRollups.add(0, PKG1, firstDayStart, firstDayStart);
+
+        assertThat(firstDayStart).isEqualTo((NOW / DAY_IN_MILLIS - DAYS + 1) * DAY_IN_MILLIS);
+        assertThat(mRollups.getSentStates(USERS, NOW)
+                .get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(1);
+    }
+
+    @Test
+    public void userRemoved_dropsThatUser() {
+        mRollups.add(0, PKG1, NOW, NOW);
+        mRollups.add(10, PKG1, NOW, NOW);
+        mRollups.commit(0, NOW);
+        mRollups.commit(10, NOW);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_USER_REMOVED)
+                .putExtra(Intent.EXTRA_USER_HANDLE, 10));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRollups.getCheckpoint(10)).isEqualTo(0);
+        assertThat(mRollups.getSentStates(USERS, NOW).keySet())
+                .containsExactly(AppStateNotificationBridge.getKey(0, PKG1));
+    }
+
+    private NotificationUsageRollups createRollups() {
+        return new NotificationUsageRollups(mContext, mPackageSnapshot, DAYS);
+    }
+}
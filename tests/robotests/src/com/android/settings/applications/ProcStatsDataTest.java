@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class ProcStatsDataTest {
+
+    private static final long DURATION = 3 * 60 * 60 * 1000;
+    private static final long OTHER_DURATION = 6 * 60 * 60 * 1000;
+
+    private ProcStatsData.SnapshotCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new ProcStatsData.SnapshotCache();
+    }
+
+    @Test
+    public void put_noPageOpen_keepsNothing() {
+        mCache.put(DURATION, createSnapshot(SystemClock.elapsedRealtime()));
+
+        assertThat(mCache.getFresh(DURATION)).isNull();
+    }
+
+    @Test
+    public void put_pageOpen_servesSnapshot() {
+        mCache.onPageCreated();
+        final ProcStatsData.Snapshot snapshot = createSnapshot(SystemClock.elapsedRealtime());
+
+        mCache.put(DURATION, snapshot);
+
+        assertThat(mCache.getFresh(DURATION)).isSameInstanceAs(snapshot);
+        assertThat(mCache.getFresh(OTHER_DURATION)).isNull();
+    }
+
+    @Test
+    public void getFresh_oldSnapshot_returnsNull() {
+        mCache.onPageCreated();
+        mCache.put(DURATION, createSnapshot(SystemClock.elapsedRealtime() - 2 * 60 * 1000));
+
+        assertThat(mCache.getFresh(DURATION)).isNull();
+    }
+
+    @Test
+    public void onPageDestroyed_lastPage_dropsSnapshots() {
+        mCache.onPageCreated();
+        mCache.onPageCreated();
+        mCache.put(DURATION, createSnapshot(SystemClock.elapsedRealtime()));
+
+        mCache.onPageDestroyed(false /* changingConfigurations */);
+        assertThat(mCache.getFresh(DURATION)).isNotNull();
+
+        mCache.onPageDestroyed(false /* changingConfigurations */);
+        assertThat(mCache.getFresh(DURATION)).isNull();
+    }
+
+    @Test
+    public void onPageDestroyed_changingConfigurations_keepsSnapshots() {
+        mCache.onPageCreated();
+        mCache.put(DURATION, createSnapshot(SystemClock.elapsedRealtime()));
+
+        mCache.onPageDestroyed(true /* changingConfigurations */);
+        mCache.onPageCreated();
+
+        assertThat(mCache.getFresh(DURATION)).isNotNull();
+    }
+
+    @Test
+    public void startLoading_alreadyLoading_returnsFalse() {
+        assertThat(mCache.startLoading(DURATION)).isTrue();
+        assertThat(mCache.startLoading(DURATION)).isFalse();
+        assertThat(mCache.startLoading(OTHER_DURATION)).isTrue();
+
+        mCache.finishLoading(DURATION);
+
+        assertThat(mCache.startLoading(DURATION)).isTrue();
+    }
+
+    @Test
+    public void startLoading_freshSnapshot_returnsFalse() {
+        mCache.onPageCreated();
+        mCache.put(DURATION, createSnapshot(SystemClock.elapsedRealtime()));
+
+        assertThat(mCache.startLoading(DURATION)).isFalse();
+    }
+
+    @Test
+    public void awaitLoading_waitsUntilLoadFinishes() throws Exception {
+        mCache.startLoading(DURATION);
+        final CountDownLatch awaited = new CountDownLatch(1);
+        new Thread(() -> {
+            mCache.awaitLoading(DURATION);
+            awaited.countDown();
+        }).start();
+
+        assertThat(awaited.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        mCache.finishLoading(DURATION);
+        assertThat(awaited.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static ProcStatsData.Snapshot createSnapshot(long loadTime) {
+        return new ProcStatsData.Snapshot(null /* stats */, loadTime, 0 /* memTotalTime */,
+                null /* memInfo */, Collections.emptyList());
+    }
+}
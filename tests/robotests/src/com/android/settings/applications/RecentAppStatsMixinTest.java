@@ -25,6 +25,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.usage.UsageStats;
@@ -43,6 +45,7 @@ import com.android.settingslib.applications.AppUtils;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.instantapps.InstantAppDataProvider;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -105,9 +108,17 @@ public class RecentAppStatsMixinTest {
         when(mUserManager.getUserProfiles())
                 .thenReturn(new ArrayList<>(Arrays.asList(NORMAL_USER)));
 
+        LauncherVisibilityCache.setInstance(new LauncherVisibilityCache(mPackageManager,
+                new InstalledPackageSnapshot(mContext, mPackageManager)));
+
         mRecentAppStatsMixin = new RecentAppStatsMixin(mContext, 3 /* maximumApps */);
     }
 
+    @After
+    public void tearDown() {
+        LauncherVisibilityCache.setInstance(null);
+    }
+
     @Test
     public void loadDisplayableRecentApps_oneValidRecentAppSet_shouldHaveOneRecentApp() {
         final List<UsageStats> stats = new ArrayList<>();
@@ -486,4 +497,53 @@ public class RecentAppStatsMixinTest {
         assertThat(mRecentAppStatsMixin.mRecentApps.get(3).mUsageStats.mPackageName).isEqualTo(
                 "personal.pkg.class2");
     }
+
+    @Test
+    public void loadDisplayableRecentApps_manyCandidates_onlyChecksUntilLimitReached() {
+        final List<UsageStats> stats = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final UsageStats stat = new UsageStats();
+            stat.mLastTimeUsed = System.currentTimeMillis() - i * 1000;
+            stat.mPackageName = "pkg.class" + i;
+            stats.add(stat);
+        }
+        when(mAppState.getEntry(anyString(), anyInt())).thenReturn(mAppEntry);
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(new ResolveInfo());
+        when(mUsageStatsManager.queryUsageStats(anyInt(), anyLong(), anyLong()))
+                .thenReturn(stats);
+        mAppEntry.info = mApplicationInfo;
+
+        mRecentAppStatsMixin.loadDisplayableRecentApps(3);
+
+        assertThat(mRecentAppStatsMixin.mRecentApps.size()).isEqualTo(3);
+        assertThat(mRecentAppStatsMixin.mRecentApps.get(0).mUsageStats.mPackageName).isEqualTo(
+                "pkg.class0");
+        assertThat(mRecentAppStatsMixin.mRecentApps.get(2).mUsageStats.mPackageName).isEqualTo(
+                "pkg.class2");
+        verify(mPackageManager, times(3)).resolveActivityAsUser(any(Intent.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void loadDisplayableRecentApps_reload_shouldReuseLauncherVisibility() {
+        final List<UsageStats> stats = new ArrayList<>();
+        final UsageStats stat1 = new UsageStats();
+        stat1.mLastTimeUsed = System.currentTimeMillis();
+        stat1.mPackageName = "pkg.class";
+        stats.add(stat1);
+        when(mAppState.getEntry(stat1.mPackageName, UserHandle.myUserId()))
+                .thenReturn(mAppEntry);
+        when(mPackageManager.resolveActivityAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(new ResolveInfo());
+        when(mUsageStatsManager.queryUsageStats(anyInt(), anyLong(), anyLong()))
+                .thenReturn(stats);
+        mAppEntry.info = mApplicationInfo;
+
+        mRecentAppStatsMixin.loadDisplayableRecentApps(3);
+        mRecentAppStatsMixin.loadDisplayableRecentApps(3);
+
+        assertThat(mRecentAppStatsMixin.mRecentApps.size()).isEqualTo(1);
+        verify(mPackageManager).resolveActivityAsUser(any(Intent.class), anyInt(), anyInt());
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.ActivityManager.RunningAppProcessInfo;
+import android.app.ActivityManager.RunningServiceInfo;
+import android.content.ComponentName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateRefreshTrackerTest {
+
+    private RunningStateRefreshTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new RunningStateRefreshTracker();
+    }
+
+    @Test
+    public void onSnapshot_firstSnapshot_reportsEverythingAsChanged() {
+        final int diff = mTracker.onSnapshot(
+                Arrays.asList(service("svc", 100)), Arrays.asList(process(100, "proc")));
+
+        assertThat(diff).isEqualTo(2);
+    }
+
+    @Test
+    public void onSnapshot_identicalSnapshot_reportsNoChange() {
+        mTracker.onSnapshot(Arrays.asList(service("svc", 100)),
+                Arrays.asList(process(100, "proc")));
+
+        final int diff = mTracker.onSnapshot(
+                Arrays.asList(service("svc", 100)), Arrays.asList(process(100, "proc")));
+
+        assertThat(diff).isEqualTo(0);
+    }
+
+    @Test
+    public void onSnapshot_processDiedAndServiceRestarted_countsEachChange() {
+        mTracker.onSnapshot(Arrays.asList(service("svc", 100)),
+                Arrays.asList(process(100, "proc"), process(101, "other")));
+
+        final int diff = mTracker.onSnapshot(
+                Arrays.asList(service("svc", 102)), Arrays.asList(process(100, "proc")));
+
+        // The service in pid 100 is gone, one in pid 102 appeared and process 101 is gone.
+        assertThat(diff).isEqualTo(3);
+    }
+
+    @Test
+    public void onSnapshot_sameServiceForTwoUsers_tracksBoth() {
+        final List<RunningServiceInfo> services = Arrays.asList(
+                service("svc", 100, 10000), service("svc", 200, 1010000));
+        assertThat(mTracker.onSnapshot(services, null)).isEqualTo(2);
+        assertThat(mTracker.onSnapshot(services, null)).isEqualTo(0);
+
+        final int diff = mTracker.onSnapshot(Arrays.asList(service("svc", 100, 10000)), null);
+
+        assertThat(diff).isEqualTo(1);
+    }
+
+    @Test
+    public void isServiceChanged_onlyForServicesAddedOrChangedByLastSnapshot() {
+        final RunningServiceInfo kept = service("kept", 100);
+        final RunningServiceInfo changed = service("changed", 100);
+        mTracker.onSnapshot(Arrays.asList(kept, changed), null);
+        assertThat(mTracker.isServiceChanged(kept)).isTrue();
+
+        final RunningServiceInfo restarted = service("changed", 100);
+        restarted.restarting = 1;
+        final RunningServiceInfo added = service("added", 101);
+        mTracker.onSnapshot(Arrays.asList(service("kept", 100), restarted, added), null);
+
+        assertThat(mTracker.isServiceChanged(kept)).isFalse();
+        assertThat(mTracker.isServiceChanged(restarted)).isTrue();
+        assertThat(mTracker.isServiceChanged(added)).isTrue();
+    }
+
+    @Test
+    public void reset_reportsEveryServiceAsChangedAgain() {
+        final List<RunningServiceInfo> services = Arrays.asList(service("svc", 100));
+        mTracker.onSnapshot(services, null);
+        mTracker.onSnapshot(services, null);
+
+        mTracker.reset();
+
+        assertThat(mTracker.onSnapshot(services, null)).isEqualTo(1);
+        assertThat(mTracker.isServiceChanged(services.get(0))).isTrue();
+    }
+
+    @Test
+    public void onRefreshFinished_unchangedSnapshots_backsOffUpToMax() {
+        final List<RunningServiceInfo> services = new ArrayList<>();
+        final List<RunningAppProcessInfo> processes = Arrays.asList(process(100, "proc"));
+        mTracker.onSnapshot(services, processes);
+        assertThat(mTracker.onRefreshFinished(5))
+                .isEqualTo(RunningStateRefreshTracker.MIN_POLL_DELAY);
+
+        long delay = 0;
+        for (int i = 0; i < 10; i++) {
+            mTracker.onSnapshot(services, processes);
+            delay = mTracker.onRefreshFinished(5);
+        }
+
+        assertThat(delay).isEqualTo(RunningStateRefreshTracker.MAX_POLL_DELAY);
+        assertThat(mTracker.getUnchangedRefreshCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void onRefreshFinished_changeAfterBackoff_resetsToMin() {
+        mTracker.onSnapshot(null, Arrays.asList(process(100, "proc")));
+        mTracker.onRefreshFinished(5);
+        mTracker.onSnapshot(null, Arrays.asList(process(100, "proc")));
+        mTracker.onRefreshFinished(5);
+
+        mTracker.onSnapshot(null, Arrays.asList(process(200, "proc")));
+
+        assertThat(mTracker.onRefreshFinished(5))
+                .isEqualTo(RunningStateRefreshTracker.MIN_POLL_DELAY);
+        assertThat(mTracker.getLastUpdateCost()).isEqualTo(5);
+    }
+
+    private static RunningAppProcessInfo process(int pid, String name) {
+        final RunningAppProcessInfo info = new RunningAppProcessInfo(name, pid, null);
+        info.uid = 10000;
+        return info;
+    }
+
+    private static RunningServiceInfo service(String name, int pid) {
+        return service(name, pid, 10000);
+    }
+
+    private static RunningServiceInfo service(String name, int pid, int uid) {
+        final RunningServiceInfo info = new RunningServiceInfo();
+        info.service = new ComponentName("com.example", name);
+        info.pid = pid;
+        info.uid = uid;
+        info.started = true;
+        return info;
+    }
+}
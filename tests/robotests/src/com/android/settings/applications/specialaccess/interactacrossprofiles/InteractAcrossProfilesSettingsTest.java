@@ -26,7 +26,6 @@ import android.content.PermissionChecker;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.CrossProfileApps;
 import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -34,6 +33,7 @@ import android.util.Pair;
 
 import androidx.test.core.app.ApplicationProvider;
 
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.testutils.shadow.ShadowApplicationPackageManager;
 import com.android.settings.testutils.shadow.ShadowCrossProfileApps;
 import com.android.settings.testutils.shadow.ShadowUserManager;
@@ -41,6 +41,7 @@ import com.android.settingslib.testutils.shadow.ShadowPermissionChecker;
 
 import com.google.common.collect.ImmutableList;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -76,7 +77,6 @@ public class InteractAcrossProfilesSettingsTest {
             "android.permission.INTERACT_ACROSS_PROFILES";
 
     private final Context mContext = ApplicationProvider.getApplicationContext();
-    private final PackageManager mPackageManager = mContext.getPackageManager();
     private final UserManager mUserManager = mContext.getSystemService(UserManager.class);
     private final CrossProfileApps mCrossProfileApps =
             mContext.getSystemService(CrossProfileApps.class);
@@ -87,6 +87,8 @@ public class InteractAcrossProfilesSettingsTest {
 
     @Before
     public void setUp() {
+        // Lists the packages of this test's package manager.
+        InstalledPackageSnapshot.setInstance(null);
         mShadowUserManager = (ShadowUserManager) shadowOf(
                 mContext.getSystemService(UserManager.class)
         );
@@ -98,6 +100,11 @@ public class InteractAcrossProfilesSettingsTest {
         );
     }
 
+    @After
+    public void tearDown() {
+        InstalledPackageSnapshot.setInstance(null);
+    }
+
     @Test
     public void collectConfigurableApps_fromPersonal_returnsCombinedPackages() {
         mShadowUserManager.addUser(
@@ -114,7 +121,8 @@ public class InteractAcrossProfilesSettingsTest {
 
         List<Pair<ApplicationInfo, UserHandle>> apps =
                 InteractAcrossProfilesSettings.collectConfigurableApps(
-                        mPackageManager, mUserManager, mCrossProfileApps);
+                        InstalledPackageSnapshot.getInstance(mContext), mUserManager,
+                        mCrossProfileApps);
 
         assertThat(apps.size()).isEqualTo(2);
         assertTrue(apps.stream().anyMatch(
@@ -140,7 +148,8 @@ public class InteractAcrossProfilesSettingsTest {
 
         List<Pair<ApplicationInfo, UserHandle>> apps =
                 InteractAcrossProfilesSettings.collectConfigurableApps(
-                        mPackageManager, mUserManager, mCrossProfileApps);
+                        InstalledPackageSnapshot.getInstance(mContext), mUserManager,
+                        mCrossProfileApps);
 
         assertThat(apps.size()).isEqualTo(2);
         assertTrue(apps.stream().anyMatch(
@@ -159,7 +168,8 @@ public class InteractAcrossProfilesSettingsTest {
 
         List<Pair<ApplicationInfo, UserHandle>> apps =
                 InteractAcrossProfilesSettings.collectConfigurableApps(
-                        mPackageManager, mUserManager, mCrossProfileApps);
+                        InstalledPackageSnapshot.getInstance(mContext), mUserManager,
+                        mCrossProfileApps);
 
         assertThat(apps).isEmpty();
     }
@@ -188,7 +198,7 @@ public class InteractAcrossProfilesSettingsTest {
                 PermissionChecker.PERMISSION_SOFT_DENIED);
 
         int numOfApps = InteractAcrossProfilesSettings.getNumberOfEnabledApps(
-                mContext, mPackageManager, mUserManager, mCrossProfileApps);
+                mContext, mUserManager, mCrossProfileApps);
 
         assertThat(numOfApps).isEqualTo(1);
     }
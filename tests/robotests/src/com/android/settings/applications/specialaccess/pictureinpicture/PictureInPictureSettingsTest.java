@@ -30,6 +30,7 @@ import android.content.pm.UserInfo;
 import android.os.UserManager;
 import android.util.Pair;
 
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.testutils.FakeFeatureFactory;
 
 import com.google.common.collect.ImmutableList;
@@ -43,6 +44,7 @@ import org.mockito.MockitoAnnotations;
 import java.util.ArrayList;
 import java.util.List;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 
 @RunWith(RobolectricTestRunner.class)
 public class PictureInPictureSettingsTest {
@@ -62,7 +64,8 @@ public class PictureInPictureSettingsTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         FakeFeatureFactory.setupForTest();
-        mFragment = new PictureInPictureSettings(mPackageManager, mUserManager);
+        mFragment = new PictureInPictureSettings(mPackageManager, mUserManager,
+                new InstalledPackageSnapshot(RuntimeEnvironment.application, mPackageManager));
         mPrimaryUserPackages = new ArrayList<>();
         mProfileUserPackages = new ArrayList<>();
         when(mPackageManager.getInstalledPackagesAsUser(anyInt(), eq(PRIMARY_USER_ID)))
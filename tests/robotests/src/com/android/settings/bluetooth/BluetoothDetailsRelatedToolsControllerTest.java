@@ -30,6 +30,7 @@ import android.view.accessibility.AccessibilityManager;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceCategory;
 
+import com.android.settings.accessibility.AccessibilityServiceInfoRegistry;
 import com.android.settings.testutils.FakeFeatureFactory;
 
 import org.junit.Rule;
@@ -66,6 +67,7 @@ public class BluetoothDetailsRelatedToolsControllerTest extends BluetoothDetails
     @Override
     public void setUp() {
         super.setUp();
+        AccessibilityServiceInfoRegistry.resetInstance();
         final FakeFeatureFactory fakeFeatureFactory = FakeFeatureFactory.setupForTest();
         mFeatureProvider = fakeFeatureFactory.getBluetoothFeatureProvider();
         mShadowAccessibilityManager = Shadow.extract(AccessibilityManager.getInstance(mContext));
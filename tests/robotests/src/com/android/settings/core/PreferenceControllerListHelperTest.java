@@ -68,6 +68,79 @@ public class PreferenceControllerListHelperTest {
         assertThat(controllers.get(0)).isInstanceOf(FakePreferenceController.class);
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getControllers_withFilter_shouldSkipKeysFromFilter() {
+        final List<BasePreferenceController> allControllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings);
+        final String filteredKey = allControllers.get(0).getPreferenceKey();
+        final List<AbstractPreferenceController> filter = new ArrayList<>();
+        filter.add(new FakePreferenceController(mContext, filteredKey));
+
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.location_settings, filter);
+
+        assertThat(controllers).hasSize(allControllers.size() - 1);
+        for (BasePreferenceController controller : controllers) {
+            assertThat(controller.getPreferenceKey()).isNotEqualTo(filteredKey);
+        }
+    }
+
+    @Test
+    public void getControllers_withLazyList_describesLazyControllersInstead() {
+        final List<PreferenceControllerListHelper.ControllerDescriptor> lazy = new ArrayList<>();
+
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.captioning_appearance, null /* filter */, lazy);
+
+        final List<String> lazyKeys = new ArrayList<>();
+        for (PreferenceControllerListHelper.ControllerDescriptor descriptor : lazy) {
+            lazyKeys.add(descriptor.getKey());
+        }
+        assertThat(lazyKeys).contains("captioning_window_opacity");
+        for (BasePreferenceController controller : controllers) {
+            assertThat(lazyKeys).doesNotContain(controller.getPreferenceKey());
+        }
+    }
+
+    @Test
+    public void getControllers_withoutLazyList_createsLazyControllers() {
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.captioning_appearance);
+
+        final List<String> keys = new ArrayList<>();
+        for (BasePreferenceController controller : controllers) {
+            keys.add(controller.getPreferenceKey());
+        }
+        assertThat(keys).contains("captioning_window_opacity");
+    }
+
+    @Test
+    public void controllerDescriptor_create_createsControllerWithKey() {
+        final PreferenceControllerListHelper.ControllerDescriptor descriptor =
+                new PreferenceControllerListHelper.ControllerDescriptor("key",
+                        FakePreferenceController.class.getName(), false /* forWork */);
+
+        final BasePreferenceController controller = descriptor.create(mContext);
+
+        assertThat(descriptor.isOf(FakePreferenceController.class)).isTrue();
+        assertThat(controller).isInstanceOf(FakePreferenceController.class);
+        assertThat(controller.getPreferenceKey()).isEqualTo("key");
+    }
+
+    @Test
+    public void controllerDescriptor_unknownClass_createsNothing() {
+        final PreferenceControllerListHelper.ControllerDescriptor descriptor =
+                new PreferenceControllerListHelper.ControllerDescriptor("key",
+                        "com.android.settings.NoSuchController", false /* forWork */);
+
+        assertThat(descriptor.create(mContext)).isNull();
+    }
+
     @Test
     public void filterControllers_noFilter_shouldReturnSameList() {
         final List<BasePreferenceController> controllers = new ArrayList<>();
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlCacheTest {
+
+    private static final int FLAGS = MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER;
+
+    private Context mContext;
+    private PreferenceXmlCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = PreferenceXmlCache.getInstance();
+        mCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+    }
+
+    @Test
+    public void extractMetadata_secondTime_servedFromCache() throws Exception {
+        final List<Bundle> first = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, FLAGS);
+        final List<Bundle> second = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, FLAGS);
+
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(second).hasSize(first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertThat(second.get(i).getString(METADATA_KEY))
+                    .isEqualTo(first.get(i).getString(METADATA_KEY));
+        }
+    }
+
+    @Test
+    public void extractMetadata_changedResult_doesNotChangeCache() throws Exception {
+        final List<Bundle> first = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, FLAGS);
+        final String key = first.get(0).getString(METADATA_KEY);
+        first.get(0).putString(METADATA_KEY, "changed");
+        first.clear();
+
+        final List<Bundle> second = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, FLAGS);
+
+        assertThat(second).isNotEmpty();
+        assertThat(second.get(0).getString(METADATA_KEY)).isEqualTo(key);
+    }
+
+    @Test
+    public void extractMetadata_otherFlags_parsedAgain() throws Exception {
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings, FLAGS);
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(mCache.getMissCount()).isEqualTo(2);
+        assertThat(mCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void extractMetadata_otherConfiguration_parsedAgain() throws Exception {
+        final Configuration config = new Configuration(
+                mContext.getResources().getConfiguration());
+        config.setLocale(Locale.JAPAN);
+        final Context localized = mContext.createConfigurationContext(config);
+
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings, FLAGS);
+        PreferenceXmlParserUtils.extractMetadata(localized, R.xml.top_level_settings, FLAGS);
+
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+        assertThat(mCache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void recordInflation_keepsStatsPerScreen() {
+        mCache.recordInflation("DisplaySettings", 4_000_000);
+        mCache.recordInflation("DisplaySettings", 2_000_000);
+        mCache.recordInflation("SoundSettings", 1_000_000);
+
+        final PreferenceXmlCache.InflationStats stats =
+                mCache.getInflationStats().get("DisplaySettings");
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getLastMillis()).isEqualTo(2);
+        assertThat(stats.getMaxMillis()).isEqualTo(4);
+        assertThat(stats.getAverageMillis()).isEqualTo(3);
+        assertThat(mCache.getInflationStats()).hasSize(2);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import com.android.settings.core.SettingsTaskScheduler.Lane;
+import com.android.settings.core.SettingsTaskScheduler.LaneExecutor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class SettingsTaskSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private SettingsTaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new SettingsTaskScheduler();
+    }
+
+    @Test
+    public void submit_callable_returnsResult() throws Exception {
+        assertThat(mScheduler.submit(Lane.PREFETCH, "test", () -> 42)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(42);
+    }
+
+    @Test
+    public void submit_updatesLaneStats() throws Exception {
+        mScheduler.submit(Lane.MAINTENANCE, "test", () -> {})
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        final SettingsTaskScheduler.LaneStats stats = mScheduler.getStats(Lane.MAINTENANCE);
+        assertThat(stats.getCompletedCount()).isEqualTo(1);
+        assertThat(stats.getQueueDepth()).isEqualTo(0);
+        assertThat(mScheduler.getStats(Lane.UI_CRITICAL).getCompletedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void serialExecutor_runsTasksInOrder() throws Exception {
+        final LaneExecutor executor = mScheduler.newSerialExecutor(Lane.UI_CRITICAL, "test");
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            executor.execute(() -> order.add(value));
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).hasSize(20);
+        assertThat(order).isInOrder();
+    }
+
+    @Test
+    public void serialExecutor_shutdownNow_dropsPendingTasksOnly() throws Exception {
+        final LaneExecutor executor = mScheduler.newSerialExecutor(Lane.UI_CRITICAL, "test");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        });
+        executor.execute(() -> {});
+        assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(executor.shutdownNow()).hasSize(1);
+        release.countDown();
+
+        assertThat(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+        // The shared lane keeps accepting work.
+        assertThat(mScheduler.submit(Lane.UI_CRITICAL, "test", () -> true)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void serialExecutor_bindTo_shutsDownWhenOwnerDestroyed() {
+        final LifecycleOwner owner = mock(LifecycleOwner.class);
+        final LifecycleRegistry lifecycle = new LifecycleRegistry(owner);
+        when(owner.getLifecycle()).thenReturn(lifecycle);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_CREATE);
+        final LaneExecutor executor =
+                mScheduler.newSerialExecutor(Lane.PREFETCH, "test").bindTo(owner);
+
+        assertThat(executor.isShutdown()).isFalse();
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+
+        assertThat(executor.isShutdown()).isTrue();
+        assertThat(lifecycle.getObserverCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dedicatedExecutor_startsAllTasksAtOnce() throws Exception {
+        final int tasks = Lane.UI_CRITICAL.mMaxThreads * 2;
+        final ExecutorService executor =
+                mScheduler.newDedicatedExecutor(Lane.UI_CRITICAL, "test", tasks);
+        final CountDownLatch started = new CountDownLatch(tasks);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignore.
+                }
+            });
+        }
+
+        // More tasks than the lane has threads are all running together.
+        assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mScheduler.getStats(Lane.UI_CRITICAL).getCompletedCount()).isEqualTo(tasks);
+    }
+}
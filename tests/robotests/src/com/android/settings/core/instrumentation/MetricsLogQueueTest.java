@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import android.app.settings.SettingsEnums;
+import android.content.Context;
+
+import com.android.settingslib.core.instrumentation.LogWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsLogQueueTest {
+
+    private static final int CAPACITY = 4;
+
+    @Mock
+    private LogWriter mWriter1;
+    @Mock
+    private LogWriter mWriter2;
+
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private Context mContext;
+    private MetricsLogQueue mQueue;
+    private long mNow = 1000;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mQueue = new MetricsLogQueue(Arrays.asList(mWriter1, mWriter2), CAPACITY, mTasks::add,
+                () -> mNow);
+    }
+
+    @Test
+    public void events_writtenInOrderOnlyWhenDrained() {
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        mQueue.clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key");
+        mQueue.action(mContext, SettingsEnums.ACTION_SETTINGS_TILE_CLICK, true);
+
+        verifyNoInteractions(mWriter1, mWriter2);
+        assertThat(mTasks).hasSize(1);
+        assertThat(mQueue.getQueueDepth()).isEqualTo(3);
+
+        runTasks();
+
+        final InOrder inOrder = inOrder(mWriter1);
+        inOrder.verify(mWriter1).visible(mContext, SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        inOrder.verify(mWriter1).clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key");
+        inOrder.verify(mWriter1).action(mContext, SettingsEnums.ACTION_SETTINGS_TILE_CLICK, true);
+        verify(mWriter2).clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key");
+        assertThat(mQueue.getWrittenCount()).isEqualTo(3);
+        assertThat(mQueue.getQueueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void duplicateVisibilityEvents_coalesced() {
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        mQueue.hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        mQueue.hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        runTasks();
+
+        verify(mWriter1).visible(mContext, SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        verify(mWriter1).hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        assertThat(mQueue.getCoalescedCount()).isEqualTo(2);
+        assertThat(mQueue.getWrittenCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void repeatedVisibilityEventsWithOtherValue_written() {
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 7);
+        runTasks();
+
+        verify(mWriter1).visible(mContext, SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        verify(mWriter1).visible(mContext, SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.SETTINGS_HOMEPAGE, 7);
+        assertThat(mQueue.getCoalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void duplicateVisibilityEventsOutsideWindow_written() {
+        mQueue.hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        mNow += MetricsLogQueue.COALESCE_WINDOW_MS + 1;
+        mQueue.hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        runTasks();
+
+        verify(mWriter1, times(2)).hidden(mContext, SettingsEnums.SETTINGS_HOMEPAGE, 100);
+        assertThat(mQueue.getCoalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void visibilityEventsSeparatedByOtherEvent_written() {
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        mQueue.clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key");
+        mQueue.visible(mContext, SettingsEnums.PAGE_UNKNOWN, SettingsEnums.SETTINGS_HOMEPAGE, 5);
+        runTasks();
+
+        verify(mWriter1, times(2)).visible(mContext, SettingsEnums.PAGE_UNKNOWN,
+                SettingsEnums.SETTINGS_HOMEPAGE, 5);
+    }
+
+    @Test
+    public void queueFull_dropsNewEvents() {
+        for (int i = 0; i < CAPACITY + 2; i++) {
+            mQueue.changed(SettingsEnums.SETTINGS_HOMEPAGE, "key", i);
+        }
+        runTasks();
+
+        verify(mWriter1).changed(SettingsEnums.SETTINGS_HOMEPAGE, "key", CAPACITY - 1);
+        verify(mWriter1, never()).changed(SettingsEnums.SETTINGS_HOMEPAGE,
+                "key", CAPACITY);
+        assertThat(mQueue.getDroppedCount()).isEqualTo(2);
+        assertThat(mQueue.getWrittenCount()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void writerThrows_otherWritersStillWritten() {
+        doThrow(new IllegalStateException()).when(mWriter1).changed(anyInt(), any(), anyInt());
+
+        mQueue.changed(SettingsEnums.SETTINGS_HOMEPAGE, "key", 1);
+        runTasks();
+
+        verify(mWriter2).changed(SettingsEnums.SETTINGS_HOMEPAGE, "key", 1);
+    }
+
+    @Test
+    public void eventsAfterDrain_scheduleAnotherDrain() {
+        mQueue.clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key");
+        runTasks();
+        mQueue.clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key2");
+
+        assertThat(mTasks).hasSize(1);
+        runTasks();
+        verify(mWriter1).clicked(SettingsEnums.SETTINGS_HOMEPAGE, "key2");
+    }
+
+    private void runTasks() {
+        final List<Runnable> tasks = new ArrayList<>(mTasks);
+        mTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class DynamicDataObserverTest {
+
+    @Test
+    public void post_beforeUpdateUi_isHeldUntilUpdateUi() {
+        final TestDynamicDataObserver observer = new TestDynamicDataObserver();
+        final List<String> applied = new ArrayList<>();
+
+        observer.postValue(() -> applied.add("first"));
+
+        assertThat(applied).isEmpty();
+        assertThat(observer.getTimeToValue()).isAtLeast(0L);
+
+        observer.updateUi();
+
+        assertThat(applied).containsExactly("first");
+    }
+
+    @Test
+    public void updateUi_withoutValue_appliesLaterValuesOnMainThread() {
+        final TestDynamicDataObserver observer = new TestDynamicDataObserver();
+        final List<String> applied = new ArrayList<>();
+
+        observer.updateUi();
+        assertThat(observer.getTimeToValue()).isEqualTo(-1L);
+
+        observer.postValue(() -> applied.add("first"));
+        observer.postValue(() -> applied.add("second"));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(applied).containsExactly("first", "second").inOrder();
+    }
+
+    private static class TestDynamicDataObserver extends DynamicDataObserver {
+
+        @Override
+        public Uri getUri() {
+            return Uri.parse("content://abc");
+        }
+
+        @Override
+        public void onDataChanged() {
+        }
+
+        void postValue(Runnable runnable) {
+            post(runnable);
+        }
+    }
+}
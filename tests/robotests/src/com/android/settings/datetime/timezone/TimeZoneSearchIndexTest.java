@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datetime.timezone;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class TimeZoneSearchIndexTest {
+
+    private TimeZoneSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        final List<TestItem> items = new ArrayList<>();
+        items.add(new TestItem("United States", "US"));
+        items.add(new TestItem("Hong Kong", "HK"));
+        items.add(new TestItem("United Kingdom", "Great Britain", "GB"));
+        items.add(new TestItem("Bosnia & Herzegovina", "BA"));
+        mIndex = new TimeZoneSearchIndex(items, Locale.US);
+    }
+
+    @Test
+    public void findItems_matchesWordStartsIgnoringCase() {
+        assertThat(positions(mIndex.findItems("unit"))).containsExactly(0, 2);
+        assertThat(positions(mIndex.findItems("KON"))).containsExactly(1);
+        assertThat(positions(mIndex.findItems("brit"))).containsExactly(2);
+        assertThat(positions(mIndex.findItems("herz"))).containsExactly(3);
+    }
+
+    @Test
+    public void findItems_prefixSpanningWords_matches() {
+        assertThat(positions(mIndex.findItems("united k"))).containsExactly(2);
+    }
+
+    @Test
+    public void findItems_middleOfWord_doesNotMatch() {
+        assertThat(positions(mIndex.findItems("nited"))).isEmpty();
+        assertThat(positions(mIndex.findItems("& h"))).isEmpty();
+    }
+
+    @Test
+    public void findItems_narrowingThenWideningQuery_returnsSameResults() {
+        assertThat(positions(mIndex.findItems("u"))).containsExactly(0, 2);
+        assertThat(positions(mIndex.findItems("un"))).containsExactly(0, 2);
+        assertThat(positions(mIndex.findItems("united s"))).containsExactly(0);
+        assertThat(positions(mIndex.findItems("h"))).containsExactly(1, 3);
+        assertThat(positions(mIndex.findItems("u"))).containsExactly(0, 2);
+    }
+
+    private static List<Integer> positions(BitSet bitSet) {
+        final List<Integer> positions = new ArrayList<>();
+        bitSet.stream().forEach(positions::add);
+        return positions;
+    }
+
+    private static class TestItem implements BaseTimeZoneAdapter.AdapterItem {
+
+        private final String[] mSearchKeys;
+
+        TestItem(String... searchKeys) {
+            mSearchKeys = searchKeys;
+        }
+
+        @Override
+        public CharSequence getTitle() {
+            return mSearchKeys[0];
+        }
+
+        @Override
+        public CharSequence getSummary() {
+            return null;
+        }
+
+        @Override
+        public String getIconText() {
+            return null;
+        }
+
+        @Override
+        public String getCurrentTime() {
+            return null;
+        }
+
+        @Override
+        public long getItemId() {
+            return 0;
+        }
+
+        @Override
+        public String[] getSearchKeys() {
+            return mSearchKeys;
+        }
+    }
+}
@@ -25,7 +25,6 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
@@ -42,9 +41,7 @@ import android.app.backup.BackupDataInputStream;
 import android.app.backup.BackupDataOutput;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
-import android.content.pm.IPackageManager;
 import android.content.pm.PackageManager;
-import android.content.pm.ParceledListSlice;
 import android.content.pm.UserInfo;
 import android.os.Build;
 import android.os.IDeviceIdleController;
@@ -54,6 +51,7 @@ import android.os.UserManager;
 import android.util.ArraySet;
 
 import com.android.settings.TestUtils;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settings.fuelgauge.BatteryOptimizeHistoricalLogEntry.Action;
 import com.android.settings.testutils.FakeFeatureFactory;
 import com.android.settingslib.fuelgauge.PowerAllowlistBackend;
@@ -98,7 +96,6 @@ public final class BatteryBackupHelperTest {
     @Mock private BackupDataOutput mBackupDataOutput;
     @Mock private BackupDataInputStream mBackupDataInputStream;
     @Mock private IDeviceIdleController mDeviceController;
-    @Mock private IPackageManager mIPackageManager;
     @Mock private AppOpsManager mAppOpsManager;
     @Mock private UserManager mUserManager;
     @Mock private PowerAllowlistBackend mPowerAllowlistBackend;
@@ -118,7 +115,8 @@ public final class BatteryBackupHelperTest {
         doReturn(mPackageManager).when(mContext).getPackageManager();
         mBatteryBackupHelper = new BatteryBackupHelper(mContext);
         mBatteryBackupHelper.mIDeviceIdleController = mDeviceController;
-        mBatteryBackupHelper.mIPackageManager = mIPackageManager;
+        mBatteryBackupHelper.mPackageSnapshot =
+                new InstalledPackageSnapshot(mContext, mPackageManager);
         mBatteryBackupHelper.mPowerAllowlistBackend = mPowerAllowlistBackend;
         mBatteryBackupHelper.mBatteryOptimizeUtils = mBatteryOptimizeUtils;
         mockUid(1001 /*fake uid*/, PACKAGE_NAME1);
@@ -166,8 +164,8 @@ public final class BatteryBackupHelperTest {
                 new UserInfo(/* userId= */ 0, /* userName= */ "google", /* flag= */ 0);
         doReturn(Arrays.asList(userInfo)).when(mUserManager).getProfiles(anyInt());
         doThrow(new RuntimeException())
-                .when(mIPackageManager)
-                .getInstalledApplications(anyLong(), anyInt());
+                .when(mPackageManager)
+                .getInstalledApplicationsAsUser(anyInt(), anyInt());
 
         mBatteryBackupHelper.backupOptimizationMode(mBackupDataOutput, null);
 
@@ -417,12 +415,9 @@ public final class BatteryBackupHelperTest {
         applicationInfo3.uid = 3;
         applicationInfo3.packageName = packageName3;
         applicationInfo3.enabledSetting = PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
-        doReturn(
-                        new ParceledListSlice<ApplicationInfo>(
-                                Arrays.asList(
-                                        applicationInfo1, applicationInfo2, applicationInfo3)))
-                .when(mIPackageManager)
-                .getInstalledApplications(anyLong(), anyInt());
+        doReturn(Arrays.asList(applicationInfo1, applicationInfo2, applicationInfo3))
+                .when(mPackageManager)
+                .getInstalledApplicationsAsUser(anyInt(), anyInt());
         // Sets the AppOpsManager for checkOpNoThrow() method.
         doReturn(AppOpsManager.MODE_ALLOWED)
                 .when(mAppOpsManager)
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class DeferredInitSchedulerTest {
+
+    private final List<String> mRan = new ArrayList<>();
+    private DeferredInitScheduler mScheduler;
+    private View mView;
+
+    @Before
+    public void setUp() {
+        mScheduler = new DeferredInitScheduler();
+        mView = new View(ApplicationProvider.getApplicationContext());
+        mScheduler.addFirstFrameListener(() -> mRan.add("firstFrame"));
+        mScheduler.runWhenIdle("task", () -> mRan.add("task"));
+    }
+
+    @Test
+    public void noFrameYet_holdsWork() {
+        mScheduler.watchFirstFrame(mView);
+
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).isEmpty();
+    }
+
+    @Test
+    public void firstFrameDrawn_runsListenersThenIdleWork() {
+        mScheduler.watchFirstFrame(mView);
+
+        mView.getViewTreeObserver().dispatchOnDraw();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).containsExactly("firstFrame", "task").inOrder();
+    }
+
+    @Test
+    public void timeout_runsIdleWorkWithoutFirstFrameListeners() {
+        mScheduler.watchFirstFrame(mView);
+
+        ShadowLooper.idleMainLooper(DeferredInitScheduler.FIRST_FRAME_TIMEOUT_MS, MILLISECONDS);
+
+        assertThat(mRan).containsExactly("task");
+    }
+
+    @Test
+    public void firstFrameDrawnAfterTimeout_runsFirstFrameListeners() {
+        mScheduler.watchFirstFrame(mView);
+        ShadowLooper.idleMainLooper(DeferredInitScheduler.FIRST_FRAME_TIMEOUT_MS, MILLISECONDS);
+
+        mView.getViewTreeObserver().dispatchOnDraw();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).containsExactly("task", "firstFrame").inOrder();
+    }
+
+    @Test
+    public void afterFirstFrame_runsNewWorkRightAway() {
+        mScheduler.onFirstFrameDrawn();
+        ShadowLooper.idleMainLooper();
+
+        mScheduler.addFirstFrameListener(() -> mRan.add("lateListener"));
+        mScheduler.runWhenIdle("lateTask", () -> mRan.add("lateTask"));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).containsExactly("firstFrame", "task", "lateListener", "lateTask")
+                .inOrder();
+    }
+
+    @Test
+    public void cancel_dropsWorkNotReleasedYet() {
+        mScheduler.watchFirstFrame(mView);
+
+        mScheduler.cancel();
+        ShadowLooper.idleMainLooper(DeferredInitScheduler.FIRST_FRAME_TIMEOUT_MS, MILLISECONDS);
+        mView.getViewTreeObserver().dispatchOnDraw();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).isEmpty();
+    }
+
+    @Test
+    public void cancel_dropsReleasedWorkNotRunYet() {
+        mScheduler.onFirstFrameDrawn();
+
+        mScheduler.cancel();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mRan).containsExactly("firstFrame");
+    }
+}
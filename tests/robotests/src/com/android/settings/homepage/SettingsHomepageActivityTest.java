@@ -20,6 +20,8 @@ import static android.view.WindowManager.LayoutParams.SYSTEM_FLAG_HIDE_NON_SYSTE
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
@@ -38,15 +40,20 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
+import android.util.FeatureFlagUtils;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
 
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
 
 import com.android.settings.R;
+import com.android.settings.core.FeatureFlags;
 import com.android.settings.dashboard.suggestions.SuggestionFeatureProviderImpl;
+import com.android.settings.homepage.contextualcards.ContextualCardsFragment;
 import com.android.settings.testutils.shadow.ShadowActivityEmbeddingUtils;
 import com.android.settings.testutils.shadow.ShadowActivityManager;
 import com.android.settings.testutils.shadow.ShadowPasswordUtils;
@@ -67,6 +74,7 @@ import org.robolectric.annotation.Config;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 @RunWith(RobolectricTestRunner.class)
@@ -310,6 +318,27 @@ public class SettingsHomepageActivityTest {
         assertTrue(activity.isCallingAppPermitted(permission, 1000));
     }
 
+    @Test
+    public void contextualCards_stateSavedBeforeIdle_addedOnceStartedAgain() {
+        FeatureFlagUtils.setEnabled(RuntimeEnvironment.application, FeatureFlags.CONTEXTUAL_HOME,
+                true);
+        final ActivityController<SettingsHomepageActivity> controller =
+                Robolectric.buildActivity(SettingsHomepageActivity.class).create().start()
+                        .resume();
+        final FragmentManager fragmentManager = controller.get().getSupportFragmentManager();
+
+        controller.pause().saveInstanceState(new Bundle()).stop();
+        ShadowLooper.idleMainLooper(DeferredInitScheduler.FIRST_FRAME_TIMEOUT_MS, MILLISECONDS);
+
+        assertThat(fragmentManager.findFragmentById(R.id.contextual_cards_content)).isNull();
+
+        controller.start();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(fragmentManager.findFragmentById(R.id.contextual_cards_content))
+                .isInstanceOf(ContextualCardsFragment.class);
+    }
+
     @Implements(SuggestionFeatureProviderImpl.class)
     public static class ShadowSuggestionFeatureProviderImpl {
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class StartupTimelineTest {
+
+    @Test
+    public void markFirstFrameAndFullyDrawn_recordsTimeline() {
+        final StartupTimeline timeline = new StartupTimeline("recordsTimeline");
+        timeline.beginPhase("inflate");
+        timeline.beginPhase("bind");
+        timeline.endPhase();
+
+        timeline.markFirstFrame();
+        timeline.markFullyDrawn();
+
+        final List<String> timelines = StartupTimeline.getRecentTimelines();
+        final String last = timelines.get(timelines.size() - 1);
+        assertThat(last).startsWith("recordsTimeline:");
+        assertThat(last).contains("inflate=");
+        assertThat(last).contains("bind=");
+        assertThat(timeline.getFirstFrameLatency()).isAtLeast(0L);
+        assertThat(timeline.getFullyDrawnLatency()).isAtLeast(0L);
+    }
+
+    @Test
+    public void markFirstFrameOnly_doesNotRecord() {
+        final StartupTimeline timeline = new StartupTimeline("firstFrameOnly");
+
+        timeline.markFirstFrame();
+
+        assertThat(StartupTimeline.getRecentTimelines())
+                .doesNotContain(timeline.toString());
+    }
+
+    @Test
+    public void getRecentTimelines_keepsOnlyLatest() {
+        for (int i = 0; i < StartupTimeline.MAX_TIMELINES + 2; i++) {
+            new StartupTimeline("launch" + i).finish();
+        }
+
+        final List<String> timelines = StartupTimeline.getRecentTimelines();
+        assertThat(timelines).hasSize(StartupTimeline.MAX_TIMELINES);
+        assertThat(timelines.get(timelines.size() - 1))
+                .startsWith("launch" + (StartupTimeline.MAX_TIMELINES + 1));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.R;
+import com.android.settings.widget.HomepagePreference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class TopLevelSummaryStoreTest {
+
+    private Context mContext;
+    private PreferenceManager mPreferenceManager;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mContext.getSharedPreferences(TopLevelSummaryStore.PREF_FILE, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+        TopLevelSummaryStore.resetSnapshot();
+        mPreferenceManager = new PreferenceManager(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        TopLevelSummaryStore.resetSnapshot();
+    }
+
+    @Test
+    public void applyTo_afterSave_restoresMissingSummaries() {
+        final PreferenceScreen saved = createScreen("battery", "85%");
+        new TopLevelSummaryStore(mContext).save(saved);
+
+        final PreferenceScreen restored = createScreen("battery", null);
+        final int count = new TopLevelSummaryStore(mContext).applyTo(restored);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(restored.findPreference("battery").getSummary().toString())
+                .isEqualTo("85%");
+    }
+
+    @Test
+    public void applyTo_preferenceHasSummary_keepsLiveSummary() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+
+        final PreferenceScreen screen = createScreen("battery", "90%");
+        new TopLevelSummaryStore(mContext).applyTo(screen);
+
+        assertThat(screen.findPreference("battery").getSummary().toString()).isEqualTo("90%");
+    }
+
+    @Test
+    public void applyTo_savedInAnotherLocale_restoresNothing() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+
+        final Context frenchContext = createLocaleContext("fr");
+        final PreferenceScreen screen = createScreen("battery", null);
+        final int count = new TopLevelSummaryStore(frenchContext).applyTo(screen);
+
+        assertThat(count).isEqualTo(0);
+        assertThat(screen.findPreference("battery").getSummary()).isNull();
+    }
+
+    @Test
+    public void applyTo_afterPreload_restoresStoredSummaries() throws Exception {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+        TopLevelSummaryStore.resetSnapshot();
+
+        TopLevelSummaryStore.preload(mContext);
+        TopLevelSummaryStore.awaitPreload();
+        final PreferenceScreen screen = createScreen("battery", null);
+        final int count = new TopLevelSummaryStore(mContext).applyTo(screen);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(screen.findPreference("battery").getSummary().toString()).isEqualTo("85%");
+    }
+
+    @Test
+    public void save_summaryCleared_removesStoredSummary() throws Exception {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", null));
+        TopLevelSummaryStore.resetSnapshot();
+
+        TopLevelSummaryStore.preload(mContext);
+        TopLevelSummaryStore.awaitPreload();
+        final PreferenceScreen screen = createScreen("battery", null);
+        final int count = new TopLevelSummaryStore(mContext).applyTo(screen);
+
+        assertThat(count).isEqualTo(0);
+        assertThat(screen.findPreference("battery").getSummary()).isNull();
+        assertThat(mContext.getSharedPreferences(TopLevelSummaryStore.PREF_FILE,
+                Context.MODE_PRIVATE).contains("summary_battery")).isFalse();
+    }
+
+    @Test
+    public void applyTo_placeholderSummary_restoresStoredSummary() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+
+        final PreferenceScreen screen = createScreen("battery",
+                mContext.getString(R.string.summary_placeholder));
+        final int count = new TopLevelSummaryStore(mContext).applyTo(screen);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(screen.findPreference("battery").getSummary().toString()).isEqualTo("85%");
+    }
+
+    @Test
+    public void save_restoredSummaryNotConfirmed_dropsIt() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+        final PreferenceScreen screen = createHomepageScreen("battery");
+        final TopLevelSummaryStore store = new TopLevelSummaryStore(mContext);
+        store.applyTo(screen);
+
+        store.save(screen);
+
+        assertThat(store.getRestoredKeys()).containsExactly("battery");
+        assertThat(new TopLevelSummaryStore(mContext).applyTo(createScreen("battery", null)))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void save_restoredSummarySetAgain_keepsIt() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+        final PreferenceScreen screen = createHomepageScreen("battery");
+        final TopLevelSummaryStore store = new TopLevelSummaryStore(mContext);
+        store.applyTo(screen);
+
+        screen.findPreference("battery").setSummary("85%");
+        store.save(screen);
+
+        final PreferenceScreen restored = createScreen("battery", null);
+        assertThat(new TopLevelSummaryStore(mContext).applyTo(restored)).isEqualTo(1);
+        assertThat(restored.findPreference("battery").getSummary().toString()).isEqualTo("85%");
+    }
+
+    @Test
+    public void save_restoredSummaryChanged_savesNewSummary() {
+        new TopLevelSummaryStore(mContext).save(createScreen("battery", "85%"));
+        final PreferenceScreen screen = createScreen("battery", null);
+        final TopLevelSummaryStore store = new TopLevelSummaryStore(mContext);
+        store.applyTo(screen);
+
+        screen.findPreference("battery").setSummary("90%");
+        store.save(screen);
+
+        final PreferenceScreen restored = createScreen("battery", null);
+        new TopLevelSummaryStore(mContext).applyTo(restored);
+        assertThat(restored.findPreference("battery").getSummary().toString()).isEqualTo("90%");
+    }
+
+    private Context createLocaleContext(String languageTag) {
+        final Configuration config =
+                new Configuration(mContext.getResources().getConfiguration());
+        config.setLocale(Locale.forLanguageTag(languageTag));
+        return mContext.createConfigurationContext(config);
+    }
+
+    private PreferenceScreen createHomepageScreen(String key) {
+        final PreferenceScreen screen = mPreferenceManager.createPreferenceScreen(mContext);
+        final HomepagePreference preference = new HomepagePreference(mContext);
+        preference.setKey(key);
+        screen.addPreference(preference);
+        return screen;
+    }
+
+    private PreferenceScreen createScreen(String key, String summary) {
+        final PreferenceScreen screen = mPreferenceManager.createPreferenceScreen(mContext);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(key);
+        preference.setSummary(summary);
+        screen.addPreference(preference);
+        return screen;
+    }
+}
@@ -24,6 +24,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -46,11 +47,14 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 @RunWith(RobolectricTestRunner.class)
 public class ContextualCardLoaderTest {
 
+    private static final long CHECKER_DURATION_MS = 250;
+
     private Context mContext;
     private ContextualCardLoader mContextualCardLoader;
     private FakeFeatureFactory mFakeFeatureFactory;
@@ -137,6 +141,27 @@ public class ContextualCardLoaderTest {
                 eq(SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW), any(String.class));
     }
 
+    @Test
+    public void filterEligibleCards_moreCandidatesThanLaneThreads_keepsAllEligibleCards() {
+        final List<ContextualCard> candidates = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            candidates.add(new ContextualCard.Builder()
+                    .setName("test_card_" + i)
+                    .setCardType(ContextualCard.CardType.SLICE)
+                    .setSliceUri(Uri.parse("content://com.android.settings.test/card" + i))
+                    .build());
+        }
+        // Each check takes most of the timeout, so checks must not wait for each other.
+        doAnswer(invocation -> (Callable<ContextualCard>) () -> {
+            Thread.sleep(CHECKER_DURATION_MS);
+            return invocation.getArgument(0);
+        }).when(mContextualCardLoader).createEligibleCardChecker(any());
+
+        final List<ContextualCard> result = mContextualCardLoader.filterEligibleCards(candidates);
+
+        assertThat(result).containsExactlyElementsIn(candidates).inOrder();
+    }
+
     @Test
     public void getCardCount_noConfiguredCardCount_returnDefaultCardCount() {
         assertThat(mContextualCardLoader.getCardCount()).isEqualTo(DEFAULT_CARD_COUNT);
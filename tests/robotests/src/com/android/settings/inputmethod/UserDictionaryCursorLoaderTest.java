@@ -54,6 +54,20 @@ public class UserDictionaryCursorLoaderTest {
         assertThat(cursor.getCount()).isEqualTo(4);
     }
 
+    @Test
+    public void testLoad_shouldSkipDuplicateRowsWhenMoving() {
+        final Cursor cursor = mLoader.loadInBackground();
+
+        assertThat(cursor.moveToPosition(3)).isTrue();
+        assertThat(cursor.getString(UserDictionaryCursorLoader.INDEX_WORD)).isEqualTo("word5");
+        assertThat(cursor.moveToPrevious()).isTrue();
+        assertThat(cursor.getInt(0)).isEqualTo(3);
+        assertThat(cursor.moveToNext()).isTrue();
+        assertThat(cursor.isLast()).isTrue();
+        assertThat(cursor.moveToNext()).isFalse();
+        assertThat(cursor.isAfterLast()).isTrue();
+    }
+
     public static class FakeProvider extends ContentProvider {
 
         @Override
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.ims;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.telephony.AccessNetworkConstants;
+import android.telephony.SubscriptionManager;
+import android.telephony.ims.ImsMmTelManager;
+import android.telephony.ims.feature.ImsFeature;
+import android.telephony.ims.feature.MmTelFeature;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImsCapabilityCacheTest {
+
+    private static final int SUB_ID = 1;
+    private static final int CAPABILITY = MmTelFeature.MmTelCapabilities.CAPABILITY_TYPE_VOICE;
+    private static final int TRANSPORT = AccessNetworkConstants.TRANSPORT_TYPE_WWAN;
+    private static final long TIMEOUT_MILLIS = 50;
+
+    @Mock
+    private ImsMmTelManager mMmTelManager;
+    @Mock
+    private ImsCapabilityCache.OnImsCapabilityChangedListener mListener;
+
+    private ImsCapabilityCache mCache;
+    // Answers of the IMS service that are not delivered yet.
+    private final List<Consumer<Boolean>> mSupportedAnswers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mCache = new ImsCapabilityCache(Runnable::run, subId -> mMmTelManager);
+        doAnswer(invocation -> {
+            mSupportedAnswers.add(invocation.getArgument(3));
+            return null;
+        }).when(mMmTelManager).isSupported(anyInt(), anyInt(), any(Executor.class), any());
+    }
+
+    @Test
+    public void isSupported_invalidSubId_returnsFalse() throws Exception {
+        assertThat(mCache.isSupported(SubscriptionManager.INVALID_SUBSCRIPTION_ID, CAPABILITY,
+                TRANSPORT, TIMEOUT_MILLIS)).isFalse();
+        verify(mMmTelManager, never()).isSupported(anyInt(), anyInt(), any(Executor.class),
+                any());
+    }
+
+    @Test
+    public void getFeatureState_invalidSubId_returnsUnavailable() throws Exception {
+        assertThat(mCache.getFeatureState(SubscriptionManager.INVALID_SUBSCRIPTION_ID,
+                TIMEOUT_MILLIS)).isEqualTo(ImsFeature.STATE_UNAVAILABLE);
+    }
+
+    @Test
+    public void isSupported_answered_servesNextQueryFromCache() throws Exception {
+        answerSupportedImmediately(true);
+
+        assertThat(mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS)).isTrue();
+        assertThat(mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS)).isTrue();
+
+        verify(mMmTelManager).isSupported(eq(CAPABILITY), eq(TRANSPORT), any(Executor.class),
+                any());
+        verify(mMmTelManager).registerImsStateCallback(any(Executor.class), any());
+    }
+
+    @Test
+    public void isSupported_noAnswer_returnsFalseAfterTimeout() throws Exception {
+        assertThat(mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS)).isFalse();
+    }
+
+    @Test
+    public void isSupported_answerAfterTimeout_isCached() throws Exception {
+        mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS);
+
+        mSupportedAnswers.get(0).accept(true);
+
+        assertThat(mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS)).isTrue();
+        verify(mMmTelManager).isSupported(anyInt(), anyInt(), any(Executor.class), any());
+    }
+
+    @Test
+    public void isSupported_stateChangedWhileQuerying_dropsStaleAnswer() throws Exception {
+        mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_READY);
+        mSupportedAnswers.get(0).accept(true);
+        mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS);
+
+        verify(mMmTelManager, times(2)).isSupported(anyInt(), anyInt(), any(Executor.class),
+                any());
+    }
+
+    @Test
+    public void getSupportedOrNull_notAnswered_queriesOnceWithoutBlocking() throws Exception {
+        assertThat(mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT)).isNull();
+        assertThat(mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT)).isNull();
+
+        verify(mMmTelManager).isSupported(eq(CAPABILITY), eq(TRANSPORT), any(Executor.class),
+                any());
+    }
+
+    @Test
+    public void getSupportedOrNull_answered_notifiesAndReturnsAnswer() throws Exception {
+        mCache.addListener(mListener);
+        mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT);
+
+        mSupportedAnswers.get(0).accept(true);
+        ShadowLooper.idleMainLooper();
+
+        verify(mListener).onImsCapabilityChanged(SUB_ID);
+        assertThat(mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT)).isTrue();
+    }
+
+    @Test
+    public void getSupportedOrNull_afterStateChange_returnsLastAnswerAndRequeries()
+            throws Exception {
+        mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT);
+        mSupportedAnswers.get(0).accept(true);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_READY);
+
+        assertThat(mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT)).isTrue();
+        verify(mMmTelManager, times(2)).isSupported(anyInt(), anyInt(), any(Executor.class),
+                any());
+    }
+
+    @Test
+    public void getSupportedOrNull_subscriptionGone_forgetsLastAnswer() throws Exception {
+        mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT);
+        mSupportedAnswers.get(0).accept(true);
+
+        mCache.invalidate(SUB_ID, /* featureState */ null);
+
+        assertThat(mCache.getSupportedOrNull(SUB_ID, CAPABILITY, TRANSPORT)).isNull();
+    }
+
+    @Test
+    public void getFeatureStateOrNull_afterStateChange_returnsNewState() throws Exception {
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_READY);
+
+        assertThat(mCache.getFeatureStateOrNull(SUB_ID)).isEqualTo(ImsFeature.STATE_READY);
+        verify(mMmTelManager, never()).getFeatureState(any(Executor.class), any());
+    }
+
+    @Test
+    public void getFeatureState_answered_servesNextQueryFromCache() throws Exception {
+        doAnswer(invocation -> {
+            final Consumer<Integer> callback = invocation.getArgument(1);
+            callback.accept(ImsFeature.STATE_READY);
+            return null;
+        }).when(mMmTelManager).getFeatureState(any(Executor.class), any());
+
+        assertThat(mCache.getFeatureState(SUB_ID, TIMEOUT_MILLIS))
+                .isEqualTo(ImsFeature.STATE_READY);
+        assertThat(mCache.getFeatureState(SUB_ID, TIMEOUT_MILLIS))
+                .isEqualTo(ImsFeature.STATE_READY);
+
+        verify(mMmTelManager).getFeatureState(any(Executor.class), any());
+    }
+
+    @Test
+    public void getFeatureState_stateChangedWhileQuerying_keepsNewState() throws Exception {
+        final List<Consumer<Integer>> answers = new ArrayList<>();
+        doAnswer(invocation -> {
+            answers.add(invocation.getArgument(1));
+            return null;
+        }).when(mMmTelManager).getFeatureState(any(Executor.class), any());
+        mCache.getFeatureState(SUB_ID, TIMEOUT_MILLIS);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_READY);
+        answers.get(0).accept(ImsFeature.STATE_UNAVAILABLE);
+
+        assertThat(mCache.getFeatureState(SUB_ID, TIMEOUT_MILLIS))
+                .isEqualTo(ImsFeature.STATE_READY);
+    }
+
+    @Test
+    public void invalidate_dropsCachedCapabilities() throws Exception {
+        answerSupportedImmediately(true);
+        mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_UNAVAILABLE);
+        mCache.isSupported(SUB_ID, CAPABILITY, TRANSPORT, TIMEOUT_MILLIS);
+
+        verify(mMmTelManager, times(2)).isSupported(anyInt(), anyInt(), any(Executor.class),
+                any());
+    }
+
+    @Test
+    public void invalidate_withFeatureState_cachesStateAndNotifiesListener() throws Exception {
+        mCache.addListener(mListener);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_READY);
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mCache.getFeatureState(SUB_ID, TIMEOUT_MILLIS))
+                .isEqualTo(ImsFeature.STATE_READY);
+        verify(mListener).onImsCapabilityChanged(SUB_ID);
+    }
+
+    @Test
+    public void invalidate_listenerRemoved_doesNotNotify() {
+        mCache.addListener(mListener);
+        mCache.removeListener(mListener);
+
+        mCache.invalidate(SUB_ID, ImsFeature.STATE_UNAVAILABLE);
+        ShadowLooper.idleMainLooper();
+
+        verify(mListener, never()).onImsCapabilityChanged(SUB_ID);
+    }
+
+    private void answerSupportedImmediately(boolean supported) throws Exception {
+        doAnswer(invocation -> {
+            final Consumer<Boolean> callback = invocation.getArgument(3);
+            callback.accept(supported);
+            return null;
+        }).when(mMmTelManager).isSupported(anyInt(), anyInt(), any(Executor.class), any());
+    }
+}
@@ -65,6 +65,14 @@ public class MockVolteQueryImsState extends VolteQueryImsState {
         return super.isEnabledByPlatform(subId);
     }
 
+    @Override
+    Boolean isEnabledByPlatformOrNull(int subId) {
+        if (mIsSupported != null) {
+            return mIsSupported;
+        }
+        return super.isEnabledByPlatformOrNull(subId);
+    }
+
     public void setIsProvisionedOnDevice(boolean isProvisioned) {
         mIsProvisionedOnDevice = isProvisioned;
     }
@@ -90,6 +98,14 @@ public class MockVolteQueryImsState extends VolteQueryImsState {
         return super.isServiceStateReady(subId);
     }
 
+    @Override
+    Boolean isServiceStateReadyOrNull(int subId) {
+        if (mIsServiceStateReady != null) {
+            return mIsServiceStateReady;
+        }
+        return super.isServiceStateReadyOrNull(subId);
+    }
+
     public void setIsEnabledByUser(boolean enabled) {
         mIsEnabledByUser = enabled;
     }
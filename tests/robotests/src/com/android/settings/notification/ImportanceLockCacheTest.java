@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.INotificationManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.RemoteException;
+import android.os.UserHandle;
+
+import com.android.settings.applications.InstalledPackageSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImportanceLockCacheTest {
+
+    private static final String PKG = "com.example.app";
+    private static final int UID = UserHandle.getUid(0, 10123);
+
+    @Mock
+    private INotificationManager mInm;
+    @Mock
+    private PackageManager mPackageManager;
+
+    private InstalledPackageSnapshot mSnapshot;
+    private ImportanceLockCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = RuntimeEnvironment.application;
+        new NotificationBackend().setNm(mInm);
+        mSnapshot = new InstalledPackageSnapshot(context, mPackageManager);
+        mCache = new ImportanceLockCache(mSnapshot);
+        ImportanceLockCache.setInstance(mCache);
+    }
+
+    @After
+    public void tearDown() {
+        ImportanceLockCache.setInstance(null);
+    }
+
+    @Test
+    public void isImportanceLocked_queriesOncePerPackage() throws RemoteException {
+        when(mInm.isImportanceLocked(PKG, UID)).thenReturn(true);
+
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isTrue();
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isTrue();
+
+        verify(mInm, times(1)).isImportanceLocked(PKG, UID);
+    }
+
+    @Test
+    public void packageChanged_queriesAgain() throws RemoteException {
+        when(mInm.isImportanceLocked(PKG, UID)).thenReturn(true);
+        mCache.isImportanceLocked(PKG, UID);
+
+        when(mInm.isImportanceLocked(PKG, UID)).thenReturn(false);
+        mSnapshot.invalidate(0, PKG);
+
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isFalse();
+        verify(mInm, times(2)).isImportanceLocked(PKG, UID);
+    }
+
+    @Test
+    public void packageChangedDuringQuery_answerNotCached() throws RemoteException {
+        when(mInm.isImportanceLocked(PKG, UID)).thenAnswer(invocation -> {
+            mSnapshot.invalidate(0, PKG);
+            return true;
+        });
+
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isTrue();
+        mCache.isImportanceLocked(PKG, UID);
+
+        verify(mInm, times(2)).isImportanceLocked(PKG, UID);
+    }
+
+    @Test
+    public void remoteException_notCached() throws RemoteException {
+        when(mInm.isImportanceLocked(PKG, UID)).thenThrow(new RemoteException())
+                .thenReturn(true);
+
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isFalse();
+        assertThat(mCache.isImportanceLocked(PKG, UID)).isTrue();
+    }
+
+    @Test
+    public void enableSwitch_readsCachedLock() throws RemoteException {
+        final PackageInfo info = new PackageInfo();
+        info.packageName = PKG;
+        info.applicationInfo = new ApplicationInfo();
+        info.applicationInfo.packageName = PKG;
+        info.applicationInfo.uid = UID;
+        when(mInm.isImportanceLocked(PKG, UID)).thenReturn(false);
+        final NotificationBackend backend = new NotificationBackend();
+
+        assertThat(backend.enableSwitch(info, mCache)).isTrue();
+        assertThat(backend.enableSwitch(info, mCache)).isTrue();
+
+        verify(mInm, times(1)).isImportanceLocked(PKG, UID);
+    }
+}
@@ -23,9 +23,14 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import android.app.INotificationManager;
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.app.NotificationManager;
 import android.app.role.RoleManager;
 import android.app.usage.UsageEvents;
 import android.bluetooth.BluetoothAdapter;
@@ -35,6 +40,7 @@ import android.content.ComponentName;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.content.pm.ParceledListSlice;
 import android.net.MacAddress;
 import android.os.Build;
 import android.os.Parcel;
@@ -268,6 +274,74 @@ public class NotificationBackendTest {
                 mCdm, mBm, mCn.getPackageName(), 0).toString()).isEqualTo("Device 1, Device 2");
     }
 
+    @Test
+    public void channelSnapshot_answersChannelQueriesWithOneCall() throws Exception {
+        mockChannelGroups();
+
+        mNotificationBackend.loadChannelSnapshot("pkg", 1);
+
+        assertThat(mNotificationBackend.getChannel("pkg", 1, "a").getName().toString())
+                .isEqualTo("A");
+        assertThat(mNotificationBackend.getChannel("pkg", 1, "deleted").isDeleted()).isTrue();
+        assertThat(mNotificationBackend.getGroup("pkg", 1, "group").getChannels()).hasSize(1);
+        assertThat(mNotificationBackend.getChannelCount("pkg", 1)).isEqualTo(3);
+        assertThat(mNotificationBackend.getDeletedChannelCount("pkg", 1)).isEqualTo(1);
+        assertThat(mNotificationBackend.getBlockedChannelCount("pkg", 1)).isEqualTo(1);
+        assertThat(mNotificationBackend.onlyHasDefaultChannel("pkg", 1)).isFalse();
+        List<NotificationChannelGroup> groups =
+                mNotificationBackend.getGroups("pkg", 1).getList();
+        assertThat(groups).hasSize(2);
+        verify(mInm).getNotificationChannelGroupsForPackage("pkg", 1, true);
+        verifyNoMoreInteractions(mInm);
+    }
+
+    @Test
+    public void channelSnapshot_otherPackage_callsNoMan() throws Exception {
+        mockChannelGroups();
+        mNotificationBackend.loadChannelSnapshot("pkg", 1);
+
+        mNotificationBackend.getDeletedChannelCount("pkg", 2);
+
+        verify(mInm).getDeletedChannelCount("pkg", 2);
+    }
+
+    @Test
+    public void channelSnapshot_updateChannel_appliesEdit() throws Exception {
+        mockChannelGroups();
+        mNotificationBackend.loadChannelSnapshot("pkg", 1);
+
+        NotificationChannel channel = mNotificationBackend.getChannel("pkg", 1, "a");
+        channel.setImportance(NotificationManager.IMPORTANCE_NONE);
+        assertThat(mNotificationBackend.getBlockedChannelCount("pkg", 1)).isEqualTo(1);
+        mNotificationBackend.updateChannel("pkg", 1, channel);
+
+        verify(mInm).updateNotificationChannelForPackage("pkg", 1, channel);
+        assertThat(mNotificationBackend.getBlockedChannelCount("pkg", 1)).isEqualTo(2);
+        assertThat(mNotificationBackend.getChannel("pkg", 1, "a").getImportance())
+                .isEqualTo(NotificationManager.IMPORTANCE_NONE);
+    }
+
+    private void mockChannelGroups() throws Exception {
+        NotificationChannel a = new NotificationChannel(
+                "a", "A", NotificationManager.IMPORTANCE_DEFAULT);
+        a.setGroup("group");
+        NotificationChannelGroup group = new NotificationChannelGroup("group", "Group");
+        group.setChannels(new ArrayList<>(List.of(a)));
+
+        NotificationChannel blocked = new NotificationChannel(
+                "blocked", "Blocked", NotificationManager.IMPORTANCE_NONE);
+        NotificationChannel other = new NotificationChannel(
+                "other", "Other", NotificationManager.IMPORTANCE_LOW);
+        NotificationChannel deleted = new NotificationChannel(
+                "deleted", "Deleted", NotificationManager.IMPORTANCE_LOW);
+        deleted.setDeleted(true);
+        NotificationChannelGroup nonGrouped = new NotificationChannelGroup(null, null);
+        nonGrouped.setChannels(new ArrayList<>(List.of(blocked, other, deleted)));
+
+        when(mInm.getNotificationChannelGroupsForPackage("pkg", 1, true)).thenReturn(
+                new ParceledListSlice<>(List.of(group, nonGrouped)));
+    }
+
     private ImmutableList<AssociationInfo> mockAssociations(String... macAddresses) {
         final AssociationInfo[] associations = new AssociationInfo[macAddresses.length];
         for (int index = 0; index < macAddresses.length; index++) {
@@ -31,6 +31,7 @@ import android.content.pm.ServiceInfo;
 import android.text.TextUtils;
 
 import com.android.settings.R;
+import com.android.settings.accessibility.AccessibilityServiceInfoRegistry;
 import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.accessibility.AccessibilitySlicePreferenceController;
 import com.android.settings.search.SearchFeatureProvider;
@@ -76,6 +77,7 @@ public class SliceDataConverterTest {
 
     @Before
     public void setUp() {
+        AccessibilityServiceInfoRegistry.resetInstance();
         mContext = RuntimeEnvironment.application;
         mSliceDataConverter = spy(new SliceDataConverter(RuntimeEnvironment.application));
         mSearchFeatureProvider = new SearchFeatureProviderImpl();
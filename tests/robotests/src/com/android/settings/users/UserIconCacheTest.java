@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.users;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+import com.android.settings.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserIconCacheTest {
+
+    private static final int USER_ID = 10;
+
+    private Context mContext;
+    private UserIconCache mCache;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new UserIconCache(mContext);
+    }
+
+    @Test
+    public void get_notLoaded_returnsNull() {
+        assertThat(mCache.get(USER_ID)).isNull();
+    }
+
+    @Test
+    public void put_returnsDisplaySizedIcon() {
+        final int size = mContext.getResources().getDimensionPixelSize(
+                R.dimen.multiple_users_user_icon_size);
+
+        final Bitmap icon = mCache.put(USER_ID, mCache.getVersion(USER_ID),
+                Bitmap.createBitmap(500, 300, Bitmap.Config.ARGB_8888));
+
+        assertThat(icon.getWidth()).isEqualTo(size);
+        assertThat(icon.getHeight()).isEqualTo(size);
+        assertThat(mCache.get(USER_ID)).isSameInstanceAs(icon);
+    }
+
+    @Test
+    public void invalidate_dropsOnlyThatUser() {
+        put(USER_ID);
+        put(USER_ID + 1);
+
+        mCache.invalidate(USER_ID);
+
+        assertThat(mCache.get(USER_ID)).isNull();
+        assertThat(mCache.get(USER_ID + 1)).isNotNull();
+    }
+
+    @Test
+    public void userInfoChangedBroadcast_invalidatesUser() {
+        put(USER_ID);
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_USER_INFO_CHANGED)
+                .putExtra(Intent.EXTRA_USER_HANDLE, USER_ID));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(mCache.get(USER_ID)).isNull();
+    }
+
+    @Test
+    public void put_userChangedWhileDecoding_dropsIcon() {
+        final int version = mCache.getVersion(USER_ID);
+
+        mCache.invalidate(USER_ID);
+        final Bitmap icon = mCache.put(USER_ID, version,
+                Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+
+        assertThat(icon).isNull();
+        assertThat(mCache.get(USER_ID)).isNull();
+    }
+
+    private void put(int userId) {
+        mCache.put(userId, mCache.getVersion(userId),
+                Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+    }
+}
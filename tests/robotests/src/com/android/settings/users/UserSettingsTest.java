@@ -200,6 +200,7 @@ public class UserSettingsTest {
         Settings.Global.putInt(mContext.getContentResolver(),
                 Settings.Global.DEVICE_PROVISIONED, mProvisionedBackupValue);
         SettingsShadowResources.reset();
+        UserIconCache.getInstance(mContext).clear();
     }
 
     @Test
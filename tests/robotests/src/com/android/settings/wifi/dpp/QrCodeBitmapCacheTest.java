@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.dpp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QrCodeBitmapCacheTest {
+
+    private static final String PAYLOAD = "WIFI:S:GoogleGuest;T:WPA;P:\\\\012345678\\,;;";
+    private static final int SIZE = 100;
+
+    @Before
+    public void setUp() {
+        QrCodeBitmapCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        QrCodeBitmapCache.clear();
+    }
+
+    @Test
+    public void get_notEncoded_returnsNull() {
+        assertThat(QrCodeBitmapCache.get(PAYLOAD, SIZE)).isNull();
+    }
+
+    @Test
+    public void getOrEncode_returnsSameBitmapForSamePayloadAndSize() throws Exception {
+        final Bitmap bitmap = QrCodeBitmapCache.getOrEncode(PAYLOAD, SIZE);
+
+        assertThat(QrCodeBitmapCache.getOrEncode(PAYLOAD, SIZE)).isSameInstanceAs(bitmap);
+        assertThat(QrCodeBitmapCache.get(PAYLOAD, SIZE)).isSameInstanceAs(bitmap);
+    }
+
+    @Test
+    public void get_otherSizeOrPayload_returnsNull() throws Exception {
+        QrCodeBitmapCache.getOrEncode(PAYLOAD, SIZE);
+
+        assertThat(QrCodeBitmapCache.get(PAYLOAD, SIZE * 2)).isNull();
+        assertThat(QrCodeBitmapCache.get(PAYLOAD + "H:true;", SIZE)).isNull();
+    }
+
+    @Test
+    public void clear_dropsCachedBitmaps() throws Exception {
+        QrCodeBitmapCache.getOrEncode(PAYLOAD, SIZE);
+
+        QrCodeBitmapCache.clear();
+
+        assertThat(QrCodeBitmapCache.get(PAYLOAD, SIZE)).isNull();
+    }
+}
@@ -43,6 +43,7 @@ import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
 
 import com.android.settings.R;
+import com.android.settings.applications.InstalledPackageSnapshot;
 import com.android.settingslib.applications.StorageStatsSource;
 
 import org.junit.Before;
@@ -82,7 +83,8 @@ public class StorageAsyncLoaderTest {
         MockitoAnnotations.initMocks(this);
         mContext = spy(ApplicationProvider.getApplicationContext());
         mInfo = new ArrayList<>();
-        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager);
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource,
+                new InstalledPackageSnapshot(mContext, mPackageManager));
         when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
                 .thenReturn(mInfo);
         UserInfo info = new UserInfo();
@@ -65,6 +65,14 @@ public class MockVtQueryImsState extends VtQueryImsState {
         return super.isEnabledByPlatform(subId);
     }
 
+    @Override
+    Boolean isEnabledByPlatformOrNull(int subId) {
+        if (mIsEnabledOnPlatform != null) {
+            return mIsEnabledOnPlatform;
+        }
+        return super.isEnabledByPlatformOrNull(subId);
+    }
+
     public void setIsProvisionedOnDevice(boolean isProvisioned) {
         mIsProvisionedOnDevice = isProvisioned;
     }
@@ -90,6 +98,14 @@ public class MockVtQueryImsState extends VtQueryImsState {
         return super.isServiceStateReady(subId);
     }
 
+    @Override
+    Boolean isServiceStateReadyOrNull(int subId) {
+        if (mIsServiceStateReady != null) {
+            return mIsServiceStateReady;
+        }
+        return super.isServiceStateReadyOrNull(subId);
+    }
+
     public void setIsEnabledByUser(boolean enabled) {
         mIsEnabledByUser = enabled;
     }
@@ -281,6 +281,53 @@ public class NetworkSelectSettingsTest {
         assertThat(mNetworkSelectSettings.doAggregation(testList)).isEqualTo(expected);
     }
 
+    @Test
+    @UiThreadTest
+    public void scanResultHandler_replayMultiBatchScan_keepsOperatorRows() {
+        mNetworkSelectSettings.onCreateInitialization();
+        mNetworkSelectSettings.enablePreferenceScreen(true);
+
+        // Batches as reported by an incremental scan: the second one has fresher cells and a
+        // new operator, the third one only the registered cell.
+        mNetworkSelectSettings.scanResultHandler(Arrays.asList(
+                createLteCellInfo(false, 123, "123", "232", "CarrierA"),
+                createGsmCellInfo(false, 123, "123", "233", "CarrierB")));
+        final Preference carrierA = mPreferenceCategory.getPreference(0);
+        final Preference carrierB = mPreferenceCategory.getPreference(1);
+
+        mNetworkSelectSettings.scanResultHandler(Arrays.asList(
+                createLteCellInfo(false, 124, "123", "234", "CarrierC"),
+                createLteCellInfo(false, 1234, "123", "232", "CarrierA")));
+        mNetworkSelectSettings.scanResultHandler(Arrays.asList(
+                createGsmCellInfo(true, 123, "123", "233", "CarrierB")));
+
+        assertThat(mNetworkSelectSettings.mCellInfoList).isEqualTo(Arrays.asList(
+                createLteCellInfo(false, 1234, "123", "232", "CarrierA"),
+                createGsmCellInfo(true, 123, "123", "233", "CarrierB"),
+                createLteCellInfo(false, 124, "123", "234", "CarrierC")));
+        assertThat(mPreferenceCategory.getPreferenceCount()).isEqualTo(3);
+        assertThat(mPreferenceCategory.findPreference("CarrierA")).isSameInstanceAs(carrierA);
+        assertThat(mPreferenceCategory.findPreference("CarrierB")).isSameInstanceAs(carrierB);
+        assertThat(carrierA.getOrder()).isEqualTo(0);
+        assertThat(carrierB.getOrder()).isEqualTo(1);
+        assertThat(mPreferenceCategory.findPreference("CarrierC").getOrder()).isEqualTo(2);
+    }
+
+    @Test
+    @UiThreadTest
+    public void scanResultHandler_registeredCellThenUnregisteredBatch_keepsRegisteredCell() {
+        mNetworkSelectSettings.onCreateInitialization();
+        mNetworkSelectSettings.enablePreferenceScreen(true);
+
+        mNetworkSelectSettings.scanResultHandler(Arrays.asList(
+                createLteCellInfo(true, 123, "123", "232", "CarrierA")));
+        mNetworkSelectSettings.scanResultHandler(Arrays.asList(
+                createLteCellInfo(false, 124, "123", "232", "CarrierA")));
+
+        assertThat(mNetworkSelectSettings.mCellInfoList).isEqualTo(Arrays.asList(
+                createLteCellInfo(true, 123, "123", "232", "CarrierA")));
+    }
+
     private CellInfoLte createLteCellInfo(boolean registered, int cellId, String mcc, String mnc,
             String plmnName) {
         CellIdentityLte cil = new CellIdentityLte(
@@ -18,11 +18,15 @@ package com.android.settings.wifi.dpp;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.junit.Assert.fail;
+
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 @RunWith(AndroidJUnit4.class)
 public class WifiQrCodeTest {
     @Test
@@ -71,4 +75,74 @@ public class WifiQrCodeTest {
         assertThat(config.getSecurity()).isEqualTo("SAE");
         assertThat(config.getPreSharedKey()).isEqualTo("a");
     }
+
+    @Test
+    public void testZxParsing_escapedCharacters_shouldUnescape() {
+        WifiNetworkConfig config = new WifiQrCode(
+                "WIFI:S:a\\;b\\:c;T:WPA;P:p\\,q\\\\;;").getWifiNetworkConfig();
+        assertThat(config.getSsid()).isEqualTo("a;b:c");
+        assertThat(config.getSecurity()).isEqualTo("WPA");
+        assertThat(config.getPreSharedKey()).isEqualTo("p,q\\");
+    }
+
+    @Test
+    public void testZxParsing_escapedBackSlashBeforeDelimiter_shouldEndValue() {
+        WifiNetworkConfig config = new WifiQrCode(
+                "WIFI:S:net\\\\;T:WPA;P:secret;;").getWifiNetworkConfig();
+        assertThat(config.getSsid()).isEqualTo("net\\");
+        assertThat(config.getSecurity()).isEqualTo("WPA");
+        assertThat(config.getPreSharedKey()).isEqualTo("secret");
+    }
+
+    @Test
+    public void testZxParsing_duplicateKey_shouldUseFirstValue() {
+        WifiNetworkConfig config = new WifiQrCode(
+                "WIFI:S:first;T:WPA;S:second;P:secret;;").getWifiNetworkConfig();
+        assertThat(config.getSsid()).isEqualTo("first");
+    }
+
+    @Test
+    public void testZxParsing_hiddenSsid() {
+        WifiNetworkConfig config = new WifiQrCode(
+                "WIFI:S:hidden;T:WPA;P:secret;H:true;;").getWifiNetworkConfig();
+        assertThat(config.getHiddenSsid()).isTrue();
+    }
+
+    @Test
+    public void testDppParsing_shouldKeepRawValues() {
+        WifiQrCode qrCode = new WifiQrCode("DPP:I:SN=4774LH2b4044;M:010203040506;K:MDkwEwYHKoZIzj"
+                + "0CAQYIKoZIzj0DAQcDIgADURzxmttZoIRIPWGoQMV00XHWCAQIhXruVWOz0NjlkIA=;;");
+        assertThat(qrCode.getScheme()).isEqualTo(WifiQrCode.SCHEME_DPP);
+        assertThat(qrCode.getInformation()).isEqualTo("SN=4774LH2b4044");
+        assertThat(qrCode.getPublicKey()).isEqualTo(
+                "MDkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDIgADURzxmttZoIRIPWGoQMV00XHWCAQIhXruVWOz0NjlkIA=");
+    }
+
+    @Test
+    public void testDppParsing_missingPublicKey_shouldThrow() {
+        try {
+            new WifiQrCode("DPP:I:SN=4774LH2b4044;;");
+            fail("A DPP QR code without public key should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testParsing_randomInput_shouldOnlyThrowIllegalArgumentException() {
+        final String alphabet = "WIFIDPP:;\\STPHKI ,\"abc019";
+        final Random random = new Random(/* seed */ 20181);
+        for (int i = 0; i < 10_000; i++) {
+            final StringBuilder sb = new StringBuilder(i % 2 == 0 ? "WIFI:" : "DPP:");
+            final int length = random.nextInt(64);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            try {
+                new WifiQrCode(sb.toString());
+            } catch (IllegalArgumentException expected) {
+                // Invalid codes are rejected, anything else is a parser bug.
+            }
+        }
+    }
 }